@@ -0,0 +1 @@
+../st/st.h
\ No newline at end of file
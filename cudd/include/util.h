@@ -0,0 +1 @@
+../util/util.h
\ No newline at end of file
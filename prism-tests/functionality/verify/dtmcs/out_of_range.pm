@@ -0,0 +1,15 @@
+// Variable s takes values (3 and 4) outside its declared range,
+// which the explicit engine allows (states are then not stored in packed form)
+
+dtmc
+
+module M
+
+	s : [0..2] init 0;
+
+	[] s=0 -> 0.5 : (s'=1) + 0.5 : (s'=3);
+	[] s=1 -> (s'=2);
+	[] s=3 -> 0.5 : (s'=1) + 0.5 : (s'=4);
+	[] s=2 | s=4 -> true;
+
+endmodule
@@ -0,0 +1,387 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Scanner for (ASCII) text files of whitespace-separated tokens, as used in
+ * explicit-state model files. The file is memory-mapped (in windows of at most
+ * {@link #WINDOW_SIZE} bytes, so arbitrarily large files can be read) and numbers
+ * are parsed directly from the bytes, without creating intermediate Strings.
+ * <br>
+ * Errors in the format of numbers are reported with a {@link NumberFormatException}.
+ * The file can be read several times, see {@link #rewind()}.
+ */
+public class MappedFileScanner implements AutoCloseable
+{
+	/** Maximum size of the part of the file mapped into memory at a time */
+	public static final long WINDOW_SIZE = 1L << 30;
+
+	/** Powers of ten that can be represented exactly as doubles */
+	private static final double[] EXACT_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/** The file being read */
+	private final FileChannel channel;
+	/** Size of the file */
+	private final long fileSize;
+	/** Currently mapped window of the file */
+	private MappedByteBuffer buffer;
+	/** Offset (in the file) of the start of the current window */
+	private long bufferStart;
+	/** Current line number (starting from 1) */
+	private int lineNum;
+	/** Buffer for the characters of the current token (if needed) */
+	private byte[] token = new byte[64];
+
+	/**
+	 * Open a file for scanning.
+	 */
+	public MappedFileScanner(File file) throws IOException
+	{
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		fileSize = channel.size();
+		rewind();
+	}
+
+	/**
+	 * Go back to the start of the file.
+	 */
+	public void rewind() throws IOException
+	{
+		bufferStart = 0;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW_SIZE, fileSize));
+		lineNum = 1;
+	}
+
+	/**
+	 * Get the number of the current line (starting from 1).
+	 */
+	public int getLineNumber()
+	{
+		return lineNum;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	// Methods for reading lines
+
+	/**
+	 * Skip to the start of the next non-blank line.
+	 * Returns false if the end of the file is reached first.
+	 */
+	public boolean nextNonBlankLine() throws IOException
+	{
+		int c;
+		while ((c = peek()) != -1) {
+			if (!isWhitespace(c)) {
+				return true;
+			}
+			read();
+		}
+		return false;
+	}
+
+	/**
+	 * Skip the remainder of the current line (including the line break).
+	 */
+	public void skipLine() throws IOException
+	{
+		int c;
+		while ((c = read()) != -1 && c != '\n')
+			;
+	}
+
+	/**
+	 * Skip spaces and tabs, then check whether the end of the current line
+	 * (or of the file) has been reached. The line break is not consumed.
+	 */
+	public boolean atEndOfLine() throws IOException
+	{
+		skipSpaces();
+		int c = peek();
+		return c == -1 || c == '\n' || c == '\r';
+	}
+
+	// Methods for reading tokens on the current line
+
+	/**
+	 * Skip spaces and tabs, then get the next character, without consuming it
+	 * (or -1 at the end of the file).
+	 */
+	public int peekChar() throws IOException
+	{
+		skipSpaces();
+		return peek();
+	}
+
+	/**
+	 * Skip spaces and tabs, then read the character {@code expected},
+	 * throwing a {@link NumberFormatException} if it is not there.
+	 */
+	public void expect(char expected) throws IOException
+	{
+		skipSpaces();
+		int c = read();
+		if (c != expected) {
+			throw new NumberFormatException("expected '" + expected + "'");
+		}
+	}
+
+	/**
+	 * Skip spaces and tabs, then read a (decimal) integer.
+	 */
+	public int nextInt() throws IOException
+	{
+		skipSpaces();
+		boolean negative = false;
+		int c = peek();
+		if (c == '-' || c == '+') {
+			negative = (c == '-');
+			read();
+			c = peek();
+		}
+		if (!isDigit(c)) {
+			throw new NumberFormatException("expected integer");
+		}
+		long value = 0;
+		while (isDigit(c)) {
+			value = 10 * value + (c - '0');
+			if (value > (long) Integer.MAX_VALUE + 1) {
+				throw new NumberFormatException("integer too large");
+			}
+			read();
+			c = peek();
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("integer too large");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Skip spaces and tabs, then read a floating point number
+	 * (in any format accepted by {@link Double#parseDouble}).
+	 * The result is the same as for {@link Double#parseDouble}.
+	 */
+	public double nextDouble() throws IOException
+	{
+		int len = readToken();
+		// Fast path: at most 15 significant digits and a small exponent,
+		// so that the result is a single (correctly rounded) operation
+		// on two doubles that are exact (see Clinger's algorithm)
+		int i = 0;
+		boolean negative = false;
+		if (i < len && (token[i] == '-' || token[i] == '+')) {
+			negative = (token[i] == '-');
+			i++;
+		}
+		long mantissa = 0;
+		int numDigits = 0, exponent = 0;
+		boolean anyDigits = false, seenPoint = false;
+		for (; i < len; i++) {
+			int c = token[i];
+			if (isDigit(c)) {
+				anyDigits = true;
+				if (mantissa != 0 || c != '0') {
+					if (++numDigits > 15) {
+						return parseToken(len);
+					}
+					mantissa = 10 * mantissa + (c - '0');
+				}
+				if (seenPoint) {
+					exponent--;
+				}
+			} else if (c == '.' && !seenPoint) {
+				seenPoint = true;
+			} else {
+				break;
+			}
+		}
+		if (!anyDigits) {
+			return parseToken(len);
+		}
+		if (i < len) {
+			if ((token[i] != 'e' && token[i] != 'E') || len - i > 5) {
+				return parseToken(len);
+			}
+			i++;
+			boolean negativeExponent = false;
+			if (i < len && (token[i] == '-' || token[i] == '+')) {
+				negativeExponent = (token[i] == '-');
+				i++;
+			}
+			if (i == len) {
+				return parseToken(len);
+			}
+			int e = 0;
+			for (; i < len; i++) {
+				if (!isDigit(token[i])) {
+					return parseToken(len);
+				}
+				e = 10 * e + (token[i] - '0');
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		double value;
+		if (mantissa == 0) {
+			value = 0.0;
+		} else if (exponent >= 0 && exponent < EXACT_POWERS_OF_TEN.length) {
+			value = mantissa * EXACT_POWERS_OF_TEN[exponent];
+		} else if (exponent < 0 && -exponent < EXACT_POWERS_OF_TEN.length) {
+			value = mantissa / EXACT_POWERS_OF_TEN[-exponent];
+		} else {
+			return parseToken(len);
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Skip spaces and tabs, then read a token, i.e., a maximal sequence of
+	 * characters other than whitespace and any of the characters in {@code delimiters}.
+	 */
+	public String nextToken(String delimiters) throws IOException
+	{
+		skipSpaces();
+		int len = 0;
+		int c;
+		while ((c = peek()) != -1 && !isWhitespace(c) && delimiters.indexOf(c) == -1) {
+			appendToToken(len++, c);
+			read();
+		}
+		return new String(token, 0, len, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Skip spaces and tabs, then read a (whitespace-delimited) token.
+	 */
+	public String nextToken() throws IOException
+	{
+		return nextToken("");
+	}
+
+	// Local utility methods
+
+	/**
+	 * Read a whitespace-delimited token into {@code token}, returning its length.
+	 */
+	private int readToken() throws IOException
+	{
+		skipSpaces();
+		int len = 0;
+		int c;
+		while ((c = peek()) != -1 && !isWhitespace(c)) {
+			appendToToken(len++, c);
+			read();
+		}
+		return len;
+	}
+
+	private void appendToToken(int i, int c)
+	{
+		if (i == token.length) {
+			token = Arrays.copyOf(token, 2 * token.length);
+		}
+		token[i] = (byte) c;
+	}
+
+	/**
+	 * Parse the first {@code len} characters of {@code token} with {@link Double#parseDouble}.
+	 */
+	private double parseToken(int len)
+	{
+		return Double.parseDouble(new String(token, 0, len, StandardCharsets.US_ASCII));
+	}
+
+	private void skipSpaces() throws IOException
+	{
+		int c;
+		while ((c = peek()) == ' ' || c == '\t') {
+			read();
+		}
+	}
+
+	private static boolean isDigit(int c)
+	{
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isWhitespace(int c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	/**
+	 * Get the next byte, without consuming it, or -1 at the end of the file.
+	 */
+	private int peek() throws IOException
+	{
+		if (!buffer.hasRemaining() && !nextWindow()) {
+			return -1;
+		}
+		return buffer.get(buffer.position()) & 0xFF;
+	}
+
+	/**
+	 * Get (and consume) the next byte, or -1 at the end of the file.
+	 */
+	private int read() throws IOException
+	{
+		if (!buffer.hasRemaining() && !nextWindow()) {
+			return -1;
+		}
+		int c = buffer.get() & 0xFF;
+		if (c == '\n') {
+			lineNum++;
+		}
+		return c;
+	}
+
+	/**
+	 * Map the next window of the file; returns false if there is none.
+	 */
+	private boolean nextWindow() throws IOException
+	{
+		long nextStart = bufferStart + buffer.limit();
+		if (nextStart >= fileSize) {
+			return false;
+		}
+		bufferStart = nextStart;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, bufferStart, Math.min(WINDOW_SIZE, fileSize - bufferStart));
+		return true;
+	}
+}
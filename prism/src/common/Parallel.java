@@ -0,0 +1,129 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Helpers for simple data-parallel loops over integer ranges,
+ * executed on (shared) fork/join pools.
+ * <br>
+ * Pools are created lazily, one per requested level of parallelism, and reused.
+ * Their worker threads are daemon threads, so they do not need to be shut down.
+ * If only one thread is requested, or the range is small, the loop body is just
+ * executed in the calling thread.
+ */
+public class Parallel
+{
+	/** Default minimum number of range elements per task */
+	public static final int DEFAULT_GRAIN = 1024;
+
+	/** Pools, indexed by parallelism */
+	private static final Map<Integer, ForkJoinPool> pools = new HashMap<>();
+
+	/**
+	 * Functional interface for the body of a parallel loop,
+	 * to be executed for the (sub)range {@code from} (inclusive) to {@code to} (exclusive).
+	 */
+	@FunctionalInterface
+	public interface RangeBody
+	{
+		public void apply(int from, int to);
+	}
+
+	/**
+	 * Get a (shared) fork/join pool with parallelism {@code numThreads}.
+	 */
+	public static synchronized ForkJoinPool getPool(int numThreads)
+	{
+		return pools.computeIfAbsent(numThreads, ForkJoinPool::new);
+	}
+
+	/**
+	 * Execute {@code body} for the range {@code from}...{@code to}-1, split into subranges
+	 * which are processed in parallel, using {@code numThreads} threads.
+	 * Returns once all subranges have been processed.
+	 * Any (unchecked) exception thrown by {@code body} is rethrown.
+	 */
+	public static void forRange(int numThreads, int from, int to, RangeBody body)
+	{
+		forRange(numThreads, from, to, DEFAULT_GRAIN, body);
+	}
+
+	/**
+	 * Execute {@code body} for the range {@code from}...{@code to}-1, split into subranges
+	 * (of at least {@code grain} elements, if possible) which are processed in parallel,
+	 * using {@code numThreads} threads.
+	 * Returns once all subranges have been processed.
+	 * Any (unchecked) exception thrown by {@code body} is rethrown.
+	 */
+	public static void forRange(int numThreads, int from, int to, int grain, RangeBody body)
+	{
+		if (numThreads <= 1 || to - from <= grain) {
+			if (from < to) {
+				body.apply(from, to);
+			}
+			return;
+		}
+		// Aim for a few tasks per thread (for load balancing), but no smaller than grain
+		int size = Math.max(grain, (to - from) / (4 * numThreads));
+		getPool(numThreads).invoke(new RangeAction(from, to, size, body));
+	}
+
+	/**
+	 * Fork/join task that recursively splits a range until it is small enough.
+	 */
+	private static class RangeAction extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int size;
+		private final RangeBody body;
+
+		RangeAction(int from, int to, int size, RangeBody body)
+		{
+			this.from = from;
+			this.to = to;
+			this.size = size;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= size) {
+				body.apply(from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new RangeAction(from, mid, size, body), new RangeAction(mid, to, size, body));
+			}
+		}
+	}
+}
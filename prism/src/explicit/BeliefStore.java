@@ -0,0 +1,279 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.Arrays;
+
+/**
+ * Indexed set of beliefs (see {@link Belief}), assigning each distinct belief
+ * an integer index (0, 1, 2, ...) in the order in which they are added.
+ * <br>
+ * Beliefs are stored sparsely, in flat arrays: for each belief, the observation
+ * and, for each unobservation with non-zero probability, the unobservation index and its
+ * probability, discretised to a multiple of 1/{@code resolution}.
+ * Two beliefs are considered equal if their discretised distributions coincide,
+ * so lookups are done on (exact) integer values, not doubles.
+ * For the points of a fixed-resolution grid (with the same resolution), this is exact.
+ * For other beliefs, use {@link ExactBeliefStore}, which keys beliefs on their exact values.
+ */
+public class BeliefStore
+{
+	/** Beliefs are discretised to multiples of 1/resolution */
+	protected final int resolution;
+
+	/** Number of beliefs stored */
+	protected int size;
+	/** Observation (observable part) for each belief */
+	protected int[] obs;
+	/** Start index (into unobs/keys) of the support of each belief (plus one extra at the end) */
+	protected int[] starts;
+	/** Unobservations in the support of the beliefs (ascending, for each belief) */
+	protected int[] unobs;
+	/** Keys of the probabilities for the support of the beliefs (see {@link #key(double)}) */
+	protected long[] keys;
+	/** Hash code for each belief */
+	protected int[] hashes;
+	/** Open-addressing hash table, storing (index + 1) of beliefs, or 0 if empty */
+	protected int[] table;
+
+	/**
+	 * Create an empty store, discretising probabilities to multiples of 1/{@code resolution}.
+	 */
+	public BeliefStore(int resolution)
+	{
+		this.resolution = resolution;
+		size = 0;
+		obs = new int[16];
+		starts = new int[17];
+		unobs = new int[64];
+		keys = new long[64];
+		hashes = new int[16];
+		table = new int[32];
+	}
+
+	// Accessors
+
+	/**
+	 * Get the resolution used to discretise probabilities.
+	 */
+	public int getResolution()
+	{
+		return resolution;
+	}
+
+	/**
+	 * Get the number of beliefs stored.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the observation (observable part) of the {@code b}th belief.
+	 */
+	public int getObservation(int b)
+	{
+		return obs[b];
+	}
+
+	/**
+	 * Get the {@code b}th belief, as a (dense) {@link Belief} object,
+	 * over {@code numUnobservations} unobservations.
+	 */
+	public Belief getBelief(int b, int numUnobservations)
+	{
+		double[] bu = new double[numUnobservations];
+		for (int j = starts[b]; j < starts[b + 1]; j++) {
+			bu[unobs[j]] = value(keys[j]);
+		}
+		return new Belief(obs[b], bu);
+	}
+
+	/**
+	 * Get the index of the belief with observation {@code so} and distribution {@code bu}
+	 * over unobservations (after discretisation), or -1 if it is not stored.
+	 */
+	public int indexOf(int so, double[] bu)
+	{
+		int h = hash(so, bu);
+		int mask = table.length - 1;
+		for (int i = h & mask; table[i] != 0; i = (i + 1) & mask) {
+			int b = table[i] - 1;
+			if (hashes[b] == h && matches(b, so, bu)) {
+				return b;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the index of the belief {@code belief} (after discretisation), or -1 if it is not stored.
+	 */
+	public int indexOf(Belief belief)
+	{
+		return indexOf(belief.so, belief.bu);
+	}
+
+	// Mutators
+
+	/**
+	 * Add a belief with observation {@code so} and distribution {@code bu} over unobservations
+	 * (which is discretised), if not already present, and return its index.
+	 */
+	public int add(int so, double[] bu)
+	{
+		int h = hash(so, bu);
+		int mask = table.length - 1;
+		int i;
+		for (i = h & mask; table[i] != 0; i = (i + 1) & mask) {
+			int b = table[i] - 1;
+			if (hashes[b] == h && matches(b, so, bu)) {
+				return b;
+			}
+		}
+		// Not found: store new belief
+		int b = size;
+		ensureBeliefCapacity(b + 1);
+		int start = starts[b];
+		for (int u = 0; u < bu.length; u++) {
+			long c = key(bu[u]);
+			if (c != 0) {
+				ensureSupportCapacity(start + 1);
+				unobs[start] = u;
+				keys[start] = c;
+				start++;
+			}
+		}
+		obs[b] = so;
+		starts[b + 1] = start;
+		hashes[b] = h;
+		table[i] = b + 1;
+		size++;
+		// Grow hash table if more than half full
+		if (2 * size > table.length) {
+			rehash();
+		}
+		return b;
+	}
+
+	/**
+	 * Add the belief {@code belief} (which is discretised), if not already present, and return its index.
+	 */
+	public int add(Belief belief)
+	{
+		return add(belief.so, belief.bu);
+	}
+
+	// Local utility methods
+
+	/**
+	 * Get the key under which a probability is stored, i.e., its discretisation
+	 * to a multiple of 1/resolution (returning the multiple). Zero is mapped to 0.
+	 */
+	protected long key(double p)
+	{
+		return Math.round(p * resolution);
+	}
+
+	/**
+	 * Get the probability for a key (see {@link #key(double)}).
+	 */
+	protected double value(long key)
+	{
+		return ((double) key) / resolution;
+	}
+
+	/**
+	 * Compute the hash code of a belief, based on the keys of its values.
+	 */
+	protected int hash(int so, double[] bu)
+	{
+		int h = so;
+		for (int u = 0; u < bu.length; u++) {
+			long c = key(bu[u]);
+			if (c != 0) {
+				h = 31 * (31 * h + u) + Long.hashCode(c);
+			}
+		}
+		// Spread bits (since table size is a power of two)
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Check whether the {@code b}th stored belief equals the belief {@code (so, bu)}, i.e., has the same keys.
+	 */
+	protected boolean matches(int b, int so, double[] bu)
+	{
+		if (obs[b] != so) {
+			return false;
+		}
+		int j = starts[b];
+		int end = starts[b + 1];
+		for (int u = 0; u < bu.length; u++) {
+			long c = key(bu[u]);
+			if (c != 0) {
+				if (j == end || unobs[j] != u || keys[j] != c) {
+					return false;
+				}
+				j++;
+			}
+		}
+		return j == end;
+	}
+
+	protected void ensureBeliefCapacity(int n)
+	{
+		if (n > obs.length) {
+			int newLength = Math.max(n, 2 * obs.length);
+			obs = Arrays.copyOf(obs, newLength);
+			starts = Arrays.copyOf(starts, newLength + 1);
+			hashes = Arrays.copyOf(hashes, newLength);
+		}
+	}
+
+	protected void ensureSupportCapacity(int n)
+	{
+		if (n > unobs.length) {
+			int newLength = Math.max(n, 2 * unobs.length);
+			unobs = Arrays.copyOf(unobs, newLength);
+			keys = Arrays.copyOf(keys, newLength);
+		}
+	}
+
+	protected void rehash()
+	{
+		table = new int[2 * table.length];
+		int mask = table.length - 1;
+		for (int b = 0; b < size; b++) {
+			int i = hashes[b] & mask;
+			while (table[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			table[i] = b + 1;
+		}
+	}
+}
@@ -27,26 +27,57 @@
 package explicit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import common.Parallel;
 import parser.State;
 import prism.PrismComponent;
 import prism.PrismException;
 import prism.PrismNotSupportedException;
+import prism.PrismUtils;
 
 /**
- * Class to perform bisimulation minimisation for explicit-state models.
+ * Class to perform bisimulation minimisation for explicit-state models
+ * (DTMCs, CTMCs, MDPs and STPGs/SMGs, for the latter two using probabilistic bisimulation,
+ * i.e., matching choices by their distributions).
+ * <br>
+ * This uses signature-based partition refinement: the signature of a state is the set of its
+ * outgoing distributions, lifted to the current partition, and blocks are split into states
+ * with equal signatures until the partition is stable. The transitions of the model are first
+ * copied into sparse (array) storage. Each round only recomputes the signatures of predecessors
+ * of states that changed block in the previous round (and refines only their blocks);
+ * signatures are computed, and blocks split, in parallel.
+ * The resulting partition (and quotient model) does not depend on the number of threads used.
  */
 public class Bisimulation extends PrismComponent
 {
+	/** Maximum number of elements sorted by insertion sort */
+	private static final int INSERTION_SORT_MAX = 16;
+
 	// Local storage of partition info
 	protected int numStates;
 	protected int[] partition;
 	protected int numBlocks;
-	protected MDPSimple mdp;
+
+	// Sparse storage of the model
+	/** Start of the choices of each state (indices into choiceStarts), plus one extra entry */
+	protected int[] rowStarts;
+	/** Start of the transitions of each choice (indices into cols/probs), plus one extra entry */
+	protected int[] choiceStarts;
+	/** Successor state of each transition */
+	protected int[] cols;
+	/** Probability (or rate) of each transition */
+	protected double[] probs;
+	/** Number of choices/transitions stored so far (during construction of sparse storage) */
+	private int numSparseChoices, numSparseTransitions;
+
+	/** Number of threads to use */
+	protected int numThreads;
 
 	/**
 	 * Construct a new Bisimulation object.
@@ -54,6 +85,7 @@ public class Bisimulation extends PrismComponent
 	public Bisimulation(PrismComponent parent) throws PrismException
 	{
 		super(parent);
+		numThreads = PredecessorRelation.getNumThreads(this);
 	}
 
 	/**
@@ -69,6 +101,11 @@ public class Bisimulation extends PrismComponent
 			return minimiseDTMC((DTMC) model, propNames, propBSs);
 		case CTMC:
 			return minimiseCTMC((CTMC) model, propNames, propBSs);
+		case MDP:
+			return minimiseMDP((MDP) model, propNames, propBSs);
+		case STPG:
+		case SMG:
+			return minimiseSTPG((STPG) model, propNames, propBSs);
 		default:
 			throw new PrismNotSupportedException("Bisimulation minimisation not yet supported for " + model.getModelType() + "s");
 		}
@@ -82,24 +119,11 @@ public class Bisimulation extends PrismComponent
 	 */
 	private DTMC minimiseDTMC(DTMC dtmc, List<String> propNames, List<BitSet> propBSs)
 	{
-		// Create initial partition based on propositions
-		initialisePartitionInfo(dtmc, propBSs);
-		//printPartition(dtmc);
-
-		// Iterative splitting
-		boolean changed = true;
-		while (changed)
-			changed = splitDTMC(dtmc);
-		mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States");
-		//printPartition(dtmc);
+		int[] reps = computeBisimulation(dtmc, propBSs);
 
 		// Build reduced model
 		DTMCSimple dtmcNew = new DTMCSimple(numBlocks);
-		for (int i = 0; i < numBlocks; i++) {
-			for (Map.Entry<Integer, Double> e : mdp.getChoice(i, 0)) {
-				dtmcNew.setProbability((Integer) mdp.getAction(i, 0), e.getKey(), e.getValue());
-			}
-		}
+		addTransitions(dtmcNew, reps);
 		attachStatesAndLabels(dtmc, dtmcNew, propNames, propBSs);
 
 		return dtmcNew;
@@ -113,29 +137,94 @@ public class Bisimulation extends PrismComponent
 	 */
 	private CTMC minimiseCTMC(CTMC ctmc, List<String> propNames, List<BitSet> propBSs)
 	{
-		// Create initial partition based on propositions
-		initialisePartitionInfo(ctmc, propBSs);
-		//printPartition(ctmc);
-
-		// Iterative splitting
-		boolean changed = true;
-		while (changed)
-			changed = splitDTMC(ctmc);
-		mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States");
-		//printPartition(ctmc);
+		int[] reps = computeBisimulation(ctmc, propBSs);
 
 		// Build reduced model
 		CTMCSimple ctmcNew = new CTMCSimple(numBlocks);
-		for (int i = 0; i < numBlocks; i++) {
-			for (Map.Entry<Integer, Double> e : mdp.getChoice(i, 0)) {
-				ctmcNew.setProbability((Integer) mdp.getAction(i, 0), e.getKey(), e.getValue());
-			}
-		}
+		addTransitions(ctmcNew, reps);
 		attachStatesAndLabels(ctmc, ctmcNew, propNames, propBSs);
 
 		return ctmcNew;
 	}
 
+	/**
+	 * Perform bisimulation minimisation on an MDP.
+	 * @param mdp The MDP
+	 * @param propNames Names of the propositions in {@code propBSs}
+	 * @param propBSs Propositions (satisfying sets of states) to be preserved by bisimulation.
+	 */
+	private MDP minimiseMDP(MDP mdp, List<String> propNames, List<BitSet> propBSs)
+	{
+		int[] reps = computeBisimulation(mdp, propBSs);
+
+		// Build reduced model
+		MDPSimple mdpNew = new MDPSimple(numBlocks);
+		addChoices(mdpNew, reps);
+		attachStatesAndLabels(mdp, mdpNew, propNames, propBSs);
+
+		return mdpNew;
+	}
+
+	/**
+	 * Perform bisimulation minimisation on an STPG (or SMG).
+	 * States are only equivalent if they belong to the same player.
+	 * @param stpg The STPG
+	 * @param propNames Names of the propositions in {@code propBSs}
+	 * @param propBSs Propositions (satisfying sets of states) to be preserved by bisimulation.
+	 */
+	private STPG minimiseSTPG(STPG stpg, List<String> propNames, List<BitSet> propBSs)
+	{
+		int[] reps = computeBisimulation(stpg, propBSs);
+
+		// Build reduced model (for an SMG, keeping the actual player of each state, not its coalition)
+		STPGExplicit stpgNew = stpg instanceof SMG ? new SMG() : new STPGExplicit();
+		for (int b = 0; b < numBlocks; b++) {
+			stpgNew.addState(getOwner(stpg, reps[b]));
+		}
+		if (stpg instanceof SMG) {
+			((SMG) stpgNew).copyPlayerInfo((SMG) stpg);
+			((SMG) stpgNew).copyCoalitionInfo((SMG) stpg);
+		}
+		addChoices(stpgNew, reps);
+		attachStatesAndLabels(stpg, stpgNew, propNames, propBSs);
+
+		return stpgNew;
+	}
+
+	/**
+	 * Get the player owning state {@code s} of a game (for an SMG, the player itself, not its coalition).
+	 */
+	private int getOwner(STPG stpg, int s)
+	{
+		return stpg instanceof SMG ? ((SMG) stpg).stateOwners.get(s) : stpg.getPlayer(s);
+	}
+
+	/**
+	 * Compute the coarsest bisimulation of a model that respects a set of proposition bitsets
+	 * (and, for games, the players owning states).
+	 * Store info in {@code numStates}, {@code numBlocks} and {@code partition},
+	 * where blocks are numbered in order of the smallest state they contain.
+	 * @return the smallest state of each block (used as representative)
+	 */
+	private int[] computeBisimulation(Model model, List<BitSet> propBSs)
+	{
+		// Create initial partition based on propositions (and players)
+		initialisePartitionInfo(model, propBSs);
+		if (model instanceof STPG) {
+			splitByPlayer((STPG) model);
+		}
+		//printPartition(model);
+
+		// Iterative splitting
+		buildSparse(model);
+		refine();
+		int[] reps = renumberBlocks();
+		mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States");
+		//printPartition(model);
+
+		return reps;
+	}
+
 	/**
 	 * Construct the initial partition based on a set of proposition bitsets.
 	 * Store info in {@code numStates}, {@code numBlocks} and {@code partition}.
@@ -145,6 +234,10 @@ public class Bisimulation extends PrismComponent
 		BitSet bs1, bs0;
 		numStates = model.getNumStates();
 		partition = new int[numStates];
+		if (propBSs.isEmpty()) {
+			numBlocks = numStates > 0 ? 1 : 0;
+			return;
+		}
 
 		// Compute all non-empty combinations of propositions
 		List<BitSet> all = new ArrayList<BitSet>();
@@ -182,48 +275,668 @@ public class Bisimulation extends PrismComponent
 	}
 
 	/**
-	 * Perform a split of the current partition, if possible, updating {@code numBlocks} and {@code partition}.
-	 * @return whether or not the partition was split 
+	 * Split the blocks of the current partition according to the players owning the states of a game,
+	 * updating {@code numBlocks} and {@code partition}.
 	 */
-	private boolean splitDTMC(DTMC dtmc)
+	private void splitByPlayer(STPG stpg)
 	{
-		int s, a, i, numBlocksNew, numChoicesOld;
-		Distribution distrNew;
-		int partitionNew[];
-
-		partitionNew = new int[numStates];
-		numBlocksNew = 0;
-		// Compute the signature for each state (i.e. the distribution for outgoing
-		// transitions, lifted to the current partition)
-		// For convenience, we just store them as an MDP, with action label equal to the index of the block
-		mdp = new MDPSimple(numBlocks);
-		for (s = 0; s < numStates; s++) {
-			// Build lifted distribution
-			Iterator<Map.Entry<Integer, Double>> iter = dtmc.getTransitionsIterator(s);
-			distrNew = new Distribution();
-			while (iter.hasNext()) {
-				Map.Entry<Integer, Double> e = iter.next();
-				distrNew.add(partition[e.getKey()], e.getValue());
-			}
-			// Store in MDP, update new partition
-			a = partition[s];
-			numChoicesOld = mdp.getNumChoices(a);
-			i = mdp.addChoice(a, distrNew);
-			if (i == numChoicesOld)
-				mdp.setAction(a, i, numBlocksNew++);
-			partitionNew[s] = (Integer) mdp.getAction(a, i);
-		}
-		// Debug info
-		//mainLog.println("New partition: " + java.util.Arrays.toString(partitionNew));
-		//mainLog.println("Signatures MDP: " + mdp.infoString());
-		//mainLog.println("Signatures MDP: " + mdp);
-		//try { mdp.exportToDotFile("mdp.dot"); } catch (PrismException e) {}
-		// Update info
-		boolean changed = numBlocks != numBlocksNew;
-		partition = partitionNew;
-		numBlocks = numBlocksNew;
-
-		return changed;
+		HashMap<Long, Integer> blockIds = new HashMap<Long, Integer>();
+		for (int s = 0; s < numStates; s++) {
+			long key = ((long) partition[s] << 32) | (getOwner(stpg, s) & 0xFFFFFFFFL);
+			Integer b = blockIds.get(key);
+			if (b == null) {
+				b = blockIds.size();
+				blockIds.put(key, b);
+			}
+			partition[s] = b;
+		}
+		numBlocks = blockIds.size();
+	}
+
+	/**
+	 * Copy the transitions of a model to sparse storage
+	 * ({@code rowStarts}, {@code choiceStarts}, {@code cols}, {@code probs}).
+	 * DTMCs/CTMCs have exactly one choice in each state.
+	 */
+	private void buildSparse(Model model)
+	{
+		rowStarts = new int[numStates + 1];
+		choiceStarts = new int[numStates + 1];
+		cols = new int[Math.max(16, model.getNumTransitions())];
+		probs = new double[cols.length];
+		numSparseChoices = 0;
+		numSparseTransitions = 0;
+		for (int s = 0; s < numStates; s++) {
+			rowStarts[s] = numSparseChoices;
+			switch (model.getModelType()) {
+			case DTMC:
+			case CTMC:
+				startChoice();
+				((DTMC) model).forEachTransition(s, (s2, t, d) -> addTransition(t, d));
+				break;
+			case MDP:
+				MDP mdp = (MDP) model;
+				int numChoices = mdp.getNumChoices(s);
+				for (int i = 0; i < numChoices; i++) {
+					startChoice();
+					mdp.forEachTransition(s, i, (s2, t, d) -> addTransition(t, d));
+				}
+				break;
+			default:
+				STPG stpg = (STPG) model;
+				numChoices = stpg.getNumChoices(s);
+				for (int i = 0; i < numChoices; i++) {
+					startChoice();
+					Iterator<Map.Entry<Integer, Double>> iter = stpg.getTransitionsIterator(s, i);
+					while (iter.hasNext()) {
+						Map.Entry<Integer, Double> e = iter.next();
+						addTransition(e.getKey(), e.getValue());
+					}
+				}
+			}
+		}
+		rowStarts[numStates] = numSparseChoices;
+		if (numSparseChoices + 1 > choiceStarts.length) {
+			choiceStarts = Arrays.copyOf(choiceStarts, numSparseChoices + 1);
+		}
+		choiceStarts[numSparseChoices] = numSparseTransitions;
+	}
+
+	/**
+	 * Start a new choice in the sparse storage.
+	 */
+	private void startChoice()
+	{
+		if (numSparseChoices + 1 >= choiceStarts.length) {
+			choiceStarts = Arrays.copyOf(choiceStarts, 2 * choiceStarts.length);
+		}
+		choiceStarts[numSparseChoices++] = numSparseTransitions;
+	}
+
+	/**
+	 * Add a transition to the current choice in the sparse storage.
+	 */
+	private void addTransition(int t, double d)
+	{
+		if (numSparseTransitions == cols.length) {
+			cols = Arrays.copyOf(cols, 2 * cols.length);
+			probs = Arrays.copyOf(probs, cols.length);
+		}
+		cols[numSparseTransitions] = t;
+		probs[numSparseTransitions] = d;
+		numSparseTransitions++;
+	}
+
+
+	/**
+	 * Refine the current partition until it is stable, updating {@code numBlocks} and {@code partition}.
+	 * <br>
+	 * The states of each block are kept in a contiguous range of {@code elems}, in ascending order.
+	 * In each round, each "dirty" block is split into groups of states with equal signatures.
+	 * The largest group keeps the id of the block; the others get new ids (in order of the blocks,
+	 * then of the smallest state of each group). Predecessors of states that got a new block are
+	 * "touched", and their blocks dirty, for the next round. Since the signatures of untouched
+	 * states in a block are unchanged, and were equal, only one of them needs to be computed.
+	 */
+	private void refine()
+	{
+		// Predecessors of each state (from the sparse storage)
+		int[] preStarts = new int[numStates + 1];
+		for (int j = 0; j < numSparseTransitions; j++) {
+			preStarts[cols[j] + 1]++;
+		}
+		for (int s = 0; s < numStates; s++) {
+			preStarts[s + 1] += preStarts[s];
+		}
+		int[] pres = new int[numSparseTransitions];
+		int[] next = Arrays.copyOf(preStarts, numStates);
+		for (int s = 0; s < numStates; s++) {
+			for (int j = choiceStarts[rowStarts[s]]; j < choiceStarts[rowStarts[s + 1]]; j++) {
+				pres[next[cols[j]]++] = s;
+			}
+		}
+
+		// Blocks (indexed by block id, of which there are at most numStates)
+		int[] blockStart = new int[numStates];
+		int[] blockSize = new int[numStates];
+		for (int s = 0; s < numStates; s++) {
+			blockSize[partition[s]]++;
+		}
+		for (int b = 1; b < numBlocks; b++) {
+			blockStart[b] = blockStart[b - 1] + blockSize[b - 1];
+		}
+		int[] elems = new int[numStates];
+		next = Arrays.copyOf(blockStart, numBlocks);
+		for (int s = 0; s < numStates; s++) {
+			elems[next[partition[s]]++] = s;
+		}
+		next = null;
+
+		// Storage for each round
+		boolean[] dirty = new boolean[numStates];
+		Arrays.fill(dirty, 0, numBlocks, true);
+		boolean[] touched = new boolean[numStates];
+		Arrays.fill(touched, true);
+		int[] dirtyList = new int[numStates];
+		int[] untouchedRep = new int[numStates];
+		final int[] work = new int[numStates];
+		Signature[] sigs = new Signature[numStates];
+		int[] groupOf = new int[numStates];
+		int[] numGroups = new int[numStates];
+		int[] firstNewId = new int[numStates];
+
+		while (true) {
+			// Collect the dirty blocks (that can be split), and the states in them whose signature
+			// is needed: those that are touched (have a successor that got a new block in the last round),
+			// plus one untouched state, whose signature is shared by all untouched states of the block
+			int numDirty = 0;
+			int numWork = 0;
+			for (int b = 0; b < numBlocks; b++) {
+				if (!dirty[b]) {
+					continue;
+				}
+				dirty[b] = false;
+				int start = blockStart[b];
+				int end = start + blockSize[b];
+				if (blockSize[b] == 1) {
+					touched[elems[start]] = false;
+					continue;
+				}
+				dirtyList[numDirty++] = b;
+				untouchedRep[b] = -1;
+				for (int k = start; k < end; k++) {
+					int s = elems[k];
+					if (touched[s]) {
+						work[numWork++] = s;
+					} else if (untouchedRep[b] == -1) {
+						untouchedRep[b] = s;
+						work[numWork++] = s;
+					}
+				}
+			}
+			if (numDirty == 0) {
+				break;
+			}
+			final int[] dirtyBlocks = Arrays.copyOf(dirtyList, numDirty);
+
+			// Compute the signatures of those states
+			Parallel.forRange(numThreads, 0, numWork, (from, to) -> {
+				SignatureBuilder builder = new SignatureBuilder();
+				for (int i = from; i < to; i++) {
+					sigs[work[i]] = builder.build(work[i]);
+				}
+			});
+
+			// Group the states of each dirty block by signature
+			Parallel.forRange(numThreads, 0, dirtyBlocks.length, 16, (from, to) -> {
+				for (int i = from; i < to; i++) {
+					int b = dirtyBlocks[i];
+					Signature untouchedSig = untouchedRep[b] == -1 ? null : sigs[untouchedRep[b]];
+					numGroups[b] = groupBlock(elems, blockStart[b], blockSize[b], sigs, untouchedSig, groupOf);
+				}
+			});
+			for (int i = 0; i < numWork; i++) {
+				sigs[work[i]] = null;
+				touched[work[i]] = false;
+			}
+
+			// Assign ids to new blocks
+			int numSplit = 0;
+			for (int b : dirtyBlocks) {
+				if (numGroups[b] > 1) {
+					firstNewId[b] = numBlocks;
+					numBlocks += numGroups[b] - 1;
+					dirtyList[numSplit++] = b;
+				}
+			}
+			final int[] splitBlocks = Arrays.copyOf(dirtyList, numSplit);
+
+			// Split blocks; the states of new blocks are stored after those that keep the block
+			final int[] movedEnd = new int[numSplit];
+			Parallel.forRange(numThreads, 0, splitBlocks.length, 16, (from, to) -> {
+				for (int i = from; i < to; i++) {
+					int b = splitBlocks[i];
+					movedEnd[i] = splitBlock(b, numGroups[b], firstNewId[b], elems, blockStart, blockSize, groupOf);
+				}
+			});
+
+			// Mark predecessors of states with a new block as touched, and their blocks as dirty
+			// (concurrent updates all store true, so need no synchronisation)
+			Parallel.forRange(numThreads, 0, splitBlocks.length, 16, (from, to) -> {
+				for (int i = from; i < to; i++) {
+					int b = splitBlocks[i];
+					for (int k = blockStart[b] + blockSize[b]; k < movedEnd[i]; k++) {
+						int t = elems[k];
+						for (int j = preStarts[t]; j < preStarts[t + 1]; j++) {
+							touched[pres[j]] = true;
+							dirty[partition[pres[j]]] = true;
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Group the states of a block, stored in {@code elems[start]}...{@code elems[start+size-1]},
+	 * by their signatures: store in {@code groupOf} the index of the group of each state,
+	 * numbering groups in order of their smallest state, and return the number of groups.
+	 * States {@code s} without a signature in {@code sigs[s]} have signature {@code untouchedSig}.
+	 */
+	private static int groupBlock(int[] elems, int start, int size, Signature[] sigs, Signature untouchedSig, int[] groupOf)
+	{
+		// Usual case: all signatures equal to the first one
+		Signature first = getSignature(elems[start], sigs, untouchedSig);
+		groupOf[elems[start]] = 0;
+		int i = 1;
+		while (i < size && first.matches(getSignature(elems[start + i], sigs, untouchedSig))) {
+			groupOf[elems[start + i]] = 0;
+			i++;
+		}
+		if (i == size) {
+			return 1;
+		}
+
+		// Otherwise, look up the group of each state via the hash of its signature;
+		// groups with the same hash are chained via nextWithHash
+		HashMap<Integer, Integer> firstWithHash = new HashMap<Integer, Integer>();
+		Signature[] groupSigs = new Signature[4];
+		int[] nextWithHash = new int[4];
+		int numGroups = 1;
+		int untouchedGroup = first == untouchedSig ? 0 : -1;
+		groupSigs[0] = first;
+		nextWithHash[0] = -1;
+		firstWithHash.put(first.hash, 0);
+		for (; i < size; i++) {
+			int s = elems[start + i];
+			Signature sig = getSignature(s, sigs, untouchedSig);
+			if (sig == untouchedSig && untouchedGroup != -1) {
+				groupOf[s] = untouchedGroup;
+				continue;
+			}
+			Integer g0 = firstWithHash.get(sig.hash);
+			int g = g0 == null ? -1 : g0;
+			int last = -1;
+			while (g != -1 && !groupSigs[g].matches(sig)) {
+				last = g;
+				g = nextWithHash[g];
+			}
+			if (g == -1) {
+				g = numGroups++;
+				if (g == groupSigs.length) {
+					groupSigs = Arrays.copyOf(groupSigs, 2 * g);
+					nextWithHash = Arrays.copyOf(nextWithHash, 2 * g);
+				}
+				groupSigs[g] = sig;
+				nextWithHash[g] = -1;
+				if (last == -1) {
+					firstWithHash.put(sig.hash, g);
+				} else {
+					nextWithHash[last] = g;
+				}
+			}
+			if (sig == untouchedSig) {
+				untouchedGroup = g;
+			}
+			groupOf[s] = g;
+		}
+		return numGroups;
+	}
+
+	/**
+	 * Get the signature of state {@code s} for {@link #groupBlock}.
+	 */
+	private static Signature getSignature(int s, Signature[] sigs, Signature untouchedSig)
+	{
+		Signature sig = sigs[s];
+		return sig == null ? untouchedSig : sig;
+	}
+
+	/**
+	 * Split block {@code b} into its {@code numGroups} groups (see {@link #groupBlock}).
+	 * The largest group (the first, in case of ties) keeps id {@code b}, and is stored first;
+	 * the others get ids {@code firstNewId}, {@code firstNewId}+1, ... and are stored after it, in order.
+	 * Updates {@code elems}, {@code blockStart}, {@code blockSize} and {@code partition}.
+	 * @return the end of the (original) range of the block in {@code elems}
+	 */
+	private int splitBlock(int b, int numGroups, int firstNewId, int[] elems, int[] blockStart, int[] blockSize, int[] groupOf)
+	{
+		int start = blockStart[b];
+		int end = start + blockSize[b];
+		int[] counts = new int[numGroups];
+		for (int k = start; k < end; k++) {
+			counts[groupOf[elems[k]]]++;
+		}
+		int keep = 0;
+		for (int g = 1; g < numGroups; g++) {
+			if (counts[g] > counts[keep]) {
+				keep = g;
+			}
+		}
+		int[] ids = new int[numGroups];
+		int[] pos = new int[numGroups];
+		int p = start + counts[keep];
+		ids[keep] = b;
+		pos[keep] = start;
+		for (int g = 0, id = firstNewId; g < numGroups; g++) {
+			if (g != keep) {
+				ids[g] = id++;
+				pos[g] = p;
+				p += counts[g];
+			}
+		}
+		for (int g = 0; g < numGroups; g++) {
+			blockStart[ids[g]] = pos[g];
+			blockSize[ids[g]] = counts[g];
+		}
+		// States are visited in ascending order, so stay sorted within each block
+		int[] states = Arrays.copyOfRange(elems, start, end);
+		for (int s : states) {
+			int g = groupOf[s];
+			elems[pos[g]++] = s;
+			partition[s] = ids[g];
+		}
+		return end;
+	}
+
+	/**
+	 * Renumber the blocks of the partition in order of the smallest state they contain.
+	 * @return the smallest state of each block
+	 */
+	private int[] renumberBlocks()
+	{
+		int[] newIds = new int[numBlocks];
+		Arrays.fill(newIds, -1);
+		int[] reps = new int[numBlocks];
+		int n = 0;
+		for (int s = 0; s < numStates; s++) {
+			int b = partition[s];
+			if (newIds[b] == -1) {
+				newIds[b] = n;
+				reps[n++] = s;
+			}
+			partition[s] = newIds[b];
+		}
+		return reps;
+	}
+
+	/**
+	 * Add the transitions of each block of the partition to a minimised DTMC/CTMC,
+	 * i.e., the (lifted) transitions of the representative {@code reps[b]} of each block {@code b}.
+	 */
+	private void addTransitions(DTMCSimple dtmcNew, int[] reps)
+	{
+		SignatureBuilder builder = new SignatureBuilder();
+		for (int b = 0; b < numBlocks; b++) {
+			Signature sig = builder.build(reps[b]);
+			for (int j = 0; j < sig.blocks.length; j++) {
+				dtmcNew.setProbability(b, sig.blocks[j], sig.probs[j]);
+			}
+		}
+	}
+
+	/**
+	 * Add the choices of each block of the partition to a minimised MDP/STPG,
+	 * i.e., the (lifted, distinct) choices of the representative {@code reps[b]} of each block {@code b}.
+	 * Action labels are not preserved.
+	 */
+	private void addChoices(MDPSimple mdpNew, int[] reps)
+	{
+		SignatureBuilder builder = new SignatureBuilder();
+		for (int b = 0; b < numBlocks; b++) {
+			Signature sig = builder.build(reps[b]);
+			int numChoices = sig.choiceStarts.length - 1;
+			for (int c = 0; c < numChoices; c++) {
+				Distribution distr = new Distribution();
+				for (int j = sig.choiceStarts[c]; j < sig.choiceStarts[c + 1]; j++) {
+					distr.add(sig.blocks[j], sig.probs[j]);
+				}
+				mdpNew.addChoice(b, distr);
+			}
+		}
+	}
+
+	/**
+	 * Signature of a state: its choices, lifted to the current partition.
+	 * Each choice is stored as its (distinct, ascending) successor blocks and the probabilities
+	 * (or rates) of moving to them. For states with several choices, duplicate choices are removed
+	 * and the choices are sorted, so that signatures can be compared directly.
+	 */
+	private static final class Signature
+	{
+		/** Start of each choice in blocks/probs, plus one extra entry */
+		final int[] choiceStarts;
+		final int[] blocks;
+		final double[] probs;
+		/** Hash code of the choice sizes and blocks (but not the probabilities, which are compared approximately) */
+		final int hash;
+
+		Signature(int[] choiceStarts, int[] blocks, double[] probs)
+		{
+			this.choiceStarts = choiceStarts;
+			this.blocks = blocks;
+			this.probs = probs;
+			int h = Arrays.hashCode(choiceStarts) * 31 + Arrays.hashCode(blocks);
+			this.hash = h ^ (h >>> 16);
+		}
+
+		/**
+		 * Is this signature equal to {@code other} (with probabilities compared approximately)?
+		 */
+		boolean matches(Signature other)
+		{
+			if (this == other) {
+				return true;
+			}
+			if (hash != other.hash || !Arrays.equals(choiceStarts, other.choiceStarts) || !Arrays.equals(blocks, other.blocks)) {
+				return false;
+			}
+			for (int j = 0; j < probs.length; j++) {
+				if (!PrismUtils.doublesAreEqual(probs[j], other.probs[j])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Computation of signatures (for the current partition), with scratch storage
+	 * that is reused between states. Not thread-safe: each thread needs its own.
+	 */
+	private final class SignatureBuilder
+	{
+		private int[] sigBlocks = new int[16];
+		private double[] sigProbs = new double[16];
+		private int[] sigStarts = new int[16];
+		private int[] tmpBlocks = new int[16];
+		private double[] tmpProbs = new double[16];
+		private long[] keys = new long[16];
+
+		/**
+		 * Compute the signature of state {@code s}.
+		 */
+		Signature build(int s)
+		{
+			int firstChoice = rowStarts[s];
+			int numChoices = rowStarts[s + 1] - firstChoice;
+			ensureCapacity(choiceStarts[firstChoice + numChoices] - choiceStarts[firstChoice], numChoices);
+			int n = 0;
+			sigStarts[0] = 0;
+			for (int c = 0; c < numChoices; c++) {
+				int from = n;
+				for (int j = choiceStarts[firstChoice + c]; j < choiceStarts[firstChoice + c + 1]; j++) {
+					sigBlocks[n] = partition[cols[j]];
+					sigProbs[n] = probs[j];
+					n++;
+				}
+				n = lift(from, n);
+				sigStarts[c + 1] = n;
+			}
+			if (numChoices <= 1) {
+				return new Signature(Arrays.copyOf(sigStarts, numChoices + 1), Arrays.copyOf(sigBlocks, n), Arrays.copyOf(sigProbs, n));
+			}
+			return canonicalise(numChoices);
+		}
+
+		private void ensureCapacity(int numTransitions, int numChoices)
+		{
+			if (sigBlocks.length < numTransitions) {
+				int size = Math.max(numTransitions, 2 * sigBlocks.length);
+				sigBlocks = new int[size];
+				sigProbs = new double[size];
+				tmpBlocks = new int[size];
+				tmpProbs = new double[size];
+				keys = new long[size];
+			}
+			if (sigStarts.length < numChoices + 1) {
+				sigStarts = new int[Math.max(numChoices + 1, 2 * sigStarts.length)];
+			}
+		}
+
+		/**
+		 * Lift the transitions of a choice, stored in positions {@code from}...{@code to}-1,
+		 * to the partition, i.e., sort them by block and add up the probabilities for each block
+		 * (in the original order of the transitions, so that the results are reproducible).
+		 * @return the end of the lifted choice
+		 */
+		private int lift(int from, int to)
+		{
+			int len = to - from;
+			if (len <= INSERTION_SORT_MAX) {
+				for (int i = from + 1; i < to; i++) {
+					int b = sigBlocks[i];
+					double p = sigProbs[i];
+					int k = i - 1;
+					while (k >= from && sigBlocks[k] > b) {
+						sigBlocks[k + 1] = sigBlocks[k];
+						sigProbs[k + 1] = sigProbs[k];
+						k--;
+					}
+					sigBlocks[k + 1] = b;
+					sigProbs[k + 1] = p;
+				}
+			} else {
+				// Sort (block, position) pairs, which keeps the order of transitions to the same block
+				for (int i = 0; i < len; i++) {
+					keys[i] = ((long) sigBlocks[from + i] << 32) | i;
+				}
+				Arrays.sort(keys, 0, len);
+				for (int i = 0; i < len; i++) {
+					int k = from + (int) (keys[i] & 0xFFFFFFFFL);
+					tmpBlocks[i] = sigBlocks[k];
+					tmpProbs[i] = sigProbs[k];
+				}
+				System.arraycopy(tmpBlocks, 0, sigBlocks, from, len);
+				System.arraycopy(tmpProbs, 0, sigProbs, from, len);
+			}
+			int n = from;
+			for (int i = from; i < to; i++) {
+				if (n > from && sigBlocks[n - 1] == sigBlocks[i]) {
+					sigProbs[n - 1] += sigProbs[i];
+				} else {
+					sigBlocks[n] = sigBlocks[i];
+					sigProbs[n] = sigProbs[i];
+					n++;
+				}
+			}
+			return n;
+		}
+
+		/**
+		 * Build a signature from the {@code numChoices} (lifted) choices currently stored,
+		 * sorting them and removing duplicates.
+		 */
+		private Signature canonicalise(int numChoices)
+		{
+			int[] order = new int[numChoices];
+			if (numChoices <= INSERTION_SORT_MAX) {
+				for (int i = 0; i < numChoices; i++) {
+					int c = i;
+					int k = i - 1;
+					while (k >= 0 && compareChoices(order[k], c) > 0) {
+						order[k + 1] = order[k];
+						k--;
+					}
+					order[k + 1] = c;
+				}
+			} else {
+				Integer[] boxed = new Integer[numChoices];
+				for (int i = 0; i < numChoices; i++) {
+					boxed[i] = i;
+				}
+				Arrays.sort(boxed, this::compareChoices);
+				for (int i = 0; i < numChoices; i++) {
+					order[i] = boxed[i];
+				}
+			}
+			// Remove duplicates (which are adjacent after sorting)
+			int numKept = 0;
+			int numTransitions = 0;
+			for (int i = 0; i < numChoices; i++) {
+				int c = order[i];
+				if (numKept > 0 && choicesMatch(order[numKept - 1], c)) {
+					continue;
+				}
+				order[numKept++] = c;
+				numTransitions += sigStarts[c + 1] - sigStarts[c];
+			}
+			int[] starts = new int[numKept + 1];
+			int[] blocks = new int[numTransitions];
+			double[] probs = new double[numTransitions];
+			int n = 0;
+			for (int i = 0; i < numKept; i++) {
+				int c = order[i];
+				int len = sigStarts[c + 1] - sigStarts[c];
+				System.arraycopy(sigBlocks, sigStarts[c], blocks, n, len);
+				System.arraycopy(sigProbs, sigStarts[c], probs, n, len);
+				n += len;
+				starts[i + 1] = n;
+			}
+			return new Signature(starts, blocks, probs);
+		}
+
+		/**
+		 * Compare two (lifted) choices: by size, then by blocks, then by probabilities.
+		 */
+		private int compareChoices(int c1, int c2)
+		{
+			int start1 = sigStarts[c1], len1 = sigStarts[c1 + 1] - start1;
+			int start2 = sigStarts[c2], len2 = sigStarts[c2 + 1] - start2;
+			if (len1 != len2) {
+				return Integer.compare(len1, len2);
+			}
+			for (int j = 0; j < len1; j++) {
+				if (sigBlocks[start1 + j] != sigBlocks[start2 + j]) {
+					return Integer.compare(sigBlocks[start1 + j], sigBlocks[start2 + j]);
+				}
+			}
+			for (int j = 0; j < len1; j++) {
+				int cmp = Double.compare(sigProbs[start1 + j], sigProbs[start2 + j]);
+				if (cmp != 0) {
+					return cmp;
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Are two (lifted) choices equal (with probabilities compared approximately)?
+		 */
+		private boolean choicesMatch(int c1, int c2)
+		{
+			int start1 = sigStarts[c1], len1 = sigStarts[c1 + 1] - start1;
+			int start2 = sigStarts[c2], len2 = sigStarts[c2 + 1] - start2;
+			if (len1 != len2) {
+				return false;
+			}
+			for (int j = 0; j < len1; j++) {
+				if (sigBlocks[start1 + j] != sigBlocks[start2 + j] || !PrismUtils.doublesAreEqual(sigProbs[start1 + j], sigProbs[start2 + j])) {
+					return false;
+				}
+			}
+			return true;
+		}
 	}
 
 	/**
@@ -248,7 +961,8 @@ public class Bisimulation extends PrismComponent
 	 * Attach a list of states to the minimised model by adding a representative state
 	 * from the original model.
 	 * Also attach information about the propositions (used for bisimulation minimisation)
-	 * to the minimised model, in the form of labels (stored as BitSets).
+	 * to the minimised model, in the form of labels (stored as BitSets),
+	 * and mark the blocks containing initial states as initial.
 	 * @param model The original model
 	 * @param modelNew The minimised model
 	 * @param propNames The names of the propositions
@@ -280,5 +994,14 @@ public class Bisimulation extends PrismComponent
 				propBSnew.set(partition[j]);
 			modelNew.addLabel(propName, propBSnew);
 		}
+
+		// Initial states
+		BitSet initNew = new BitSet();
+		for (int s : model.getInitialStates()) {
+			initNew.set(partition[s]);
+		}
+		for (int b = initNew.nextSetBit(0); b >= 0; b = initNew.nextSetBit(b + 1)) {
+			modelNew.addInitialState(b);
+		}
 	}
 }
@@ -43,6 +43,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.apache.commons.math3.util.Precision;
@@ -53,6 +57,7 @@ import acceptance.AcceptanceRabin.RabinPair;
 import acceptance.AcceptanceRabin;
 import acceptance.AcceptanceReach;
 import acceptance.AcceptanceType;
+import common.Parallel;
 import automata.DA;
 import automata.DASimplifyAcceptance;
 import automata.LTL2DA;
@@ -782,24 +787,178 @@ public class CSGModelChecker extends ProbModelChecker {
 		return res;
 	}
 	
+	/**
+	 * Solver for the matrix games of individual states during value iteration.
+	 * Each worker has its own LpSolve instance and its own model checker for building games
+	 * (since building a game uses the checker's fields as scratch space),
+	 * so that different workers can be used concurrently.
+	 */
+	protected class MatrixGameWorker {
+		protected final CSGModelChecker mc;
+		protected final LpSolve lp;
+		protected final Map<Integer, BitSet> mmap;
+
+		public MatrixGameWorker(CSGModelChecker mc) throws PrismException {
+			this.mc = mc;
+			try {
+				lp = LpSolve.makeLp(maxCols + 1, maxRows + 1);
+				lp.setVerbose(LpSolve.CRITICAL);
+			}
+			catch(Exception e) {
+				e.printStackTrace();
+				throw new PrismException(e.toString());
+			}
+			mmap = (generateStrategy || exportAdv) ? new HashMap<Integer, BitSet>() : null;
+		}
+
+		/**
+		 * Build and solve the matrix game for state {@code s}, for values {@code val}
+		 * (and rewards {@code rewards}, if non-null), storing the optimal strategy in {@code kstrat}
+		 * if required. The state reward is included in the returned value.
+		 */
+		public double solve(CSG csg, CSGRewards rewards, double[] val, int s, List<Map<BitSet, Double>> kstrat, int k, boolean min) throws PrismException {
+			ArrayList<ArrayList<Double>> mgame = mc.buildMatrixGame(csg, rewards, mmap, val, s, min);
+			try {
+				if (min)
+					lp.resizeLp(0, maxCols + 1);
+				else
+					lp.resizeLp(0, maxRows + 1);
+			}
+			catch (LpSolveException e) {
+				throw new PrismException("Exception raised by lpSolve when resizing linear program for state " +  s + " at iteration " + k);
+			}
+			double res = mc.val(lp, mgame, kstrat, mmap, s, rewards != null, min);
+			if (rewards != null)
+				res += rewards.getStateReward(s);
+			return res;
+		}
+
+		public void free() {
+			lp.deleteLp();
+		}
+	}
+
+	/**
+	 * Create the workers for solving matrix games during value iteration: one per thread.
+	 * The first worker uses this model checker; the others use copies of it (with the same coalitions).
+	 * Coalitions (see {@link #buildCoalitions(CSG, Coalition, boolean)}) should have been built already.
+	 */
+	protected List<MatrixGameWorker> createMatrixGameWorkers() throws PrismException {
+		List<MatrixGameWorker> workers = new ArrayList<MatrixGameWorker>(Math.max(1, numThreads));
+		workers.add(new MatrixGameWorker(this));
+		for (int w = 1; w < numThreads; w++) {
+			CSGModelChecker mc = new CSGModelChecker(this);
+			mc.inheritSettings(this);
+			mc.setExportAdv(exportAdv);
+			mc.numPlayers = numPlayers;
+			mc.numCoalitions = numCoalitions;
+			mc.coalitionIndexes = coalitionIndexes;
+			mc.actionIndexes = actionIndexes;
+			mc.maxRows = maxRows;
+			mc.maxCols = maxCols;
+			mc.scaleFactor = scaleFactor;
+			workers.add(new MatrixGameWorker(mc));
+		}
+		return workers;
+	}
+
+	/**
+	 * Free the LpSolve instances of the workers created by {@link #createMatrixGameWorkers()}.
+	 */
+	protected void freeMatrixGameWorkers(List<MatrixGameWorker> workers) {
+		for (MatrixGameWorker worker : workers) {
+			worker.free();
+		}
+	}
+
+	/**
+	 * Do one step of value iteration, i.e., for each state s in {@code states},
+	 * store in {@code soln[s]} the value of the matrix game for s built from {@code val}.
+	 * If {@code changed} is non-null, it gives the states whose values changed in the previous step:
+	 * the game of a state with no successors in {@code changed} is the same as in the previous step,
+	 * so its LP is not solved again and {@code soln[s]} (and {@code kstrat}) are left as they are.
+	 * The states are distributed dynamically between the workers, which run in parallel if there is more than one.
+	 */
+	protected void solveMatrixGames(List<MatrixGameWorker> workers, CSG csg, CSGRewards rewards, int[] states, double[] val, double[] soln,
+			List<Map<BitSet, Double>> kstrat, BitSet changed, int k, boolean min) throws PrismException {
+		if (workers.size() == 1) {
+			MatrixGameWorker worker = workers.get(0);
+			for (int s : states) {
+				if (changed == null || hasSuccessorIn(csg, s, changed))
+					soln[s] = worker.solve(csg, rewards, val, s, kstrat, k, min);
+			}
+			return;
+		}
+		AtomicInteger next = new AtomicInteger(0);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workers.size());
+		for (MatrixGameWorker worker : workers) {
+			tasks.add(() -> {
+				int i, s;
+				while ((i = next.getAndIncrement()) < states.length) {
+					s = states[i];
+					if (changed == null || hasSuccessorIn(csg, s, changed))
+						soln[s] = worker.solve(csg, rewards, val, s, kstrat, k, min);
+				}
+				return null;
+			});
+		}
+		for (Future<Void> f : Parallel.getPool(workers.size()).invokeAll(tasks)) {
+			try {
+				f.get();
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof PrismException)
+					throw (PrismException) e.getCause();
+				throw new PrismException("Error when solving matrix games in parallel: " + e.getCause());
+			}
+			catch (InterruptedException e) {
+				throw new PrismException("Interrupted when solving matrix games in parallel");
+			}
+		}
+	}
+
+	/**
+	 * Does some choice of state {@code s} have a successor in {@code set}?
+	 */
+	protected boolean hasSuccessorIn(CSG csg, int s, BitSet set) {
+		for (int t = 0; t < csg.getNumChoices(s); t++) {
+			for (int d : csg.getChoice(s, t).getSupport()) {
+				if (set.get(d))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the states, amongst {@code states}, whose values differ between {@code soln} and {@code prev}.
+	 */
+	protected BitSet findChangedStates(double[] soln, double[] prev, int[] states) {
+		BitSet changed = new BitSet();
+		for (int s : states) {
+			if (Double.compare(soln[s], prev[s]) != 0)
+				changed.set(s);
+		}
+		return changed;
+	}
+
 	public ModelCheckerResult computeReachProbsValIter(CSG csg, BitSet no, BitSet yes, int limit, boolean bounded, boolean min) throws PrismException {
 		if ((generateStrategy || exportAdv) && bounded) {
 			throw new PrismException("Strategy synthesis for bounded properties is not supported yet.");
 		}
 		ModelCheckerResult res = new ModelCheckerResult();
-		LpSolve lp;
-		ArrayList<ArrayList<Double>> mgame = new ArrayList<ArrayList<Double>>();
+		List<MatrixGameWorker> workers;
 		List<List<List<Map<BitSet, Double>>>> lstrat = null;
 		List<Map<BitSet, Double>> kstrat = null;
-		Map<Integer, BitSet> mmap = null;
 		BitSet known = new BitSet();
+		BitSet unknown, changed = null;
+		int[] unknownArray;
 		double[] nsol = new double[csg.getNumStates()];
 		double[] ntmp = new double[csg.getNumStates()];
 		long timer;
 		int i, k, s;
 		boolean done = false;
 		if (generateStrategy || exportAdv) {
-			mmap = new HashMap<Integer, BitSet>();
 			kstrat = new ArrayList<Map<BitSet, Double>>();
 			lstrat = new ArrayList<List<List<Map<BitSet, Double>>>>();
 			lstrat.add(0, new ArrayList<List<Map<BitSet, Double>>>());
@@ -820,69 +979,60 @@ public class CSGModelChecker extends ProbModelChecker {
 		timer = System.currentTimeMillis();
 		if (verbosity >= 1)
 			mainLog.println("\nStarting value iteration...");
-		try {
-			lp = LpSolve.makeLp(maxCols + 1, maxRows + 1);
-			lp.setVerbose(LpSolve.CRITICAL);	
-		}
-		catch(Exception e) {
-			e.printStackTrace();
-			throw new PrismException(e.toString());
-		}
+		workers = createMatrixGameWorkers();
 		known.or(no);
 		known.or(yes);
 		for (s = 0; s < csg.getNumStates(); s++) {
 			nsol[s] = ntmp[s] = no.get(s)? 0.0 : yes.get(s)? 1.0 : 0.0;
 		}
+		unknown = (BitSet) known.clone();
+		unknown.flip(0, csg.getNumStates());
+		unknownArray = unknown.stream().toArray();
 		k = 0;
-		while(!done) {
-			for(s = 0; s < csg.getNumStates(); s++) {
-				if (!known.get(s)) {
-					mgame = buildMatrixGame(csg, null, mmap, ntmp, s, min);
-					try {
-						if (min)
-							lp.resizeLp(0, maxCols + 1);
-						else
-							lp.resizeLp(0, maxRows + 1);
-					
-					} 
-					catch (LpSolveException e) {
-						throw new PrismException("Exception raised by lpSolve when resizing linear program for state " +  s + " at iteration " + k);
-					}
-					nsol[s] = val(lp, mgame, kstrat, mmap, s, false, min);
-					// player -> iteration -> state -> indexes -> value
-					if (bounded && (generateStrategy || exportAdv)) {
-						if (lstrat.get(0).get(k).get(s) == null || !lstrat.get(0).get(k - 1).get(s).equals(kstrat.get(s))) {
-							lstrat.get(0).get(k).set(s, kstrat.get(s));
+		try {
+			while(!done) {
+				solveMatrixGames(workers, csg, null, unknownArray, ntmp, nsol, kstrat, changed, k, min);
+				for(s = 0; s < csg.getNumStates(); s++) {
+					if (!known.get(s)) {
+						// player -> iteration -> state -> indexes -> value
+						if (bounded && (generateStrategy || exportAdv)) {
+							if (lstrat.get(0).get(k).get(s) == null || !lstrat.get(0).get(k - 1).get(s).equals(kstrat.get(s))) {
+								lstrat.get(0).get(k).set(s, kstrat.get(s));
+							}
+							else {
+								lstrat.get(0).get(k).set(s, lstrat.get(0).get(k - 1).get(s));
+							}
 						}
-						else {
-							lstrat.get(0).get(k).set(s, lstrat.get(0).get(k - 1).get(s));
+						else if (generateStrategy || exportAdv) {
+							if (lstrat.get(0).get(0).get(s) == null) {
+								lstrat.get(0).get(0).set(s, kstrat.get(s));
+							}
+							else if (!lstrat.get(0).get(0).get(s).equals(kstrat.get(s))) {
+								lstrat.get(0).get(0).set(s, kstrat.get(s));
+							}
 						}
 					}
 					else if (generateStrategy || exportAdv) {
-						if (lstrat.get(0).get(0).get(s) == null) {
-							lstrat.get(0).get(0).set(s, kstrat.get(s));
-						}
-						else if (!lstrat.get(0).get(0).get(s).equals(kstrat.get(s))) {
-							lstrat.get(0).get(0).set(s, kstrat.get(s));
-						}
+						lstrat.get(0).get(0).add(s, null);
 					}
 				}
-				else if (generateStrategy || exportAdv) {
-					lstrat.get(0).get(0).add(s, null);
+				k++;
+				done = PrismUtils.doublesAreClose(nsol, ntmp, termCritParam, termCrit == TermCrit.RELATIVE);
+				if (!done && k == maxIters) {
+					throw new PrismException("Could not converge after " + maxIters + " iterations");
+				}
+				else if(k == limit) {
+					done = true;
+				}
+				else {
+					changed = findChangedStates(nsol, ntmp, unknownArray);
+					ntmp = Arrays.copyOf(nsol, nsol.length);
 				}
 			}
-			k++;
-			done = PrismUtils.doublesAreClose(nsol, ntmp, termCritParam, termCrit == TermCrit.RELATIVE);
-			if (!done && k == maxIters) {
-				throw new PrismException("Could not converge after " + maxIters + " iterations");
-			}
-			else if(k == limit) {
-				done = true;
-			}
-			else {
-				ntmp = Arrays.copyOf(nsol, nsol.length);
-			}
-		}		
+		}
+		finally {
+			freeMatrixGameWorkers(workers);
+		}
 		mainLog.println("\nValue iteration converged after " + k + " iterations.");
 		timer = System.currentTimeMillis() - timer;
 		res.soln = nsol;
@@ -898,19 +1048,18 @@ public class CSGModelChecker extends ProbModelChecker {
 			throw new PrismException("Strategy synthesis for bounded properties is not supported yet.");
 		}
 		ModelCheckerResult res = new ModelCheckerResult();
-		LpSolve lp;
-		ArrayList<ArrayList<Double>> mgame = new ArrayList<ArrayList<Double>>();
+		List<MatrixGameWorker> workers;
 		List<List<List<Map<BitSet, Double>>>> lstrat = null;
 		List<Map<BitSet, Double>> kstrat = null;
-		Map<Integer, BitSet> mmap = null;
 		BitSet unknown = new BitSet();
+		BitSet changed = null;
+		int[] unknownArray;
 		double[] nsol = new double[csg.getNumStates()];
 		double[] ntmp = new double[csg.getNumStates()];
 		long timer;
 		int i, k, s;
 		boolean done = false;
 		if (generateStrategy || exportAdv) {
-			mmap = new HashMap<Integer, BitSet>();
 			kstrat = new ArrayList<Map<BitSet, Double>>();
 			lstrat = new ArrayList<List<List<Map<BitSet, Double>>>>(1);
 			lstrat.add(0, new ArrayList<List<Map<BitSet, Double>>>());
@@ -931,14 +1080,7 @@ public class CSGModelChecker extends ProbModelChecker {
 		timer = System.currentTimeMillis();
 		if (verbosity >= 1)
 			mainLog.println("\nStarting value iteration...");
-		try {
-			lp = LpSolve.makeLp(maxCols + 1, maxRows + 1);
-			lp.setVerbose(LpSolve.CRITICAL);	
-		}
-		catch(Exception e) {
-			e.printStackTrace();
-			throw new PrismException(e.toString());
-		}
+		workers = createMatrixGameWorkers();
 		if (init != null) {
 			if (known !=null) {
 				for (i = 0; i < csg.getNumStates(); i++) 
@@ -956,52 +1098,48 @@ public class CSGModelChecker extends ProbModelChecker {
 		unknown.set(0, csg.getNumStates());
 		unknown.andNot(target);
 		unknown.andNot(inf);
+		unknownArray = unknown.stream().toArray();
 		k = 0;
-		while(!done) {
-			for(s = 0; s < csg.getNumStates(); s++) {
-				if (unknown.get(s)) {
-					mgame = buildMatrixGame(csg, rewards, mmap, ntmp, s, min);
-					try {
-						if (min)
-							lp.resizeLp(0, maxCols + 1);
-						else
-							lp.resizeLp(0, maxRows + 1);
-					} 
-					catch (LpSolveException e) {
-						throw new PrismException("Exception raised by lpSolve when resizing linear program for state " +  s + " at iteration " + k);
-					}
-					nsol[s] = val(lp, mgame, kstrat, mmap, s, true, min);
-					nsol[s] += rewards.getStateReward(s);
-					if (bounded && (generateStrategy || exportAdv)) {
-						// player -> iteration -> state -> indexes -> value
-						if (lstrat.get(0).get(k).get(s) == null || !lstrat.get(0).get(k - 1).get(s).equals(kstrat.get(s))) {
-							lstrat.get(0).get(k).set(s, kstrat.get(s));
-						}
-						else {
-							lstrat.get(0).get(k).set(s, lstrat.get(0).get(k - 1).get(s));
-						}
-					}
-					else if (generateStrategy || exportAdv) {
-						if (lstrat.get(0).get(0).get(s) == null) {
-							lstrat.get(0).get(0).set(s, kstrat.get(s));
+		try {
+			while(!done) {
+				solveMatrixGames(workers, csg, rewards, unknownArray, ntmp, nsol, kstrat, changed, k, min);
+				for(s = 0; s < csg.getNumStates(); s++) {
+					if (unknown.get(s)) {
+						if (bounded && (generateStrategy || exportAdv)) {
+							// player -> iteration -> state -> indexes -> value
+							if (lstrat.get(0).get(k).get(s) == null || !lstrat.get(0).get(k - 1).get(s).equals(kstrat.get(s))) {
+								lstrat.get(0).get(k).set(s, kstrat.get(s));
+							}
+							else {
+								lstrat.get(0).get(k).set(s, lstrat.get(0).get(k - 1).get(s));
+							}
 						}
-						else if (!lstrat.get(0).get(0).get(s).equals(kstrat.get(s))) {
-							lstrat.get(0).get(0).set(s, kstrat.get(s));
+						else if (generateStrategy || exportAdv) {
+							if (lstrat.get(0).get(0).get(s) == null) {
+								lstrat.get(0).get(0).set(s, kstrat.get(s));
+							}
+							else if (!lstrat.get(0).get(0).get(s).equals(kstrat.get(s))) {
+								lstrat.get(0).get(0).set(s, kstrat.get(s));
+							}
 						}
 					}
 				}
+				k++;
+				done = PrismUtils.doublesAreClose(nsol, ntmp, termCritParam, termCrit == TermCrit.RELATIVE);
+				if (!done && k == maxIters) {
+					throw new PrismException("Could not converge after " + maxIters + " iterations");
+				}
+				else if(k == limit) {
+					done = true;
+				}
+				else {
+					changed = findChangedStates(nsol, ntmp, unknownArray);
+					ntmp = Arrays.copyOf(nsol, nsol.length);
+				}
 			}
-			k++;
-			done = PrismUtils.doublesAreClose(nsol, ntmp, termCritParam, termCrit == TermCrit.RELATIVE);
-			if (!done && k == maxIters) {
-				throw new PrismException("Could not converge after " + maxIters + " iterations");
-			}
-			else if(k == limit) {
-				done = true;
-			}
-			else {
-				ntmp = Arrays.copyOf(nsol, nsol.length);
-			}
+		}
+		finally {
+			freeMatrixGameWorkers(workers);
 		}
 		mainLog.println("\nValue iteration converged after " + k + " iterations.");
 		timer = System.currentTimeMillis() - timer;
@@ -39,10 +39,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.apache.commons.math3.util.Precision;
 
+import common.Parallel;
+
 import explicit.CSGModelCheckerEquilibria.CSGResultStatus;
 import explicit.ProbModelChecker.TermCrit;
 import explicit.rewards.CSGRewards;
@@ -96,6 +103,11 @@ public class CSGModelCheckerEquilibria extends CSGModelChecker {
 	protected CSGSupportEnumeration eqssmt;
 	
 	protected String smtSolver;
+	
+	protected BiMatrixGameCache bmgameCache;
+	
+	// Yices has global state, so its use by different workers is serialised (on this lock)
+	private static final Object yicesLock = new Object();
 		
 	public enum CSGResultStatus {
 		SAT, UNKNOWN, UNSAT;
@@ -613,6 +625,7 @@ public class CSGModelCheckerEquilibria extends CSGModelChecker {
 		buildCoalitions(csg, coalitions);
 		findMaxRowsCols(csg);
 		setSolver();
+		bmgameCache = new BiMatrixGameCache();
 		dominated = new BitSet[numCoalitions];
 		dominating = new BitSet[numCoalitions];
 		
@@ -717,6 +730,7 @@ public class CSGModelCheckerEquilibria extends CSGModelChecker {
 		}
 		
 		while (true) {
+			bmgameCache.nextIteration();
 			currentTime = System.currentTimeMillis();
 			if (!rew) {
 				if (n1 > 0) {
@@ -1208,19 +1222,22 @@ public class CSGModelCheckerEquilibria extends CSGModelChecker {
 	public ModelCheckerResult computeReachEquilibria(CSG csg, List<Coalition> coalitions, List<CSGRewards> rewards, BitSet[] targets, BitSet[] remain, boolean min) throws PrismException {
 		ModelCheckerResult[] obj = new ModelCheckerResult[coalitions.size()];
 		ModelCheckerResult res = new ModelCheckerResult();
+		List<EquilibriaWorker> workers;
 		List<List<List<Map<BitSet, Double>>>> lstrat = null;
 		List<List<Map<BitSet, Double>>> sstrat = null;
-		List<Map<Integer, BitSet>> mmap = null;
+		List<List<Map<BitSet, Double>>>[] sstrats = null;
 		BitSet[] only = new BitSet[targets.length];
 		BitSet[] phi1 = new BitSet[3];
 		BitSet known = new BitSet();
 		BitSet temp =  new BitSet();
+		BitSet unknown;
 		double[][] sol = new double[coalitions.size()][csg.getNumStates()];
 		double[][] val = new double[coalitions.size()][csg.getNumStates()];
 		double[][] tmp = new double[coalitions.size()][csg.getNumStates()];
-		double[][] eq;
+		double[][] sws = new double[csg.getNumStates()][];
 		double[] r = new double[csg.getNumStates()];
 		double[] sw;
+		int[] unknownArray;
 		int i, j, k, p, s;
 		boolean done, rew;
 		long timePrecomp;
@@ -1229,11 +1246,9 @@ public class CSGModelCheckerEquilibria extends CSGModelChecker {
 		if (generateStrategy || exportAdv) {
 			//mdpmc.setGenerateStrategy(true);
 			mdpmc.setGenStrat(true);
-			mmap = new ArrayList<Map<Integer, BitSet>>();
-			sstrat = new ArrayList<List<Map<BitSet, Double>>>();
+			sstrats = newListArray(csg.getNumStates());
 			lstrat = new ArrayList<List<List<Map<BitSet, Double>>>>();
 			for (i = 0; i < coalitions.size(); i++) {
-        		mmap.add(i, new HashMap<Integer, BitSet>());
 				lstrat.add(i, new ArrayList<List<Map<BitSet, Double>>>());
 				lstrat.get(i).add(0, new ArrayList<Map<BitSet, Double>>());
 				for (j = 0; j < csg.getNumStates(); j++) {	
@@ -1346,38 +1361,32 @@ public class CSGModelCheckerEquilibria extends CSGModelChecker {
 		done = true;
 		dominated = new BitSet[numCoalitions];
 		dominating = new BitSet[numCoalitions];
+		bmgameCache = new BiMatrixGameCache();
+		workers = createEquilibriaWorkers(csg, coalitions);
+		unknown = (BitSet) known.clone();
+		unknown.flip(0, csg.getNumStates());
+		unknownArray = unknown.stream().toArray();
 		while (true) {
-			for (s = 0; s < csg.getNumStates(); s++) {
-				if (!known.get(s)) {
-					if (generateStrategy || exportAdv) {
-						sstrat = new ArrayList<List<Map<BitSet, Double>>>();
-						mmap.clear();
-			    		for (p = 0; p < 2; p++) {
-			        		mmap.add(p, new HashMap<Integer, BitSet>());
-			        	}
-					}
-					if (rew) {
-						eq = stepEquilibria(csg, rewards.get(0), rewards.get(1), mmap, eqslps, sstrat, sol, s, min);
-					}
-					else {
-						eq = stepEquilibria(csg, null, null, mmap, eqslps, sstrat, sol, s, min);
-					}
-					sw = swne(eq, sstrat, min);
-					val[0][s] = sw[1];
-					val[1][s] = sw[2];
-					// player -> iteration -> state -> indexes -> value
-					if (generateStrategy || exportAdv) {			
-						for (p = 0; p < coalitions.size(); p++) {
-							if (lstrat.get(p).get(0).get(s) == null) {
-								lstrat.get(p).get(0).set(s, sstrat.get(0).get(p));
-							}
-							else if (!lstrat.get(0).get(0).get(s).equals(sstrat.get(0).get(p)) && checkEquilibriumChange(sol, sw, s)) {
-								lstrat.get(p).get(0).set(s, sstrat.get(0).get(p));
-							}
-						}		
-					}					
+			bmgameCache.nextIteration();
+			// solve the games of all states (possibly in parallel), then update values and strategies
+			solveStepEquilibria(workers, csg, rew ? rewards : null, unknownArray, sol, sws, sstrats, min);
+			for (i = 0; i < unknownArray.length; i++) {
+				s = unknownArray[i];
+				sw = sws[s];
+				val[0][s] = sw[1];
+				val[1][s] = sw[2];
+				// player -> iteration -> state -> indexes -> value
+				if (generateStrategy || exportAdv) {
+					sstrat = sstrats[s];
+					for (p = 0; p < coalitions.size(); p++) {
+						if (lstrat.get(p).get(0).get(s) == null) {
+							lstrat.get(p).get(0).set(s, sstrat.get(0).get(p));
+						}
+						else if (!lstrat.get(0).get(0).get(s).equals(sstrat.get(0).get(p)) && checkEquilibriumChange(sol, sw, s)) {
+							lstrat.get(p).get(0).set(s, sstrat.get(0).get(p));
+						}
+					}		
 				}
-				// loop over states
 			}
 			for (s = 0; s < csg.getNumStates(); s++) {
 				if (!known.get(s)) {
@@ -1800,6 +1809,273 @@ public class CSGModelCheckerEquilibria extends CSGModelChecker {
 		return result;
 	}
 	
+	/**
+	 * Equilibria of a bimatrix game: payoffs for each player and strategies (over the rows/columns of the game).
+	 */
+	protected static class BiMatrixGameSolution {
+		protected final int neq;
+		protected final double[] p1p;
+		protected final double[] p2p;
+		protected final ArrayList<ArrayList<Distribution>> strat;
+
+		public BiMatrixGameSolution(int neq, double[] p1p, double[] p2p, ArrayList<ArrayList<Distribution>> strat) {
+			this.neq = neq;
+			this.p1p = p1p;
+			this.p2p = p2p;
+			this.strat = strat;
+		}
+	}
+
+	/**
+	 * Key for caching the equilibria of a bimatrix game, i.e., the payoff matrices of both players.
+	 */
+	protected static class BiMatrixGameKey {
+		private final double[][] a;
+		private final double[][] b;
+		private final int hash;
+
+		public BiMatrixGameKey(double[][] a, double[][] b) {
+			this.a = a;
+			this.b = b;
+			hash = 31 * Arrays.deepHashCode(a) + Arrays.deepHashCode(b);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof BiMatrixGameKey))
+				return false;
+			BiMatrixGameKey key = (BiMatrixGameKey) o;
+			return hash == key.hash && Arrays.deepEquals(a, key.a) && Arrays.deepEquals(b, key.b);
+		}
+	}
+
+	/**
+	 * Cache of the equilibria of the bimatrix games solved in the current and previous iteration
+	 * of value iteration (many states share the same game, and the game of a state whose successors'
+	 * values did not change is the same as in the previous iteration). Can be shared between threads.
+	 */
+	protected static class BiMatrixGameCache {
+		private Map<BiMatrixGameKey, BiMatrixGameSolution> curr = new ConcurrentHashMap<BiMatrixGameKey, BiMatrixGameSolution>();
+		private Map<BiMatrixGameKey, BiMatrixGameSolution> prev = new ConcurrentHashMap<BiMatrixGameKey, BiMatrixGameSolution>();
+
+		/**
+		 * Start a new iteration, discarding the games of the iteration before the last.
+		 * Should not be called while the cache is being accessed.
+		 */
+		public void nextIteration() {
+			Map<BiMatrixGameKey, BiMatrixGameSolution> tmp = prev;
+			prev = curr;
+			curr = tmp;
+			curr.clear();
+		}
+
+		public BiMatrixGameSolution get(BiMatrixGameKey key) {
+			BiMatrixGameSolution sol = curr.get(key);
+			if (sol == null) {
+				sol = prev.get(key);
+				if (sol != null)
+					curr.put(key, sol);
+			}
+			return sol;
+		}
+
+		public void put(BiMatrixGameKey key, BiMatrixGameSolution sol) {
+			curr.put(key, sol);
+		}
+	}
+
+	/**
+	 * Compute the equilibria of the bimatrix game with payoffs {@code a} and {@code b} (of size {@code nrows} x {@code ncols}),
+	 * using the solver {@code nash}, or taking them from {@link #bmgameCache} if this game has been solved recently.
+	 * If the maximum social welfare over all entries is attained by a single entry which is a pure equilibrium,
+	 * then this is the (unique) social-welfare-optimal equilibrium, and the solver is not called.
+	 */
+	protected BiMatrixGameSolution solveBiMatrixGame(CSGLabeledPolytopes nash, int nrows, int ncols, double[][] a, double[][] b) {
+		BiMatrixGameKey key = null;
+		BiMatrixGameSolution sol;
+		int[] pure;
+		if (bmgameCache != null) {
+			key = new BiMatrixGameKey(a, b);
+			sol = bmgameCache.get(key);
+			if (sol != null)
+				return sol;
+		}
+		pure = findOptimalPureEquilibrium(nrows, ncols, a, b);
+		if (pure != null) {
+			ArrayList<ArrayList<Distribution>> strat = new ArrayList<ArrayList<Distribution>>();
+			ArrayList<Distribution> dists = new ArrayList<Distribution>();
+			dists.add(0, new Distribution());
+			dists.add(1, new Distribution());
+			dists.get(0).add(pure[0], 1.0);
+			dists.get(1).add(pure[1], 1.0);
+			strat.add(0, dists);
+			sol = new BiMatrixGameSolution(1, new double[] { a[pure[0]][pure[1]] }, new double[] { b[pure[0]][pure[1]] }, strat);
+		}
+		else {
+			// (each worker has its own Z3 context, but calls to Yices must not overlap)
+			synchronized (smtSolver.equals("Yices") ? yicesLock : nash) {
+				nash.update(nrows, ncols, a, b);
+				nash.compEq();
+				nash.compPayoffs();
+				sol = new BiMatrixGameSolution(nash.getNeq(), nash.getP1p(), nash.getP2p(), nash.getStrat());
+			}
+		}
+		if (bmgameCache != null)
+			bmgameCache.put(key, sol);
+		return sol;
+	}
+
+	/**
+	 * Find the entry (row, column) of a bimatrix game with the maximum sum of payoffs, if this is unique
+	 * and a pure equilibrium (the payoffs of any mixed equilibrium are a convex combination of those of the entries
+	 * in its support, so no other equilibrium can have the same social welfare). Returns null otherwise.
+	 */
+	protected int[] findOptimalPureEquilibrium(int nrows, int ncols, double[][] a, double[][] b) {
+		double max = Double.NEGATIVE_INFINITY, sum;
+		int mrow = -1, mcol = -1, r, c;
+		boolean unique = false;
+		for (r = 0; r < nrows; r++) {
+			for (c = 0; c < ncols; c++) {
+				sum = a[r][c] + b[r][c];
+				if (Double.compare(sum, max) > 0) {
+					max = sum;
+					mrow = r;
+					mcol = c;
+					unique = true;
+				}
+				else if (Double.compare(sum, max) == 0) {
+					unique = false;
+				}
+			}
+		}
+		if (!unique)
+			return null;
+		for (r = 0; r < nrows; r++) {
+			if (Double.compare(a[r][mcol], a[mrow][mcol]) > 0)
+				return null;
+		}
+		for (c = 0; c < ncols; c++) {
+			if (Double.compare(b[mrow][c], b[mrow][mcol]) > 0)
+				return null;
+		}
+		return new int[] { mrow, mcol };
+	}
+
+	/**
+	 * Solver for the games of individual states during value iteration for two-coalition equilibria
+	 * (the support enumeration for more than two coalitions, in {@link #computeMultiReachEquilibria}, is sequential).
+	 * Each worker has its own model checker (since building a game uses the checker's fields as scratch space)
+	 * and its own solver context, so that different workers can be used concurrently.
+	 * Z3 contexts are independent, so Z3 calls run concurrently;
+	 * calls to Yices are serialised, so only the construction of the games runs concurrently.
+	 */
+	protected class EquilibriaWorker {
+		protected final CSGModelCheckerEquilibria mc;
+
+		public EquilibriaWorker(CSGModelCheckerEquilibria mc) {
+			this.mc = mc;
+		}
+
+		/**
+		 * Compute the equilibria of the game for state {@code s} built from values {@code val}
+		 * (and rewards {@code rewards}, if non-null) and select the social-welfare-optimal one,
+		 * storing its strategy in {@code sstrat} if required (see {@link #swne(double[][], List, boolean)}).
+		 */
+		public double[] solve(CSG csg, List<CSGRewards> rewards, List<List<Map<BitSet, Double>>> sstrat, double[][] val, int s, boolean min) throws PrismException {
+			double[][] eq;
+			if (rewards != null)
+				eq = mc.stepEquilibria(csg, rewards.get(0), rewards.get(1), null, mc.eqslps, sstrat, val, s, min);
+			else
+				eq = mc.stepEquilibria(csg, null, null, null, mc.eqslps, sstrat, val, s, min);
+			return mc.swne(eq, sstrat, min);
+		}
+	}
+
+	/**
+	 * Create the workers for solving the games of states during value iteration: one per thread.
+	 * The first worker uses this model checker; the others use copies of it (with the same coalitions and cache).
+	 * Coalitions, the maximum numbers of rows/columns and the solver should have been set up already.
+	 */
+	protected List<EquilibriaWorker> createEquilibriaWorkers(CSG csg, List<Coalition> coalitions) throws PrismException {
+		int n = Math.max(1, numThreads);
+		List<EquilibriaWorker> workers = new ArrayList<EquilibriaWorker>(n);
+		workers.add(new EquilibriaWorker(this));
+		for (int w = 1; w < n; w++) {
+			CSGModelCheckerEquilibria mc = new CSGModelCheckerEquilibria(this);
+			mc.inheritSettings(this);
+			mc.setExportAdv(exportAdv);
+			mc.setGenerateStrategy(generateStrategy);
+			mc.buildCoalitions(csg, coalitions);
+			mc.dominated = new BitSet[numCoalitions];
+			mc.dominating = new BitSet[numCoalitions];
+			mc.maxRows = maxRows;
+			mc.maxCols = maxCols;
+			mc.setSolver();
+			mc.bmgameCache = bmgameCache;
+			workers.add(new EquilibriaWorker(mc));
+		}
+		return workers;
+	}
+
+	/**
+	 * Do one step of value iteration, i.e., for each state s in {@code states}, store in {@code sws[s]}
+	 * the social-welfare-optimal equilibrium of the game for s built from {@code val}
+	 * (and its strategy in {@code sstrats[s]}, if strategies are generated).
+	 * The states are distributed dynamically between the workers, which run in parallel if there is more than one.
+	 */
+	protected void solveStepEquilibria(List<EquilibriaWorker> workers, CSG csg, List<CSGRewards> rewards, int[] states, double[][] val,
+			double[][] sws, List<List<Map<BitSet, Double>>>[] sstrats, boolean min) throws PrismException {
+		if (workers.size() == 1) {
+			EquilibriaWorker worker = workers.get(0);
+			for (int s : states) {
+				if (sstrats != null)
+					sstrats[s] = new ArrayList<List<Map<BitSet, Double>>>();
+				sws[s] = worker.solve(csg, rewards, sstrats == null ? null : sstrats[s], val, s, min);
+			}
+			return;
+		}
+		AtomicInteger next = new AtomicInteger(0);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workers.size());
+		for (EquilibriaWorker worker : workers) {
+			tasks.add(() -> {
+				int i, s;
+				while ((i = next.getAndIncrement()) < states.length) {
+					s = states[i];
+					if (sstrats != null)
+						sstrats[s] = new ArrayList<List<Map<BitSet, Double>>>();
+					sws[s] = worker.solve(csg, rewards, sstrats == null ? null : sstrats[s], val, s, min);
+				}
+				return null;
+			});
+		}
+		for (Future<Void> f : Parallel.getPool(workers.size()).invokeAll(tasks)) {
+			try {
+				f.get();
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof PrismException)
+					throw (PrismException) e.getCause();
+				throw new PrismException("Error when computing equilibria in parallel: " + e.getCause());
+			}
+			catch (InterruptedException e) {
+				throw new PrismException("Interrupted when computing equilibria in parallel");
+			}
+		}
+	}
+
+	/**
+	 * Create an array of {@code n} lists (initially null).
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> List<T>[] newListArray(int n) {
+		return (List<T>[]) new List<?>[n];
+	}
+
 	public double[][] stepEquilibria(CSG csg, CSGRewards csgRewards1, CSGRewards csgRewards2, List<Map<Integer, BitSet>> mmap, CSGLabeledPolytopes nash,
 			List<List<Map<BitSet, Double>>> strats, double[][] val, int s, boolean min) throws PrismException {
 		Map<BitSet, Double> d1 = null;
@@ -1893,20 +2169,18 @@ public class CSGModelCheckerEquilibria extends CSGModelChecker {
 					addStateRewards(result, csgRewards1, csgRewards2, s, min);
 				}
 				else { // both players have choices and matrices are not trivial, call solver
-					nash.update(nrows, ncols, val1s, val2s);
-					nash.compEq();
-					nash.compPayoffs();
-					result = new double[nash.getNeq()][2];
-					for (int e = 0; e < nash.getNeq(); e++) {
-						result[e][0] = nash.getP1p()[e];
-						result[e][1] = nash.getP2p()[e];
+					BiMatrixGameSolution bmsol = solveBiMatrixGame(nash, nrows, ncols, val1s, val2s);
+					result = new double[bmsol.neq][2];
+					for (int e = 0; e < bmsol.neq; e++) {
+						result[e][0] = bmsol.p1p[e];
+						result[e][1] = bmsol.p2p[e];
 						if (generateStrategy || exportAdv) {
 							eqstrat = new ArrayList<Map<BitSet, Double>>();
 							for (int p = 0; p < 2; p++) {
 								eqstrat.add(p, new HashMap<BitSet, Double>());
-								//System.out.println("-- strat from solver " + nash.getStrat().get(e).get(p).getSupport());
-								for (int t : nash.getStrat().get(e).get(p).getSupport()) {
-									eqstrat.get(p).put(mmap.get(p).get(nmap.get(p).get(t)), nash.getStrat().get(e).get(p).get(t));
+								//System.out.println("-- strat from solver " + bmsol.strat.get(e).get(p).getSupport());
+								for (int t : bmsol.strat.get(e).get(p).getSupport()) {
+									eqstrat.get(p).put(mmap.get(p).get(nmap.get(p).get(t)), bmsol.strat.get(e).get(p).get(t));
 								}
 							} 
 							strats.add(e, eqstrat);
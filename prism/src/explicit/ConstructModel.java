@@ -33,6 +33,11 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import parser.State;
 import parser.Values;
@@ -45,6 +50,7 @@ import prism.PrismException;
 import prism.PrismLog;
 import prism.PrismNotSupportedException;
 import prism.PrismPrintStreamLog;
+import prism.PrismSettings;
 import prism.ProgressDisplay;
 import prism.UndefinedConstants;
 
@@ -70,6 +76,8 @@ public class ConstructModel extends PrismComponent
 	protected boolean distinguishActions = true;
 	/** Should labels be processed and attached to the model? */
 	protected boolean attachLabels = true;
+	/** Number of threads to use for state space exploration (1 means sequential) */
+	protected int numThreads = 1;
 
 	// Details of built model:
 
@@ -79,6 +87,9 @@ public class ConstructModel extends PrismComponent
 	public ConstructModel(PrismComponent parent) throws PrismException
 	{
 		super(parent);
+		if (settings != null) {
+			numThreads = settings.getInteger(PrismSettings.PRISM_NUM_THREADS);
+		}
 	}
 
 	/**
@@ -131,6 +142,16 @@ public class ConstructModel extends PrismComponent
 		this.attachLabels = attachLabels;
 	}
 
+	/**
+	 * Set the number of threads to use for state space exploration (1 means sequential).
+	 * Parallel exploration is only used if the model generator supports {@link ModelGenerator#createCopy()}.
+	 * The resulting model (and state ordering) is identical to the sequential case.
+	 */
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
 	/**
 	 * Build the set of reachable states for a model and return it.
 	 * @param modelGen The ModelGenerator interface providing the model 
@@ -259,7 +280,12 @@ public class ConstructModel extends PrismComponent
 		}
 
 		// Initialise states storage
-		states = new IndexedSet<State>(true);
+		// (bit-packed, if all variables are bounded; otherwise, a sorted set of State objects)
+		if (!modelGen.containsUnboundedVariables() && PackedStateStorage.canStore(varList)) {
+			states = new PackedStateStorage(varList);
+		} else {
+			states = new IndexedSet<State>(true);
+		}
 		explore = new LinkedList<State>();
 		// Add initial state(s) to 'explore', 'states' and to the model
 		for (State initState : modelGen.getInitialStates()) {
@@ -272,136 +298,79 @@ public class ConstructModel extends PrismComponent
 		}
 
 		// Explore...
-		src = -1;
-		while (!explore.isEmpty()) {
-			// Pick next state to explore
-			// (they are stored in order found so know index is src+1)
-			state = explore.removeFirst();
-			src++;
-			// Explore all choices/transitions from this state
-			modelGen.exploreState(state);
-			nc = modelGen.getNumChoices();
-			// For turn-based games, first determine which player owns the state
-			if (modelType.multiplePlayers() && !modelType.concurrent()) {
-				player = modelGen.getPlayerOwningState();
-				if (modelType == ModelType.STPG) {
-					stpg.setPlayer(src, player + 1);
-				} else if (modelType == ModelType.SMG) {
-					smg.setPlayer(src, player + 1);
-				}
-			}
-			else if (modelType == ModelType.CSG) {
-				csg.setPlayer(src, 1);
-			}
-			// Look at each outgoing choice in turn
-			for (i = 0; i < nc; i++) {
-				// If required, check for duplicate actions here
-				if (modelType.partiallyObservable()) {
-					if (((NondetModel) modelSimple).getChoiceByAction(src, modelGen.getChoiceAction(i)) != -1) {
-						String act = modelGen.getChoiceAction(i) == null ? "" : modelGen.getChoiceAction(i).toString();
-						String err = modelType + " is not allowed duplicate action";
-						err += " (\"" + act + "\") in state " + state.toString(modelGen);
-						throw new PrismException(err);
+		// (in parallel, if requested and supported; the result is identical)
+		ModelGenerator[] workerGens = null;
+		if (numThreads > 1 && !modelType.partiallyObservable()) {
+			workerGens = createWorkerModelGenerators(modelGen);
+		}
+		if (workerGens != null) {
+			src = exploreParallel(modelGen, workerGens, justReach, states, new ArrayList<State>(explore), modelSimple, progress);
+		} else {
+			src = -1;
+			while (!explore.isEmpty()) {
+				// Pick next state to explore
+				// (they are stored in order found so know index is src+1)
+				state = explore.removeFirst();
+				src++;
+				// Explore all choices/transitions from this state
+				modelGen.exploreState(state);
+				nc = modelGen.getNumChoices();
+				// For turn-based games, first determine which player owns the state
+				if (modelType.multiplePlayers()) {
+					player = modelType.concurrent() ? -1 : modelGen.getPlayerOwningState();
+					if (!justReach) {
+						setPlayer(modelType, modelSimple, src, player);
 					}
 				}
-				// For nondet models, collect transitions in a Distribution
-				if (!justReach && modelType.nondeterministic()) {
-					distr = new Distribution();
-				}
-				// Look at each transition in the choice
-				nt = modelGen.getNumTransitions(i);
-				for (j = 0; j < nt; j++) {
-					stateNew = modelGen.computeTransitionTarget(i, j);
-					// Is this a new state?
-					if (states.add(stateNew)) {
-						// If so, add to the explore list
-						explore.add(stateNew);
-						// And to model
-						if (!justReach) {
-							modelSimple.addState();
+				// Look at each outgoing choice in turn
+				for (i = 0; i < nc; i++) {
+					// If required, check for duplicate actions here
+					if (modelType.partiallyObservable()) {
+						if (((NondetModel) modelSimple).getChoiceByAction(src, modelGen.getChoiceAction(i)) != -1) {
+							String act = modelGen.getChoiceAction(i) == null ? "" : modelGen.getChoiceAction(i).toString();
+							String err = modelType + " is not allowed duplicate action";
+							err += " (\"" + act + "\") in state " + state.toString(modelGen);
+							throw new PrismException(err);
 						}
 					}
-					// Get index of state in state set
-					dest = states.getIndexOfLastAdd();
-					// Add transitions to model
-					if (!justReach) {
-						switch (modelType) {
-						case DTMC:
-							dtmc.addToProbability(src, dest, modelGen.getTransitionProbability(i, j));
-							break;
-						case CTMC:
-							ctmc.addToProbability(src, dest, modelGen.getTransitionProbability(i, j));
-							break;
-						case MDP:
-						case POMDP:
-						case CTMDP:
-						case STPG:
-						case SMG:
-						case CSG:
-							distr.add(dest, modelGen.getTransitionProbability(i, j));
-							break;
-						case LTS:
-							if (distinguishActions) {
-								lts.addActionLabelledTransition(src, dest, modelGen.getChoiceAction(i));
-							} else {
-								lts.addTransition(src, dest);
-							}
-							break;
-						case PTA:
-							throw new PrismNotSupportedException("Model construction not supported for " + modelType + "s");
-						}
+					// For nondet models, collect transitions in a Distribution
+					if (!justReach && modelType.nondeterministic()) {
+						distr = new Distribution();
 					}
-				}
-				// For nondet models, add collated transition to model 
-				if (!justReach) {
-					if (modelType == ModelType.MDP) {
-						if (distinguishActions) {
-							mdp.addActionLabelledChoice(src, distr, modelGen.getChoiceAction(i));
-						} else {
-							mdp.addChoice(src, distr);
-						}
-					} else if (modelType == ModelType.POMDP) {
-						if (distinguishActions) {
-							pomdp.addActionLabelledChoice(src, distr, modelGen.getChoiceAction(i));
-						} else {
-							pomdp.addChoice(src, distr);
-						}
-					} else if (modelType == ModelType.CTMDP) {
-						if (distinguishActions) {
-							ctmdp.addActionLabelledChoice(src, distr, modelGen.getChoiceAction(i));
-						} else {
-							ctmdp.addChoice(src, distr);
+					Object action = justReach ? null : getChoiceActionForModel(modelGen, modelType, i);
+					// Look at each transition in the choice
+					nt = modelGen.getNumTransitions(i);
+					for (j = 0; j < nt; j++) {
+						stateNew = modelGen.computeTransitionTarget(i, j);
+						// Is this a new state?
+						if (states.add(stateNew)) {
+							// If so, add to the explore list
+							explore.add(stateNew);
+							// And to model
+							if (!justReach) {
+								modelSimple.addState();
+							}
 						}
-					} else if (modelType == ModelType.STPG) {
-						if (distinguishActions) {
-							stpg.addActionLabelledChoice(src, distr, modelGen.getTransitionAction(i, 0));
-						} else {
-							stpg.addChoice(src, distr);
+						// Get index of state in state set
+						dest = states.getIndexOfLastAdd();
+						// Add transitions to model
+						if (!justReach) {
+							addTransition(modelType, modelSimple, distr, src, dest, modelGen.getTransitionProbability(i, j), action);
 						}
 					}
-					else if (modelType == ModelType.CSG) {
-						if (distinguishActions) {
-							csg.addActionLabelledChoice(src, distr, modelGen.getTransitionIndexes(i));
-						} 
-						else {
-							csg.addChoice(src, distr, modelGen.getTransitionIndexes(i));
-						}
-					} else if (modelType == ModelType.SMG) {
-						if (distinguishActions) {
-							smg.addActionLabelledChoice(src, distr, modelGen.getTransitionAction(i, 0));
-						} else {
-							smg.addChoice(src, distr);
-						}
+					// For nondet models, add collated transition to model 
+					if (!justReach) {
+						addChoice(modelType, modelSimple, src, distr, action, modelType.concurrent() ? modelGen.getTransitionIndexes(i) : null);
 					}
 				}
+				// For partially observable models, add observation info to state
+				// (do it after transitions are added, since observation actions are checked)
+				if (!justReach && modelType == ModelType.POMDP) {
+					setStateObservation(modelGen, (POMDPSimple) modelSimple, src, state);
+				}
+				// Print some progress info occasionally
+				progress.updateIfReady(src + 1);
 			}
-			// For partially observable models, add observation info to state
-			// (do it after transitions are added, since observation actions are checked)
-			if (!justReach && modelType == ModelType.POMDP) {
-				setStateObservation(modelGen, (POMDPSimple) modelSimple, src, state);
-			}
-			// Print some progress info occasionally
-			progress.updateIfReady(src + 1);
 		}
 
 		// Finish progress display
@@ -503,6 +472,344 @@ public class ConstructModel extends PrismComponent
 		return model;
 	}
 
+	/**
+	 * Create one copy of {@code modelGen} per worker thread for parallel exploration.
+	 * Returns null if the model generator cannot be copied.
+	 */
+	private ModelGenerator[] createWorkerModelGenerators(ModelGenerator modelGen) throws PrismException
+	{
+		ModelGenerator[] workerGens = new ModelGenerator[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			workerGens[t] = modelGen.createCopy();
+			if (workerGens[t] == null) {
+				return null;
+			}
+		}
+		return workerGens;
+	}
+
+	/**
+	 * Parallel (breadth-first) state space exploration and model construction.
+	 * Each BFS level is explored concurrently, one {@link ModelGenerator} copy per worker,
+	 * and successor states that are already known are looked up concurrently in {@code states}.
+	 * The results are then merged, in order, into {@code states} and the model,
+	 * which yields exactly the same state indices as the sequential exploration.
+	 * @param modelGen The (original) model generator
+	 * @param workerGens One model generator copy per worker thread
+	 * @param justReach If true, just build the reachable state set, not the model
+	 * @param states State storage (already containing the initial states)
+	 * @param frontier The initial states, in order
+	 * @param modelSimple The model being constructed (null if {@code justReach})
+	 * @param progress Progress display
+	 * @return Index of the last explored state
+	 */
+	private int exploreParallel(ModelGenerator modelGen, ModelGenerator[] workerGens, boolean justReach, StateStorage<State> states, List<State> frontier,
+			ModelSimple modelSimple, ProgressDisplay progress) throws PrismException
+	{
+		ModelType modelType = modelGen.getModelType();
+		ExecutorService executor = Executors.newFixedThreadPool(workerGens.length);
+		int src = -1;
+		try {
+			while (!frontier.isEmpty()) {
+				// Explore all states in the current level concurrently
+				ExploredState[] explored = exploreLevel(executor, workerGens, modelType, justReach, states, frontier);
+				// Merge (sequentially, in BFS order) into state storage and model
+				List<State> next = new ArrayList<State>();
+				for (int k = 0; k < explored.length; k++) {
+					ExploredState ex = explored[k];
+					explored[k] = null;
+					src++;
+					if (!justReach && modelType.multiplePlayers()) {
+						setPlayer(modelType, modelSimple, src, ex.player);
+					}
+					int nc = ex.targets.length;
+					for (int i = 0; i < nc; i++) {
+						Distribution distr = (!justReach && modelType.nondeterministic()) ? new Distribution() : null;
+						Object action = ex.actions == null ? null : ex.actions[i];
+						int nt = ex.targets[i].length;
+						for (int j = 0; j < nt; j++) {
+							int dest = ex.indices[i][j];
+							// Unresolved, i.e. not known before this level: add to storage
+							if (dest == -1) {
+								State stateNew = ex.targets[i][j];
+								if (states.add(stateNew)) {
+									next.add(stateNew);
+									if (!justReach) {
+										modelSimple.addState();
+									}
+								}
+								dest = states.getIndexOfLastAdd();
+							}
+							if (!justReach) {
+								addTransition(modelType, modelSimple, distr, src, dest, ex.probs[i][j], action);
+							}
+						}
+						if (!justReach) {
+							addChoice(modelType, modelSimple, src, distr, action, ex.transitionIndexes == null ? null : ex.transitionIndexes[i]);
+						}
+					}
+					progress.updateIfReady(src + 1);
+				}
+				frontier = next;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return src;
+	}
+
+	/**
+	 * Explore the states in {@code frontier} concurrently, returning the results in the same order.
+	 * Work is handed out in chunks to one task per worker model generator.
+	 */
+	private ExploredState[] exploreLevel(ExecutorService executor, ModelGenerator[] workerGens, ModelType modelType, boolean justReach,
+			StateStorage<State> states, List<State> frontier) throws PrismException
+	{
+		final int chunkSize = 64;
+		int n = frontier.size();
+		ExploredState[] explored = new ExploredState[n];
+		AtomicInteger nextChunk = new AtomicInteger(0);
+		int numTasks = Math.min(workerGens.length, (n + chunkSize - 1) / chunkSize);
+		List<Future<Void>> futures = new ArrayList<>(numTasks);
+		for (int t = 0; t < numTasks; t++) {
+			ModelGenerator gen = workerGens[t];
+			futures.add(executor.submit(() -> {
+				int lo;
+				while ((lo = nextChunk.getAndIncrement() * chunkSize) < n) {
+					int hi = Math.min(lo + chunkSize, n);
+					for (int k = lo; k < hi; k++) {
+						explored[k] = exploreState(gen, modelType, justReach, states, frontier.get(k));
+					}
+				}
+				return null;
+			}));
+		}
+		try {
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PrismException("Interrupted during parallel state space exploration");
+		} catch (ExecutionException e) {
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof PrismException) {
+				throw (PrismException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else {
+				throw new PrismException("Error during parallel state space exploration: " + cause);
+			}
+		}
+		return explored;
+	}
+
+	/**
+	 * Explore a single state using model generator {@code gen} and store the results.
+	 * Successors already present in {@code states} (which is only read here) are resolved to their indices.
+	 */
+	private ExploredState exploreState(ModelGenerator gen, ModelType modelType, boolean justReach, StateStorage<State> states, State state) throws PrismException
+	{
+		ExploredState ex = new ExploredState();
+		gen.exploreState(state);
+		if (modelType.multiplePlayers()) {
+			ex.player = modelType.concurrent() ? -1 : gen.getPlayerOwningState();
+		}
+		int nc = gen.getNumChoices();
+		ex.targets = new State[nc][];
+		ex.indices = new int[nc][];
+		ex.probs = justReach ? null : new double[nc][];
+		if (!justReach && distinguishActions) {
+			ex.actions = new Object[nc];
+		}
+		if (!justReach && modelType.concurrent()) {
+			ex.transitionIndexes = new int[nc][];
+		}
+		for (int i = 0; i < nc; i++) {
+			if (ex.actions != null) {
+				ex.actions[i] = getChoiceActionForModel(gen, modelType, i);
+			}
+			if (ex.transitionIndexes != null) {
+				ex.transitionIndexes[i] = gen.getTransitionIndexes(i);
+			}
+			int nt = gen.getNumTransitions(i);
+			ex.targets[i] = new State[nt];
+			ex.indices[i] = new int[nt];
+			if (!justReach) {
+				ex.probs[i] = new double[nt];
+			}
+			for (int j = 0; j < nt; j++) {
+				State stateNew = gen.computeTransitionTarget(i, j);
+				if (states.contains(stateNew)) {
+					ex.indices[i][j] = states.get(stateNew);
+				} else {
+					ex.indices[i][j] = -1;
+					ex.targets[i][j] = stateNew;
+				}
+				if (!justReach) {
+					ex.probs[i][j] = gen.getTransitionProbability(i, j);
+				}
+			}
+		}
+		return ex;
+	}
+
+	/**
+	 * Get the action to be attached to the {@code i}th choice of the state
+	 * currently being explored by {@code modelGen} (null if actions are not being distinguished). 
+	 */
+	private Object getChoiceActionForModel(ModelGenerator modelGen, ModelType modelType, int i) throws PrismException
+	{
+		if (!distinguishActions) {
+			return null;
+		}
+		switch (modelType) {
+		case MDP:
+		case POMDP:
+		case CTMDP:
+		case LTS:
+			return modelGen.getChoiceAction(i);
+		case STPG:
+		case SMG:
+			return modelGen.getTransitionAction(i, 0);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Set the player owning state {@code s} of a (turn-based or concurrent) game under construction.
+	 * @param player Index of the owning player (0-indexed; ignored for concurrent games)
+	 */
+	private void setPlayer(ModelType modelType, ModelSimple modelSimple, int s, int player)
+	{
+		switch (modelType) {
+		case STPG:
+			((STPGExplicit) modelSimple).setPlayer(s, player + 1);
+			break;
+		case SMG:
+			((SMG) modelSimple).setPlayer(s, player + 1);
+			break;
+		case CSG:
+			((CSG) modelSimple).setPlayer(s, 1);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Add a transition (to {@code dest}, with probability/rate {@code prob}) to the model under construction.
+	 * For nondeterministic models, it is added to the distribution {@code distr} for the current choice.
+	 */
+	private void addTransition(ModelType modelType, ModelSimple modelSimple, Distribution distr, int src, int dest, double prob, Object action) throws PrismException
+	{
+		switch (modelType) {
+		case DTMC:
+			((DTMCSimple) modelSimple).addToProbability(src, dest, prob);
+			break;
+		case CTMC:
+			((CTMCSimple) modelSimple).addToProbability(src, dest, prob);
+			break;
+		case MDP:
+		case POMDP:
+		case CTMDP:
+		case STPG:
+		case SMG:
+		case CSG:
+			distr.add(dest, prob);
+			break;
+		case LTS:
+			if (distinguishActions) {
+				((LTSSimple) modelSimple).addActionLabelledTransition(src, dest, action);
+			} else {
+				((LTSSimple) modelSimple).addTransition(src, dest);
+			}
+			break;
+		default:
+			throw new PrismNotSupportedException("Model construction not supported for " + modelType + "s");
+		}
+	}
+
+	/**
+	 * For nondeterministic models, add the collated distribution {@code distr} of a choice
+	 * to the model under construction (with action {@code action}, if actions are distinguished).
+	 * @param transIndexes For concurrent games, the action indexes of the choice
+	 */
+	private void addChoice(ModelType modelType, ModelSimple modelSimple, int src, Distribution distr, Object action, int[] transIndexes)
+	{
+		switch (modelType) {
+		case MDP:
+			if (distinguishActions) {
+				((MDPSimple) modelSimple).addActionLabelledChoice(src, distr, action);
+			} else {
+				((MDPSimple) modelSimple).addChoice(src, distr);
+			}
+			break;
+		case POMDP:
+			if (distinguishActions) {
+				((POMDPSimple) modelSimple).addActionLabelledChoice(src, distr, action);
+			} else {
+				((POMDPSimple) modelSimple).addChoice(src, distr);
+			}
+			break;
+		case CTMDP:
+			if (distinguishActions) {
+				((CTMDPSimple) modelSimple).addActionLabelledChoice(src, distr, action);
+			} else {
+				((CTMDPSimple) modelSimple).addChoice(src, distr);
+			}
+			break;
+		case STPG:
+			if (distinguishActions) {
+				((STPGExplicit) modelSimple).addActionLabelledChoice(src, distr, action);
+			} else {
+				((STPGExplicit) modelSimple).addChoice(src, distr);
+			}
+			break;
+		case CSG:
+			if (distinguishActions) {
+				((CSG) modelSimple).addActionLabelledChoice(src, distr, transIndexes);
+			} else {
+				((CSG) modelSimple).addChoice(src, distr, transIndexes);
+			}
+			break;
+		case SMG:
+			if (distinguishActions) {
+				((SMG) modelSimple).addActionLabelledChoice(src, distr, action);
+			} else {
+				((SMG) modelSimple).addChoice(src, distr);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Results of exploring a single state, as computed by a worker during parallel exploration.
+	 * Successor states already known when exploring are stored just as their index;
+	 * for the others, the index is -1 and the State object itself is kept.
+	 */
+	private static class ExploredState
+	{
+		/** Player owning the state (turn-based games only) */
+		int player = -1;
+		/** Actions, per choice (null if not needed) */
+		Object[] actions;
+		/** Action indexes, per choice (concurrent games only) */
+		int[][] transitionIndexes;
+		/** Target states (for unresolved successors), per choice/transition */
+		State[][] targets;
+		/** Target state indices (-1 if unresolved), per choice/transition */
+		int[][] indices;
+		/** Probabilities/rates (null if only computing reachability), per choice/transition */
+		double[][] probs;
+	}
+
 	private void setStateObservation(ModelGenerator modelGen, POMDPSimple pomdp, int s, State state) throws PrismException
 	{
 		// Get observation for the current state
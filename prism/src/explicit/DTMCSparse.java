@@ -135,6 +135,22 @@ public class DTMCSparse extends DTMCExplicit
 		}
 	}
 
+	/**
+	 * Constructor: build a DTMC directly from its sparse matrix (the arrays are stored, not copied).
+	 * Other model info (initial states, labels, etc.) is left empty.
+	 * @param numStates Number of states
+	 * @param rows Indices into columns/probabilities giving the start of the transitions for each state (size numStates+1)
+	 * @param columns Column (destination) indices for each transition
+	 * @param probabilities Probabilities for each transition
+	 */
+	public DTMCSparse(int numStates, int rows[], int columns[], double probabilities[])
+	{
+		initialise(numStates);
+		this.rows = rows;
+		this.columns = columns;
+		this.probabilities = probabilities;
+	}
+
 
 
 	//--- Model ---
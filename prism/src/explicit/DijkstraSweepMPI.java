@@ -125,12 +125,13 @@ public class DijkstraSweepMPI {
 
 		HashSet<Choice> preTarget = new HashSet<Choice>();
 		for (int t : IterableBitSet.getSetBits(target)) {
-			for (Choice c : incoming.getIncomingChoices(t)) {
+			for (int i = 0, n = incoming.getNumIncomingChoices(t); i < n; i++) {
+				if (!unknown.get(incoming.getIncomingChoiceState(t, i))) {
+					continue;
+				}
+				Choice c = new Choice(incoming.getIncomingChoiceState(t, i), incoming.getIncomingChoiceIndex(t, i));
 				boolean newChoice = preTarget.add(c);
 				if (newChoice) {
-					if (!unknown.get(c.getState())) {
-						continue;
-					}
 					if (!validChoice(c)) {
 						continue;
 					}
@@ -160,17 +161,20 @@ public class DijkstraSweepMPI {
 			wState[x] = v.w;
 			pState[x] = v.p;
 
-			for (Choice c : incoming.getIncomingChoices(x)) {
-				if (fin.get(c.getState())) {
+			for (int i = 0, n = incoming.getNumIncomingChoices(x); i < n; i++) {
+				int y = incoming.getIncomingChoiceState(x, i);
+				if (fin.get(y)) {
 					// already handled, skip
 					continue;
 				}
 
-				if (!unknown.get(c.getState())) {
+				if (!unknown.get(y)) {
 					// uninteresting state
 					continue;
 				}
 
+				Choice c = new Choice(y, incoming.getIncomingChoiceIndex(x, i));
+
 				if (!validChoice(c)) {
 					// some successor go outside unknown U target (e.g., to some infinity or undefined state)
 					// skip
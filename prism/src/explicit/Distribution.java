@@ -26,12 +26,16 @@
 
 package explicit;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 
 import parser.State;
@@ -41,10 +45,22 @@ import prism.PrismUtils;
 /**
  * Explicit representation of a probability distribution.
  * Basically, a mapping from (integer-valued) indices to (non-zero, double-valued) probabilities. 
+ * <br>
+ * Stored as a pair of arrays of indices and probabilities, sorted by index
+ * (rather than as a map, to avoid storing each entry as a pair of boxed objects).
+ * Entries are also iterated over in increasing order of index.
  */
 public class Distribution implements Iterable<Entry<Integer, Double>>
 {
-	private HashMap<Integer, Double> map;
+	private static final int[] EMPTY_INDICES = new int[0];
+	private static final double[] EMPTY_PROBS = new double[0];
+
+	// Indices in the support, in increasing order (only the first 'size' entries are used)
+	private int[] indices;
+	// Probabilities for each index in 'indices'
+	private double[] probs;
+	// Number of entries
+	private int size;
 
 	/**
 	 * Create an empty distribution.
@@ -59,7 +75,9 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public Distribution(Distribution distr)
 	{
-		this(distr.iterator());
+		indices = Arrays.copyOf(distr.indices, distr.size);
+		probs = Arrays.copyOf(distr.probs, distr.size);
+		size = distr.size;
 	}
 
 	/**
@@ -83,10 +101,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public Distribution(Distribution distr, int permut[])
 	{
 		this();
-		Iterator<Entry<Integer, Double>> i = distr.iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			add(permut[e.getKey()], e.getValue());
+		for (int k = 0; k < distr.size; k++) {
+			add(permut[distr.indices[k]], distr.probs[k]);
 		}
 	}
 
@@ -95,7 +111,52 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public void clear()
 	{
-		map = new HashMap<Integer, Double>();
+		indices = EMPTY_INDICES;
+		probs = EMPTY_PROBS;
+		size = 0;
+	}
+
+	/**
+	 * Find the position of index 'j' in the (sorted) array of indices.
+	 * If it is not present, return (-(insertion point) - 1), as for {@link Arrays#binarySearch(int[], int)}.
+	 */
+	private int find(int j)
+	{
+		// Distributions are often built in increasing order of index, so check the end first
+		if (size == 0 || indices[size - 1] < j)
+			return -size - 1;
+		return Arrays.binarySearch(indices, 0, size, j);
+	}
+
+	/**
+	 * Insert index 'j' with probability 'prob' at position 'pos'.
+	 */
+	private void insert(int pos, int j, double prob)
+	{
+		if (size == indices.length) {
+			int capacity = size < 4 ? size + 1 : size + (size >> 1);
+			indices = Arrays.copyOf(indices, capacity);
+			probs = Arrays.copyOf(probs, capacity);
+		}
+		if (pos < size) {
+			System.arraycopy(indices, pos, indices, pos + 1, size - pos);
+			System.arraycopy(probs, pos, probs, pos + 1, size - pos);
+		}
+		indices[pos] = j;
+		probs[pos] = prob;
+		size++;
+	}
+
+	/**
+	 * Remove the entry at position 'pos'.
+	 */
+	private void removeAt(int pos)
+	{
+		size--;
+		if (pos < size) {
+			System.arraycopy(indices, pos + 1, indices, pos, size - pos);
+			System.arraycopy(probs, pos + 1, probs, pos, size - pos);
+		}
 	}
 
 	/**
@@ -105,12 +166,12 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean add(int j, double prob)
 	{
-		Double d = (Double) map.get(j);
-		if (d == null) {
-			map.put(j, prob);
+		int pos = find(j);
+		if (pos < 0) {
+			insert(-pos - 1, j, prob);
 			return false;
 		} else {
-			set(j, d + prob);
+			set(j, probs[pos] + prob);
 			return true;
 		}
 	}
@@ -120,10 +181,15 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public void set(int j, double prob)
 	{
-		if (prob == 0.0)
-			map.remove(j);
-		else
-			map.put(j, prob);
+		int pos = find(j);
+		if (prob == 0.0) {
+			if (pos >= 0)
+				removeAt(pos);
+		} else if (pos >= 0) {
+			probs[pos] = prob;
+		} else {
+			insert(-pos - 1, j, prob);
+		}
 	}
 
 	/**
@@ -131,9 +197,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public double get(int j)
 	{
-		Double d;
-		d = (Double) map.get(j);
-		return d == null ? 0.0 : d.doubleValue();
+		int pos = find(j);
+		return pos < 0 ? 0.0 : probs[pos];
 	}
 
 	/**
@@ -141,7 +206,38 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean contains(int j)
 	{
-		return map.get(j) != null;
+		return find(j) >= 0;
+	}
+
+	/**
+	 * Get the index of the {@code k}th entry of the distribution (in increasing order of index),
+	 * for {@code 0 <= k < size()}. Together with {@link #getProbabilityAt(int)}, this
+	 * allows iterating over the distribution without creating any objects.
+	 */
+	public int getIndexAt(int k)
+	{
+		return indices[k];
+	}
+
+	/**
+	 * Get the probability of the {@code k}th entry of the distribution (in increasing order of index),
+	 * for {@code 0 <= k < size()}.
+	 */
+	public double getProbabilityAt(int k)
+	{
+		return probs[k];
+	}
+
+	/**
+	 * Reduce the storage for the distribution to its current size,
+	 * e.g., once it has been built and will no longer be modified.
+	 */
+	public void trimToSize()
+	{
+		if (indices.length > size) {
+			indices = size == 0 ? EMPTY_INDICES : Arrays.copyOf(indices, size);
+			probs = size == 0 ? EMPTY_PROBS : Arrays.copyOf(probs, size);
+		}
 	}
 
 	/**
@@ -149,10 +245,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean isSubsetOf(BitSet set)
 	{
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			if (!set.get((Integer) e.getKey()))
+		for (int k = 0; k < size; k++) {
+			if (!set.get(indices[k]))
 				return false;
 		}
 		return true;
@@ -163,21 +257,64 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean containsOneOf(BitSet set)
 	{
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			if (set.get((Integer) e.getKey()))
+		for (int k = 0; k < size; k++) {
+			if (set.get(indices[k]))
 				return true;
 		}
 		return false;
 	}
 
 	/**
-	 * Get the support of the distribution.
+	 * Get the support of the distribution
+	 * (as a view, which reflects subsequent changes to the distribution).
 	 */
 	public Set<Integer> getSupport()
 	{
-		return map.keySet();
+		return new AbstractSet<Integer>()
+		{
+			@Override
+			public Iterator<Integer> iterator()
+			{
+				return getSupportIterator();
+			}
+
+			@Override
+			public boolean contains(Object o)
+			{
+				return o instanceof Integer && Distribution.this.contains((Integer) o);
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Get an iterator over the support of the distribution, in increasing order of index.
+	 */
+	public PrimitiveIterator.OfInt getSupportIterator()
+	{
+		return new PrimitiveIterator.OfInt()
+		{
+			int k = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return k < size;
+			}
+
+			@Override
+			public int nextInt()
+			{
+				if (k >= size)
+					throw new NoSuchElementException();
+				return indices[k++];
+			}
+		};
 	}
 
 	/**
@@ -185,7 +322,34 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public Iterator<Entry<Integer, Double>> iterator()
 	{
-		return map.entrySet().iterator();
+		return new Iterator<Entry<Integer, Double>>()
+		{
+			int k = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return k < size;
+			}
+
+			@Override
+			public Entry<Integer, Double> next()
+			{
+				if (k >= size)
+					throw new NoSuchElementException();
+				Entry<Integer, Double> e = new AbstractMap.SimpleImmutableEntry<Integer, Double>(indices[k], probs[k]);
+				k++;
+				return e;
+			}
+
+			@Override
+			public void remove()
+			{
+				if (k == 0)
+					throw new IllegalStateException();
+				removeAt(--k);
+			}
+		};
 	}
 
 	/**
@@ -193,7 +357,7 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean isEmpty()
 	{
-		return map.isEmpty();
+		return size == 0;
 	}
 
 	/**
@@ -201,7 +365,7 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public int size()
 	{
-		return map.size();
+		return size;
 	}
 
 	/**
@@ -256,10 +420,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public double sum()
 	{
 		double mean = 0.0;
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			mean += e.getValue();
+		for (int k = 0; k < size; k++) {
+			mean += probs[k];
 		}
 		return mean;
 	}
@@ -270,11 +432,9 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public double sumAllBut(int j)
 	{
 		double d = 0.0;
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			if (e.getKey() != j)
-				d += e.getValue();
+		for (int k = 0; k < size; k++) {
+			if (indices[k] != j)
+				d += probs[k];
 		}
 		return d;
 	}
@@ -286,10 +446,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public Distribution map(int map[])
 	{
 		Distribution distrNew = new Distribution();
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			distrNew.add(map[e.getKey()], e.getValue());
+		for (int k = 0; k < size; k++) {
+			distrNew.add(map[indices[k]], probs[k]);
 		}
 		return distrNew;
 	}
@@ -300,22 +458,17 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public Set<Integer> keySet()
 	{
-		return map.keySet();
+		return getSupport();
 	}
 
 	@Override
 	public boolean equals(Object o)
 	{
-		Double d1, d2;
 		Distribution d = (Distribution) o;
 		if (d.size() != size())
 			return false;
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			d1 = e.getValue();
-			d2 = d.map.get(e.getKey());
-			if (d2 == null || !PrismUtils.doublesAreEqual(d1, d2))
+		for (int k = 0; k < size; k++) {
+			if (indices[k] != d.indices[k] || !PrismUtils.doublesAreEqual(probs[k], d.probs[k]))
 				return false;
 		}
 		return true;
@@ -325,13 +478,20 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public int hashCode()
 	{
 		// Simple hash code
-		return map.size();
+		return size;
 	}
 
 	@Override
 	public String toString()
 	{
-		return map.toString();
+		// Same format as for a map
+		StringBuilder sb = new StringBuilder("{");
+		for (int k = 0; k < size; k++) {
+			if (k > 0)
+				sb.append(", ");
+			sb.append(indices[k]).append('=').append(probs[k]);
+		}
+		return sb.append('}').toString();
 	}
 	
 	public String toStringCSV()
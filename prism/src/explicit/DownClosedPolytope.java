@@ -0,0 +1,593 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import parma_polyhedra_library.C_Polyhedron;
+import parma_polyhedra_library.Coefficient;
+import parma_polyhedra_library.Generator;
+import parma_polyhedra_library.Generator_System;
+import parma_polyhedra_library.Linear_Expression;
+import parma_polyhedra_library.Linear_Expression_Times;
+import parma_polyhedra_library.Variable;
+import prism.PrismException;
+
+/**
+ * Pure-Java, floating-point alternative to the PPL polyhedra in {@link Pareto},
+ * used for the value iteration in multi-objective SMG model checking.
+ * <br>
+ * A down-closed convex polytope in n dimensions, i.e., the downward closure
+ * of the convex hull of a finite list of (double-precision) vertices.
+ * An empty vertex list denotes the empty set. Polytopes are immutable.
+ * <br>
+ * All operations are performed relative to a fixed set of non-negative weight vectors
+ * ({@link Directions}): only vertices that are optimal in at least one of these directions
+ * are retained, and vertices closer than epsilon to a retained one are pruned.
+ * Weighted (Minkowski) sums, translation and convex union are exact in these directions;
+ * intersection is too in two dimensions, and is otherwise computed as an inner approximation.
+ * Apart from {@link #toPareto}, no PPL objects are used, so the library need not be loaded.
+ */
+public class DownClosedPolytope
+{
+	/** Dimension */
+	private final int n;
+	/** Vertices (not modified after construction) */
+	private final double[][] vertices;
+
+	/**
+	 * A set of weight vectors (on the unit simplex) plus a pruning threshold.
+	 */
+	public static class Directions
+	{
+		/** Weight vectors */
+		private final double[][] dirs;
+		/** For each weight vector, the indices of its neighbours on the grid */
+		private final int[][] neighbours;
+		/** Threshold (in the max norm) below which vertices are considered equal */
+		private final double epsilon;
+
+		/**
+		 * Create the weight vectors of dimension {@code n} whose entries are multiples
+		 * of 1/{@code resolution} and sum to one, i.e., a regular grid on the unit simplex.
+		 */
+		public Directions(int n, int resolution, double epsilon)
+		{
+			List<int[]> grid = new ArrayList<int[]>();
+			addGridPoints(grid, new int[n], 0, resolution);
+			Map<List<Integer>, Integer> index = new HashMap<List<Integer>, Integer>();
+			dirs = new double[grid.size()][n];
+			for (int j = 0; j < grid.size(); j++) {
+				List<Integer> key = new ArrayList<Integer>(n);
+				for (int i = 0; i < n; i++) {
+					dirs[j][i] = ((double) grid.get(j)[i]) / resolution;
+					key.add(grid.get(j)[i]);
+				}
+				index.put(key, j);
+			}
+			// neighbours: move one grid step of weight from one coordinate to another
+			neighbours = new int[grid.size()][];
+			for (int j = 0; j < grid.size(); j++) {
+				List<Integer> list = new ArrayList<Integer>();
+				int[] w = grid.get(j);
+				for (int from = 0; from < n; from++) {
+					if (w[from] == 0)
+						continue;
+					for (int to = 0; to < n; to++) {
+						if (to == from)
+							continue;
+						List<Integer> key = new ArrayList<Integer>(n);
+						for (int i = 0; i < n; i++)
+							key.add(w[i] - (i == from ? 1 : 0) + (i == to ? 1 : 0));
+						list.add(index.get(key));
+					}
+				}
+				neighbours[j] = list.stream().mapToInt(Integer::intValue).toArray();
+			}
+			this.epsilon = epsilon;
+		}
+
+		private static void addGridPoints(List<int[]> grid, int[] w, int i, int remaining)
+		{
+			if (i == w.length - 1) {
+				w[i] = remaining;
+				grid.add(w.clone());
+				return;
+			}
+			for (int k = 0; k <= remaining; k++) {
+				w[i] = k;
+				addGridPoints(grid, w, i + 1, remaining - k);
+			}
+		}
+
+		public int size()
+		{
+			return dirs.length;
+		}
+
+		public double[] get(int j)
+		{
+			return dirs[j];
+		}
+	}
+
+	// Constructors
+
+	private DownClosedPolytope(int n, double[][] vertices)
+	{
+		this.n = n;
+		this.vertices = vertices;
+	}
+
+	/**
+	 * The empty set in {@code n} dimensions.
+	 */
+	public static DownClosedPolytope empty(int n)
+	{
+		return new DownClosedPolytope(n, new double[0][]);
+	}
+
+	/**
+	 * The downward closure of the point {@code x}.
+	 */
+	public static DownClosedPolytope point(double[] x)
+	{
+		return new DownClosedPolytope(x.length, new double[][] { x.clone() });
+	}
+
+	// Accessors
+
+	public int getDimension()
+	{
+		return n;
+	}
+
+	public boolean isEmpty()
+	{
+		return vertices.length == 0;
+	}
+
+	public int getNumVertices()
+	{
+		return vertices.length;
+	}
+
+	public double[] getVertex(int i)
+	{
+		return vertices[i];
+	}
+
+	/**
+	 * Get the support value in direction {@code w}, i.e., the maximum of w.x over the polytope
+	 * (negative infinity if empty).
+	 */
+	public double support(double[] w)
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		for (double[] v : vertices) {
+			double d = dot(w, v);
+			if (d > max)
+				max = d;
+		}
+		return max;
+	}
+
+	/**
+	 * Check whether the point {@code x} is dominated by some vertex (up to {@code tolerance}).
+	 * This is sufficient, but not necessary, for {@code x} to lie in the polytope.
+	 */
+	public boolean dominates(double[] x, double tolerance)
+	{
+		vertices: for (double[] v : vertices) {
+			for (int i = 0; i < n; i++) {
+				if (v[i] < x[i] - tolerance)
+					continue vertices;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Check whether the point {@code x} lies in the polytope (up to {@code tolerance}),
+	 * as seen from the directions in {@code dirs}, i.e., whether w.x is at most the support
+	 * value in each direction w (plus {@code tolerance}). The empty set contains no point.
+	 */
+	public boolean contains(double[] x, double tolerance, Directions dirs)
+	{
+		if (isEmpty())
+			return false;
+		if (dominates(x, tolerance))
+			return true;
+		for (int j = 0; j < dirs.size(); j++) {
+			double[] w = dirs.get(j);
+			if (dot(w, x) > support(w) + tolerance)
+				return false;
+		}
+		return true;
+	}
+
+	// Operations
+
+	/**
+	 * Translate by the vector {@code r}.
+	 */
+	public DownClosedPolytope translate(double[] r)
+	{
+		boolean zero = true;
+		for (int i = 0; i < n; i++) {
+			if (r[i] != 0.0) {
+				zero = false;
+				break;
+			}
+		}
+		if (zero)
+			return this;
+		double[][] res = new double[vertices.length][n];
+		for (int k = 0; k < vertices.length; k++) {
+			for (int i = 0; i < n; i++)
+				res[k][i] = vertices[k][i] + r[i];
+		}
+		return new DownClosedPolytope(n, res);
+	}
+
+	/**
+	 * Scale dimension i by {@code alpha[i]} (all assumed positive).
+	 */
+	public DownClosedPolytope scale(double[] alpha)
+	{
+		double[][] res = new double[vertices.length][n];
+		for (int k = 0; k < vertices.length; k++) {
+			for (int i = 0; i < n; i++)
+				res[k][i] = vertices[k][i] * alpha[i];
+		}
+		return new DownClosedPolytope(n, res);
+	}
+
+	/**
+	 * Weighted Minkowski sum of the polytopes {@code ps}, with weights {@code probs}.
+	 * The result is empty if any of the polytopes is empty.
+	 */
+	public static DownClosedPolytope weightedSum(DownClosedPolytope[] ps, double[] probs, Directions dirs)
+	{
+		int n = ps[0].n;
+		if (ps.length == 1)
+			return ps[0];
+		for (DownClosedPolytope p : ps) {
+			if (p.isEmpty())
+				return empty(n);
+		}
+		// The support point of a sum, in a given direction, is the sum of the support points
+		List<double[]> candidates = new ArrayList<double[]>(dirs.size());
+		for (int j = 0; j < dirs.size(); j++) {
+			double[] w = dirs.get(j);
+			double[] x = new double[n];
+			for (int k = 0; k < ps.length; k++) {
+				double[] v = ps[k].vertices[ps[k].supportVertex(w)];
+				for (int i = 0; i < n; i++)
+					x[i] += probs[k] * v[i];
+			}
+			candidates.add(x);
+		}
+		return prune(n, candidates, dirs);
+	}
+
+	/**
+	 * Convex hull of the union of the polytopes {@code ps} (empty ones are ignored).
+	 */
+	public static DownClosedPolytope union(List<DownClosedPolytope> ps, Directions dirs)
+	{
+		int n = ps.get(0).n;
+		List<double[]> candidates = new ArrayList<double[]>();
+		for (DownClosedPolytope p : ps) {
+			for (double[] v : p.vertices)
+				candidates.add(v);
+		}
+		return prune(n, candidates, dirs);
+	}
+
+	/**
+	 * Inner approximation of the intersection of the polytopes {@code ps}.
+	 * The result is empty if any of the polytopes is empty.
+	 * Since the polytopes are down-closed, the componentwise minimum of a point
+	 * of each polytope lies in the intersection. Candidates are taken from the vertices
+	 * and from points sampled on the edges between them (see {@link #boundaryPoints}),
+	 * and the best of these in each direction are retained.
+	 * In two dimensions, the vertices of the intersection are computed exactly instead
+	 * (see {@link #intersectionPoints2D}).
+	 */
+	public static DownClosedPolytope intersection(List<DownClosedPolytope> ps, Directions dirs)
+	{
+		DownClosedPolytope res = ps.get(0);
+		int n = res.n;
+		for (int k = 1; k < ps.size(); k++) {
+			DownClosedPolytope p = ps.get(k);
+			if (res.isEmpty() || p.isEmpty())
+				return empty(n);
+			if (n == 2) {
+				res = prune(n, intersectionPoints2D(res.frontier2D(), p.frontier2D()), dirs);
+				continue;
+			}
+			List<double[]> as = res.boundaryPoints(dirs);
+			List<double[]> bs = p.boundaryPoints(dirs);
+			List<double[]> candidates = new ArrayList<double[]>(as.size() * bs.size());
+			for (double[] a : as) {
+				for (double[] b : bs) {
+					double[] x = new double[n];
+					for (int i = 0; i < n; i++)
+						x[i] = Math.min(a[i], b[i]);
+					candidates.add(x);
+				}
+			}
+			res = prune(n, candidates, dirs);
+		}
+		return res;
+	}
+
+	/**
+	 * Check whether this polytope and {@code other} are within {@code epsilon} of each other,
+	 * measured as the difference of the support values in each of the directions.
+	 */
+	public boolean isCloseTo(DownClosedPolytope other, double epsilon, Directions dirs)
+	{
+		if (isEmpty() || other.isEmpty())
+			return isEmpty() == other.isEmpty();
+		for (int j = 0; j < dirs.size(); j++) {
+			double[] w = dirs.get(j);
+			if (Math.abs(support(w) - other.support(w)) > epsilon)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Convert to a (single) PPL polyhedron, wrapped in a {@link Pareto} set.
+	 */
+	public Pareto toPareto() throws PrismException
+	{
+		Generator_System gs = new Generator_System();
+		if (!isEmpty()) {
+			for (int i = 0; i < n; i++) {
+				// ray for downward closure
+				Linear_Expression ray = new Linear_Expression_Times(new Coefficient((BigInteger.ONE).negate()), new Variable(i));
+				gs.add(Generator.ray(ray));
+			}
+			for (double[] v : vertices)
+				gs.add(PPLSupport.generatorFromPoint(v));
+		}
+		C_Polyhedron cp = new C_Polyhedron(gs);
+		if (cp.space_dimension() != n)
+			cp.add_space_dimensions_and_project(n - cp.space_dimension());
+		return new Pareto(cp);
+	}
+
+	// Helpers
+
+	/** Number of points sampled on each edge in {@link #boundaryPoints} */
+	private static final int EDGE_SAMPLES = 3;
+
+	/**
+	 * Get the vertices plus some points on the edges of the polytope, where edges are taken
+	 * to be the segments between the support vertices of neighbouring directions.
+	 */
+	private List<double[]> boundaryPoints(Directions dirs)
+	{
+		List<double[]> points = new ArrayList<double[]>(Arrays.asList(vertices));
+		if (vertices.length < 2)
+			return points;
+		int[] support = new int[dirs.size()];
+		for (int j = 0; j < dirs.size(); j++)
+			support[j] = supportVertex(dirs.get(j));
+		Set<Long> edges = new HashSet<Long>();
+		for (int j = 0; j < dirs.size(); j++) {
+			for (int j2 : dirs.neighbours[j]) {
+				int a = Math.min(support[j], support[j2]);
+				int b = Math.max(support[j], support[j2]);
+				if (a == b || !edges.add(((long) a) * vertices.length + b))
+					continue;
+				for (int t = 1; t <= EDGE_SAMPLES; t++) {
+					double lambda = ((double) t) / (EDGE_SAMPLES + 1);
+					double[] x = new double[n];
+					for (int i = 0; i < n; i++)
+						x[i] = lambda * vertices[a][i] + (1 - lambda) * vertices[b][i];
+					points.add(x);
+				}
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * For a two-dimensional polytope, get the vertices on its upper right boundary,
+	 * ordered by increasing x (and so decreasing y) coordinate.
+	 */
+	private double[][] frontier2D()
+	{
+		double[][] sorted = vertices.clone();
+		Arrays.sort(sorted, (a, b) -> a[0] != b[0] ? Double.compare(b[0], a[0]) : Double.compare(b[1], a[1]));
+		// non-dominated vertices, by decreasing x
+		List<double[]> staircase = new ArrayList<double[]>();
+		for (double[] v : sorted) {
+			if (staircase.isEmpty() || v[1] > staircase.get(staircase.size() - 1)[1])
+				staircase.add(v);
+		}
+		// upper convex hull of these, by increasing x
+		List<double[]> hull = new ArrayList<double[]>();
+		for (int k = staircase.size() - 1; k >= 0; k--) {
+			double[] v = staircase.get(k);
+			while (hull.size() >= 2) {
+				double[] a = hull.get(hull.size() - 2);
+				double[] b = hull.get(hull.size() - 1);
+				// drop b if it is not above the segment from a to v
+				if ((b[0] - a[0]) * (v[1] - a[1]) - (b[1] - a[1]) * (v[0] - a[0]) < 0)
+					break;
+				hull.remove(hull.size() - 1);
+			}
+			hull.add(v);
+		}
+		return hull.toArray(new double[hull.size()][]);
+	}
+
+	/**
+	 * Get the value at {@code x} of the function whose graph is the upper right boundary
+	 * {@code frontier} (see {@link #frontier2D}), i.e., the largest y such that (x, y) is in the polytope
+	 * (negative infinity if there is none).
+	 */
+	private static double frontierValue(double[][] frontier, double x)
+	{
+		if (x <= frontier[0][0])
+			return frontier[0][1];
+		for (int k = 1; k < frontier.length; k++) {
+			if (x <= frontier[k][0]) {
+				double lambda = (x - frontier[k - 1][0]) / (frontier[k][0] - frontier[k - 1][0]);
+				return frontier[k - 1][1] + lambda * (frontier[k][1] - frontier[k - 1][1]);
+			}
+		}
+		return Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Get the vertices of the intersection of two two-dimensional polytopes, given by their
+	 * upper right boundaries (see {@link #frontier2D}). The boundary of the intersection is the pointwise
+	 * minimum of the two, so it suffices to evaluate it at the vertices of either and where they cross.
+	 */
+	private static List<double[]> intersectionPoints2D(double[][] fa, double[][] fb)
+	{
+		double xMax = Math.min(fa[fa.length - 1][0], fb[fb.length - 1][0]);
+		List<Double> xs = new ArrayList<Double>();
+		for (double[] v : fa)
+			if (v[0] <= xMax)
+				xs.add(v[0]);
+		for (double[] v : fb)
+			if (v[0] <= xMax)
+				xs.add(v[0]);
+		xs.add(xMax);
+		Collections.sort(xs);
+		List<double[]> points = new ArrayList<double[]>();
+		double xPrev = 0.0, dPrev = 0.0;
+		for (int k = 0; k < xs.size(); k++) {
+			double x = xs.get(k);
+			double ya = frontierValue(fa, x);
+			double yb = frontierValue(fb, x);
+			double d = ya - yb;
+			// both boundaries are linear between consecutive points, so cross at most once
+			if (k > 0 && ((dPrev < 0 && d > 0) || (dPrev > 0 && d < 0))) {
+				double xc = xPrev + (x - xPrev) * dPrev / (dPrev - d);
+				points.add(new double[] { xc, Math.min(frontierValue(fa, xc), frontierValue(fb, xc)) });
+			}
+			points.add(new double[] { x, Math.min(ya, yb) });
+			xPrev = x;
+			dPrev = d;
+		}
+		return points;
+	}
+
+	/**
+	 * Get the index of the vertex maximising w.x
+	 * (ties broken in favour of the largest sum of components).
+	 */
+	private int supportVertex(double[] w)
+	{
+		return supportIndex(vertices, w);
+	}
+
+	private static int supportIndex(double[][] points, double[] w)
+	{
+		int best = -1;
+		double bestVal = Double.NEGATIVE_INFINITY, bestSum = Double.NEGATIVE_INFINITY;
+		for (int k = 0; k < points.length; k++) {
+			double d = dot(w, points[k]);
+			if (d > bestVal || (d == bestVal && sum(points[k]) > bestSum)) {
+				best = k;
+				bestVal = d;
+				bestSum = sum(points[k]);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Build the polytope from the candidate vertices which are optimal in some direction,
+	 * dropping those within epsilon of a vertex that is already kept.
+	 */
+	private static DownClosedPolytope prune(int n, List<double[]> candidates, Directions dirs)
+	{
+		if (candidates.isEmpty())
+			return empty(n);
+		double[][] points = candidates.toArray(new double[candidates.size()][]);
+		boolean[] used = new boolean[points.length];
+		List<double[]> kept = new ArrayList<double[]>();
+		candidates: for (int j = 0; j < dirs.size(); j++) {
+			int k = supportIndex(points, dirs.get(j));
+			if (used[k])
+				continue;
+			used[k] = true;
+			for (double[] v : kept) {
+				if (distance(v, points[k]) <= dirs.epsilon)
+					continue candidates;
+			}
+			kept.add(points[k]);
+		}
+		return new DownClosedPolytope(n, kept.toArray(new double[kept.size()][]));
+	}
+
+	private static double dot(double[] w, double[] x)
+	{
+		double d = 0.0;
+		for (int i = 0; i < x.length; i++)
+			d += w[i] * x[i];
+		return d;
+	}
+
+	private static double sum(double[] x)
+	{
+		double d = 0.0;
+		for (int i = 0; i < x.length; i++)
+			d += x[i];
+		return d;
+	}
+
+	private static double distance(double[] x, double[] y)
+	{
+		double d = 0.0;
+		for (int i = 0; i < x.length; i++)
+			d = Math.max(d, Math.abs(x[i] - y[i]));
+		return d;
+	}
+
+	@Override
+	public String toString()
+	{
+		return Arrays.deepToString(vertices);
+	}
+}
@@ -0,0 +1,55 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+/**
+ * Indexed set of beliefs (see {@link BeliefStore}), in which beliefs are stored with their
+ * exact probabilities, rather than discretised ones. Two beliefs are considered equal only if
+ * their distributions coincide exactly; all non-zero probabilities are kept.
+ * To be used for exploring a belief MDP exactly.
+ */
+public class ExactBeliefStore extends BeliefStore
+{
+	/**
+	 * Create an empty store.
+	 */
+	public ExactBeliefStore()
+	{
+		super(0);
+	}
+
+	@Override
+	protected long key(double p)
+	{
+		// Use the bit pattern of the double (mapping -0.0 to 0 too)
+		return p == 0.0 ? 0 : Double.doubleToLongBits(p);
+	}
+
+	@Override
+	protected double value(long key)
+	{
+		return Double.longBitsToDouble(key);
+	}
+}
@@ -27,19 +27,21 @@
 
 package explicit;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import common.IterableStateSet;
+import common.MappedFileScanner;
 import parser.State;
 import prism.ModelInfo;
+import prism.ModelType;
 import prism.PrismComponent;
 import prism.PrismException;
 import prism.PrismNotSupportedException;
@@ -47,6 +49,11 @@ import prism.PrismSettings;
 
 /**
  * Class to convert explicit-state file storage of a model to a model of the explicit engine.
+ * <br>
+ * Files are read with a {@link MappedFileScanner}, i.e., memory-mapped and parsed
+ * without creating a String per line. DTMCs and MDPs are built directly as
+ * {@link DTMCSparse} / {@link MDPSparse}, by reading the transitions file several
+ * times: first to count the choices/transitions of each state, then to store them.
  */
 public class ExplicitFiles2Model extends PrismComponent
 {
@@ -95,19 +102,16 @@ public class ExplicitFiles2Model extends PrismComponent
 		ModelExplicit model = null;
 		switch (modelInfo.getModelType()) {
 		case DTMC:
-			DTMCSimple dtmc = new DTMCSimple();
-			dtmc.buildFromPrismExplicit(transFile.getAbsolutePath());
-			model = dtmc;
+			// (deadlocks are found/fixed during construction)
+			model = buildDTMC(transFile);
 			break;
 		case CTMC:
-			CTMCSimple ctmc = new CTMCSimple();
-			ctmc.buildFromPrismExplicit(transFile.getAbsolutePath());
-			model = ctmc;
+			model = buildCTMC(transFile);
+			model.findDeadlocks(fixdl);
 			break;
 		case MDP:
-			MDPSimple mdp = new MDPSimple();
-			mdp.buildFromPrismExplicit(transFile.getAbsolutePath());
-			model = mdp;
+			// (deadlocks are found/fixed during construction)
+			model = buildMDP(transFile);
 			break;
 		case CTMDP:
 		case LTS:
@@ -136,7 +140,6 @@ public class ExplicitFiles2Model extends PrismComponent
 			throw new PrismException("Imported model has no initial states");
 		}
 
-		model.findDeadlocks(fixdl);
 		
 		if (statesFile != null) {
 			loadStates(model, statesFile, modelInfo);
@@ -177,6 +180,308 @@ public class ExplicitFiles2Model extends PrismComponent
 		}
 	}
 
+	/**
+	 * Build a DTMC from a .tra file. The file is read twice: first to count
+	 * the transitions for each state, then to store them (sorted by successor).
+	 * Deadlock states are stored and, if required, fixed by adding a self-loop.
+	 * As for {@link DTMCSimple#buildFromPrismExplicit}, if a transition appears
+	 * more than once, the last probability given is used.
+	 */
+	private DTMCSparse buildDTMC(File transFile) throws PrismException
+	{
+		try (MappedFileScanner in = new MappedFileScanner(transFile)) {
+			try {
+				// Parse first line to get num states
+				int numStates = readNumStates(in);
+				// First pass: count transitions for each state
+				int rows[] = new int[numStates + 1];
+				while (in.nextNonBlankLine()) {
+					int s = readStateIndex(in, numStates, "source");
+					readStateIndex(in, numStates, "target");
+					rows[s + 1]++;
+					in.skipLine();
+				}
+				// Find (and fix) deadlocks, then compute row starts
+				BitSet deadlocks = new BitSet();
+				for (int s = 0; s < numStates; s++) {
+					if (rows[s + 1] == 0) {
+						deadlocks.set(s);
+						if (fixdl)
+							rows[s + 1] = 1;
+					}
+					rows[s + 1] += rows[s];
+				}
+				// Second pass: store transitions
+				int numTransitions = rows[numStates];
+				int columns[] = new int[numTransitions];
+				double probabilities[] = new double[numTransitions];
+				int next[] = Arrays.copyOf(rows, numStates);
+				in.rewind();
+				in.skipLine();
+				while (in.nextNonBlankLine()) {
+					int s = in.nextInt();
+					columns[next[s]] = in.nextInt();
+					probabilities[next[s]] = in.nextDouble();
+					next[s]++;
+					in.skipLine();
+				}
+				if (fixdl) {
+					for (int s = deadlocks.nextSetBit(0); s >= 0; s = deadlocks.nextSetBit(s + 1)) {
+						columns[rows[s]] = s;
+						probabilities[rows[s]] = 1.0;
+					}
+				}
+				// Sort, merging duplicates and removing zero probabilities
+				numTransitions = sortTransitions(numStates, rows, columns, probabilities, true);
+				if (numTransitions < columns.length) {
+					columns = Arrays.copyOf(columns, numTransitions);
+					probabilities = Arrays.copyOf(probabilities, numTransitions);
+				}
+				DTMCSparse dtmc = new DTMCSparse(numStates, rows, columns, probabilities);
+				for (int s = deadlocks.nextSetBit(0); s >= 0; s = deadlocks.nextSetBit(s + 1)) {
+					dtmc.addDeadlockState(s);
+				}
+				return dtmc;
+			} catch (NumberFormatException e) {
+				throw new PrismException("Problem in .tra file (line " + in.getLineNumber() + ") for " + ModelType.DTMC);
+			}
+		} catch (IOException e) {
+			throw new PrismException("File I/O error reading from \"" + transFile + "\": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Build a CTMC from a .tra file (as a {@link CTMCSimple}, since there is no sparse CTMC).
+	 */
+	private CTMCSimple buildCTMC(File transFile) throws PrismException
+	{
+		try (MappedFileScanner in = new MappedFileScanner(transFile)) {
+			try {
+				// Parse first line to get num states
+				int numStates = readNumStates(in);
+				CTMCSimple ctmc = new CTMCSimple(numStates);
+				// Go though list of transitions in file
+				while (in.nextNonBlankLine()) {
+					int s = readStateIndex(in, numStates, "source");
+					int t = readStateIndex(in, numStates, "target");
+					ctmc.setProbability(s, t, in.nextDouble());
+					in.skipLine();
+				}
+				return ctmc;
+			} catch (NumberFormatException e) {
+				throw new PrismException("Problem in .tra file (line " + in.getLineNumber() + ") for " + ModelType.CTMC);
+			}
+		} catch (IOException e) {
+			throw new PrismException("File I/O error reading from \"" + transFile + "\": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Build an MDP from a .tra file. The file is read three times: first to count
+	 * the choices for each state, then the transitions for each choice, then to
+	 * store them (sorted by successor), along with any action labels.
+	 * Deadlock states are stored and, if required, fixed by adding a self-loop.
+	 * As for {@link MDPSimple#buildFromPrismExplicit}, a transition may not appear
+	 * more than once, the number of choices and transitions must match the first
+	 * line of the file, and there must be no gaps in the choice indices of a state.
+	 */
+	private MDPSparse buildMDP(File transFile) throws PrismException
+	{
+		try (MappedFileScanner in = new MappedFileScanner(transFile)) {
+			try {
+				// Parse first line to get num states/choices/transitions
+				if (!in.nextNonBlankLine()) {
+					throw new PrismException("Missing first line of .tra file");
+				}
+				int numStates, expectedNumChoices, expectedNumTransitions;
+				try {
+					numStates = in.nextInt();
+					expectedNumChoices = in.nextInt();
+					expectedNumTransitions = in.nextInt();
+				} catch (NumberFormatException e) {
+					throw new PrismException("First line of .tra file must read #states, #choices, #transitions");
+				}
+				in.skipLine();
+				// First pass: determine number of choices for each state
+				int rowStarts[] = new int[numStates + 1];
+				while (in.nextNonBlankLine()) {
+					int s = readStateIndex(in, numStates, "source");
+					int c = in.nextInt();
+					if (c < 0) {
+						throw new PrismException("Problem in .tra file (line " + in.getLineNumber() + "): illegal choice index " + c);
+					}
+					readStateIndex(in, numStates, "target");
+					rowStarts[s + 1] = Math.max(rowStarts[s + 1], c + 1);
+					in.skipLine();
+				}
+				// Find (and fix) deadlocks, then compute row starts
+				BitSet deadlocks = new BitSet();
+				for (int s = 0; s < numStates; s++) {
+					if (rowStarts[s + 1] == 0) {
+						deadlocks.set(s);
+						if (fixdl)
+							rowStarts[s + 1] = 1;
+					}
+					rowStarts[s + 1] += rowStarts[s];
+				}
+				int numChoices = rowStarts[numStates];
+				// Second pass: count transitions for each choice
+				int choiceStarts[] = new int[numChoices + 1];
+				in.rewind();
+				in.skipLine();
+				while (in.nextNonBlankLine()) {
+					int s = in.nextInt();
+					int c = in.nextInt();
+					choiceStarts[rowStarts[s] + c + 1]++;
+					in.skipLine();
+				}
+				if (fixdl) {
+					for (int s = deadlocks.nextSetBit(0); s >= 0; s = deadlocks.nextSetBit(s + 1)) {
+						choiceStarts[rowStarts[s] + 1] = 1;
+					}
+				}
+				int emptyDistributions = 0;
+				for (int i = 0; i < numChoices; i++) {
+					if (choiceStarts[i + 1] == 0)
+						emptyDistributions++;
+					choiceStarts[i + 1] += choiceStarts[i];
+				}
+				int numTransitions = choiceStarts[numChoices];
+				// Third pass: store transitions and actions, checking for duplicates
+				int cols[] = new int[numTransitions];
+				double nonZeros[] = new double[numTransitions];
+				Object actions[] = null;
+				// (action labels are shared between choices)
+				Map<String, String> actionNames = new HashMap<String, String>();
+				int next[] = Arrays.copyOf(choiceStarts, numChoices);
+				in.rewind();
+				in.skipLine();
+				while (in.nextNonBlankLine()) {
+					int s = in.nextInt();
+					int c = in.nextInt();
+					int choice = rowStarts[s] + c;
+					int t = in.nextInt();
+					for (int i = choiceStarts[choice]; i < next[choice]; i++) {
+						if (cols[i] == t) {
+							throw new PrismException("Problem in .tra file (line " + in.getLineNumber() + "): redefinition of probability for " + s + " " + c + " " + t);
+						}
+					}
+					cols[next[choice]] = t;
+					nonZeros[next[choice]] = in.nextDouble();
+					next[choice]++;
+					// add action
+					if (!in.atEndOfLine()) {
+						String action = in.nextToken();
+						String shared = actionNames.putIfAbsent(action, action);
+						action = (shared == null) ? action : shared;
+						if (actions == null) {
+							actions = new Object[numChoices];
+						}
+						Object oldAction = actions[choice];
+						if (oldAction != null && !action.equals(oldAction)) {
+							throw new PrismException("Problem in .tra file (line " + in.getLineNumber() + "):"
+							                       + "inconsistent action label for " + s + ", " + c + ": "
+									               + oldAction + " and " + action);
+						}
+						actions[choice] = action;
+					}
+					in.skipLine();
+				}
+				if (fixdl) {
+					for (int s = deadlocks.nextSetBit(0); s >= 0; s = deadlocks.nextSetBit(s + 1)) {
+						cols[choiceStarts[rowStarts[s]]] = s;
+						nonZeros[choiceStarts[rowStarts[s]]] = 1.0;
+					}
+				}
+				// Check integrity
+				int numDeadlocksFixed = fixdl ? deadlocks.cardinality() : 0;
+				if (numChoices - numDeadlocksFixed != expectedNumChoices) {
+					throw new PrismException("Problem in .tra file: unexpected number of choices: " + (numChoices - numDeadlocksFixed));
+				}
+				if (numTransitions - numDeadlocksFixed != expectedNumTransitions) {
+					throw new PrismException("Problem in .tra file: unexpected number of transitions: " + (numTransitions - numDeadlocksFixed));
+				}
+				if (emptyDistributions > 0) {
+					throw new PrismException("Problem in .tra file: there are " + emptyDistributions + " empty distribution, are there gaps in the choice indices?");
+				}
+				// Sort (there are no duplicates)
+				sortTransitions(numChoices, choiceStarts, cols, nonZeros, false);
+				MDPSparse mdp = new MDPSparse(numStates, rowStarts, choiceStarts, cols, nonZeros, actions);
+				for (int s = deadlocks.nextSetBit(0); s >= 0; s = deadlocks.nextSetBit(s + 1)) {
+					mdp.addDeadlockState(s);
+				}
+				return mdp;
+			} catch (NumberFormatException e) {
+				throw new PrismException("Problem in .tra file (line " + in.getLineNumber() + ") for " + ModelType.MDP);
+			}
+		} catch (IOException e) {
+			throw new PrismException("File I/O error reading from \"" + transFile + "\": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Read the first line of a (DTMC/CTMC) .tra file and return the number of states.
+	 */
+	private int readNumStates(MappedFileScanner in) throws IOException, PrismException
+	{
+		if (!in.nextNonBlankLine()) {
+			throw new PrismException("Missing first line of .tra file");
+		}
+		int numStates = in.nextInt();
+		in.skipLine();
+		return numStates;
+	}
+
+	/**
+	 * Read a state index from a .tra file, checking that it is in range.
+	 */
+	private int readStateIndex(MappedFileScanner in, int numStates, String kind) throws IOException, PrismException
+	{
+		int s = in.nextInt();
+		if (s < 0 || s >= numStates) {
+			throw new PrismException("Problem in .tra file (line " + in.getLineNumber() + "): illegal " + kind + " state index " + s);
+		}
+		return s;
+	}
+
+	/**
+	 * Sort the entries of each row of a sparse matrix by column index.
+	 * If {@code merge} is true, entries with the same column are merged (keeping the
+	 * last one, in the original order) and entries with value zero are removed,
+	 * updating {@code starts} accordingly; otherwise, there must be no duplicate columns.
+	 * Returns the (new) number of entries.
+	 */
+	private int sortTransitions(int numRows, int starts[], int cols[], double vals[], boolean merge)
+	{
+		int count = 0;
+		for (int r = 0; r < numRows; r++) {
+			int start = starts[r], end = starts[r + 1];
+			// Insertion sort (stable; rows are usually short)
+			for (int i = start + 1; i < end; i++) {
+				int col = cols[i];
+				double val = vals[i];
+				int j = i - 1;
+				while (j >= start && cols[j] > col) {
+					cols[j + 1] = cols[j];
+					vals[j + 1] = vals[j];
+					j--;
+				}
+				cols[j + 1] = col;
+				vals[j + 1] = val;
+			}
+			starts[r] = count;
+			for (int i = start; i < end; i++) {
+				if (merge && (i + 1 < end && cols[i + 1] == cols[i] || vals[i] == 0.0))
+					continue;
+				cols[count] = cols[i];
+				vals[count] = vals[i];
+				count++;
+			}
+		}
+		starts[numRows] = count;
+		return count;
+	}
+
 	/** Load the state information, construct the statesList and attach to model */
 	private void loadStates(ModelExplicit model, File statesFile, ModelInfo modelInfo) throws PrismException
 	{
@@ -186,55 +491,54 @@ public class ExplicitFiles2Model extends PrismComponent
 			statesList.add(null);
 		}
 
-		String s, ss[];
-		int i, j, lineNum = 0;
-
 		int numVars = modelInfo.getNumVars();
 
 		// open file for reading, automatic close when done
-		try (BufferedReader in = new BufferedReader(new FileReader(statesFile))) {
-			// skip first line
-			in.readLine();
-			lineNum = 1;
-			// read remaining lines
-			s = in.readLine();
-			lineNum++;
-			while (s != null) {
-				// skip blank lines
-				s = s.trim();
-				if (s.length() > 0) {
-					// split into two parts
-					ss = s.split(":");
+		try (MappedFileScanner in = new MappedFileScanner(statesFile)) {
+			try {
+				// skip first line
+				in.skipLine();
+				// read remaining (non-blank) lines, of the form i:(v1,...,vn)
+				while (in.nextNonBlankLine()) {
 					// determine which state this line describes
-					i = Integer.parseInt(ss[0]);
-					// now split up middle bit and extract var info
-					ss = ss[1].substring(ss[1].indexOf('(') + 1, ss[1].indexOf(')')).split(",");
-
+					int i = in.nextInt();
+					if (i < 0 || i >= numStates)
+						throw new PrismException("(illegal state index) ");
+					in.expect(':');
+					in.expect('(');
 					State state = new State(numVars);
-					if (ss.length != numVars)
-						throw new PrismException("(wrong number of variable values) ");
-					for (j = 0; j < numVars; j++) {
-						if (ss[j].equals("true")) {
-							state.setValue(j, true);
-						} else if (ss[j].equals("false")) {
-							state.setValue(j, false);
+					for (int j = 0; j < numVars; j++) {
+						if (j > 0)
+							in.expect(',');
+						int c = in.peekChar();
+						if (c == 't' || c == 'f') {
+							String value = in.nextToken(",)");
+							if (value.equals("true")) {
+								state.setValue(j, true);
+							} else if (value.equals("false")) {
+								state.setValue(j, false);
+							} else {
+								throw new NumberFormatException();
+							}
 						} else {
-							state.setValue(j, Integer.parseInt(ss[j]));
+							state.setValue(j, in.nextInt());
 						}
 					}
+					if (in.peekChar() != ')')
+						throw new PrismException("(wrong number of variable values) ");
+					in.skipLine();
 					if (statesList.get(i) != null)
 						throw new PrismException("(duplicated state) ");
 					statesList.set(i, state);
 				}
-				// read next line
-				s = in.readLine();
-				lineNum++;
+			} catch (NumberFormatException e) {
+				throw new PrismException("Error detected (wrong format of variable values) at line " + in.getLineNumber() + " of states file \"" + statesFile + "\"");
+			} catch (PrismException e) {
+				throw new PrismException("Error detected " + e.getMessage() + "at line " + in.getLineNumber() + " of states file \"" + statesFile + "\"");
 			}
 			model.setStatesList(statesList);
 		} catch (IOException e) {
 			throw new PrismException("File I/O error reading from \"" + statesFile + "\"");
-		} catch (PrismException e) {
-			throw new PrismException("Error detected " + e.getMessage() + "at line " + lineNum + " of states file \"" + statesFile + "\"");
 		}
 	}
 }
@@ -30,12 +30,10 @@ package explicit;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.ListIterator;
-import java.util.Map;
 
+import common.Parallel;
 import parser.ast.Expression;
 import parser.ast.ExpressionIdent;
 import parser.ast.LabelList;
@@ -71,323 +69,18 @@ import prism.*;
 
 /**
  * Implementation of fast adaptive uniformisation (FAU).
+ * <br>
+ * The states currently stored (the "window") are kept in a table of slots, in order of addition,
+ * with a hash index from states to slots. Properties of the states are stored in primitive arrays
+ * indexed by slot, including their successors and, for the transient-step vector multiplication,
+ * their incoming transitions (from states whose successors have been computed), which are
+ * updated incrementally as states are explored and deleted. Each step then computes the
+ * next-step probability of each state independently, so it is done in parallel.
+ * Slots of removed states are reused only after the table is compacted
+ * (which keeps the order of the remaining states).
  */
 public final class FastAdaptiveUniformisation extends PrismComponent
 {
-	/**
-	 * Stores properties of states needed for fast adaptive method.
-	 * This includes the current-step probability, next-state probability,
-	 * and the transient probability (sum of step probabilities weighted
-	 * with birth process distributions). It also contains the list of successor
-	 * states and the rates to them, the number of incoming transitions
-	 * (references) and a flag whether the state has a significant probability
-	 * mass (alive).
-	 */
-	private final static class StateProp
-	{
-		/** current-step probability.
-		 * should contain initial probability before actual analysis is started.
-		 * will contain transient probability after analysis. */
-		private double prob;
-		/** next-state probability */
-		private double nextProb;
-		/** sum probability weighted with birth process distribution */
-		private double sum;
-		/** reward of this state */
-		private double reward;
-		/** rates to successor states */
-		private double[] succRates;
-		/** successor states */
-		private StateProp[] succStates;
-		/** number of incoming transitions of relevant states */
-		private int references;
-		/** true if and only if state probability above relevance threshold */
-		private boolean alive;
-		
-		/**
-		 * Constructs a new state property object.
-		 */
-		StateProp()
-		{
-			prob = 0.0;
-			nextProb = 0.0;
-			sum = 0.0;
-			reward = 0.0;
-			succRates = null;
-			succStates = null;
-			references = 0;
-			alive = true;
-		}
-		
-		/**
-		 * Set current state probability.
-		 * 
-		 * @param prob current state probability to set
-		 */
-		void setProb(double prob)
-		{
-			this.prob = prob;
-		}
-
-		/**
-		 * Gets current state probability.
-		 * 
-		 * @return current state probability
-		 */
-		double getProb()
-		{
-			return prob;
-		}
-
-		/**
-		 * Sets next state probability.
-		 * 
-		 * @param nextProb next state probability to set
-		 */
-		void setNextProb(double nextProb)
-		{
-			this.nextProb = nextProb;
-		}
-
-		/**
-		 * Adds value to next state probability.
-		 * 
-		 * @param add value to add to next state probability
-		 */
-		void addToNextProb(double add)
-		{
-			this.nextProb += add;
-		}
-
-		/**
-		 * Sets weighted sum probability.
-		 * 
-		 * @param sum weighted sum probability to set.
-		 */
-		void setSum(double sum)
-		{
-			this.sum = sum;
-		}
-
-		/**
-		 * Adds current probability times {@code poisson} to weighted sum probability.
-		 * 
-		 * @param poisson this value times current probability will be added to sum probability
-		 */
-		void addToSum(double poisson)
-		{
-			sum += poisson * prob;
-		}
-
-		/**
-		 * Gets weighted sum probability.
-		 * 
-		 * @return weighted sum probability
-		 */
-		double getSum()
-		{
-			return sum;
-		}
-
-		/**
-		 * Prepares next iteration step.
-		 * Sets current probability to next probability, and sets next
-		 * probability to zero.
-		 */
-		void prepareNextIteration()
-		{
-			prob = nextProb;
-			nextProb = 0.0;
-		}
-
-		/**
-		 * Set state reward.
-		 * 
-		 * @param reward state reward to set
-		 */
-		void setReward(double reward)
-		{
-			this.reward = reward;
-		}
-
-		/**
-		 * Get state reward.
-		 * 
-		 * @return state reward
-		 */
-		double getReward()
-		{
-			return reward;
-		}
-
-		/**
-		 * Sets rates to successor states.
-		 * Expects an array of rates, so that the rate to the successor
-		 * state set by {@setSuccStates} is the one given by the corresponding
-		 * index. The value {@code null} is allowed here.
-		 * 
-		 * @param succRates rates to successor states.
-		 */
-		void setSuccRates(double[] succRates)
-		{
-			this.succRates = succRates;
-		}
-
-		/**
-		 * Sets successor states.
-		 * Expects an array of successor states, so that the rate set by
-		 * {@setSuccRates} is the one given by the corresponding index.
-		 * The value {@code null} is allowed here.
-		 * 
-		 * @param succStates successor states
-		 */
-		void setSuccStates(StateProp[] succStates)
-		{
-			this.succStates = succStates;
-			if (succStates != null) {
-				for (int succNr = 0; succNr < succStates.length; succNr++) {
-					succStates[succNr].incReferences();
-				}
-			}
-		}
-
-		/**
-		 * Returns number of successor states of this state.
-		 * 
-		 * @return number of successor states
-		 */
-		int getNumSuccs()
-		{
-			if (succRates == null) {
-				return 0;
-			} else {
-				return succRates.length;
-			}
-		}
-		
-		/**
-		 * Gets successor rates.
-		 * 
-		 * @return successor rates
-		 */
-		double[] getSuccRates()
-		{
-			return succRates;
-		}
-
-		/**
-		 * Gets successor states.
-		 * 
-		 * @return successor states
-		 */
-		StateProp[] getSuccStates()
-		{
-			return succStates;
-		}
-
-		/**
-		 * Sets whether state is alive.
-		 * 
-		 * @param alive whether state should be set to being alive
-		 */
-		void setAlive(boolean alive)
-		{
-			this.alive = alive;
-		}
-
-		/**
-		 * Checks whether state is alive.
-		 * 
-		 * @return true iff state is alive
-		 */
-		boolean isAlive()
-		{
-			return alive;
-		}
-
-		/**
-		 * Increments the number of references of this state.
-		 * The number of references should correspond to the number of alive
-		 * states which have this state as successor state.
-		 */
-		void incReferences()
-		{
-			references++;
-		}
-
-		/**
-		 * Decrements the number of references of this state.
-		 * The number of references should correspond to the number of alive
-		 * states which have this state as successor state.
-		 */
-		void decReferences()
-		{
-			references--;
-		}
-
-		/**
-		 * Deletes this state.
-		 * This means basically removing all of its successors. Beforehand,
-		 * their reference counter is decreased, because this state does no
-		 * longer count as a model state. It is left in the model however,
-		 * because it might still be the successor state of some alive state.
-		 */
-		void delete()
-		{
-			if (null != succStates) {
-				for (int succNr = 0; succNr < succStates.length; succNr++) {
-					succStates[succNr].decReferences();
-				}
-			}
-			succStates = null;
-			succRates = null;
-			alive = false;
-			prob = 0.0;
-			nextProb = 0.0;
-		}
-
-		/**
-		 * Checks whether this state can be removed.
-		 * This is only the case if its probability is below the threshold
-		 * specified, and then only if there are no transitions from alive
-		 * states into this state.
-		 * 
-		 * @return true if and only if this state can be removed
-		 */
-		boolean canRemove()
-		{
-			return !alive && (0 == references);
-		}
-
-		/**
-		 * Checks whether this state has successors or not.
-		 * Will be true if and only if successor state array is nonnull.
-		 * 
-		 * @return whether this state has successors or not
-		 */
-		boolean hasSuccs()
-		{
-			return succStates != null;
-		}
-
-		/**
-		 * Returns the sum of all rates leaving to successor states.
-		 * 
-		 * @return sum of all rates leaving to successor states
-		 */
-		double sumRates()
-		{
-			if (null == succRates) {
-				return 0.0;
-			}
-			double sumRates = 0.0;
-			for (int rateNr = 0; rateNr < succRates.length; rateNr++) {
-				sumRates += succRates[rateNr];
-			}
-			return sumRates;
-		}
-	}
-	
 	/**
 	 * Enum to store type of analysis to perform.
 	 */
@@ -412,6 +105,8 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	private int numIntervals;
 	/** iterations after which switch to sparse matrix if no new/dropped states */
 	private int arrayThreshold;
+	/** number of threads to use for the transient steps */
+	private int numThreads;
 	
 	/** reward structure to use for analysis */
 	private RewardStruct rewStruct = null;
@@ -419,13 +114,46 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	private double value;
 	/** model constants */
 	private Values constantValues = null;
-	/** maps from state (assignment of variable values) to property object */
-	private LinkedHashMap<State,StateProp> states;
-	/** states for which successor rates are to be computed */
-	private ArrayList<State> addDistr;
-	/** states which are to be deleted */
-	private ArrayList<State> deleteStates;
-	/** initial size of state hash map */
+
+	/** number of slots used so far, including those of removed states */
+	private int numSlots;
+	/** number of states stored, i.e., slots used by states that have not been removed */
+	private int numStored;
+	/** state (assignment of variable values) of each slot; null if removed */
+	private State[] slotStates;
+	/** hash code of the state of each slot */
+	private int[] slotHashes;
+	/** hash index from states to slots (open addressing with linear probing); -1 if empty */
+	private int[] slotIndex;
+	/** current-step probability of each slot.
+	 * should contain initial probability before actual analysis is started.
+	 * will contain transient probability after analysis. */
+	private double[] prob;
+	/** next-step probability of each slot */
+	private double[] nextProb;
+	/** sum probability weighted with birth process distribution, for each slot */
+	private double[] sumProb;
+	/** reward of each slot */
+	private double[] reward;
+	/** successor slots of each slot; null if successors are not computed */
+	private int[][] succs;
+	/** sum of the rates to the successors of each slot */
+	private double[] sumRates;
+	/** predecessor slots of each slot (only from slots whose successors are computed),
+	 * one entry per transition; only the first {@code numPreds} entries are used */
+	private int[][] preds;
+	/** rates of the transitions from the predecessors of each slot */
+	private double[][] predRates;
+	/** number of incoming transitions of each slot (from slots whose successors are computed) */
+	private int[] numPreds;
+	/** true for slots whose state probability is above the relevance threshold */
+	private boolean[] alive;
+
+	/** slots of states for which successor rates are to be computed */
+	private int[] addDistr;
+	/** number of entries used in {@code addDistr} */
+	private int numAddDistr;
+	/** initial size of state table */
 	private final int initSize = 3000;
 	/** maximal total leaving rate of all states alive */
 	private double maxRate = 0.0;
@@ -469,6 +197,7 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		delta = settings.getDouble(PrismSettings.PRISM_FAU_DELTA);
 		numIntervals = settings.getInteger(PrismSettings.PRISM_FAU_INTERVALS);
 		arrayThreshold = settings.getInteger(PrismSettings.PRISM_FAU_ARRAYTHRESHOLD);
+		numThreads = settings.getInteger(PrismSettings.PRISM_NUM_THREADS);
 		analysisType = AnalysisType.TRANSIENT;
 		rewStruct = null;
 		target = Expression.False();
@@ -478,6 +207,7 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		specialLabels.addLabel(new ExpressionIdent("init"), new ExpressionIdent("init"));
 	}
 
+
 	/**
 	 * Sets analysis type to perform.
 	 * 
@@ -553,22 +283,20 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	public void setSink(Expression sink) throws PrismException
 	{
 		this.sink = sink;
-		if (states != null) {
-			for (Map.Entry<State,StateProp> statePair : states.entrySet()) {
-				State state = statePair.getKey();
-				StateProp prop = statePair.getValue();
+		if (slotStates != null) {
+			for (int slot = 0; slot < numSlots; slot++) {
+				State state = slotStates[slot];
+				if (state == null) {
+					continue;
+				}
 				modelGen.exploreState(state);
 				specialLabels.setLabel(0, modelGen.getNumTransitions() == 0 ? Expression.True() : Expression.False());
 				specialLabels.setLabel(1, initStates.contains(state) ? Expression.True() : Expression.False());
 				Expression evSink = sink.deepCopy();
 				evSink = (Expression) evSink.expandLabels(specialLabels);
 				if (evSink.evaluateBoolean(constantValues, state)) {
-					double[] succRates = new double[1];
-					StateProp[] succStates = new StateProp[1];
-					succRates[0] = 1.0;
-					succStates[0] = states.get(state);
-					prop.setSuccRates(succRates);
-					prop.setSuccStates(succStates);
+					clearSuccessors(slot);
+					setSuccessors(slot, new int[] { slot }, new double[] { 1.0 });
 				}
 			}
 		}
@@ -579,7 +307,7 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	 */
 	public int getNumStates()
 	{
-		return states.size();
+		return numStored;
 	}
 
 	/**
@@ -617,9 +345,7 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		}
 		
 		/* prepare fast adaptive uniformisation */
-		addDistr = new ArrayList<State>();
-		deleteStates = new ArrayList<State>();
-		states = new LinkedHashMap<State,StateProp>(initSize);
+		initStateTable();
 		value = 0.0;
 		initStates = new HashSet<State>();
 		ListIterator<State> it = initDist.statesList.listIterator();
@@ -631,23 +357,25 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		}
 		it = initDist.statesList.listIterator();
 		for (int stateNr = 0; stateNr < initDist.size; stateNr++) {
-			State initState = it.next();
-			computeStateRatesAndRewards(initState);
-			states.get(initState).setProb(values[stateNr]);
-			maxRate = Math.max(maxRate, states.get(initState).sumRates() * 1.02);			
+			int slot = getSlot(it.next());
+			computeStateRatesAndRewards(slot);
+			prob[slot] = values[stateNr];
+			maxRate = Math.max(maxRate, sumRates[slot] * 1.02);
 		}
 
 		/* run fast adaptive uniformisation */
 		computeTransientProbsAdaptive(time);
 
 		/* prepare and return results */
-		ArrayList<State> statesList = new ArrayList<State>(states.size());
-		double[] probsArr = new double[states.size()];
+		ArrayList<State> statesList = new ArrayList<State>(numStored);
+		double[] probsArr = new double[numStored];
 		int probsArrEntry = 0;
-		for (Map.Entry<State,StateProp> statePair : states.entrySet()) {
-			statesList.add(statePair.getKey());
-			probsArr[probsArrEntry] = statePair.getValue().getProb();
-			probsArrEntry++;
+		for (int slot = 0; slot < numSlots; slot++) {
+			if (slotStates[slot] != null) {
+				statesList.add(slotStates[slot]);
+				probsArr[probsArrEntry] = prob[slot];
+				probsArrEntry++;
+			}
 		}
 		StateValues probs = new StateValues();
 		probs.type = TypeDouble.getInstance();
@@ -671,10 +399,8 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	 */
 	public void computeTransientProbsAdaptive(double time) throws PrismException
 	{
-		if (addDistr == null) {
-			addDistr = new ArrayList<State>();
-			deleteStates = new ArrayList<State>();
-			states = new LinkedHashMap<State,StateProp>(initSize);
+		if (slotStates == null) {
+			initStateTable();
 			value = 0.0;
 			prepareInitialDistribution();
 		}
@@ -685,44 +411,51 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		}
 		if (initIval != 0.0) {
 			iterateAdaptiveInterval(initIval);
-			for (StateProp prop : states.values()) {
-				prop.setProb(prop.getSum());
-				prop.setSum(0.0);
-				prop.setNextProb(0.0);
-			}
+			startNextInterval();
 			updateStates();
 		}
 
 		for (int ivalNr = 0; ivalNr < numIntervals; ivalNr++) {
 			double interval = (time - initIval) / numIntervals;
 			iterateAdaptiveInterval(interval);
-			for (StateProp prop : states.values()) {
-				prop.setProb(prop.getSum());
-				prop.setSum(0.0);
-				prop.setNextProb(0.0);
-			}
+			startNextInterval();
 			updateStates();
 		}
 		if (AnalysisType.REW_INST == analysisType) {
-			for (StateProp prop : states.values()) {
-				value += prop.getProb() * prop.getReward();
+			for (int slot = 0; slot < numSlots; slot++) {
+				value += prob[slot] * reward[slot];
 			}
 		} else {
-			for (Map.Entry<State,StateProp> statePair : states.entrySet()) {
-				State state = statePair.getKey();
-				StateProp prop = statePair.getValue();
+			for (int slot = 0; slot < numSlots; slot++) {
+				State state = slotStates[slot];
+				if (state == null) {
+					continue;
+				}
 				modelGen.exploreState(state);
 				specialLabels.setLabel(0, modelGen.getNumTransitions() == 0 ? Expression.True() : Expression.False());
 				specialLabels.setLabel(1, initStates.contains(state) ? Expression.True() : Expression.False());
 				Expression evTarget = target.deepCopy();
 				evTarget = (Expression) evTarget.expandLabels(specialLabels);
 				if (AnalysisType.REACH == analysisType) {
-					value += prop.getProb() * (evTarget.evaluateBoolean(constantValues, state) ? 1.0 : 0.0);
+					value += prob[slot] * (evTarget.evaluateBoolean(constantValues, state) ? 1.0 : 0.0);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Prepares the next time interval: sets the current probability of each state
+	 * to its weighted sum probability, which is reset, as is the next probability.
+	 */
+	private void startNextInterval()
+	{
+		for (int slot = 0; slot < numSlots; slot++) {
+			prob[slot] = sumProb[slot];
+			sumProb[slot] = 0.0;
+			nextProb[slot] = 0.0;
+		}
+	}
+
 	/**
 	 * Performs fast adaptive uniformisation for a single time interval.
 	 * 
@@ -751,11 +484,7 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 				birthProcTimer = System.currentTimeMillis() - birthProcTimer;
 				birthProbSum += prob;
 				collectValuePostIter(prob, birthProbSum);
-				for (StateProp prop : states.values()) {
-					prop.addToSum(prob);
-				}
-				
-				mvMult(maxRate);
+				mvMult(maxRate, prob);
 				updateStates();
 				iters++;
 			}
@@ -784,128 +513,100 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	private int arrayIterate(int iters) throws PrismException
 	{
 		/* build backwards matrix and map values */
-		int numStates = states.size();
+		int numStates = numStored;
 		int numTransitions = 0;
-		for (StateProp prop : states.values()) {
-			numTransitions += prop.getNumSuccs() + 1;
-		}
 		int stateNr = 0;
-		HashMap<StateProp,Integer> stateToNumber = new HashMap<StateProp,Integer>(numStates);
-		StateProp[] numberToState = new StateProp[numStates];
-		for (StateProp prop : states.values()) {
-			if (prop.isAlive()) {
-				stateToNumber.put(prop, stateNr);
-				numberToState[stateNr] = prop;
+		int[] slotToNumber = new int[numSlots];
+		int[] numberToSlot = new int[numStates];
+		for (int slot = 0; slot < numSlots; slot++) {
+			if (slotStates[slot] != null && alive[slot]) {
+				slotToNumber[slot] = stateNr;
+				numberToSlot[stateNr] = slot;
 				stateNr++;
 			}
 		}
 		int numAlive = stateNr;
-		for (StateProp prop : states.values()) {
-			if (!prop.isAlive()) {
-				stateToNumber.put(prop, stateNr);
-				numberToState[stateNr] = prop;
+		for (int slot = 0; slot < numSlots; slot++) {
+			if (slotStates[slot] != null && !alive[slot]) {
+				slotToNumber[slot] = stateNr;
+				numberToSlot[stateNr] = slot;
 				stateNr++;
 			}
 		}
+		for (stateNr = 0; stateNr < numStates; stateNr++) {
+			numTransitions += numPreds[numberToSlot[stateNr]] + 1;
+		}
 
+		/* each row consists of the incoming transitions, followed by the diagonal entry */
 		double[] inProbs = new double[numTransitions];
 		int[] rows = new int[numStates + 1];
 		int[] cols = new int[numTransitions];
-		double[] outRates = new double[numStates];
-		for (StateProp prop : states.values()) {
-			StateProp[] succStates = prop.getSuccStates();
-			if (succStates != null) {
-				for (StateProp succ : succStates) {
-					rows[stateToNumber.get(succ) + 1]++;
-				}
-			}
-			rows[stateToNumber.get(prop) + 1]++;
-		}
 		for (stateNr = 0; stateNr < numStates; stateNr++) {
-			rows[stateNr + 1] += rows[stateNr];
-		}
-
-		for (StateProp prop : states.values()) {
-			int stateNumber = stateToNumber.get(prop);
-			StateProp[] succStates = prop.getSuccStates();
-			double[] succRates = prop.getSuccRates();
-			if (succStates != null) {
-				for (int i = 0; i < succStates.length; i++) {
-					StateProp succState = succStates[i];
-					int succStateNumber = stateToNumber.get(succState);
-					double succRate = succRates[i];
-					cols[rows[succStateNumber]] = stateNumber;
-					inProbs[rows[succStateNumber]] = succRate / maxRate;
-					rows[succStateNumber]++;
-					outRates[stateNumber] += succRate;
-				}
-			}
-		}
-
-		for (stateNr = 0; stateNr < numStates; stateNr++) {
-			cols[rows[stateNr]] = stateNr;
-			inProbs[rows[stateNr]] = (maxRate - outRates[stateNr]) / maxRate;
-		}
-
-		Arrays.fill(rows, 0);
-		for (StateProp prop : states.values()) {
-			StateProp[] succStates = prop.getSuccStates();
-			if (succStates != null) {
-				for (StateProp succ : succStates) {
-					rows[stateToNumber.get(succ) + 1]++;
-				}
+			int slot = numberToSlot[stateNr];
+			int entry = rows[stateNr];
+			for (int pred = 0; pred < numPreds[slot]; pred++) {
+				cols[entry] = slotToNumber[preds[slot][pred]];
+				inProbs[entry] = predRates[slot][pred] / maxRate;
+				entry++;
 			}
-			rows[stateToNumber.get(prop) + 1]++;
-		}
-		for (stateNr = 0; stateNr < numStates; stateNr++) {
-			rows[stateNr + 1] += rows[stateNr];
+			cols[entry] = stateNr;
+			inProbs[entry] = (maxRate - sumRates[slot]) / maxRate;
+			rows[stateNr + 1] = entry + 1;
 		}
 
 		double[] rewards = new double[numStates];
 		double[] probs = new double[numStates];
 		double[] nextProbs = new double[numStates];
 		double[] sum = new double[numStates];
-		for (stateNr = 0; stateNr < numberToState.length; stateNr++) {
-			StateProp prop = numberToState[stateNr];
+		for (stateNr = 0; stateNr < numStates; stateNr++) {
+			int slot = numberToSlot[stateNr];
 			if (analysisType == AnalysisType.REW_CUMUL) {
-				rewards[stateNr] = prop.getReward();
+				rewards[stateNr] = reward[slot];
 			}
-			probs[stateNr] = prop.getProb();
-			sum[stateNr] = prop.getSum();
+			probs[stateNr] = prob[slot];
+			sum[stateNr] = sumProb[slot];
 		}
 
-		/* iterate using matrix */
-		boolean canArray = true;
-		while (birthProbSum < (1 - epsilon) && canArray) {
+		/* iterate using matrix (rows are independent, so they are computed in parallel) */
+		boolean[] canArray = new boolean[] { true };
+		while (birthProbSum < (1 - epsilon) && canArray[0]) {
 			//			timer2 = System.currentTimeMillis();
 			double prob = birthProc.calculateNextProb(maxRate);
 			birthProbSum += prob;
-			double mixed = (1.0 - birthProbSum) / maxRate;
-			for (stateNr = 0; stateNr < numStates; stateNr++) {
-				value += probs[stateNr] * mixed * rewards[stateNr];
-				sum[stateNr] += prob * probs[stateNr];
-				nextProbs[stateNr] = 0.0;
-				for (int succNr = rows[stateNr]; succNr < rows[stateNr+1]; succNr++) {
-					nextProbs[stateNr] += inProbs[succNr] * probs[cols[succNr]];
-				}
-				if ((stateNr < numAlive) != (nextProbs[stateNr] > delta)) {
-					canArray = false;
-				} else if (stateNr >= numAlive) {
-				    nextProbs[stateNr] = 0.0;
+			if (analysisType == AnalysisType.REW_CUMUL) {
+				double mixed = (1.0 - birthProbSum) / maxRate;
+				for (stateNr = 0; stateNr < numStates; stateNr++) {
+					value += probs[stateNr] * mixed * rewards[stateNr];
 				}
 			}
-			double[] swap = probs;
-			probs = nextProbs;
-			nextProbs = swap;
+			final double[] curProbs = probs;
+			final double[] newProbs = nextProbs;
+			Parallel.forRange(numThreads, 0, numStates, (from, to) -> {
+				for (int n = from; n < to; n++) {
+					sum[n] += prob * curProbs[n];
+					double next = 0.0;
+					for (int succNr = rows[n]; succNr < rows[n + 1]; succNr++) {
+						next += inProbs[succNr] * curProbs[cols[succNr]];
+					}
+					if ((n < numAlive) != (next > delta)) {
+						canArray[0] = false;
+					} else if (n >= numAlive) {
+						next = 0.0;
+					}
+					newProbs[n] = next;
+				}
+			});
+			probs = newProbs;
+			nextProbs = curProbs;
 
 			iters++;
 		}
 		
 		/* map back, update states and return current iteration */
-		for (stateNr = 0; stateNr < numberToState.length; stateNr++) {
-			StateProp prop = numberToState[stateNr];
-			prop.setProb(probs[stateNr]);
-			prop.setSum(sum[stateNr]);
+		for (stateNr = 0; stateNr < numStates; stateNr++) {
+			int slot = numberToSlot[stateNr];
+			prob[slot] = probs[stateNr];
+			sumProb[slot] = sum[stateNr];
 		}
 		updateStates();
 		return iters;
@@ -933,8 +634,8 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 			break;
 		case REW_CUMUL:
 			double mixed = (1.0 - probSum) / maxRate;
-			for (StateProp prop : states.values()) {
-				value += prop.getProb() * mixed * prop.getReward();
+			for (int slot = 0; slot < numSlots; slot++) {
+				value += this.prob[slot] * mixed * reward[slot];
 			}
 			break;
 		}
@@ -954,25 +655,29 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	private void updateStates() throws PrismException
 	{
 		maxRate = 0.0;
-		addDistr.clear();
-		for (Map.Entry<State,StateProp> statePair : states.entrySet()) {
-			State state = statePair.getKey();
-			StateProp prop = statePair.getValue();
-			if (prop.getProb() > delta) {
-				prop.setAlive(true);
-				if (!prop.hasSuccs()) {
+		numAddDistr = 0;
+		for (int slot = 0; slot < numSlots; slot++) {
+			if (slotStates[slot] == null) {
+				continue;
+			}
+			if (prob[slot] > delta) {
+				alive[slot] = true;
+				if (succs[slot] == null) {
 					itersUnchanged = 0;
-					addDistr.add(state);
+					if (numAddDistr == addDistr.length) {
+						addDistr = Arrays.copyOf(addDistr, 2 * addDistr.length);
+					}
+					addDistr[numAddDistr++] = slot;
 				} else {
-					maxRate = Math.max(maxRate, prop.sumRates());
+					maxRate = Math.max(maxRate, sumRates[slot]);
 				}
 			} else {
-				prop.delete();
+				deleteState(slot);
 			}
 		}
-		for (int stateNr = 0; stateNr < addDistr.size(); stateNr++) {
-			computeStateRatesAndRewards(addDistr.get(stateNr));
-			maxRate = Math.max(maxRate, states.get(addDistr.get(stateNr)).sumRates());
+		for (int i = 0; i < numAddDistr; i++) {
+			computeStateRatesAndRewards(addDistr[i]);
+			maxRate = Math.max(maxRate, sumRates[addDistr[i]]);
 		}
 		maxRate *= 1.02;
 
@@ -984,21 +689,17 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	 * This affects states which both have a present-state probability below
 	 * the given threshold, and do not have incoming transitions from states
 	 * with a relevant probability mass.
+	 * If many slots have become free, the state table is compacted.
 	 */
 	private void removeDeletedStates()
 	{
 		boolean unchanged = true;
-		for (Map.Entry<State,StateProp> statePair : states.entrySet()) {
-			State state = statePair.getKey();
-			StateProp prop = statePair.getValue();
-			if (prop.canRemove()) {
-				deleteStates.add(state);
+		for (int slot = 0; slot < numSlots; slot++) {
+			if (slotStates[slot] != null && canRemove(slot)) {
 				unchanged = false;
-			}
-		}
-		if (!keepSumProb) {
-			for (int i = 0; i < deleteStates.size(); i++) {
-				states.remove(deleteStates.get(i));
+				if (!keepSumProb) {
+					removeState(slot);
+				}
 			}
 		}
 		if (unchanged) {
@@ -1006,7 +707,9 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 		} else {
 			itersUnchanged = 0;
 		}
-		deleteStates.clear();
+		if (numSlots - numStored > Math.max(numStored, initSize)) {
+			compactStateTable();
+		}
 	}
     
 	/**
@@ -1019,10 +722,10 @@ public final class FastAdaptiveUniformisation extends PrismComponent
     	initStates = new HashSet<State>();
 		State initState = modelGen.getInitialState();
 		initStates.add(initState);
-		addToModel(initState);
-		computeStateRatesAndRewards(initState);
-		states.get(initState).setProb(1.0);
-		maxRate = states.get(initState).sumRates() * 1.02;
+		int slot = addToModel(initState);
+		computeStateRatesAndRewards(slot);
+		prob[slot] = 1.0;
+		maxRate = sumRates[slot] * 1.02;
 	}
 
     /**
@@ -1033,8 +736,8 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	public void computeTotalDiscreteLoss()
 	{
 		double totalProb = 0;
-		for (StateProp prop : states.values()) {
-			totalProb += prop.getSum();
+		for (int slot = 0; slot < numSlots; slot++) {
+			totalProb += sumProb[slot];
 		}
 		totalProb += totalProbSetZero;
 		
@@ -1056,119 +759,434 @@ public final class FastAdaptiveUniformisation extends PrismComponent
 	 * @throws PrismException 
 	 */
 	public void clearSinkStates() throws PrismException {
-		for (Map.Entry<State,StateProp> statePair : states.entrySet()) {
-			State state = statePair.getKey();
-			StateProp prop = statePair.getValue();
+		for (int slot = 0; slot < numSlots; slot++) {
+			State state = slotStates[slot];
+			if (state == null) {
+				continue;
+			}
 			modelGen.exploreState(state);
 			specialLabels.setLabel(0, modelGen.getNumTransitions() == 0 ? Expression.True() : Expression.False());
 			specialLabels.setLabel(1, initStates.contains(state) ? Expression.True() : Expression.False());
 			Expression evSink = sink.deepCopy();
 			evSink = (Expression) evSink.expandLabels(specialLabels);
 			if (evSink.evaluateBoolean(constantValues, state)) {
-				totalProbSetZero += prop.getProb();
-				prop.setProb(0.0);
+				totalProbSetZero += prob[slot];
+				prob[slot] = 0.0;
 			}
 		}
 	}
-	
+
+	/**
+	 * Creates an empty state table.
+	 */
+	private void initStateTable()
+	{
+		numSlots = 0;
+		numStored = 0;
+		slotStates = new State[initSize];
+		slotHashes = new int[initSize];
+		slotIndex = new int[Integer.highestOneBit(4 * initSize - 1)];
+		Arrays.fill(slotIndex, -1);
+		prob = new double[initSize];
+		nextProb = new double[initSize];
+		sumProb = new double[initSize];
+		reward = new double[initSize];
+		succs = new int[initSize][];
+		sumRates = new double[initSize];
+		preds = new int[initSize][];
+		predRates = new double[initSize][];
+		numPreds = new int[initSize];
+		alive = new boolean[initSize];
+		addDistr = new int[16];
+		numAddDistr = 0;
+	}
+
+	/**
+	 * Hash code used for the index of the state table.
+	 */
+	private static int hash(State state)
+	{
+		int h = state.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Gets the slot of a state, or -1 if the state is not stored.
+	 * 
+	 * @param state state to look up
+	 * @return slot of the state
+	 */
+	private int getSlot(State state)
+	{
+		int h = hash(state);
+		int mask = slotIndex.length - 1;
+		for (int i = h & mask; slotIndex[i] != -1; i = (i + 1) & mask) {
+			int slot = slotIndex[i];
+			if (slotHashes[slot] == h && slotStates[slot].equals(state)) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Enters a slot into the index of the state table.
+	 */
+	private void indexSlot(int slot)
+	{
+		int mask = slotIndex.length - 1;
+		int i = slotHashes[slot] & mask;
+		while (slotIndex[i] != -1) {
+			i = (i + 1) & mask;
+		}
+		slotIndex[i] = slot;
+	}
+
+	/**
+	 * Removes a slot from the index of the state table
+	 * (moving back later entries of the probe sequence as needed).
+	 */
+	private void unindexSlot(int slot)
+	{
+		int mask = slotIndex.length - 1;
+		int i = slotHashes[slot] & mask;
+		while (slotIndex[i] != slot) {
+			i = (i + 1) & mask;
+		}
+		slotIndex[i] = -1;
+		for (int j = (i + 1) & mask; slotIndex[j] != -1; j = (j + 1) & mask) {
+			int home = slotHashes[slotIndex[j]] & mask;
+			// entry at j can be moved to i if its home position is not cyclically in (i, j]
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				slotIndex[i] = slotIndex[j];
+				slotIndex[j] = -1;
+				i = j;
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds the index of the state table, with the given size (a power of 2).
+	 */
+	private void rebuildIndex(int size)
+	{
+		slotIndex = new int[size];
+		Arrays.fill(slotIndex, -1);
+		for (int slot = 0; slot < numSlots; slot++) {
+			if (slotStates[slot] != null) {
+				indexSlot(slot);
+			}
+		}
+	}
+
+	/**
+	 * Grows the arrays of the state table, so that there is space for at least one more slot.
+	 */
+	private void ensureSlotCapacity()
+	{
+		if (numSlots < slotStates.length) {
+			return;
+		}
+		int capacity = 2 * slotStates.length;
+		slotStates = Arrays.copyOf(slotStates, capacity);
+		slotHashes = Arrays.copyOf(slotHashes, capacity);
+		prob = Arrays.copyOf(prob, capacity);
+		nextProb = Arrays.copyOf(nextProb, capacity);
+		sumProb = Arrays.copyOf(sumProb, capacity);
+		reward = Arrays.copyOf(reward, capacity);
+		succs = Arrays.copyOf(succs, capacity);
+		sumRates = Arrays.copyOf(sumRates, capacity);
+		preds = Arrays.copyOf(preds, capacity);
+		predRates = Arrays.copyOf(predRates, capacity);
+		numPreds = Arrays.copyOf(numPreds, capacity);
+		alive = Arrays.copyOf(alive, capacity);
+	}
+
+	/**
+	 * Compacts the state table, i.e., moves the states stored to the first slots
+	 * (keeping their order), and renumbers successors and predecessors accordingly.
+	 */
+	private void compactStateTable()
+	{
+		int[] newSlots = new int[numSlots];
+		int numNew = 0;
+		for (int slot = 0; slot < numSlots; slot++) {
+			newSlots[slot] = slotStates[slot] == null ? -1 : numNew++;
+		}
+		for (int slot = 0; slot < numSlots; slot++) {
+			int newSlot = newSlots[slot];
+			if (newSlot == -1) {
+				continue;
+			}
+			slotStates[newSlot] = slotStates[slot];
+			slotHashes[newSlot] = slotHashes[slot];
+			prob[newSlot] = prob[slot];
+			nextProb[newSlot] = nextProb[slot];
+			sumProb[newSlot] = sumProb[slot];
+			reward[newSlot] = reward[slot];
+			succs[newSlot] = succs[slot];
+			sumRates[newSlot] = sumRates[slot];
+			preds[newSlot] = preds[slot];
+			predRates[newSlot] = predRates[slot];
+			numPreds[newSlot] = numPreds[slot];
+			alive[newSlot] = alive[slot];
+			if (succs[newSlot] != null) {
+				for (int i = 0; i < succs[newSlot].length; i++) {
+					succs[newSlot][i] = newSlots[succs[newSlot][i]];
+				}
+			}
+			for (int i = 0; i < numPreds[newSlot]; i++) {
+				preds[newSlot][i] = newSlots[preds[newSlot][i]];
+			}
+		}
+		for (int slot = numNew; slot < numSlots; slot++) {
+			clearSlot(slot);
+		}
+		numSlots = numNew;
+		rebuildIndex(slotIndex.length);
+	}
+
+	/**
+	 * Resets a slot that is not used (any more).
+	 */
+	private void clearSlot(int slot)
+	{
+		slotStates[slot] = null;
+		prob[slot] = 0.0;
+		nextProb[slot] = 0.0;
+		sumProb[slot] = 0.0;
+		reward[slot] = 0.0;
+		succs[slot] = null;
+		sumRates[slot] = 0.0;
+		preds[slot] = null;
+		predRates[slot] = null;
+		numPreds[slot] = 0;
+		alive[slot] = false;
+	}
+
 	/**
 	 * Adds @a state to model.
-	 * Computes reward for this states, creates entry in map of states,
+	 * Computes reward for this states, creates entry in the state table,
 	 * and updates number of states
 	 * 
 	 * @param state state to add
+	 * @return slot of the state
 	 * @throws PrismException thrown if something wrong happens in underlying methods
 	 */
-	private void addToModel(State state) throws PrismException
+	private int addToModel(State state) throws PrismException
+	{
+		double stateReward = computeRewards(state);
+		ensureSlotCapacity();
+		int slot = numSlots++;
+		clearSlot(slot);
+		slotStates[slot] = state;
+		slotHashes[slot] = hash(state);
+		reward[slot] = stateReward;
+		alive[slot] = true;
+		numStored++;
+		if (2 * numStored > slotIndex.length) {
+			rebuildIndex(2 * slotIndex.length);
+		} else {
+			indexSlot(slot);
+		}
+		maxNumStates = Math.max(maxNumStates, numStored);
+		return slot;
+	}
+
+	/**
+	 * Removes the state of a slot from the state table.
+	 * The slot is freed once the table is compacted.
+	 */
+	private void removeState(int slot)
+	{
+		unindexSlot(slot);
+		clearSlot(slot);
+		numStored--;
+	}
+
+	/**
+	 * Sets the successors of a slot (whose successors are not yet set),
+	 * with the corresponding rates, and adds the transitions to their predecessors.
+	 * The values {@code null} are allowed here.
+	 * 
+	 * @param slot slot to set successors of
+	 * @param succSlots successor slots
+	 * @param succRates rates to successor slots
+	 */
+	private void setSuccessors(int slot, int[] succSlots, double[] succRates)
+	{
+		succs[slot] = succSlots;
+		sumRates[slot] = 0.0;
+		if (succSlots != null) {
+			for (int succNr = 0; succNr < succSlots.length; succNr++) {
+				sumRates[slot] += succRates[succNr];
+				addPredecessor(succSlots[succNr], slot, succRates[succNr]);
+			}
+		}
+	}
+
+	/**
+	 * Removes the successors of a slot, and the corresponding transitions from their predecessors.
+	 */
+	private void clearSuccessors(int slot)
 	{
-		StateProp prop = new StateProp();
-		prop.setReward(computeRewards(state));
-		states.put(state, prop);
-		maxNumStates = Math.max(maxNumStates, states.size());
+		int[] succSlots = succs[slot];
+		if (succSlots != null) {
+			for (int succNr = 0; succNr < succSlots.length; succNr++) {
+				removePredecessor(succSlots[succNr], slot);
+			}
+		}
+		succs[slot] = null;
+		sumRates[slot] = 0.0;
 	}
 
 	/**
-	 * Computes successor rates and rewards for a given state.
+	 * Adds an incoming transition (from {@code pred}, with rate {@code rate}) to a slot.
+	 */
+	private void addPredecessor(int slot, int pred, double rate)
+	{
+		int num = numPreds[slot];
+		if (preds[slot] == null) {
+			preds[slot] = new int[2];
+			predRates[slot] = new double[2];
+		} else if (num == preds[slot].length) {
+			preds[slot] = Arrays.copyOf(preds[slot], 2 * num);
+			predRates[slot] = Arrays.copyOf(predRates[slot], 2 * num);
+		}
+		preds[slot][num] = pred;
+		predRates[slot][num] = rate;
+		numPreds[slot] = num + 1;
+	}
+
+	/**
+	 * Removes an incoming transition from {@code pred} from a slot
+	 * (replacing it with the last one).
+	 */
+	private void removePredecessor(int slot, int pred)
+	{
+		int last = numPreds[slot] - 1;
+		for (int i = last; i >= 0; i--) {
+			if (preds[slot][i] == pred) {
+				preds[slot][i] = preds[slot][last];
+				predRates[slot][i] = predRates[slot][last];
+				numPreds[slot] = last;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Deletes the state of a slot.
+	 * This means basically removing all of its successors, and its transitions
+	 * to them, because this state does no longer count as a model state.
+	 * It is left in the model however, because it might still be the
+	 * successor state of some alive state.
+	 */
+	private void deleteState(int slot)
+	{
+		clearSuccessors(slot);
+		alive[slot] = false;
+		prob[slot] = 0.0;
+		nextProb[slot] = 0.0;
+	}
+
+	/**
+	 * Checks whether the state of a slot can be removed.
+	 * This is only the case if its probability is below the threshold
+	 * specified, and then only if there are no transitions from alive
+	 * states into this state.
+	 * 
+	 * @return true if and only if this state can be removed
+	 */
+	private boolean canRemove(int slot)
+	{
+		return !alive[slot] && (0 == numPreds[slot]);
+	}
+
+	/**
+	 * Computes successor rates and rewards for the state of a given slot.
 	 * Rewards computed depend on the reward structure set by
 	 * {@code setRewardStruct}.
 	 * 
-	 * @param state state to compute successor rates and rewards for
+	 * @param slot slot of the state to compute successor rates and rewards for
 	 * @throws PrismException thrown if something goes wrong
 	 */
-	private void computeStateRatesAndRewards(State state) throws PrismException
+	private void computeStateRatesAndRewards(int slot) throws PrismException
 	{
+		State state = slotStates[slot];
 		double[] succRates;
-		StateProp[] succStates;
+		int[] succSlots;
 		modelGen.exploreState(state);
 		specialLabels.setLabel(0, modelGen.getNumTransitions() == 0 ? Expression.True() : Expression.False());
 		specialLabels.setLabel(1, initStates.contains(state) ? Expression.True() : Expression.False());
 		Expression evSink = sink.deepCopy();
 		evSink = (Expression) evSink.expandLabels(specialLabels);
 		if (evSink.evaluateBoolean(constantValues, state)) {
-			succRates = new double[1];
-			succStates = new StateProp[1];
-			succRates[0] = 1.0;
-			succStates[0] = states.get(state);
+			succRates = new double[] { 1.0 };
+			succSlots = new int[] { slot };
 		} else {
 			int ntAll = modelGen.getNumTransitions();
 			if (ntAll > 0) {
 				succRates = new double[ntAll];
-				succStates = new StateProp[ntAll];
+				succSlots = new int[ntAll];
 
 				int t = 0;
 				for (int i = 0, nc = modelGen.getNumChoices(); i < nc; i++) {
 					for (int j = 0, ntChoice = modelGen.getNumTransitions(i); j < ntChoice; j++) {
 						State succState = modelGen.computeTransitionTarget(i, j);
-						StateProp succProp = states.get(succState);
-						if (null == succProp) {
-							addToModel(succState);
-							succProp = states.get(succState);
+						int succSlot = getSlot(succState);
+						if (succSlot == -1) {
+							succSlot = addToModel(succState);
 
 							// re-explore state, as call to addToModel may have explored succState
 							modelGen.exploreState(state);
 						}
 						succRates[t] = modelGen.getTransitionProbability(i, j);
-						succStates[t] = succProp;
+						succSlots[t] = succSlot;
 						t++;
 					}
 				}
 			} else {
-				succRates = new double[1];
-				succStates = new StateProp[1];
-				succRates[0] = 1.0;
-				succStates[0] = states.get(state);
+				succRates = new double[] { 1.0 };
+				succSlots = new int[] { slot };
 			}
 		}
-		states.get(state).setSuccRates(succRates);
-		states.get(state).setSuccStates(succStates);
+		setSuccessors(slot, succSlots, succRates);
 	}
 
 	/**
-	 * Perform a single matrix-vector multiplication.
+	 * Perform a single matrix-vector multiplication, and adds the current
+	 * probabilities times {@code poisson} to the weighted sum probabilities.
+	 * The next probability of each state is computed from its incoming
+	 * transitions, so states are processed independently (in parallel).
 	 * 
 	 * @param maxRate maximal total leaving rate sum in living states
+	 * @param poisson weight of current probabilities in weighted sum probabilities
 	 */
-	private void mvMult(double maxRate)
+	private void mvMult(double maxRate, double poisson)
 	{
-		for (StateProp prop : states.values()) {
-			double[] succRates = prop.getSuccRates();
-			StateProp[] succStates = prop.getSuccStates();
-			double stateProb = prop.getProb();
-			if (null != succStates) {
-				double sumRates = 0.0;
-				for (int succ = 0; succ < succStates.length; succ++) {
-				    double rate = succRates[succ];
-				    sumRates += rate;
-				    succStates[succ].addToNextProb((rate / maxRate) * stateProb);
+		Parallel.forRange(numThreads, 0, numSlots, (from, to) -> {
+			for (int slot = from; slot < to; slot++) {
+				double stateProb = prob[slot];
+				sumProb[slot] += poisson * stateProb;
+				double next = 0.0;
+				if (succs[slot] != null) {
+					next = ((maxRate - sumRates[slot]) / maxRate) * stateProb;
+				}
+				int[] slotPreds = preds[slot];
+				double[] slotPredRates = predRates[slot];
+				for (int pred = 0; pred < numPreds[slot]; pred++) {
+					next += (slotPredRates[pred] / maxRate) * prob[slotPreds[pred]];
 				}
-				prop.addToNextProb(((maxRate - sumRates) / maxRate) * prop.getProb());
+				nextProb[slot] = next;
 			}
-		}
-		for (StateProp prop : states.values()) {
-			prop.prepareNextIteration();
-		}
+		});
+		double[] swap = prob;
+		prob = nextProb;
+		nextProb = swap;
 	}
 
+
 	/**
 	 * Checks if rewards are needed for analysis.
 	 * 
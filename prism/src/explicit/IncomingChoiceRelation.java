@@ -26,9 +26,12 @@
 
 package explicit;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import common.Parallel;
 import prism.PrismComponent;
 
 /**
@@ -39,6 +42,12 @@ import prism.PrismComponent;
  * As NondetModel only provide easy access to successors of states,
  * the predecessor relation is computed and stored for subsequent efficient access.
  * <p>
+ * As for PredecessorRelation, the relation is stored in compressed form:
+ * the source states and choice indices of the incoming choices of all states are stored
+ * in two arrays, ordered by state (and then by source state and choice index).
+ * They can be accessed without allocation via {@link #getNumIncomingChoices(int)},
+ * {@link #getIncomingChoiceState(int, int)} and {@link #getIncomingChoiceIndex(int, int)}.
+ * <p>
  * Note: Naturally, if the NondetModel changes, the predecessor relation
  * has to be recomputed to remain accurate.
  */
@@ -107,9 +116,16 @@ public class IncomingChoiceRelation
 	};
 
 	/**
-	 * pre[i] provides the list of incoming choices of the state with index i.
+	 * preStarts[i] is the index (into preStates/preChoices) of the first incoming choice of state i,
+	 * with an extra entry at the end.
 	 */
-	List<ArrayList<Choice>> pre;
+	private int[] preStarts;
+
+	/** The source states of the incoming choices of all states (see preStarts) */
+	private int[] preStates;
+
+	/** The choice indices of the incoming choices of all states (see preStarts) */
+	private int[] preChoices;
 
 	/**
 	 * Constructor. Computes the predecessor relation for the given model
@@ -119,41 +135,182 @@ public class IncomingChoiceRelation
 	 */
 	public IncomingChoiceRelation(NondetModel model)
 	{
-		pre = new ArrayList<ArrayList<Choice>>(model.getNumStates());
-		// construct the (empty) array list for all states
-		for (int s = 0; s < model.getNumStates(); s++) {
-			pre.add(s, new ArrayList<Choice>());
-		}
+		this(model, 1);
+	}
 
-		compute(model);
+	/**
+	 * Constructor. Computes the predecessor relation for the given model
+	 * by considering the successors of each state, using {@code numThreads} threads
+	 * for large models (the result does not depend on the number of threads).
+	 *
+	 * @param model the Model
+	 * @param numThreads the number of threads
+	 */
+	public IncomingChoiceRelation(NondetModel model, int numThreads)
+	{
+		if (numThreads > 1 && model.getNumStates() >= PredecessorRelation.PARALLEL_MIN_STATES && PredecessorRelation.supportsParallel(model)) {
+			computeParallel(model, numThreads);
+		} else {
+			compute(model);
+		}
 	}
 
-	/** Compute the predecessor relation using getSuccessorsIterator. */
+	/**
+	 * Compute the predecessor relation using getSuccessors,
+	 * in two passes: first counting the incoming choices of each state, then storing them.
+	 */
 	private void compute(NondetModel model)
 	{
 		int n = model.getNumStates();
 
+		// Count the incoming choices of each state (in preStarts[successor + 1])
+		preStarts = new int[n + 1];
 		for (int s = 0; s < n; s++) {
 			for (int c = 0, m = model.getNumChoices(s); c < m; c++) {
-				Choice choice = new Choice(s, c);
+				SuccessorsIterator it = model.getSuccessors(s, c).distinct();
+				while (it.hasNext()) {
+					preStarts[it.nextInt() + 1]++;
+				}
+			}
+		}
+		for (int s = 0; s < n; s++) {
+			preStarts[s + 1] += preStarts[s];
+		}
 
-				Iterator<Integer> it = model.getSuccessorsIterator(s, c);
+		// Store the incoming choices
+		preStates = new int[preStarts[n]];
+		preChoices = new int[preStarts[n]];
+		int[] next = Arrays.copyOf(preStarts, n);
+		for (int s = 0; s < n; s++) {
+			for (int c = 0, m = model.getNumChoices(s); c < m; c++) {
+				SuccessorsIterator it = model.getSuccessors(s, c).distinct();
 				while (it.hasNext()) {
-					int successor = it.next();
+					// Add the current choice (s,c) to pre[successor].
+					int j = next[it.nextInt()]++;
+					preStates[j] = s;
+					preChoices[j] = c;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compute the predecessor relation using getSuccessors, as for {@link #compute(NondetModel)},
+	 * but processing ranges of states in parallel. As the order in which incoming choices
+	 * are stored then varies, the incoming choices of each state are sorted afterwards.
+	 */
+	private void computeParallel(NondetModel model, int numThreads)
+	{
+		int n = model.getNumStates();
+
+		// Count the incoming choices of each state
+		AtomicIntegerArray counts = new AtomicIntegerArray(n + 1);
+		Parallel.forRange(numThreads, 0, n, (from, to) -> {
+			for (int s = from; s < to; s++) {
+				for (int c = 0, m = model.getNumChoices(s); c < m; c++) {
+					SuccessorsIterator it = model.getSuccessors(s, c).distinct();
+					while (it.hasNext()) {
+						counts.incrementAndGet(it.nextInt() + 1);
+					}
+				}
+			}
+		});
+		preStarts = new int[n + 1];
+		for (int s = 0; s < n; s++) {
+			preStarts[s + 1] = preStarts[s] + counts.get(s + 1);
+		}
 
-					// Add the current choice s to pre[successor].
-					pre.get(successor).add(choice);
+		// Store the incoming choices, then sort those of each state
+		preStates = new int[preStarts[n]];
+		preChoices = new int[preStarts[n]];
+		AtomicIntegerArray next = new AtomicIntegerArray(Arrays.copyOf(preStarts, n));
+		Parallel.forRange(numThreads, 0, n, (from, to) -> {
+			for (int s = from; s < to; s++) {
+				for (int c = 0, m = model.getNumChoices(s); c < m; c++) {
+					SuccessorsIterator it = model.getSuccessors(s, c).distinct();
+					while (it.hasNext()) {
+						int j = next.getAndIncrement(it.nextInt());
+						preStates[j] = s;
+						preChoices[j] = c;
+					}
 				}
 			}
+		});
+		Parallel.forRange(numThreads, 0, n, (from, to) -> {
+			for (int s = from; s < to; s++) {
+				sortIncomingChoices(preStarts[s], preStarts[s + 1]);
+			}
+		});
+	}
+
+	/**
+	 * Sort the entries {@code from}...{@code to}-1 of preStates/preChoices
+	 * by source state and then choice index.
+	 */
+	private void sortIncomingChoices(int from, int to)
+	{
+		if (to - from <= 16) {
+			// insertion sort
+			for (int i = from + 1; i < to; i++) {
+				int s = preStates[i];
+				int c = preChoices[i];
+				int j = i - 1;
+				while (j >= from && (preStates[j] > s || (preStates[j] == s && preChoices[j] > c))) {
+					preStates[j + 1] = preStates[j];
+					preChoices[j + 1] = preChoices[j];
+					j--;
+				}
+				preStates[j + 1] = s;
+				preChoices[j + 1] = c;
+			}
+		} else {
+			// sort (state, choice) pairs encoded as longs (both are non-negative)
+			long[] pairs = new long[to - from];
+			for (int i = from; i < to; i++) {
+				pairs[i - from] = ((long) preStates[i] << 32) | preChoices[i];
+			}
+			Arrays.sort(pairs);
+			for (int i = from; i < to; i++) {
+				preStates[i] = (int) (pairs[i - from] >>> 32);
+				preChoices[i] = (int) pairs[i - from];
+			}
 		}
 	}
 
+	/**
+	 * Get the number of incoming choices of state {@code s}.
+	 */
+	public int getNumIncomingChoices(int s)
+	{
+		return preStarts[s + 1] - preStarts[s];
+	}
+
+	/**
+	 * Get the source state of the {@code i}th incoming choice of state {@code s}
+	 * (for {@code 0 <= i < getNumIncomingChoices(s)}).
+	 */
+	public int getIncomingChoiceState(int s, int i)
+	{
+		return preStates[preStarts[s] + i];
+	}
+
+	/**
+	 * Get the choice index (in its source state) of the {@code i}th incoming choice of state {@code s}
+	 * (for {@code 0 <= i < getNumIncomingChoices(s)}).
+	 */
+	public int getIncomingChoiceIndex(int s, int i)
+	{
+		return preChoices[preStarts[s] + i];
+	}
+
 	/**
 	 * Get an Iterable over the incoming choices of state {@code s}.
+	 * Note that a {@link Choice} object is created for each incoming choice;
+	 * see {@link #getNumIncomingChoices(int)} for allocation-free access.
 	 */
 	public Iterable<Choice> getIncomingChoices(int s)
 	{
-		return pre.get(s);
+		return () -> getIncomingChoicesIterator(s);
 	}
 
 	/**
@@ -161,12 +318,34 @@ public class IncomingChoiceRelation
 	 */
 	public Iterator<Choice> getIncomingChoicesIterator(int s)
 	{
-		return getIncomingChoices(s).iterator();
+		return new Iterator<Choice>()
+		{
+			int current = preStarts[s];
+			final int end = preStarts[s + 1];
+
+			@Override
+			public boolean hasNext()
+			{
+				return current < end;
+			}
+
+			@Override
+			public Choice next()
+			{
+				if (current >= end) {
+					throw new NoSuchElementException();
+				}
+				Choice choice = new Choice(preStates[current], preChoices[current]);
+				current++;
+				return choice;
+			}
+		};
 	}
 
 	/**
 	 * Static constructor to compute the incoming choices information for the given model.
 	 * Logs diagnostic information to the log of the given PrismComponent.
+	 * Uses multiple threads for large models if the settings of {@code parent} say so.
 	 *
 	 * @param parent a PrismComponent (for obtaining the log and settings)
 	 * @param model the non-deterministic model for which the predecessor relation should be computed
@@ -179,7 +358,7 @@ public class IncomingChoiceRelation
 		parent.getLog().print("Calculating incoming choices relation for "+model.getModelType().fullName()+"...  ");
 		parent.getLog().flush();
 
-		IncomingChoiceRelation pre = new IncomingChoiceRelation(model);
+		IncomingChoiceRelation pre = new IncomingChoiceRelation(model, PredecessorRelation.getNumThreads(parent));
 
 		timer = System.currentTimeMillis() - timer;
 		parent.getLog().println("done (" + timer / 1000.0 + " seconds)");
@@ -28,15 +28,21 @@
 
 package explicit;
 
+import java.util.Arrays;
 import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 import common.IntSet;
+import common.Parallel;
 import common.PeriodicTimer;
 import explicit.rewards.MCRewards;
 import explicit.rewards.MDPRewards;
 import prism.AccuracyFactory;
 import prism.OptionsIntervalIteration;
 import prism.PrismException;
+import prism.PrismNotSupportedException;
 import prism.PrismUtils;
 
 /**
@@ -61,6 +67,18 @@ public abstract class IterationMethod {
 		/** Perform one iteration (over the set of states) and return true if convergence has been detected. */
 		public boolean iterateAndCheckConvergence(IntSet states) throws PrismException;
 
+		/**
+		 * Perform one iteration over the set of states and return the maximum difference
+		 * between the old and new values of these states, measured as for the convergence check
+		 * (i.e., convergence has been detected if it is below the termination epsilon).
+		 * <br>
+		 * Unlike {@link #iterateAndCheckConvergence(IntSet)}, only the values of the given states
+		 * are modified, so this can be called concurrently for disjoint sets of states,
+		 * as long as none of them has transitions to one of the others
+		 * (e.g., for independent SCCs during a topological iteration).
+		 */
+		public double iterateIndependently(IntSet states) throws PrismException;
+
 		/**
 		 * Notify that the given states are done (e.g., because the given SCC is finished
 		 * during a topological iteration).
@@ -169,6 +187,14 @@ public abstract class IterationMethod {
 		{
 			super(model);
 		}
+
+		@Override
+		public boolean iterateAndCheckConvergence(IntSet states) throws PrismException
+		{
+			// values are updated in place, so iterations are always independent
+			error = iterateIndependently(states);
+			return error < termCritParam;
+		}
 	}
 
 	/** Abstract base class for an IterationIntervalIter with a single solution vector */
@@ -205,6 +231,8 @@ public abstract class IterationMethod {
 		protected double[] soln2;
 		/** Post processing, may be null */
 		protected final IterationPostProcessor postProcessor;
+		/** The most recently used state set, with its array form (for caching) */
+		private volatile StatesArray lastStatesArray;
 
 		/** Constructor */
 		protected TwoVectorIteration(Model model, IterationMethod.IterationPostProcessor postProcessor)
@@ -252,7 +280,12 @@ public abstract class IterationMethod {
 				postProcessor.apply(soln, soln2, states);
 			}
 			// check convergence (on the set of states)
-			boolean done = PrismUtils.doublesAreClose(soln, soln2, states.iterator(), termCritParam, absolute);
+			boolean done;
+			if (numThreads > 1) {
+				done = doublesAreCloseParallel(soln, soln2, getStatesArray(states));
+			} else {
+				done = PrismUtils.doublesAreClose(soln, soln2, states.iterator(), termCritParam, absolute);
+			}
 
 			// switch vectors
 			double[] tmp = soln;
@@ -262,11 +295,74 @@ public abstract class IterationMethod {
 			return done;
 		}
 
+		@Override
+		public double iterateIndependently(IntSet states) throws PrismException
+		{
+			if (postProcessor != null) {
+				throw new PrismNotSupportedException("Independent iterations are not supported with post-processing");
+			}
+			// do the iteration
+			doIterate(states);
+			// measure the error and, instead of switching the vectors,
+			// switch the values of the states
+			double error = 0.0;
+			PrimitiveIterator.OfInt it = states.iterator();
+			while (it.hasNext()) {
+				int s = it.nextInt();
+				double diff = convergenceDiff(soln[s], soln2[s]);
+				if (diff > error) {
+					error = diff;
+				}
+				double tmp = soln[s];
+				soln[s] = soln2[s];
+				soln2[s] = tmp;
+			}
+			return error;
+		}
+
 		@Override
 		public double getError()
 		{
 			return PrismUtils.measureSupNorm(soln, soln2, absolute);
 		}
+
+		/**
+		 * Get the given set of states as an array (in iteration order),
+		 * for use by parallel iterations. If the set is a {@link StatesArray}
+		 * (as passed by concurrent iterations, one per SCC), its array is used.
+		 * Otherwise, the array for the most recently used set is cached,
+		 * since iterations are typically repeated for the same set.
+		 */
+		protected int[] getStatesArray(IntSet states)
+		{
+			if (states instanceof StatesArray) {
+				return ((StatesArray) states).array;
+			}
+			StatesArray cached = lastStatesArray;
+			if (cached == null || cached.states != states) {
+				cached = new StatesArray(states);
+				lastStatesArray = cached;
+			}
+			return cached.array;
+		}
+
+		/**
+		 * Parallel version of the convergence check, i.e., are {@code d1} and {@code d2}
+		 * within epsilon of each other for all indices in {@code states}?
+		 */
+		private boolean doublesAreCloseParallel(double[] d1, double[] d2, int[] states)
+		{
+			AtomicBoolean notClose = new AtomicBoolean(false);
+			Parallel.forRange(numThreads, 0, states.length, (from, to) -> {
+				for (int i = from; i < to && !notClose.get(); i++) {
+					int s = states[i];
+					if (!PrismUtils.doublesAreClose(d1[s], d2[s], termCritParam, absolute)) {
+						notClose.set(true);
+					}
+				}
+			});
+			return !notClose.get();
+		}
 		
 		@Override
 		public void doneWith(IntSet states)
@@ -292,6 +388,47 @@ public abstract class IterationMethod {
 
 	}
 
+	/**
+	 * A set of states, together with its array form (in iteration order).
+	 * This is itself an IntSet, so that it can be passed to the iterations instead of
+	 * the original set, which then use the array directly (see {@code getStatesArray}).
+	 */
+	private static class StatesArray implements IntSet
+	{
+		final IntSet states;
+		final int[] array;
+
+		StatesArray(IntSet states)
+		{
+			this.states = states;
+			array = states.stream().toArray();
+		}
+
+		@Override
+		public PrimitiveIterator.OfInt iterator()
+		{
+			return Arrays.stream(array).iterator();
+		}
+
+		@Override
+		public PrimitiveIterator.OfInt reversedIterator()
+		{
+			return states.reversedIterator();
+		}
+
+		@Override
+		public int cardinality()
+		{
+			return array.length;
+		}
+
+		@Override
+		public boolean contains(int index)
+		{
+			return states.contains(index);
+		}
+	}
+
 	/**
 	 * Functional interface for a method that allows to
 	 * determine the value for a singleton SCC in the model,
@@ -312,6 +449,8 @@ public abstract class IterationMethod {
 	protected final boolean absolute;
 	/** Convergence check: epsilon value */
 	protected final double termCritParam;
+	/** Number of threads to use for (parallelisable) iterations */
+	protected int numThreads = 1;
 
 	/**
 	 * Constructor.
@@ -324,6 +463,45 @@ public abstract class IterationMethod {
 		this.termCritParam = termCritParam;
 	}
 
+	/**
+	 * Get the difference between an old value {@code d1} and a new value {@code d2},
+	 * measured as for the convergence check, i.e., the values are close
+	 * (see {@link PrismUtils#doublesAreClose(double, double, double, boolean)})
+	 * iff the difference is below the termination epsilon.
+	 */
+	protected double convergenceDiff(double d1, double d2)
+	{
+		// Deal with infinite cases
+		if (Double.isInfinite(d1) || Double.isInfinite(d2)) {
+			return d1 == d2 ? 0.0 : Double.POSITIVE_INFINITY;
+		}
+		if (absolute) {
+			return Math.abs(d1 - d2);
+		}
+		// Relative: if the new value is zero, the old one has to be too
+		if (d2 == 0) {
+			return d1 == 0 ? 0.0 : Double.POSITIVE_INFINITY;
+		}
+		return Math.abs((d1 - d2) / d1);
+	}
+
+	/**
+	 * Set the number of threads to use for iterations that support parallel execution
+	 * (currently, the MDP min/max iterations of the power method).
+	 */
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Get the number of threads to use for iterations that support parallel execution.
+	 */
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
 	// ------------ Abstract DTMC methods ----------------------------
 
 	/** Obtain an Iteration object using mvMult (matrix-vector multiplication) in a DTMC */
@@ -470,6 +648,9 @@ public abstract class IterationMethod {
 
 	/**
 	 * Perform the actual work of a topological value iteration, i.e., iterate until convergence or abort.
+	 * <br>
+	 * If {@code mc} uses more than one thread and iterations are not exported,
+	 * independent SCCs are solved concurrently (see {@link #doTopologicalValueIterationParallel}).
 	 *
 	 * @param mc ProbModelChecker (for log and settings)
 	 * @param description (for logging)
@@ -483,6 +664,10 @@ public abstract class IterationMethod {
 	 */
 	public ModelCheckerResult doTopologicalValueIteration(ProbModelChecker mc, String description, SCCInfo sccs, IterationMethod.IterationValIter iterator, SingletonSCCSolver singletonSCCSolver, long startTime, ExportIterations iterationsExport) throws PrismException
 	{
+		if (mc.getNumThreads() > 1 && iterationsExport == null) {
+			return doTopologicalValueIterationParallel(mc, description, sccs, iterator, singletonSCCSolver, startTime);
+		}
+
 		// Start iterations
 		int iters = 0;
 		long mvCount = 0;
@@ -581,6 +766,96 @@ public abstract class IterationMethod {
 		return res;
 	}
 
+	/**
+	 * Perform the actual work of a topological value iteration, i.e., iterate until convergence or abort,
+	 * solving independent SCCs concurrently, using {@code mc.getNumThreads()} threads.
+	 * <br>
+	 * The condensation of the model (the DAG of its SCCs) is used to solve each SCC as soon as
+	 * all SCCs it has transitions to are solved (see {@link SCCScheduler}).
+	 * Each SCC is iterated in the same way as for {@link #doTopologicalValueIteration},
+	 * so the solution and the (total) number of iterations do not depend on the number of threads.
+	 *
+	 * @param mc ProbModelChecker (for log and settings)
+	 * @param description (for logging)
+	 * @param sccs The information about the SCCs and topological order
+	 * @param iteration The iteration object
+	 * @param singletonSCCSolver The solver for singleton SCCs
+	 * @param startTime The start time (for logging purposes, obtained from a call to System.currentTimeMillis())
+	 * @return a ModelChecker result with the solution vector and statistics
+	 * @throws PrismException on non-convergence (if mc.errorOnNonConverge is set)
+	 */
+	public ModelCheckerResult doTopologicalValueIterationParallel(ProbModelChecker mc, String description, SCCInfo sccs, IterationMethod.IterationValIter iterator, SingletonSCCSolver singletonSCCSolver, long startTime) throws PrismException
+	{
+		final int maxIters = mc.maxIters;
+		final Model model = iterator.getModel();
+		int numNonSingletonSCCs = sccs.countNonSingletonSCCs();
+		SCCScheduler scheduler = new SCCScheduler(model, sccs);
+
+		// Statistics, accumulated over all SCCs
+		LongAdder iters = new LongAdder();
+		LongAdder mvCount = new LongAdder();
+		DoubleAccumulator error = new DoubleAccumulator(Math::max, 0.0);
+
+		SCCScheduler.SCCProcessor solveSCC = scc -> {
+			if (sccs.isSingletonSCC(scc)) {
+				// get the single state in this SCC
+				int state = sccs.getStatesForSCC(scc).iterator().nextInt();
+				iterator.solveSingletonSCC(state, singletonSCCSolver);
+				iters.increment();
+				mvCount.add(model.getNumTransitions(state));
+				return true;
+			}
+			// complex SCC: do VI
+			// abort on convergence or if iterations *in this SCC* are above maxIters
+			// (the states are converted to an array once, for use in all iterations)
+			IntSet statesForSCC = new StatesArray(sccs.getStatesForSCC(scc));
+			boolean doneSCC = false;
+			int itersInSCC = 0;
+			double errorSCC = 0.0;
+			while (!doneSCC && itersInSCC < maxIters) {
+				itersInSCC++;
+				errorSCC = iterator.iterateIndependently(statesForSCC);
+				doneSCC = errorSCC < termCritParam;
+			}
+			error.accumulate(errorSCC);
+			iterator.doneWith(statesForSCC);
+			iters.add(itersInSCC);
+			mvCount.add(itersInSCC * model.getNumTransitions(statesForSCC.iterator()));
+			return doneSCC;
+		};
+
+		PeriodicTimer updatesTimer = new PeriodicTimer(ProbModelChecker.UPDATE_DELAY);
+		updatesTimer.start();
+		Runnable progress = () -> {
+			mc.getLog().print("Iteration " + iters.sum() + ": ");
+			mc.getLog().print(scheduler.getNumProcessed() + " of " + scheduler.getNumSCCs() + " SCCs solved");
+			mc.getLog().println(", " + PrismUtils.formatDouble2dp(updatesTimer.elapsedMillisTotal() / 1000.0) + " sec so far");
+		};
+		boolean done = scheduler.run(mc.getNumThreads(), solveSCC, progress, ProbModelChecker.UPDATE_DELAY);
+
+		// Finished value iteration
+		long timer = System.currentTimeMillis() - startTime;
+		mc.getLog().print("Value iteration (" + description + ", with " + numNonSingletonSCCs + " non-singleton SCCs)");
+		mc.getLog().print(" took " + iters.sum() + " iterations, ");
+		mc.getLog().print(mvCount.sum() + " multiplications");
+		mc.getLog().println(" and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && mc.errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters.sum() + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results
+		ModelCheckerResult res = new ModelCheckerResult();
+		res.soln = iterator.getSolnVector();
+		res.accuracy = AccuracyFactory.valueIteration(termCritParam, error.get(), absolute);
+		res.numIters = (int) iters.sum();
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
 	/**
 	 * Perform the actual work of an interval iteration, i.e., iterate until convergence or abort.
 	 *
@@ -109,7 +109,11 @@ public class IterationMethodPower extends IterationMethod {
 			@Override
 			public void doIterate(IntSet states)
 			{
-				mdp.mvMultMinMax(soln, min, soln2, states.iterator(), strat);
+				if (numThreads > 1) {
+					mdp.mvMultMinMax(soln, min, soln2, getStatesArray(states), strat, numThreads);
+				} else {
+					mdp.mvMultMinMax(soln, min, soln2, states.iterator(), strat);
+				}
 			}
 		};
 	}
@@ -126,7 +130,50 @@ public class IterationMethodPower extends IterationMethod {
 			@Override
 			public void doIterate(IntSet states)
 			{
-				mdp.mvMultMinMax(soln, min, soln2, states.iterator(), strat);
+				if (numThreads > 1) {
+					mdp.mvMultMinMax(soln, min, soln2, getStatesArray(states), strat, numThreads);
+				} else {
+					mdp.mvMultMinMax(soln, min, soln2, states.iterator(), strat);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Obtain an Iteration object using mvMultMinMax (matrix-vector multiplication,
+	 * followed by min/max for each player) in an STPG.
+	 * @param stpg the STPG (sparse, so that rows can be split across threads)
+	 * @param min1 Min or max for player 1 (true=min, false=max)
+	 * @param min2 Min or max for player 2 (true=min, false=max)
+	 * @param adv Storage for adversary choice indices (ignored if null)
+	 */
+	public IterationValIter forMvMultMinMax(STPGSparse stpg, boolean min1, boolean min2, int[] adv)
+	{
+		return new TwoVectorIteration(stpg, null) {
+			@Override
+			public void doIterate(IntSet states)
+			{
+				stpg.mvMultMinMax(soln, min1, min2, soln2, getStatesArray(states), adv, numThreads);
+			}
+		};
+	}
+
+	/**
+	 * Obtain an Iteration object using mvMultRewMinMax (matrix-vector multiplication and sum of rewards,
+	 * followed by min/max for each player) in an STPG.
+	 * @param stpg the STPG (sparse, so that rows can be split across threads)
+	 * @param mdpRewards The rewards (as built by {@link explicit.rewards.STPGRewards#buildMDPRewards()})
+	 * @param min1 Min or max for player 1 (true=min, false=max)
+	 * @param min2 Min or max for player 2 (true=min, false=max)
+	 * @param adv Storage for adversary choice indices (ignored if null)
+	 */
+	public IterationValIter forMvMultRewMinMax(STPGSparse stpg, MDPRewards mdpRewards, boolean min1, boolean min2, int[] adv)
+	{
+		return new TwoVectorIteration(stpg, null) {
+			@Override
+			public void doIterate(IntSet states)
+			{
+				stpg.mvMultRewMinMax(soln, mdpRewards, min1, min2, soln2, getStatesArray(states), adv, 1.0, numThreads);
 			}
 		};
 	}
@@ -144,7 +191,11 @@ public class IterationMethodPower extends IterationMethod {
 			@Override
 			public void doIterate(IntSet states)
 			{
-				mdp.mvMultRewMinMax(soln, rewards, min, soln2, states.iterator(), strat);
+				if (numThreads > 1) {
+					mdp.mvMultRewMinMax(soln, rewards, min, soln2, getStatesArray(states), strat, numThreads);
+				} else {
+					mdp.mvMultRewMinMax(soln, rewards, min, soln2, states.iterator(), strat);
+				}
 			}
 		};
 	}
@@ -161,7 +212,11 @@ public class IterationMethodPower extends IterationMethod {
 			@Override
 			public void doIterate(IntSet states)
 			{
-				mdp.mvMultRewMinMax(soln, rewards, min, soln2, states.iterator(), strat);
+				if (numThreads > 1) {
+					mdp.mvMultRewMinMax(soln, rewards, min, soln2, getStatesArray(states), strat, numThreads);
+				} else {
+					mdp.mvMultRewMinMax(soln, rewards, min, soln2, states.iterator(), strat);
+				}
 			}
 		};
 	}
@@ -812,8 +812,9 @@ public class LTLModelChecker extends PrismComponent
 	public BitSet findAcceptingBSCCs(Model model, AcceptanceOmega acceptance) throws PrismException
 	{
 		// Compute bottom strongly connected components (BSCCs)
+		// (their order does not matter, so use the SCC method from the settings)
 		SCCConsumerStore sccStore = new SCCConsumerStore();
-		SCCComputer sccComputer = SCCComputer.createSCCComputer(this, model, sccStore);
+		SCCComputer sccComputer = SCCComputer.createSCCComputer(this, model, sccStore, SCCComputer.getSCCMethod(this));
 		sccComputer.computeSCCs();
 		List<BitSet> bsccs = sccStore.getBSCCs();
 
@@ -40,6 +40,7 @@ import java.util.PrimitiveIterator.OfInt;
 
 import common.IterableStateSet;
 import common.IteratorTools;
+import common.Parallel;
 import explicit.graphviz.Decorator;
 import explicit.rewards.MCRewards;
 import explicit.rewards.MDPRewards;
@@ -350,6 +351,29 @@ public interface MDP extends MDPGeneric<Double>
 		}
 	}
 
+	/**
+	 * Do a matrix-vector multiplication followed by min/max, i.e. one step of value iteration,
+	 * with the rows split across {@code numThreads} threads.
+	 * i.e. for all s: result[s] = min/max_k { sum_j P_k(s,j)*vect[j] }
+	 * Optionally, store optimal (memoryless) strategy info.
+	 * Rows are processed independently, so the result is identical to the sequential version.
+	 * @param vect Vector to multiply by
+	 * @param min Min or max for (true=min, false=max)
+	 * @param result Vector to store result in
+	 * @param states Perform computation for these rows
+	 * @param strat Storage for (memoryless) strategy choice indices (ignored if null)
+	 * @param numThreads Number of threads to use
+	 */
+	public default void mvMultMinMax(double vect[], boolean min, double result[], int states[], int strat[], int numThreads)
+	{
+		Parallel.forRange(numThreads, 0, states.length, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				final int s = states[i];
+				result[s] = mvMultMinMaxSingle(s, vect, min, strat);
+			}
+		});
+	}
+
 	/**
 	 * Do a single row of matrix-vector multiplication followed by min/max,
 	 * i.e. return min/max_k { sum_j P_k(s,j)*vect[j] }
@@ -627,6 +651,30 @@ public interface MDP extends MDPGeneric<Double>
 		}
 	}
 
+	/**
+	 * Do a matrix-vector multiplication and sum of rewards followed by min/max, i.e. one step of value iteration,
+	 * with the rows split across {@code numThreads} threads.
+	 * i.e. for all s: result[s] = min/max_k { rew(s) + rew_k(s) + sum_j P_k(s,j)*vect[j] }
+	 * Optionally, store optimal (memoryless) strategy info.
+	 * Rows are processed independently, so the result is identical to the sequential version.
+	 * @param vect Vector to multiply by
+	 * @param mdpRewards The rewards
+	 * @param min Min or max for (true=min, false=max)
+	 * @param result Vector to store result in
+	 * @param states Perform computation for these rows
+	 * @param strat Storage for (memoryless) strategy choice indices (ignored if null)
+	 * @param numThreads Number of threads to use
+	 */
+	public default void mvMultRewMinMax(double vect[], MDPRewards mdpRewards, boolean min, double result[], int states[], int strat[], int numThreads)
+	{
+		Parallel.forRange(numThreads, 0, states.length, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				final int s = states[i];
+				result[s] = mvMultRewMinMaxSingle(s, vect, mdpRewards, min, strat);
+			}
+		});
+	}
+
 	/**
 	 * Do a single row of matrix-vector multiplication and sum of rewards followed by min/max.
 	 * i.e. return min/max_k { rew(s) + rew_k(s) + sum_j P_k(s,j)*vect[j] }
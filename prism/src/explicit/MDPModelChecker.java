@@ -35,6 +35,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
 
 import acceptance.AcceptanceReach;
 import acceptance.AcceptanceType;
@@ -502,6 +503,7 @@ public class MDPModelChecker extends ProbModelChecker
 		switch (method) {
 		case VALUE_ITERATION:
 			iterationMethod = new IterationMethodPower(termCrit == TermCrit.ABSOLUTE, termCritParam);
+			iterationMethod.setNumThreads(numThreads);
 			break;
 		case GAUSS_SEIDEL:
 			iterationMethod = new IterationMethodGS(termCrit == TermCrit.ABSOLUTE, termCritParam, false);
@@ -751,6 +753,7 @@ public class MDPModelChecker extends ProbModelChecker
 			throws PrismException
 	{
 		IterationMethodPower iterationMethod = new IterationMethodPower(termCrit == TermCrit.ABSOLUTE, termCritParam);
+		iterationMethod.setNumThreads(numThreads);
 		return doValueIterationReachProbs(mdp, no, yes, min, init, known, iterationMethod, false, strat);
 	}
 
@@ -1279,6 +1282,8 @@ public class MDPModelChecker extends ProbModelChecker
 		unknown.andNot(target);
 		if (remain != null)
 			unknown.and(remain);
+		// (and as an array, if iterations are done in parallel)
+		int[] unknownArray = (numThreads > 1) ? unknown.stream().toArray() : null;
 
 		// Start iterations
 		iters = 0;
@@ -1289,7 +1294,11 @@ public class MDPModelChecker extends ProbModelChecker
 				strat = new int[n];
 
 			// Matrix-vector multiply and min/max ops
-			mdp.mvMultMinMax(soln, min, soln2, unknown, false, generateStrategy ? strat : null);
+			if (numThreads > 1) {
+				mdp.mvMultMinMax(soln, min, soln2, unknownArray, generateStrategy ? strat : null, numThreads);
+			} else {
+				mdp.mvMultMinMax(soln, min, soln2, unknown, false, generateStrategy ? strat : null);
+			}
 			// Store intermediate results if required
 			// (compute min/max value over initial states for this step)
 			if (results != null) {
@@ -1383,13 +1392,19 @@ public class MDPModelChecker extends ProbModelChecker
 		soln2 = new double[n];
 		for (i = 0; i < n; i++)
 			soln[i] = soln2[i] = 0.0;
+		// All states, as an array, if iterations are done in parallel
+		int[] allStates = (numThreads > 1) ? IntStream.range(0, n).toArray() : null;
 
 		// Start iterations
 		iters = 0;
 		while (iters < k) {
 			iters++;
 			// Matrix-vector multiply and min/max ops
-			mdp.mvMultRewMinMax(soln, mdpRewards, min, soln2, null, false, null);
+			if (numThreads > 1) {
+				mdp.mvMultRewMinMax(soln, mdpRewards, min, soln2, allStates, null, numThreads);
+			} else {
+				mdp.mvMultRewMinMax(soln, mdpRewards, min, soln2, null, false, null);
+			}
 			// Swap vectors for next iter
 			tmpsoln = soln;
 			soln = soln2;
@@ -2249,6 +2264,7 @@ public class MDPModelChecker extends ProbModelChecker
 		switch (method) {
 		case VALUE_ITERATION:
 			iterationMethod = new IterationMethodPower(termCrit == TermCrit.ABSOLUTE, termCritParam);
+			iterationMethod.setNumThreads(numThreads);
 			break;
 		case GAUSS_SEIDEL:
 			iterationMethod = new IterationMethodGS(termCrit == TermCrit.ABSOLUTE, termCritParam, false);
@@ -2291,6 +2307,7 @@ public class MDPModelChecker extends ProbModelChecker
 			throws PrismException
 	{
 		IterationMethodPower iterationMethod = new IterationMethodPower(termCrit == TermCrit.ABSOLUTE, termCritParam);
+		iterationMethod.setNumThreads(numThreads);
 		return doValueIterationReachRewards(mdp, mdpRewards, iterationMethod, target, inf, min, init, known, false, strat);
 	}
 
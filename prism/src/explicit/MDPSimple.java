@@ -343,6 +343,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 				return i;
 		}
 		set = trans.get(s);
+		distr.trimToSize();
 		set.add(distr);
 		// Update stats
 		numDistrs++;
@@ -371,6 +372,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 				return i;
 		}
 		set = trans.get(s);
+		distr.trimToSize();
 		set.add(distr);
 		// Set action
 		actions.setAction(s, set.size() - 1, action);
@@ -489,7 +491,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 	@Override
 	public SuccessorsIterator getSuccessors(final int s, final int i)
 	{
-		return SuccessorsIterator.from(getSuccessorsIterator(s, i), true);
+		return SuccessorsIterator.from(trans.get(s).get(i).getSupportIterator(), true);
 	}
 
 	// Accessors (for MDP)
@@ -506,6 +508,15 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 		return trans.get(s).get(i).iterator();
 	}
 
+	@Override
+	public void forEachTransition(int s, int i, TransitionConsumer c)
+	{
+		Distribution distr = trans.get(s).get(i);
+		for (int k = 0, n = distr.size(); k < n; k++) {
+			c.accept(s, distr.getIndexAt(k), distr.getProbabilityAt(k));
+		}
+	}
+
 	
 
 	// Accessors (other)
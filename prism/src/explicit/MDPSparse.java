@@ -368,6 +368,32 @@ public class MDPSparse extends MDPExplicit
 		rowStarts[numStates] = numDistrs;
 	}
 
+	/**
+	 * Constructor: Build new MDPSparse directly from the arrays of a sparse matrix
+	 * (which are stored, not copied). Initial states, etc. still need to be added.
+	 *
+	 * @param numStates Number of states
+	 * @param rowStarts Indices into choiceStarts giving the start of the choices for each state (size numStates+1)
+	 * @param choiceStarts Indices into cols/nonZeros giving the start of the transitions for each choice (size numDistrs+1)
+	 * @param cols Column (destination) indices for each transition
+	 * @param nonZeros Probabilities for each transition
+	 * @param actions Action labels for each choice (size numDistrs), or null if none
+	 */
+	public MDPSparse(int numStates, int rowStarts[], int choiceStarts[], int cols[], double nonZeros[], Object actions[])
+	{
+		initialise(numStates);
+		this.rowStarts = rowStarts;
+		this.choiceStarts = choiceStarts;
+		this.cols = cols;
+		this.nonZeros = nonZeros;
+		this.actions = actions;
+		numDistrs = rowStarts[numStates];
+		numTransitions = choiceStarts[numDistrs];
+		for (int s = 0; s < numStates; s++) {
+			maxNumDistrs = Math.max(maxNumDistrs, rowStarts[s + 1] - rowStarts[s]);
+		}
+	}
+
 	// Mutators (other)
 
 	@Override
@@ -28,18 +28,21 @@
 package explicit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
+import common.Parallel;
 import explicit.graphviz.Decoration;
 import explicit.graphviz.Decorator;
+import explicit.rewards.MCRewardsFromMDPRewards;
 import explicit.rewards.MDPRewards;
 import explicit.rewards.StateRewardsSimple;
 import prism.Accuracy;
@@ -48,6 +51,7 @@ import prism.Pair;
 import prism.PrismComponent;
 import prism.PrismException;
 import prism.PrismNotSupportedException;
+import prism.PrismSettings;
 import prism.PrismUtils;
 
 /**
@@ -55,6 +59,18 @@ import prism.PrismUtils;
  */
 public class POMDPModelChecker extends ProbModelChecker
 {
+	// Resolution used to store the beliefs of the grid-based belief MDP during belief exploration
+	protected static final int EXPLORATION_BELIEF_RESOLUTION = 1000000;
+	// Initial number of beliefs explored exactly during belief exploration
+	protected static final int EXPLORATION_INITIAL_BELIEFS = 1024;
+
+	// Use belief exploration (rather than a fixed grid)?
+	protected boolean beliefExploration = false;
+	// Precision (gap between bounds) for belief exploration
+	protected double explorationPrecision = 1e-3;
+	// Max number of beliefs for belief exploration
+	protected int explorationMaxBeliefs = 100000;
+
 	// Some local data structures for convenience
 	
 	/**
@@ -73,6 +89,212 @@ public class POMDPModelChecker extends ProbModelChecker
 		}
 	}
 	
+	/**
+	 * A belief MDP over a set of indexed beliefs (e.g. the points of a fixed-resolution grid,
+	 * as given by a {@link BeliefStore}), stored sparsely over belief indices. For each choice of a belief,
+	 * the value is given by a constant term (the reward, plus the contribution of successor beliefs
+	 * with known values) plus a weighted sum of the values of indexed beliefs (the other successor
+	 * beliefs, or the grid points that they are interpolated over).
+	 */
+	class SparseBeliefMDP
+	{
+		/** Start index (into consts/rowStarts) of the choices for each belief (plus one extra at the end) */
+		public int[] choiceStarts;
+		/** Constant term for each choice */
+		public double[] consts;
+		/** Start index (into cols/weights) of the weighted sum for each choice (plus one extra at the end) */
+		public int[] rowStarts;
+		/** Belief indices of the weighted sums */
+		public int[] cols;
+		/** Weights of the weighted sums */
+		public double[] weights;
+		
+		public int getNumBeliefs()
+		{
+			return choiceStarts.length - 1;
+		}
+		
+		/**
+		 * Compute the min/max value, over choices, for belief {@code b}, given values {@code vect} for all beliefs.
+		 */
+		public double backup(int b, double[] vect, boolean min)
+		{
+			double chosenValue = min ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+			for (int c = choiceStarts[b]; c < choiceStarts[b + 1]; c++) {
+				double value = consts[c];
+				for (int j = rowStarts[c]; j < rowStarts[c + 1]; j++) {
+					value += weights[j] * vect[cols[j]];
+				}
+				if (min ? value < chosenValue : value > chosenValue) {
+					chosenValue = value;
+				}
+			}
+			return chosenValue;
+		}
+	}
+	
+	/**
+	 * A fragment of a belief MDP, obtained by exploring the beliefs reachable from an initial one
+	 * (which has index 0), and stored as a {@link SparseBeliefMDP} over the indices of a {@link BeliefStore}
+	 * (an {@link ExactBeliefStore} if beliefs are explored exactly).
+	 * Beliefs which were reached but not explored ("cut-offs") have a single choice, with no successors,
+	 * whose constant term is a bound on the value of the belief (see {@link #setCutOffValues}).
+	 * For successor beliefs that were interpolated over grid points (rather than explored exactly),
+	 * the observation and grid points are recorded, to allow the grid to be refined.
+	 */
+	class ExploredBeliefMDP extends SparseBeliefMDP
+	{
+		/** The beliefs */
+		public BeliefStore beliefs;
+		/** Number of unobservations in the POMDP */
+		public int numUnobservations;
+		/** Indices of the cut-off beliefs */
+		public int[] cutOffs;
+		public int numCutOffs;
+		/** Observation of each interpolated successor belief */
+		public int[] interpObs;
+		/** Start index (into interpPoints) of the grid points for each interpolated successor belief (plus one extra at the end) */
+		public int[] interpStarts;
+		/** Grid points (indices of beliefs) used for interpolation */
+		public int[] interpPoints;
+		public int numInterps;
+		
+		// Sizes during construction
+		private int numChoices;
+		private int numEntries;
+		private int numInterpPoints;
+		
+		public ExploredBeliefMDP(BeliefStore beliefs, int numUnobservations)
+		{
+			this.beliefs = beliefs;
+			this.numUnobservations = numUnobservations;
+			choiceStarts = new int[16];
+			consts = new double[16];
+			rowStarts = new int[16];
+			cols = new int[64];
+			weights = new double[64];
+			cutOffs = new int[16];
+			interpObs = new int[16];
+			interpStarts = new int[16];
+			interpPoints = new int[64];
+		}
+		
+		/**
+		 * Start adding choices for belief {@code b} (beliefs must be added in order).
+		 */
+		public void startBelief(int b)
+		{
+			choiceStarts = ensure(choiceStarts, b + 2);
+			choiceStarts[b] = numChoices;
+		}
+		
+		/**
+		 * Start a new choice for the current belief, with constant term {@code c}.
+		 */
+		public void startChoice(double c)
+		{
+			if (numChoices + 2 > consts.length) {
+				consts = Arrays.copyOf(consts, 2 * consts.length);
+			}
+			rowStarts = ensure(rowStarts, numChoices + 2);
+			consts[numChoices] = c;
+			rowStarts[numChoices] = numEntries;
+			numChoices++;
+		}
+		
+		/**
+		 * Add {@code c} to the constant term of the current choice.
+		 */
+		public void addToConst(double c)
+		{
+			consts[numChoices - 1] += c;
+		}
+		
+		/**
+		 * Add {@code weight} times the value of belief {@code col} to the current choice.
+		 */
+		public void addEntry(int col, double weight)
+		{
+			// Merge with any existing entry for the same belief
+			for (int j = rowStarts[numChoices - 1]; j < numEntries; j++) {
+				if (cols[j] == col) {
+					weights[j] += weight;
+					return;
+				}
+			}
+			if (numEntries == cols.length) {
+				cols = Arrays.copyOf(cols, 2 * numEntries);
+				weights = Arrays.copyOf(weights, 2 * numEntries);
+			}
+			cols[numEntries] = col;
+			weights[numEntries] = weight;
+			numEntries++;
+		}
+		
+		/**
+		 * Mark belief {@code b}, the current one, as a cut-off.
+		 */
+		public void addCutOff(int b)
+		{
+			startChoice(0.0);
+			cutOffs = ensure(cutOffs, numCutOffs + 1);
+			cutOffs[numCutOffs++] = b;
+		}
+		
+		/**
+		 * Start recording the grid points of a successor belief with observation {@code o} that is interpolated.
+		 */
+		public void startInterp(int o)
+		{
+			interpObs = ensure(interpObs, numInterps + 1);
+			interpStarts = ensure(interpStarts, numInterps + 2);
+			interpObs[numInterps] = o;
+			interpStarts[numInterps] = numInterpPoints;
+			numInterps++;
+		}
+		
+		/**
+		 * Record grid point {@code b} for the current interpolated successor belief.
+		 */
+		public void addInterpPoint(int b)
+		{
+			interpPoints = ensure(interpPoints, numInterpPoints + 1);
+			interpPoints[numInterpPoints++] = b;
+		}
+		
+		/**
+		 * Finish construction (once all beliefs have been added).
+		 */
+		public void finish()
+		{
+			int numBeliefs = beliefs.size();
+			choiceStarts = Arrays.copyOf(choiceStarts, numBeliefs + 1);
+			choiceStarts[numBeliefs] = numChoices;
+			consts = Arrays.copyOf(consts, numChoices);
+			rowStarts = Arrays.copyOf(rowStarts, numChoices + 1);
+			rowStarts[numChoices] = numEntries;
+			cols = Arrays.copyOf(cols, numEntries);
+			weights = Arrays.copyOf(weights, numEntries);
+			interpStarts[numInterps] = numInterpPoints;
+		}
+		
+		/**
+		 * Set the values of the cut-off beliefs, using {@code cutOffValue}.
+		 */
+		public void setCutOffValues(ToDoubleFunction<Belief> cutOffValue)
+		{
+			for (int k = 0; k < numCutOffs; k++) {
+				int b = cutOffs[k];
+				consts[choiceStarts[b]] = cutOffValue.applyAsDouble(beliefs.getBelief(b, numUnobservations));
+			}
+		}
+		
+		private int[] ensure(int[] arr, int size)
+		{
+			return size <= arr.length ? arr : Arrays.copyOf(arr, Math.max(size, 2 * arr.length));
+		}
+	}
+	
 	/**
 	 * Value backup function for belief state value iteration:
 	 * mapping from a state and its definition (reward + transitions)
@@ -100,6 +322,11 @@ public class POMDPModelChecker extends ProbModelChecker
 	public POMDPModelChecker(PrismComponent parent) throws PrismException
 	{
 		super(parent);
+		if (settings != null) {
+			beliefExploration = settings.getString(PrismSettings.PRISM_POMDP_SOLN_METHOD).equals("Belief exploration");
+			explorationPrecision = settings.getDouble(PrismSettings.PRISM_POMDP_PRECISION);
+			explorationMaxBeliefs = settings.getInteger(PrismSettings.PRISM_POMDP_MAX_BELIEFS);
+		}
 	}
 
 	/**
@@ -128,8 +355,12 @@ public class POMDPModelChecker extends ProbModelChecker
 		timer = System.currentTimeMillis();
 		mainLog.println("\nStarting probabilistic reachability (" + (min ? "min" : "max") + ")...");
 
-		// Compute rewards
-		res = computeReachProbsFixedGrid(pomdp, remain, target, min, statesOfInterest.nextSetBit(0));
+		// Compute probabilities
+		if (beliefExploration) {
+			res = computeReachProbsBeliefExploration(pomdp, remain, target, min, statesOfInterest.nextSetBit(0));
+		} else {
+			res = computeReachProbsFixedGrid(pomdp, remain, target, min, statesOfInterest.nextSetBit(0));
+		}
 
 		// Finished probabilistic reachability
 		timer = System.currentTimeMillis() - timer;
@@ -178,62 +409,32 @@ public class POMDPModelChecker extends ProbModelChecker
 		}
 
 		// Initialise the grid points (just for unknown beliefs)
-		List<Belief> gridPoints = initialiseGridPoints(pomdp, unknownObs);
-		mainLog.println("Grid statistics: resolution=" + gridResolution + ", points=" + gridPoints.size());
+		BeliefStore grid = initialiseGridPoints(pomdp, unknownObs);
+		mainLog.println("Grid statistics: resolution=" + gridResolution + ", points=" + grid.size());
 		// Construct grid belief "MDP"
 		mainLog.println("Building belief space approximation...");
-		List<BeliefMDPState> beliefMDP = buildBeliefMDP(pomdp, null, gridPoints);
+		SparseBeliefMDP gridMDP = buildGridBeliefMDP(pomdp, null, grid, targetObs, unknownObs, 1.0, 0.0);
 		
-		// Initialise hashmaps for storing values for the unknown belief states
-		HashMap<Belief, Double> vhash = new HashMap<>();
-		HashMap<Belief, Double> vhash_backUp = new HashMap<>();
-		for (Belief belief : gridPoints) {
-			vhash.put(belief, 0.0);
-			vhash_backUp.put(belief, 0.0);
-		}
-		// Define value function for the full set of belief states
-		Function<Belief, Double> values = belief -> approximateReachProb(belief, vhash_backUp, targetObs, unknownObs);
-		// Define value backup function
-		BeliefMDPBackUp backup = (belief, beliefState) -> approximateReachProbBackup(belief, beliefState, values, min);
-		
-		// Start iterations
+		// Solve the grid belief "MDP", computing values for the unknown grid points
 		mainLog.println("Solving belief space approximation...");
 		long timer2 = System.currentTimeMillis();
-		int iters = 0;
-		boolean done = false;
-		while (!done && iters < maxIters) {
-			// Iterate over all (unknown) grid points
-			int unK = gridPoints.size();
-			for (int b = 0; b < unK; b++) {
-				Belief belief = gridPoints.get(b);
-				Pair<Double, Integer> valChoice = backup.apply(belief, beliefMDP.get(b));
-				vhash.put(belief, valChoice.first);
-			}
-			// Check termination
-			done = PrismUtils.doublesAreClose(vhash, vhash_backUp, termCritParam, termCrit == TermCrit.RELATIVE);
-			// back up	
-			Set<Map.Entry<Belief, Double>> entries = vhash.entrySet();
-			for (Map.Entry<Belief, Double> entry : entries) {
-				vhash_backUp.put(entry.getKey(), entry.getValue());
-			}
-			iters++;
-		}
-		// Non-convergence is an error (usually)
-		if (!done && errorOnNonConverge) {
-			String msg = "Iterative method did not converge within " + iters + " iterations.";
-			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
-			throw new PrismException(msg);
-		}
+		ModelCheckerResult gridRes = solveSparseBeliefMDP(gridMDP, min, false);
+		int iters = gridRes.numIters;
 		timer2 = System.currentTimeMillis() - timer2;
 		mainLog.print("Belief space value iteration (" + (min ? "min" : "max") + ")");
 		mainLog.println(" took " + iters + " iterations and " + timer2 / 1000.0 + " seconds.");
 		
+		// Define value function for the full set of belief states
+		double[] gridValues = gridRes.soln;
+		Function<Belief, Double> values = belief -> approximateReachProb(belief, grid, gridValues, targetObs, unknownObs);
+		// Define value backup function
+		BeliefMDPBackUp backup = (belief, beliefState) -> approximateReachProbBackup(belief, beliefState, values, min);
+		
 		// Extract (approximate) solution value for the initial belief
 		// Also get (approximate) accuracy of result from value iteration
 		Belief initialBelief = Belief.pointDistribution(sInit, pomdp);
 		double outerBound = values.apply(initialBelief);
-		double outerBoundMaxDiff = PrismUtils.measureSupNorm(vhash, vhash_backUp, termCrit == TermCrit.RELATIVE);
-		Accuracy outerBoundAcc = AccuracyFactory.valueIteration(termCritParam, outerBoundMaxDiff, termCrit == TermCrit.RELATIVE);
+		Accuracy outerBoundAcc = gridRes.accuracy;
 		// Print result
 		mainLog.println("Outer bound: " + outerBound + " (" + outerBoundAcc.toString(outerBound) + ")");
 		
@@ -307,6 +508,52 @@ public class POMDPModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute reachability/until probabilities,
+	 * i.e. compute the min/max probability of reaching a state in {@code target},
+	 * while remaining in those in @{code remain},
+	 * using on-demand exploration of the beliefs reachable from the initial one
+	 * (see {@link #computeValuesBeliefExploration}).
+	 * This only computes the probabiity from a single start state
+	 * @param pomdp The POMDP
+	 * @param remain Remain in these states (optional: null means "all")
+	 * @param target Target states
+	 * @param min Min or max rewards (true=min, false=max)
+	 * @param sInit State to compute for
+	 */
+	protected ModelCheckerResult computeReachProbsBeliefExploration(POMDP pomdp, BitSet remain, BitSet target, boolean min, int sInit) throws PrismException
+	{
+		// Find out the observations for the target/remain states
+		BitSet targetObs = getObservationsMatchingStates(pomdp, target);
+		if (targetObs == null) {
+			throw new PrismException("Target for reachability is not observable");
+		}
+		BitSet remainObs = (remain == null) ? null : getObservationsMatchingStates(pomdp, remain);
+		if (remain != null && remainObs == null) {
+			throw new PrismException("Left-hand side of until is not observable");
+		}
+		
+		// Determine set of observations actually need to perform computation for
+		BitSet unknownObs = new BitSet();
+		unknownObs.set(0, pomdp.getNumObservations());
+		unknownObs.andNot(targetObs);
+		if (remainObs != null) {
+			unknownObs.and(remainObs);
+		}
+		
+		// Compute probabilities for the fully observable MDP, and for a memoryless
+		// observation-based strategy, to bound the values of unexplored beliefs
+		MDPModelChecker mcMDP = new MDPModelChecker(this);
+		mcMDP.setExportAdv(false);
+		mcMDP.setGenStrat(false);
+		double[] mdpValues = mcMDP.computeUntilProbs(pomdp, remain, target, min).soln;
+		int[] strat = computeObservationBasedStrategy(pomdp, null, mdpValues, min);
+		DTMCModelChecker mcDTMC = new DTMCModelChecker(this);
+		double[] stratValues = mcDTMC.computeUntilProbs(new DTMCFromMDPMemorylessAdversary(pomdp, strat), remain, target).soln;
+		
+		return computeValuesBeliefExploration(pomdp, null, sInit, targetObs, unknownObs, 1.0, 0.0, mdpValues, stratValues, min);
+	}
+
 	/**
 	 * Compute expected reachability rewards,
 	 * i.e. compute the min/max reward accumulated to reach a state in {@code target}.
@@ -333,7 +580,11 @@ public class POMDPModelChecker extends ProbModelChecker
 		mainLog.println("\nStarting expected reachability (" + (min ? "min" : "max") + ")...");
 
 		// Compute rewards
-		res = computeReachRewardsFixedGrid(pomdp, mdpRewards, target, min, statesOfInterest.nextSetBit(0));
+		if (beliefExploration) {
+			res = computeReachRewardsBeliefExploration(pomdp, mdpRewards, target, min, statesOfInterest.nextSetBit(0));
+		} else {
+			res = computeReachRewardsFixedGrid(pomdp, mdpRewards, target, min, statesOfInterest.nextSetBit(0));
+		}
 
 		// Finished expected reachability
 		timer = System.currentTimeMillis() - timer;
@@ -383,62 +634,32 @@ public class POMDPModelChecker extends ProbModelChecker
 		unknownObs.andNot(infObs);
 
 		// Initialise the grid points (just for unknown beliefs)
-		List<Belief> gridPoints = initialiseGridPoints(pomdp, unknownObs);
-		mainLog.println("Grid statistics: resolution=" + gridResolution + ", points=" + gridPoints.size());
+		BeliefStore grid = initialiseGridPoints(pomdp, unknownObs);
+		mainLog.println("Grid statistics: resolution=" + gridResolution + ", points=" + grid.size());
 		// Construct grid belief "MDP"
 		mainLog.println("Building belief space approximation...");
-		List<BeliefMDPState> beliefMDP = buildBeliefMDP(pomdp, mdpRewards, gridPoints);
-		
-		// Initialise hashmaps for storing values for the unknown belief states
-		HashMap<Belief, Double> vhash = new HashMap<>();
-		HashMap<Belief, Double> vhash_backUp = new HashMap<>();
-		for (Belief belief : gridPoints) {
-			vhash.put(belief, 0.0);
-			vhash_backUp.put(belief, 0.0);
-		}
-		// Define value function for the full set of belief states
-		Function<Belief, Double> values = belief -> approximateReachReward(belief, vhash_backUp, targetObs, infObs);
-		// Define value backup function
-		BeliefMDPBackUp backup = (belief, beliefState) -> approximateReachRewardBackup(belief, beliefState, values, min);
+		SparseBeliefMDP gridMDP = buildGridBeliefMDP(pomdp, mdpRewards, grid, targetObs, unknownObs, 0.0, Double.POSITIVE_INFINITY);
 		
-		// Start iterations
+		// Solve the grid belief "MDP", computing values for the unknown grid points
 		mainLog.println("Solving belief space approximation...");
 		long timer2 = System.currentTimeMillis();
-		int iters = 0;
-		boolean done = false;
-		while (!done && iters < maxIters) {
-			// Iterate over all (unknown) grid points
-			int unK = gridPoints.size();
-			for (int b = 0; b < unK; b++) {
-				Belief belief = gridPoints.get(b);
-				Pair<Double, Integer> valChoice = backup.apply(belief, beliefMDP.get(b));
-				vhash.put(belief, valChoice.first);
-			}
-			// Check termination
-			done = PrismUtils.doublesAreClose(vhash, vhash_backUp, termCritParam, termCrit == TermCrit.RELATIVE);
-			// back up	
-			Set<Map.Entry<Belief, Double>> entries = vhash.entrySet();
-			for (Map.Entry<Belief, Double> entry : entries) {
-				vhash_backUp.put(entry.getKey(), entry.getValue());
-			}
-			iters++;
-		}
-		// Non-convergence is an error (usually)
-		if (!done && errorOnNonConverge) {
-			String msg = "Iterative method did not converge within " + iters + " iterations.";
-			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
-			throw new PrismException(msg);
-		}
+		ModelCheckerResult gridRes = solveSparseBeliefMDP(gridMDP, min, false);
+		int iters = gridRes.numIters;
 		timer2 = System.currentTimeMillis() - timer2;
 		mainLog.print("Belief space value iteration (" + (min ? "min" : "max") + ")");
 		mainLog.println(" took " + iters + " iterations and " + timer2 / 1000.0 + " seconds.");
-
+		
+		// Define value function for the full set of belief states
+		double[] gridValues = gridRes.soln;
+		Function<Belief, Double> values = belief -> approximateReachReward(belief, grid, gridValues, targetObs, infObs);
+		// Define value backup function
+		BeliefMDPBackUp backup = (belief, beliefState) -> approximateReachRewardBackup(belief, beliefState, values, min);
+		
 		// Extract (approximate) solution value for the initial belief
 		// Also get (approximate) accuracy of result from value iteration
 		Belief initialBelief = Belief.pointDistribution(sInit, pomdp);
 		double outerBound = values.apply(initialBelief);
-		double outerBoundMaxDiff = PrismUtils.measureSupNorm(vhash, vhash_backUp, termCrit == TermCrit.RELATIVE);
-		Accuracy outerBoundAcc = AccuracyFactory.valueIteration(termCritParam, outerBoundMaxDiff, termCrit == TermCrit.RELATIVE);
+		Accuracy outerBoundAcc = gridRes.accuracy;
 		// Print result
 		mainLog.println("Outer bound: " + outerBound + " (" + outerBoundAcc.toString(outerBound) + ")");
 		
@@ -513,6 +734,52 @@ public class POMDPModelChecker extends ProbModelChecker
 		return res;
 	}
 
+	/**
+	 * Compute expected reachability rewards using on-demand exploration
+	 * of the beliefs reachable from the initial one (see {@link #computeValuesBeliefExploration}).
+	 * This only computes the expected reward from a single start state
+	 * @param pomdp The POMMDP
+	 * @param mdpRewards The rewards
+	 * @param target Target states
+	 * @param min Min or max rewards (true=min, false=max)
+	 * @param sInit State to compute for
+	 */
+	protected ModelCheckerResult computeReachRewardsBeliefExploration(POMDP pomdp, MDPRewards mdpRewards, BitSet target, boolean min, int sInit) throws PrismException
+	{
+		// Find out the observations for the target states
+		BitSet targetObs = getObservationsMatchingStates(pomdp, target);
+		if (targetObs == null) {
+			throw new PrismException("Target for expected reachability is not observable");
+		}
+		
+		// Find _some_ of the states with infinite reward
+		// (those from which *every* MDP strategy has prob<1 of reaching the target,
+		// and therefore so does every POMDP strategy)
+		MDPModelChecker mcProb1 = new MDPModelChecker(this);
+		BitSet inf = mcProb1.prob1(pomdp, null, target, false, null);
+		inf.flip(0, pomdp.getNumStates());
+		// Find observations for which all states are known to have inf reward
+		BitSet infObs = getObservationsCoveredByStates(pomdp, inf);
+		
+		// Determine set of observations actually need to perform computation for
+		BitSet unknownObs = new BitSet();
+		unknownObs.set(0, pomdp.getNumObservations());
+		unknownObs.andNot(targetObs);
+		unknownObs.andNot(infObs);
+		
+		// Compute rewards for the fully observable MDP, and for a memoryless
+		// observation-based strategy, to bound the values of unexplored beliefs
+		MDPModelChecker mcMDP = new MDPModelChecker(this);
+		mcMDP.setExportAdv(false);
+		mcMDP.setGenStrat(false);
+		double[] mdpValues = mcMDP.computeReachRewards(pomdp, mdpRewards, target, min).soln;
+		int[] strat = computeObservationBasedStrategy(pomdp, mdpRewards, mdpValues, min);
+		DTMCModelChecker mcDTMC = new DTMCModelChecker(this);
+		double[] stratValues = mcDTMC.computeReachRewards(new DTMCFromMDPMemorylessAdversary(pomdp, strat), new MCRewardsFromMDPRewards(mdpRewards, strat), target).soln;
+		
+		return computeValuesBeliefExploration(pomdp, mdpRewards, sInit, targetObs, unknownObs, 0.0, Double.POSITIVE_INFINITY, mdpValues, stratValues, min);
+	}
+
 	/**
 	 * Get a list of observations from a set of states
 	 * (both are represented by BitSets over their indices).
@@ -570,48 +837,514 @@ public class POMDPModelChecker extends ProbModelChecker
 	}
 	
 	/**
-	 * Construct a list of beliefs for a grid-based approximation of the belief space.
+	 * Construct the set of beliefs for a grid-based approximation of the belief space,
+	 * i.e., all beliefs whose probabilities are multiples of 1/{@code gridResolution}.
 	 * Only beliefs with observable values from {@code unknownObs) are added.
 	 */
-	protected List<Belief> initialiseGridPoints(POMDP pomdp, BitSet unknownObs)
+	protected BeliefStore initialiseGridPoints(POMDP pomdp, BitSet unknownObs)
 	{
-		List<Belief> gridPoints = new ArrayList<>();
-		ArrayList<ArrayList<Double>> assignment;
+		BeliefStore grid = new BeliefStore(gridResolution);
 		int numUnobservations = pomdp.getNumUnobservations();
 		int numStates = pomdp.getNumStates();
+		double[] bu = new double[numUnobservations];
 		for (int so = unknownObs.nextSetBit(0); so >= 0; so = unknownObs.nextSetBit(so + 1)) {
-			ArrayList<Integer> unobservsForObserv = new ArrayList<>();
+			List<Integer> unobservsForObserv = new ArrayList<>();
 			for (int s = 0; s < numStates; s++) {
 				if (so == pomdp.getObservation(s)) {
 					unobservsForObserv.add(pomdp.getUnobservation(s));
 				}
 			}
-			assignment = fullAssignment(unobservsForObserv.size(), gridResolution);
-			for (ArrayList<Double> inner : assignment) {
-				double[] bu = new double[numUnobservations];
-				int k = 0;
-				for (int unobservForObserv : unobservsForObserv) {
-					bu[unobservForObserv] = inner.get(k);
-					k++;
+			addGridPoints(grid, so, unobservsForObserv, 0, gridResolution, bu);
+		}
+		return grid;
+	}
+	
+	/**
+	 * Recursively add grid points to {@code grid} for observation {@code so}: all those
+	 * extending the (partial) belief {@code bu}, which is defined for the first {@code k}
+	 * unobservations in {@code unobservs}, by distributing the {@code remaining} multiples
+	 * of 1/{@code gridResolution} over the remaining unobservations.
+	 */
+	private void addGridPoints(BeliefStore grid, int so, List<Integer> unobservs, int k, int remaining, double[] bu)
+	{
+		int u = unobservs.get(k);
+		if (k == unobservs.size() - 1) {
+			bu[u] = ((double) remaining) / gridResolution;
+			grid.add(so, bu);
+		} else {
+			for (int i = 0; i <= remaining; i++) {
+				bu[u] = ((double) i) / gridResolution;
+				addGridPoints(grid, so, unobservs, k + 1, remaining - i, bu);
+			}
+		}
+		bu[u] = 0.0;
+	}
+	
+	/**
+	 * Construct the belief MDP for the points of a grid-based approximation of the belief space,
+	 * with the values of successor beliefs interpolated over the grid points.
+	 * Successor beliefs whose observation is not in {@code unknownObs} have a known value:
+	 * {@code targetValue} if the observation is in {@code targetObs}; {@code otherValue} if not.
+	 * If provided, rewards {@code mdpRewards} are added to the constant term of each choice.
+	 * The grid points are processed in parallel, if multiple threads are enabled.
+	 */
+	protected SparseBeliefMDP buildGridBeliefMDP(POMDP pomdp, MDPRewards mdpRewards, BeliefStore grid, BitSet targetObs, BitSet unknownObs, double targetValue, double otherValue)
+	{
+		int numPoints = grid.size();
+		int numUnobservations = pomdp.getNumUnobservations();
+		// Build choices for each grid point separately (in parallel)
+		double[][] pointConsts = new double[numPoints][];
+		int[][] pointRowEnds = new int[numPoints][];
+		int[][] pointCols = new int[numPoints][];
+		double[][] pointWeights = new double[numPoints][];
+		Parallel.forRange(getNumThreads(), 0, numPoints, 16, (from, to) -> {
+			ArrayList<double[]> subSimplex = new ArrayList<>();
+			double[] lambdas = new double[numUnobservations];
+			for (int b = from; b < to; b++) {
+				Belief belief = grid.getBelief(b, numUnobservations);
+				double[] beliefInDist = belief.toDistributionOverStates(pomdp);
+				int numChoices = pomdp.getNumChoicesForObservation(belief.so);
+				double[] consts = new double[numChoices];
+				int[] rowEnds = new int[numChoices];
+				int[] cols = new int[4 * numChoices];
+				double[] weights = new double[4 * numChoices];
+				int n = 0;
+				for (int i = 0; i < numChoices; i++) {
+					consts[i] = (mdpRewards == null) ? 0.0 : pomdp.getRewardAfterChoice(beliefInDist, i, mdpRewards);
+					int rowStart = n;
+					// Get successor observations and their probs
+					HashMap<Integer, Double> obsProbs = pomdp.computeObservationProbsAfterAction(beliefInDist, i);
+					for (Map.Entry<Integer, Double> entry : obsProbs.entrySet()) {
+						int o = entry.getKey();
+						double prob = entry.getValue();
+						// Known values are added to the constant term
+						if (!unknownObs.get(o)) {
+							consts[i] += prob * (targetObs.get(o) ? targetValue : otherValue);
+							continue;
+						}
+						// Otherwise interpolate successor belief over grid points
+						Belief nextBelief = new Belief(pomdp.getBeliefInDistAfterChoiceAndObservation(beliefInDist, i, o), pomdp);
+						subSimplex.clear();
+						getSubSimplexAndLambdas(nextBelief.bu, subSimplex, lambdas, gridResolution);
+						for (int j = 0; j < lambdas.length; j++) {
+							if (lambdas[j] >= 1e-6) {
+								int col = grid.indexOf(o, subSimplex.get(j));
+								double weight = prob * lambdas[j];
+								// Merge with any existing entry for the same grid point
+								int k = rowStart;
+								while (k < n && cols[k] != col) {
+									k++;
+								}
+								if (k < n) {
+									weights[k] += weight;
+								} else {
+									if (n == cols.length) {
+										cols = Arrays.copyOf(cols, 2 * n);
+										weights = Arrays.copyOf(weights, 2 * n);
+									}
+									cols[n] = col;
+									weights[n] = weight;
+									n++;
+								}
+							}
+						}
+					}
+					rowEnds[i] = n;
 				}
-				gridPoints.add(new Belief(so, bu));
+				pointConsts[b] = consts;
+				pointRowEnds[b] = rowEnds;
+				pointCols[b] = cols;
+				pointWeights[b] = weights;
 			}
+		});
+		// Then combine into sparse storage
+		SparseBeliefMDP gridMDP = new SparseBeliefMDP();
+		int numChoices = 0, numEntries = 0;
+		for (int b = 0; b < numPoints; b++) {
+			numChoices += pointConsts[b].length;
+			numEntries += pointRowEnds[b].length == 0 ? 0 : pointRowEnds[b][pointRowEnds[b].length - 1];
 		}
-		return gridPoints;
+		gridMDP.choiceStarts = new int[numPoints + 1];
+		gridMDP.consts = new double[numChoices];
+		gridMDP.rowStarts = new int[numChoices + 1];
+		gridMDP.cols = new int[numEntries];
+		gridMDP.weights = new double[numEntries];
+		int c = 0, e = 0;
+		for (int b = 0; b < numPoints; b++) {
+			gridMDP.choiceStarts[b] = c;
+			int n = 0;
+			for (int i = 0; i < pointConsts[b].length; i++) {
+				gridMDP.consts[c] = pointConsts[b][i];
+				gridMDP.rowStarts[c] = e;
+				for (; n < pointRowEnds[b][i]; n++) {
+					gridMDP.cols[e] = pointCols[b][n];
+					gridMDP.weights[e] = pointWeights[b][n];
+					e++;
+				}
+				c++;
+			}
+			// Free temporary storage as we go
+			pointCols[b] = null;
+			pointWeights[b] = null;
+		}
+		gridMDP.choiceStarts[numPoints] = c;
+		gridMDP.rowStarts[c] = e;
+		return gridMDP;
 	}
 	
 	/**
-	 * Construct (part of) a belief MDP, just for the set of passed in belief states.
-	 * If provided, also construct a list of rewards for each state.
-	 * It is stored as a list (over source beliefs) of BeliefMDPState objects.
+	 * Solve a sparsely stored belief MDP using (Jacobi) value iteration, computing min/max values for each belief.
+	 * Iterations are performed in parallel, if multiple threads are enabled.
+	 * The values are returned in the {@code soln} field of the result,
+	 * with the number of iterations and accuracy. If {@code estimateAccuracy} is true,
+	 * the accuracy is estimated from the final difference between iterations;
+	 * otherwise (as used for the fixed-resolution grid method), no such error estimate is included.
 	 */
-	protected List<BeliefMDPState> buildBeliefMDP(POMDP pomdp, MDPRewards mdpRewards, List<Belief> beliefs)
+	protected ModelCheckerResult solveSparseBeliefMDP(SparseBeliefMDP beliefMDP, boolean min, boolean estimateAccuracy) throws PrismException
 	{
-		List<BeliefMDPState> beliefMDP = new ArrayList<>();
-		for (Belief belief: beliefs) {
-			beliefMDP.add(buildBeliefMDPState(pomdp, mdpRewards, belief));
+		int numBeliefs = beliefMDP.getNumBeliefs();
+		int numThreads = getNumThreads();
+		double[] soln = new double[numBeliefs];
+		double[] solnBackUp = new double[numBeliefs];
+		double maxDiff = 0.0;
+		int iters = 0;
+		boolean done = false;
+		while (!done && iters < maxIters) {
+			// Iterate over all beliefs
+			Parallel.forRange(numThreads, 0, numBeliefs, (from, to) -> {
+				for (int b = from; b < to; b++) {
+					soln[b] = beliefMDP.backup(b, solnBackUp, min);
+				}
+			});
+			// Check termination
+			done = PrismUtils.doublesAreClose(soln, solnBackUp, termCritParam, termCrit == TermCrit.RELATIVE, numThreads);
+			iters++;
+			// Measure final difference, for accuracy
+			if (estimateAccuracy && (done || iters == maxIters)) {
+				maxDiff = PrismUtils.measureSupNorm(soln, solnBackUp, termCrit == TermCrit.RELATIVE);
+			}
+			// back up
+			System.arraycopy(soln, 0, solnBackUp, 0, numBeliefs);
+		}
+		// Non-convergence is an error (usually)
+		if (!done && errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
 		}
-		return beliefMDP;
+		ModelCheckerResult res = new ModelCheckerResult();
+		res.soln = soln;
+		res.numIters = iters;
+		res.accuracy = AccuracyFactory.valueIteration(termCritParam, maxDiff, termCrit == TermCrit.RELATIVE);
+		return res;
+	}
+	
+	/**
+	 * Compute (bounds on) the min/max value of a POMDP from state {@code sInit},
+	 * by on-demand exploration of the beliefs reachable from the initial belief,
+	 * refining the bounds until the gap between them is within the required precision.
+	 * Successor beliefs whose observation is not in {@code unknownObs} have a known value:
+	 * {@code targetValue} if the observation is in {@code targetObs}; {@code otherValue} if not.
+	 * <br>
+	 * In each round, two fragments of the belief MDP are explored and solved:
+	 * (1) the exact belief MDP, up to a limited number of beliefs, with unexplored beliefs cut off,
+	 * using either the values of a fixed strategy (giving the inner bound, i.e. a value achievable
+	 * by a strategy) or the values of the fully observable MDP (giving an outer bound);
+	 * (2) the belief MDP in which successor beliefs are interpolated over the points of a grid
+	 * (whose resolution may differ for each observation), which gives another outer bound.
+	 * After each round, the number of beliefs explored exactly is doubled, and the grid resolution
+	 * is doubled for the observations where the interpolation is coarsest.
+	 * @param pomdp The POMDP
+	 * @param mdpRewards The rewards (optional)
+	 * @param sInit State to compute for
+	 * @param targetObs Target observations
+	 * @param unknownObs Observations for which values need to be computed
+	 * @param targetValue Value for target observations
+	 * @param otherValue Value for other (not unknown) observations
+	 * @param mdpValues Values for each state of the fully observable MDP
+	 * @param stratValues Values for each state of some memoryless observation-based strategy
+	 * @param min Min or max (true=min, false=max)
+	 */
+	protected ModelCheckerResult computeValuesBeliefExploration(POMDP pomdp, MDPRewards mdpRewards, int sInit, BitSet targetObs, BitSet unknownObs, double targetValue, double otherValue, double[] mdpValues, double[] stratValues, boolean min) throws PrismException
+	{
+		// Start belief exploration
+		long timer = System.currentTimeMillis();
+		mainLog.println("Starting belief exploration (" + (min ? "min" : "max") + ")...");
+		
+		// NB: proper storage of strategy for genStrat not yet supported
+		if (genStrat || exportAdv) {
+			mainLog.printWarning("Strategy export is not supported for POMDP belief exploration");
+		}
+		
+		double outerBound, innerBound;
+		Accuracy outerBoundAcc, innerBoundAcc;
+		int rounds = 0;
+		int so = pomdp.getObservation(sInit);
+		if (!unknownObs.get(so)) {
+			// Nothing to do if the value for the initial belief is known
+			outerBound = innerBound = targetObs.get(so) ? targetValue : otherValue;
+			outerBoundAcc = innerBoundAcc = AccuracyFactory.doublesFromQualitative();
+		} else {
+			// Values for cut-off beliefs
+			ToDoubleFunction<Belief> optimistic = belief -> getBeliefValueFromStateValues(pomdp, belief, mdpValues);
+			ToDoubleFunction<Belief> pessimistic = belief -> getBeliefValueFromStateValues(pomdp, belief, stratValues);
+			// Initial grid resolution (for each observation) and number of beliefs to explore exactly
+			int[] obsResolution = new int[pomdp.getNumObservations()];
+			Arrays.fill(obsResolution, gridResolution);
+			int maxExactBeliefs = Math.min(EXPLORATION_INITIAL_BELIEFS, explorationMaxBeliefs);
+			while (true) {
+				rounds++;
+				// Explore the exact belief MDP, and solve with pessimistic cut-offs
+				ExploredBeliefMDP exact = exploreBeliefMDP(pomdp, mdpRewards, sInit, targetObs, unknownObs, targetValue, otherValue, null, maxExactBeliefs);
+				exact.setCutOffValues(pessimistic);
+				ModelCheckerResult innerRes = solveSparseBeliefMDP(exact, min, true);
+				innerBound = innerRes.soln[0];
+				innerBoundAcc = innerRes.accuracy;
+				// If nothing was cut off, the exact belief MDP is complete and we are done
+				if (exact.numCutOffs == 0) {
+					outerBound = innerBound;
+					outerBoundAcc = innerBoundAcc;
+					mainLog.println("Round " + rounds + ": explored all " + exact.getNumBeliefs() + " reachable beliefs");
+					break;
+				}
+				// Otherwise, solve again with optimistic cut-offs
+				exact.setCutOffValues(optimistic);
+				ModelCheckerResult outerRes = solveSparseBeliefMDP(exact, min, true);
+				// Explore/solve the grid-based belief MDP, and take the tighter of the two outer bounds
+				ExploredBeliefMDP approx = exploreBeliefMDP(pomdp, mdpRewards, sInit, targetObs, unknownObs, targetValue, otherValue, obsResolution, explorationMaxBeliefs);
+				approx.setCutOffValues(optimistic);
+				ModelCheckerResult approxRes = solveSparseBeliefMDP(approx, min, true);
+				if (min ? approxRes.soln[0] > outerRes.soln[0] : approxRes.soln[0] < outerRes.soln[0]) {
+					outerRes = approxRes;
+				}
+				outerBound = outerRes.soln[0];
+				outerBoundAcc = outerRes.accuracy;
+				double lo = min ? outerBound : innerBound;
+				double hi = min ? innerBound : outerBound;
+				mainLog.print("Round " + rounds + ": explored " + exact.getNumBeliefs() + " beliefs (" + exact.numCutOffs + " cut off)");
+				mainLog.print(" and " + approx.getNumBeliefs() + " grid beliefs (max resolution " + Arrays.stream(obsResolution).max().getAsInt() + ")");
+				mainLog.println(", bounds: [" + lo + "," + hi + "]");
+				// Stop if precise enough
+				if (PrismUtils.measureSupNormInterval(lo, hi, termCrit == TermCrit.ABSOLUTE) <= explorationPrecision) {
+					break;
+				}
+				// Otherwise refine: explore more beliefs exactly and/or refine the grid
+				boolean refined = false;
+				if (maxExactBeliefs < explorationMaxBeliefs) {
+					maxExactBeliefs = (int) Math.min(2L * maxExactBeliefs, explorationMaxBeliefs);
+					refined = true;
+				}
+				if (approx.numCutOffs == 0 && refineGrid(approx, approxRes.soln, obsResolution)) {
+					refined = true;
+				}
+				if (!refined) {
+					mainLog.printWarning("Belief exploration stopped before reaching precision " + explorationPrecision + " (limit of " + explorationMaxBeliefs + " beliefs reached)");
+					break;
+				}
+			}
+		}
+		
+		// Print results
+		mainLog.println("Outer bound: " + outerBound + " (" + outerBoundAcc.toString(outerBound) + ")");
+		mainLog.println("Inner bound: " + innerBound + " (" + innerBoundAcc.toString(innerBound) + ")");
+		
+		// Finished belief exploration
+		timer = System.currentTimeMillis() - timer;
+		mainLog.print("\nBelief exploration (" + (min ? "min" : "max") + ")");
+		mainLog.println(" took " + rounds + " rounds and " + timer / 1000.0 + " seconds.");
+		
+		// Extract and store result
+		Pair<Double,Accuracy> resultValAndAcc;
+		if (min) {
+			resultValAndAcc = AccuracyFactory.valueAndAccuracyFromInterval(outerBound, outerBoundAcc, innerBound, innerBoundAcc);
+		} else {
+			resultValAndAcc = AccuracyFactory.valueAndAccuracyFromInterval(innerBound, innerBoundAcc, outerBound, outerBoundAcc);
+		}
+		double resultVal = resultValAndAcc.first;
+		Accuracy resultAcc = resultValAndAcc.second;
+		mainLog.println("Result bounds: [" + resultAcc.getResultLowerBound(resultVal) + "," + resultAcc.getResultUpperBound(resultVal) + "]");
+		double soln[] = new double[pomdp.getNumStates()];
+		soln[sInit] = resultVal;
+		
+		// Return results
+		ModelCheckerResult res = new ModelCheckerResult();
+		res.soln = soln;
+		res.accuracy = resultAcc;
+		res.numIters = rounds;
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+	
+	/**
+	 * Explore (a fragment of) the belief MDP for a POMDP, from the belief for state {@code sInit}
+	 * (which gets index 0), breadth-first. At most {@code maxBeliefs} beliefs are explored;
+	 * any others that are reached become cut-offs.
+	 * Successor beliefs whose observation is not in {@code unknownObs} have a known value:
+	 * {@code targetValue} if the observation is in {@code targetObs}; {@code otherValue} if not.
+	 * If {@code obsResolution} is non-null, successor beliefs that are not points of the grid with
+	 * resolution {@code obsResolution[o]} (where o is their observation) are replaced by the grid points
+	 * that they are interpolated over. Otherwise, successor beliefs are explored exactly.
+	 * If provided, rewards {@code mdpRewards} are added to the constant term of each choice.
+	 */
+	protected ExploredBeliefMDP exploreBeliefMDP(POMDP pomdp, MDPRewards mdpRewards, int sInit, BitSet targetObs, BitSet unknownObs, double targetValue, double otherValue, int[] obsResolution, int maxBeliefs)
+	{
+		int numUnobservations = pomdp.getNumUnobservations();
+		// Exact beliefs must not be merged or rounded, so only the grid-based one uses a discretised store
+		BeliefStore store = (obsResolution == null) ? new ExactBeliefStore() : new BeliefStore(EXPLORATION_BELIEF_RESOLUTION);
+		ExploredBeliefMDP explored = new ExploredBeliefMDP(store, numUnobservations);
+		BeliefStore beliefs = explored.beliefs;
+		beliefs.add(Belief.pointDistribution(sInit, pomdp));
+		ArrayList<double[]> subSimplex = new ArrayList<>();
+		double[] lambdas = new double[numUnobservations];
+		for (int b = 0; b < beliefs.size(); b++) {
+			explored.startBelief(b);
+			// Cut off beliefs beyond the limit
+			if (b >= maxBeliefs) {
+				explored.addCutOff(b);
+				continue;
+			}
+			Belief belief = beliefs.getBelief(b, numUnobservations);
+			double[] beliefInDist = belief.toDistributionOverStates(pomdp);
+			int numChoices = pomdp.getNumChoicesForObservation(belief.so);
+			for (int i = 0; i < numChoices; i++) {
+				explored.startChoice((mdpRewards == null) ? 0.0 : pomdp.getRewardAfterChoice(beliefInDist, i, mdpRewards));
+				// Get successor observations and their probs
+				HashMap<Integer, Double> obsProbs = pomdp.computeObservationProbsAfterAction(beliefInDist, i);
+				for (Map.Entry<Integer, Double> entry : obsProbs.entrySet()) {
+					int o = entry.getKey();
+					double prob = entry.getValue();
+					// Known values are added to the constant term
+					if (!unknownObs.get(o)) {
+						explored.addToConst(prob * (targetObs.get(o) ? targetValue : otherValue));
+						continue;
+					}
+					// Otherwise add the successor belief (or the grid points it is interpolated over)
+					Belief nextBelief = new Belief(pomdp.getBeliefInDistAfterChoiceAndObservation(beliefInDist, i, o), pomdp);
+					if (obsResolution == null || isGridPoint(nextBelief.bu, obsResolution[o])) {
+						explored.addEntry(beliefs.add(nextBelief), prob);
+					} else {
+						subSimplex.clear();
+						getSubSimplexAndLambdas(nextBelief.bu, subSimplex, lambdas, obsResolution[o]);
+						explored.startInterp(o);
+						for (int j = 0; j < lambdas.length; j++) {
+							if (lambdas[j] >= 1e-6) {
+								int point = beliefs.add(o, subSimplex.get(j));
+								explored.addEntry(point, prob * lambdas[j]);
+								explored.addInterpPoint(point);
+							}
+						}
+					}
+				}
+			}
+		}
+		explored.finish();
+		return explored;
+	}
+	
+	/**
+	 * Construct a memoryless observation-based strategy for a POMDP, which picks in each state
+	 * the choice that is optimal, on average over all states with the same observation,
+	 * with respect to the values {@code mdpValues} of the fully observable MDP.
+	 * Since such a strategy can be used from any belief, its values give (pessimistic) bounds.
+	 * @param pomdp The POMDP
+	 * @param mdpRewards The rewards (optional)
+	 * @param mdpValues Values for each state of the fully observable MDP
+	 * @param min Min or max (true=min, false=max)
+	 */
+	protected int[] computeObservationBasedStrategy(POMDP pomdp, MDPRewards mdpRewards, double[] mdpValues, boolean min)
+	{
+		int numStates = pomdp.getNumStates();
+		int numObservations = pomdp.getNumObservations();
+		// Sum values of each choice over the states for each observation
+		double[][] obsChoiceValues = new double[numObservations][];
+		for (int o = 0; o < numObservations; o++) {
+			obsChoiceValues[o] = new double[pomdp.getNumChoicesForObservation(o)];
+		}
+		for (int s = 0; s < numStates; s++) {
+			double[] choiceValues = obsChoiceValues[pomdp.getObservation(s)];
+			for (int i = 0; i < choiceValues.length; i++) {
+				choiceValues[i] += (mdpRewards == null) ? pomdp.mvMultSingle(s, i, mdpValues) : pomdp.mvMultRewSingle(s, i, mdpValues, mdpRewards);
+			}
+		}
+		// Pick the best choice for each observation
+		int[] strat = new int[numStates];
+		for (int s = 0; s < numStates; s++) {
+			double[] choiceValues = obsChoiceValues[pomdp.getObservation(s)];
+			int best = 0;
+			for (int i = 1; i < choiceValues.length; i++) {
+				if (min ? choiceValues[i] < choiceValues[best] : choiceValues[i] > choiceValues[best]) {
+					best = i;
+				}
+			}
+			strat[s] = choiceValues.length > 0 ? best : -1;
+		}
+		return strat;
+	}
+	
+	/**
+	 * Get the value of a belief, as the expected value of {@code stateValues} over states.
+	 */
+	protected double getBeliefValueFromStateValues(POMDP pomdp, Belief belief, double[] stateValues)
+	{
+		double[] beliefInDist = belief.toDistributionOverStates(pomdp);
+		double value = 0.0;
+		for (int s = 0; s < beliefInDist.length; s++) {
+			if (beliefInDist[s] > 0) {
+				value += beliefInDist[s] * stateValues[s];
+			}
+		}
+		return value;
+	}
+	
+	/**
+	 * Refine the grid used for interpolation in a belief MDP {@code approx}, given its values {@code values},
+	 * by doubling the resolution in {@code obsResolution} for the observations where the values
+	 * of the grid points used to interpolate a belief differ the most.
+	 * Returns false if there is nothing to refine (e.g., no beliefs were interpolated).
+	 */
+	protected boolean refineGrid(ExploredBeliefMDP approx, double[] values, int[] obsResolution)
+	{
+		// Find the max spread of values over grid points, for each observation
+		double[] spread = new double[obsResolution.length];
+		double maxSpread = 0.0;
+		for (int k = 0; k < approx.numInterps; k++) {
+			double lo = Double.POSITIVE_INFINITY;
+			double hi = Double.NEGATIVE_INFINITY;
+			for (int j = approx.interpStarts[k]; j < approx.interpStarts[k + 1]; j++) {
+				lo = Math.min(lo, values[approx.interpPoints[j]]);
+				hi = Math.max(hi, values[approx.interpPoints[j]]);
+			}
+			// NB: NaN differences (from infinite values) are ignored
+			int o = approx.interpObs[k];
+			if (hi - lo > spread[o]) {
+				spread[o] = hi - lo;
+				maxSpread = Math.max(maxSpread, spread[o]);
+			}
+		}
+		if (maxSpread == 0.0) {
+			return false;
+		}
+		// Refine those within a factor of 2 of the max
+		for (int o = 0; o < obsResolution.length; o++) {
+			if (spread[o] >= maxSpread / 2) {
+				obsResolution[o] *= 2;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Check whether a distribution over unobservations {@code bu} is a point of the grid with resolution {@code resolution}.
+	 */
+	protected boolean isGridPoint(double[] bu, int resolution)
+	{
+		for (int u = 0; u < bu.length; u++) {
+			double x = bu[u] * resolution;
+			if (Math.abs(x - Math.round(x)) > 1e-6) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	/**
@@ -698,7 +1431,7 @@ public class POMDPModelChecker extends ProbModelChecker
 	/**
 	 * Compute the grid-based approximate value for a belief for probabilistic reachability
 	 */
-	protected double approximateReachProb(Belief belief, HashMap<Belief, Double> gridValues, BitSet targetObs, BitSet unknownObs)
+	protected double approximateReachProb(Belief belief, BeliefStore grid, double[] gridValues, BitSet targetObs, BitSet unknownObs)
 	{
 		// 1 for target states
 		if (targetObs.get(belief.so)) {
@@ -710,14 +1443,14 @@ public class POMDPModelChecker extends ProbModelChecker
 		}
 		// Otherwise approximate vie interpolation over grid points
 		else {
-			return interpolateOverGrid(belief, gridValues);
+			return interpolateOverGrid(belief, grid, gridValues);
 		}
 	}
 	
 	/**
 	 * Compute the grid-based approximate value for a belief for reward reachability
 	 */
-	protected double approximateReachReward(Belief belief, HashMap<Belief, Double> gridValues, BitSet targetObs, BitSet infObs)
+	protected double approximateReachReward(Belief belief, BeliefStore grid, double[] gridValues, BitSet targetObs, BitSet infObs)
 	{
 		// 0 for target states
 		if (targetObs.get(belief.so)) {
@@ -729,15 +1462,15 @@ public class POMDPModelChecker extends ProbModelChecker
 		}
 		// Otherwise approximate vie interpolation over grid points
 		else {
-			return interpolateOverGrid(belief, gridValues);
+			return interpolateOverGrid(belief, grid, gridValues);
 		}
 	}
 	
 	/**
 	 * Approximate the value for a belief {@code belief} by interpolating over values {@code gridValues}
-	 * for a representative set of beliefs whose convex hull is the full belief space.
+	 * for a representative set of beliefs {@code grid} whose convex hull is the full belief space.
 	 */
-	protected double interpolateOverGrid(Belief belief, HashMap<Belief, Double> gridValues)
+	protected double interpolateOverGrid(Belief belief, BeliefStore grid, double[] gridValues)
 	{
 		ArrayList<double[]> subSimplex = new ArrayList<>();
 		double[] lambdas = new double[belief.bu.length];
@@ -745,7 +1478,7 @@ public class POMDPModelChecker extends ProbModelChecker
 		double val = 0;
 		for (int j = 0; j < lambdas.length; j++) {
 			if (lambdas[j] >= 1e-6) {
-				val += lambdas[j] * gridValues.get(new Belief(belief.so, subSimplex.get(j)));
+				val += lambdas[j] * gridValues[grid.indexOf(belief.so, subSimplex.get(j))];
 			}
 		}
 		return val;
@@ -832,49 +1565,6 @@ public class POMDPModelChecker extends ProbModelChecker
 		return psm;
 	}
 	
-	protected ArrayList<ArrayList<Integer>> assignGPrime(int startIndex, int min, int max, int length)
-	{
-		ArrayList<ArrayList<Integer>> result = new ArrayList<ArrayList<Integer>>();
-		if (startIndex == length - 1) {
-			for (int i = min; i <= max; i++) {
-				ArrayList<Integer> innerList = new ArrayList<>();
-				innerList.add(i);
-				result.add(innerList);
-			}
-		} else {
-			for (int i = min; i <= max; i++) {
-				ArrayList<ArrayList<Integer>> nextResult = assignGPrime(startIndex + 1, 0, i, length);
-				for (ArrayList<Integer> nextReulstInner : nextResult) {
-					ArrayList<Integer> innerList = new ArrayList<>();
-					innerList.add(i);
-					for (Integer a : nextReulstInner) {
-						innerList.add(a);
-					}
-					result.add(innerList);
-				}
-			}
-		}
-
-		return result;
-	}
-
-	private ArrayList<ArrayList<Double>> fullAssignment(int length, int resolution)
-	{
-		ArrayList<ArrayList<Integer>> GPrime = assignGPrime(0, resolution, resolution, length);
-		ArrayList<ArrayList<Double>> result = new ArrayList<ArrayList<Double>>();
-		for (ArrayList<Integer> GPrimeInner : GPrime) {
-			ArrayList<Double> innerList = new ArrayList<>();
-			int i;
-			for (i = 0; i < length - 1; i++) {
-				int temp = GPrimeInner.get(i) - GPrimeInner.get(i + 1);
-				innerList.add((double) temp / resolution);
-			}
-			innerList.add((double) GPrimeInner.get(i) / resolution);
-			result.add(innerList);
-		}
-		return result;
-	}
-
 	private int[] getSortedPermutation(double[] inputArray)
 	{
 		int n = inputArray.length;
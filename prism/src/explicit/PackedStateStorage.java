@@ -0,0 +1,648 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import parser.State;
+import parser.VarList;
+import parser.ast.DeclarationBool;
+import parser.ast.DeclarationInt;
+import parser.ast.DeclarationType;
+import prism.PrismException;
+
+/**
+ * Compact storage for a set of (indexed) states, typically used during reachability.
+ * <br>
+ * Each state is bit-packed into one or more {@code long} words, using the variable ranges
+ * from a {@link VarList}, and stored (in order of addition) in a single array.
+ * Lookup is via an open-addressing hash table of state indices.
+ * No {@link State} objects are kept; they are recreated when the states are extracted.
+ * <br>
+ * Variables are packed in order, starting from the most significant bits of each word,
+ * so comparing the packed words (as unsigned values) corresponds to {@link State#compareTo(State)}.
+ * This allows {@link #buildSortingPermutation()} to work, although the set is not itself sorted.
+ * <br>
+ * Only bounded integer and Boolean variables are supported (see {@link #canStore(VarList)}).
+ * If a state with a variable value outside its declared range is added, all states are moved
+ * to an {@link IndexedSet} (keeping their indices), which is used from then on.
+ * Lookups ({@link #get}, {@link #contains}) can be performed concurrently,
+ * as long as there is no concurrent modification.
+ */
+public class PackedStateStorage implements StateStorage<State>
+{
+	/** Default initial capacity (number of states) */
+	private static final int DEFAULT_CAPACITY = 1 << 10;
+
+	// Packing info
+	/** Number of variables */
+	private int numVars;
+	/** Number of words per state */
+	private int numWords;
+	/** For each variable: is it Boolean? */
+	private boolean[] varIsBool;
+	/** For each variable: lower bound (of integer encoding) */
+	private int[] varLow;
+	/** For each variable: upper bound (of integer encoding) */
+	private int[] varHigh;
+	/** For each variable: word it is stored in */
+	private int[] varWord;
+	/** For each variable: bit shift within word */
+	private int[] varShift;
+	/** For each word w: variables varWordStart[w]...varWordStart[w+1]-1 are stored in w */
+	private int[] varWordStart;
+
+	// Storage
+	/** Packed states, in order of index (numWords words each) */
+	private long[] packed;
+	/** Number of states stored */
+	private int size;
+	/** Hash table: each entry is (index of state + 1), or 0 if empty */
+	private int[] table;
+	/** Hash table size minus 1 (size is a power of 2) */
+	private int mask;
+	/** Index of the last state added (or looked up) with {@link #add(State)} */
+	private int indexOfLastAdd;
+	/** Temporary storage for the packing of a state being added */
+	private long[] scratch;
+	/** Storage used instead, once a state that cannot be packed has been added (otherwise null) */
+	private IndexedSet<State> fallback;
+
+	/**
+	 * Check whether states with variables as described by {@code varList} can be stored
+	 * (i.e., whether all variables are bounded integers or Booleans).
+	 */
+	public static boolean canStore(VarList varList)
+	{
+		int n = varList.getNumVars();
+		for (int i = 0; i < n; i++) {
+			DeclarationType declType = varList.getDeclarationType(i);
+			if (!(declType instanceof DeclarationInt || declType instanceof DeclarationBool)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Create an empty store for states with variables as described by {@code varList}.
+	 * Throws an exception if these cannot be stored (see {@link #canStore(VarList)}).
+	 */
+	public PackedStateStorage(VarList varList) throws PrismException
+	{
+		this(varList, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create an empty store for states with variables as described by {@code varList},
+	 * with initial space for {@code capacity} states.
+	 * Throws an exception if these cannot be stored (see {@link #canStore(VarList)}).
+	 */
+	public PackedStateStorage(VarList varList, int capacity) throws PrismException
+	{
+		if (!canStore(varList)) {
+			throw new PrismException("Compact state storage only supports bounded integer and Boolean variables");
+		}
+		// Compute layout of variables within words
+		numVars = varList.getNumVars();
+		varIsBool = new boolean[numVars];
+		varLow = new int[numVars];
+		varHigh = new int[numVars];
+		varWord = new int[numVars];
+		varShift = new int[numVars];
+		int w = 0, bitsUsed = 0;
+		for (int i = 0; i < numVars; i++) {
+			varIsBool[i] = varList.getDeclarationType(i) instanceof DeclarationBool;
+			varLow[i] = varList.getLow(i);
+			varHigh[i] = varList.getHigh(i);
+			int bits = 32 - Integer.numberOfLeadingZeros(varHigh[i] - varLow[i]);
+			if (bitsUsed + bits > 64) {
+				w++;
+				bitsUsed = 0;
+			}
+			varWord[i] = w;
+			varShift[i] = 64 - bitsUsed - bits;
+			bitsUsed += bits;
+		}
+		numWords = w + 1;
+		varWordStart = new int[numWords + 1];
+		for (int i = numVars - 1; i >= 0; i--) {
+			varWordStart[varWord[i]] = i;
+		}
+		varWordStart[numWords] = numVars;
+		scratch = new long[numWords];
+		// Allocate storage
+		capacity = Math.max(capacity, 16);
+		packed = new long[capacity * numWords];
+		table = new int[tableSizeFor(capacity)];
+		mask = table.length - 1;
+		size = 0;
+		indexOfLastAdd = -1;
+	}
+
+	// Packing
+
+	/**
+	 * Check whether {@code state} can be packed, i.e., whether
+	 * the values of all its integer variables are within their declared ranges.
+	 */
+	private boolean canPack(State state)
+	{
+		Object[] varValues = state.varValues;
+		for (int i = 0; i < numVars; i++) {
+			if (!varIsBool[i]) {
+				int val = (Integer) varValues[i];
+				if (val < varLow[i] || val > varHigh[i]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compute word {@code w} of the packed encoding of {@code state}
+	 * (which must be packable, see {@link #canPack(State)}).
+	 */
+	private long packWord(State state, int w)
+	{
+		long word = 0;
+		Object[] varValues = state.varValues;
+		for (int i = varWordStart[w]; i < varWordStart[w + 1]; i++) {
+			int val;
+			if (varIsBool[i]) {
+				val = ((Boolean) varValues[i]) ? 1 : 0;
+			} else {
+				val = (Integer) varValues[i] - varLow[i];
+			}
+			word |= ((long) val) << varShift[i];
+		}
+		return word;
+	}
+
+	/**
+	 * Create a new State object from the packed state with index {@code s}.
+	 */
+	private State unpack(int s)
+	{
+		State state = new State(numVars);
+		int base = s * numWords;
+		for (int i = 0; i < numVars; i++) {
+			int bits = 32 - Integer.numberOfLeadingZeros(varHigh[i] - varLow[i]);
+			int val = (int) ((packed[base + varWord[i]] >>> varShift[i]) & ((1L << bits) - 1));
+			if (varIsBool[i]) {
+				state.varValues[i] = val != 0;
+			} else {
+				state.varValues[i] = val + varLow[i];
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Hash code for a packed state, given as a sequence of words.
+	 */
+	private static int hash(long h)
+	{
+		// Finalisation step of MurmurHash3 (64-bit)
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	/**
+	 * Combine the words of a packed state into a single value for hashing.
+	 */
+	private static long combine(long h, long word)
+	{
+		return h * 0x9e3779b97f4a7c15L + word;
+	}
+
+	/**
+	 * Compute the hash of the packed state with index {@code s}.
+	 */
+	private int hashOfIndex(int s)
+	{
+		long h = 0;
+		int base = s * numWords;
+		for (int w = 0; w < numWords; w++) {
+			h = combine(h, packed[base + w]);
+		}
+		return hash(h);
+	}
+
+	/**
+	 * Find the index of a state, given its packing in {@code words}.
+	 * If absent, returns -(slot + 1), where slot is the (empty) hash table slot
+	 * where it would be inserted.
+	 */
+	private int find(long[] words)
+	{
+		long h = 0;
+		for (int w = 0; w < numWords; w++) {
+			h = combine(h, words[w]);
+		}
+		int slot = hash(h) & mask;
+		while (true) {
+			int entry = table[slot];
+			if (entry == 0) {
+				return -(slot + 1);
+			}
+			int base = (entry - 1) * numWords;
+			boolean match = true;
+			for (int w = 0; w < numWords; w++) {
+				if (packed[base + w] != words[w]) {
+					match = false;
+					break;
+				}
+			}
+			if (match) {
+				return entry - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Find the index of {@code state}, or -1 if not present.
+	 * Does not use any shared temporary storage, so is safe for concurrent lookups.
+	 */
+	private int find(State state)
+	{
+		// A state that cannot be packed has not been stored
+		if (!canPack(state)) {
+			return -1;
+		}
+		// Common case (single word): no allocation needed
+		if (numWords == 1) {
+			long word = packWord(state, 0);
+			int slot = hash(combine(0, word)) & mask;
+			while (true) {
+				int entry = table[slot];
+				if (entry == 0) {
+					return -1;
+				}
+				if (packed[entry - 1] == word) {
+					return entry - 1;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+		long[] words = new long[numWords];
+		for (int w = 0; w < numWords; w++) {
+			words[w] = packWord(state, w);
+		}
+		int s = find(words);
+		return s < 0 ? -1 : s;
+	}
+
+	/**
+	 * Grow the hash table (and rehash), if the load factor has been exceeded.
+	 */
+	private void ensureTableCapacity()
+	{
+		// Max load factor is 0.5
+		if (2 * (size + 1) <= table.length) {
+			return;
+		}
+		table = new int[table.length * 2];
+		mask = table.length - 1;
+		for (int s = 0; s < size; s++) {
+			int slot = hashOfIndex(s) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = s + 1;
+		}
+	}
+
+	/**
+	 * Smallest power of 2 giving a load factor of at most 0.5 for {@code capacity} entries.
+	 */
+	private static int tableSizeFor(int capacity)
+	{
+		int n = 1;
+		while (n < 2 * capacity) {
+			n <<= 1;
+		}
+		return n;
+	}
+
+	/**
+	 * Move all states stored so far to {@link #fallback} (with the same indices)
+	 * and free the packed storage.
+	 */
+	private void switchToFallback()
+	{
+		fallback = new IndexedSet<State>(true);
+		for (int s = 0; s < size; s++) {
+			fallback.add(unpack(s));
+		}
+		packed = new long[0];
+		table = new int[1];
+		mask = 0;
+		size = 0;
+	}
+
+	// Methods for StateStorage
+
+	/**
+	 * Get the index of a state, or -1 if it is not stored.
+	 */
+	@Override
+	public int get(State state)
+	{
+		if (fallback != null)
+			return fallback.get(state);
+		return find(state);
+	}
+
+	@Override
+	public boolean add(State state)
+	{
+		if (fallback == null && !canPack(state)) {
+			switchToFallback();
+		}
+		if (fallback != null)
+			return fallback.add(state);
+		for (int w = 0; w < numWords; w++) {
+			scratch[w] = packWord(state, w);
+		}
+		// Make sure there is room in the hash table (in case this is a new state)
+		ensureTableCapacity();
+		int s = find(scratch);
+		if (s >= 0) {
+			indexOfLastAdd = s;
+			return false;
+		}
+		// Add to the end of the packed array
+		if ((size + 1) * numWords > packed.length) {
+			long[] packedNew = new long[Math.max(packed.length * 2, (size + 1) * numWords)];
+			System.arraycopy(packed, 0, packedNew, 0, size * numWords);
+			packed = packedNew;
+		}
+		System.arraycopy(scratch, 0, packed, size * numWords, numWords);
+		// Insert into hash table
+		table[-(s + 1)] = size + 1;
+		indexOfLastAdd = size;
+		size++;
+		return true;
+	}
+
+	@Override
+	public void clear()
+	{
+		fallback = null;
+		packed = new long[16 * numWords];
+		table = new int[tableSizeFor(16)];
+		mask = table.length - 1;
+		size = 0;
+		indexOfLastAdd = -1;
+	}
+
+	@Override
+	public boolean contains(State state)
+	{
+		if (fallback != null)
+			return fallback.contains(state);
+		return find(state) != -1;
+	}
+
+	@Override
+	public int getIndexOfLastAdd()
+	{
+		if (fallback != null)
+			return fallback.getIndexOfLastAdd();
+		return indexOfLastAdd;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		if (fallback != null)
+			return fallback.isEmpty();
+		return size == 0;
+	}
+
+	@Override
+	public int size()
+	{
+		if (fallback != null)
+			return fallback.size();
+		return size;
+	}
+
+	/**
+	 * Get access to the set of (state, index) pairs.
+	 * Note that this is a view, which recreates State objects as it is iterated over,
+	 * and it is ordered by index.
+	 */
+	@Override
+	public Set<Map.Entry<State, Integer>> getEntrySet()
+	{
+		if (fallback != null)
+			return fallback.getEntrySet();
+		return new AbstractSet<Map.Entry<State, Integer>>()
+		{
+			@Override
+			public Iterator<Map.Entry<State, Integer>> iterator()
+			{
+				return new Iterator<Map.Entry<State, Integer>>()
+				{
+					private int s = 0;
+
+					@Override
+					public boolean hasNext()
+					{
+						return s < size;
+					}
+
+					@Override
+					public Map.Entry<State, Integer> next()
+					{
+						if (s >= size)
+							throw new NoSuchElementException();
+						Map.Entry<State, Integer> e = new AbstractMap.SimpleImmutableEntry<>(unpack(s), s);
+						s++;
+						return e;
+					}
+				};
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public ArrayList<State> toArrayList()
+	{
+		if (fallback != null)
+			return fallback.toArrayList();
+		ArrayList<State> list = new ArrayList<State>(size);
+		toArrayList(list);
+		return list;
+	}
+
+	@Override
+	public void toArrayList(ArrayList<State> list)
+	{
+		if (fallback != null) {
+			fallback.toArrayList(list);
+			return;
+		}
+		for (int s = 0; s < size; s++) {
+			list.add(unpack(s));
+		}
+	}
+
+	@Override
+	public ArrayList<State> toPermutedArrayList(int permut[])
+	{
+		if (fallback != null)
+			return fallback.toPermutedArrayList(permut);
+		ArrayList<State> list = new ArrayList<State>(size);
+		toPermutedArrayList(permut, list);
+		return list;
+	}
+
+	@Override
+	public void toPermutedArrayList(int permut[], ArrayList<State> list)
+	{
+		if (fallback != null) {
+			fallback.toPermutedArrayList(permut, list);
+			return;
+		}
+		for (int s = 0; s < size; s++)
+			list.add(null);
+		for (int s = 0; s < size; s++) {
+			list.set(permut[s], unpack(s));
+		}
+	}
+
+	/**
+	 * Build sort permutation, i.e., a permutation (integer array) mapping current indices
+	 * to new indices under the ordering of {@link State#compareTo(State)}.
+	 * The states are sorted once, here (by their packed representation).
+	 */
+	@Override
+	public int[] buildSortingPermutation()
+	{
+		if (fallback != null)
+			return fallback.buildSortingPermutation();
+		// Sort state indices (merge sort, using a temporary array)
+		int[] order = new int[size];
+		for (int s = 0; s < size; s++) {
+			order[s] = s;
+		}
+		mergeSort(order, new int[size], 0, size);
+		// Invert to get the permutation
+		int[] perm = new int[size];
+		for (int i = 0; i < size; i++) {
+			perm[order[i]] = i;
+		}
+		return perm;
+	}
+
+	/**
+	 * Sort {@code a[lo..hi-1]} (state indices) by packed state, using {@code tmp} as temporary storage.
+	 */
+	private void mergeSort(int[] a, int[] tmp, int lo, int hi)
+	{
+		if (hi - lo < 16) {
+			// Insertion sort for small ranges
+			for (int i = lo + 1; i < hi; i++) {
+				int x = a[i];
+				int j = i - 1;
+				while (j >= lo && compareIndices(a[j], x) > 0) {
+					a[j + 1] = a[j];
+					j--;
+				}
+				a[j + 1] = x;
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		mergeSort(a, tmp, lo, mid);
+		mergeSort(a, tmp, mid, hi);
+		if (compareIndices(a[mid - 1], a[mid]) <= 0) {
+			return;
+		}
+		System.arraycopy(a, lo, tmp, lo, hi - lo);
+		int i = lo, j = mid, k = lo;
+		while (i < mid && j < hi) {
+			a[k++] = compareIndices(tmp[j], tmp[i]) < 0 ? tmp[j++] : tmp[i++];
+		}
+		while (i < mid) {
+			a[k++] = tmp[i++];
+		}
+		while (j < hi) {
+			a[k++] = tmp[j++];
+		}
+	}
+
+	/**
+	 * Compare the packed states with indices {@code s1} and {@code s2}
+	 * (consistently with {@link State#compareTo(State)}).
+	 */
+	private int compareIndices(int s1, int s2)
+	{
+		int base1 = s1 * numWords;
+		int base2 = s2 * numWords;
+		for (int w = 0; w < numWords; w++) {
+			int c = Long.compareUnsigned(packed[base1 + w], packed[base2 + w]);
+			if (c != 0)
+				return c;
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		if (fallback != null)
+			return fallback.toString();
+		StringBuilder sb = new StringBuilder("{");
+		for (int s = 0; s < size; s++) {
+			if (s > 0)
+				sb.append(", ");
+			sb.append(unpack(s)).append("=").append(s);
+		}
+		sb.append("}");
+		return sb.toString();
+	}
+}
@@ -26,14 +26,16 @@
 
 package explicit;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Stack;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+import common.Parallel;
+import common.iterable.IterableInt;
 import prism.PrismComponent;
-import common.IterableBitSet;
+import prism.PrismSettings;
 
 /**
  * A class for storing and accessing the predecessor relation of an explicit Model.
@@ -41,15 +43,30 @@ import common.IterableBitSet;
  * As Model only provide easy access to successors of states,
  * the predecessor relation is computed and stored for subsequent efficient access.
  * <p>
+ * The relation is stored in compressed form, i.e., the predecessors of all states
+ * are stored in a single array, ordered by state (and then ascending),
+ * with a second array giving the start of the predecessors of each state.
+ * The predecessors of a state can be accessed without allocation via
+ * {@link #getNumPredecessors(int)} and {@link #getPredecessor(int, int)}.
+ * <p>
  * Note: Naturally, if the model changes, the predecessor relation
  * has to be recomputed to remain accurate.
  */
 public class PredecessorRelation
 {
+	/** Minimum number of states for the relation to be computed with multiple threads */
+	public static final int PARALLEL_MIN_STATES = 65536;
+
+	/**
+	 * preStarts[i] is the index (into pre) of the first predecessor of state i,
+	 * with an extra entry at the end.
+	 */
+	private int[] preStarts;
+
 	/**
-	 * pre[i] provides the list of predecessors of state with index i.
+	 * The predecessors of all states; those of state i are in pre[preStarts[i]] ... pre[preStarts[i+1]-1].
 	 */
-	List<ArrayList<Integer>> pre;
+	private int[] pre;
 
 	/**
 	 * Constructor. Computes the predecessor relation for the given model
@@ -59,54 +76,167 @@ public class PredecessorRelation
 	 */
 	public PredecessorRelation(Model model)
 	{
-		pre = new ArrayList<ArrayList<Integer>>(model.getNumStates());
-		// construct the (empty) array list for all states
-		for (int s = 0; s < model.getNumStates(); s++) {
-			pre.add(s, new ArrayList<Integer>());
+		this(model, 1);
+	}
+
+	/**
+	 * Constructor. Computes the predecessor relation for the given model
+	 * by considering the successors of each state, using {@code numThreads} threads
+	 * for large models (the result does not depend on the number of threads).
+	 *
+	 * @param model the Model
+	 * @param numThreads the number of threads
+	 */
+	public PredecessorRelation(Model model, int numThreads)
+	{
+		if (numThreads > 1 && model.getNumStates() >= PARALLEL_MIN_STATES && supportsParallel(model)) {
+			computeParallel(model, numThreads);
+		} else {
+			compute(model);
 		}
+	}
 
-		compute(model);
+	/**
+	 * Can the successors of states of {@code model} safely be queried concurrently?
+	 * This is the case for models stored explicitly (i.e., subclasses of ModelExplicit),
+	 * whereas other implementations (e.g., model views) may compute successors on the fly.
+	 */
+	static boolean supportsParallel(Model model)
+	{
+		return model instanceof ModelExplicit;
 	}
 
-	/** Compute the predecessor relation using getSuccessorsIterator. */
+	/**
+	 * Compute the predecessor relation using getSuccessors,
+	 * in two passes: first counting the predecessors of each state, then storing them.
+	 */
 	private void compute(Model model)
 	{
 		int n = model.getNumStates();
 
+		// Count the predecessors of each state (in preStarts[successor + 1])
+		preStarts = new int[n + 1];
+		for (int s = 0; s < n; s++) {
+			// As the successors are distinct,
+			// s will be counted for each successor exactly once.
+			SuccessorsIterator it = model.getSuccessors(s).distinct();
+			while (it.hasNext()) {
+				preStarts[it.nextInt() + 1]++;
+			}
+		}
+		for (int s = 0; s < n; s++) {
+			preStarts[s + 1] += preStarts[s];
+		}
+
+		// Store the predecessors (in ascending order, for each state)
+		pre = new int[preStarts[n]];
+		int[] next = Arrays.copyOf(preStarts, n);
 		for (int s = 0; s < n; s++) {
-			Iterator<Integer> it = model.getSuccessorsIterator(s);
+			SuccessorsIterator it = model.getSuccessors(s).distinct();
 			while (it.hasNext()) {
-				Integer successor = it.next();
-
-				// Add the current state s to pre[successor].
-				//
-				// As getSuccessorsIterator guarantees that
-				// there are no duplicates in the successors,
-				// s will be added to successor exactly once.
-				pre.get(successor).add(s);
+				pre[next[it.nextInt()]++] = s;
 			}
 		}
 	}
 
+	/**
+	 * Compute the predecessor relation using getSuccessors, as for {@link #compute(Model)},
+	 * but processing ranges of states in parallel. As the order in which predecessors
+	 * are stored then varies, the predecessors of each state are sorted afterwards.
+	 */
+	private void computeParallel(Model model, int numThreads)
+	{
+		int n = model.getNumStates();
+
+		// Count the predecessors of each state
+		AtomicIntegerArray counts = new AtomicIntegerArray(n + 1);
+		Parallel.forRange(numThreads, 0, n, (from, to) -> {
+			for (int s = from; s < to; s++) {
+				SuccessorsIterator it = model.getSuccessors(s).distinct();
+				while (it.hasNext()) {
+					counts.incrementAndGet(it.nextInt() + 1);
+				}
+			}
+		});
+		preStarts = new int[n + 1];
+		for (int s = 0; s < n; s++) {
+			preStarts[s + 1] = preStarts[s] + counts.get(s + 1);
+		}
+
+		// Store the predecessors, then sort those of each state
+		pre = new int[preStarts[n]];
+		AtomicIntegerArray next = new AtomicIntegerArray(Arrays.copyOf(preStarts, n));
+		Parallel.forRange(numThreads, 0, n, (from, to) -> {
+			for (int s = from; s < to; s++) {
+				SuccessorsIterator it = model.getSuccessors(s).distinct();
+				while (it.hasNext()) {
+					pre[next.getAndIncrement(it.nextInt())] = s;
+				}
+			}
+		});
+		Parallel.forRange(numThreads, 0, n, (from, to) -> {
+			for (int s = from; s < to; s++) {
+				Arrays.sort(pre, preStarts[s], preStarts[s + 1]);
+			}
+		});
+	}
+
+	/**
+	 * Get the number of predecessor states of {@code s}.
+	 */
+	public int getNumPredecessors(int s)
+	{
+		return preStarts[s + 1] - preStarts[s];
+	}
+
+	/**
+	 * Get the {@code i}th predecessor state of {@code s}
+	 * (for {@code 0 <= i < getNumPredecessors(s)}; predecessors are in ascending order).
+	 */
+	public int getPredecessor(int s, int i)
+	{
+		return pre[preStarts[s] + i];
+	}
+
 	/**
 	 * Get an Iterable over the predecessor states of {@code s}.
 	 */
-	public Iterable<Integer> getPre(int s)
+	public IterableInt getPre(int s)
 	{
-		return pre.get(s);
+		return () -> getPredecessorsIterator(s);
 	}
 
 	/**
 	 * Get an Iterator over the predecessor states of {@code s}.
 	 */
-	public Iterator<Integer> getPredecessorsIterator(int s)
+	public PrimitiveIterator.OfInt getPredecessorsIterator(int s)
 	{
-		return getPre(s).iterator();
+		return new PrimitiveIterator.OfInt()
+		{
+			int current = preStarts[s];
+			final int end = preStarts[s + 1];
+
+			@Override
+			public boolean hasNext()
+			{
+				return current < end;
+			}
+
+			@Override
+			public int nextInt()
+			{
+				if (current >= end) {
+					throw new NoSuchElementException();
+				}
+				return pre[current++];
+			}
+		};
 	}
 
 	/**
 	 * Static constructor to compute the predecessor relation for the given model.
 	 * Logs diagnostic information to the log of the given PrismComponent.
+	 * Uses multiple threads for large models if the settings of {@code parent} say so.
 	 *
 	 * @param parent a PrismComponent (for obtaining the log and settings)
 	 * @param model the model for which the predecessor relation should be computed
@@ -119,7 +249,7 @@ public class PredecessorRelation
 		parent.getLog().print("Calculating predecessor relation for "+model.getModelType().fullName()+"...  ");
 		parent.getLog().flush();
 
-		PredecessorRelation pre = new PredecessorRelation(model);
+		PredecessorRelation pre = new PredecessorRelation(model, getNumThreads(parent));
 		
 		timer = System.currentTimeMillis() - timer;
 		parent.getLog().println("done (" + timer / 1000.0 + " seconds)");
@@ -127,6 +257,14 @@ public class PredecessorRelation
 		return pre;
 	}
 
+	/**
+	 * Get the number of threads to use, from the settings of {@code parent} (1 if there are none).
+	 */
+	static int getNumThreads(PrismComponent parent)
+	{
+		PrismSettings settings = parent.getSettings();
+		return settings == null ? 1 : settings.getInteger(PrismSettings.PRISM_NUM_THREADS);
+	}
 
 	/**
 	 * Computes the set Pre*(target) via a DFS, i.e., all states that
@@ -155,36 +293,33 @@ public class PredecessorRelation
 		result = (BitSet)target.clone();
 
 		// the stack of states whose predecessors have to be considered
-		Stack<Integer> todo = new Stack<Integer>();
+		// (each state is pushed at most once, as it is added to result at the same time)
+		int[] todo = new int[Math.max(16, target.cardinality())];
+		int todoSize = 0;
 
 		// initial todo: all the target states
-		for (Integer s : IterableBitSet.getSetBits(target)) {
-			todo.add(s);
-		};
-
-		// the set of states that are finished
-		BitSet done = new BitSet();
-
-		while (!todo.isEmpty()) {
-			int s = todo.pop();
-			// already considered?
-			if (done.get(s)) continue;
+		for (int s = target.nextSetBit(0); s >= 0; s = target.nextSetBit(s + 1)) {
+			todo[todoSize++] = s;
+		}
 
-			done.set(s);
+		while (todoSize > 0) {
+			int s = todo[--todoSize];
 
 			// for each predecessor in the graph
-			for (int p : getPre(s)) {
+			for (int i = preStarts[s], end = preStarts[s + 1]; i < end; i++) {
+				int p = pre[i];
 				if (absorbing != null && absorbing.get(p)) {
 					// predecessor is absorbing, thus the edge is considered to not exist
 					continue;
 				}
-				if (remain == null || remain.get(p)) {
+				if ((remain == null || remain.get(p)) && !result.get(p)) {
 					// can reach result (and is in remain)
 					result.set(p);
-					if (!done.get(p)) {
-						// add to stack
-						todo.add(p);
+					// add to stack
+					if (todoSize == todo.length) {
+						todo = Arrays.copyOf(todo, 2 * todo.length);
 					}
+					todo[todoSize++] = p;
 				}
 			}
 		}
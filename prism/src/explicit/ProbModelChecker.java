@@ -104,6 +104,8 @@ public class ProbModelChecker extends NonProbModelChecker
 	protected SolnMethod solnMethod = SolnMethod.VALUE_ITERATION;
 	// Is non-convergence of an iterative method an error?
 	protected boolean errorOnNonConverge = true;
+	// Number of threads for parallel numerical computation
+	protected int numThreads = 1;
 	// Adversary export
 	protected boolean exportAdv = false;
 	protected String exportAdvFilename;
@@ -246,6 +248,8 @@ public class ProbModelChecker extends NonProbModelChecker
 			setProb1(settings.getBoolean(PrismSettings.PRISM_PROB1));
 			// PRISM_USE_PRE
 			setPreRel(settings.getBoolean(PrismSettings.PRISM_PRE_REL));
+			// PRISM_NUM_THREADS
+			setNumThreads(settings.getInteger(PrismSettings.PRISM_NUM_THREADS));
 			// PRISM_FAIRNESS
 			if (settings.getBoolean(PrismSettings.PRISM_FAIRNESS)) {
 				throw new PrismNotSupportedException("The explicit engine does not support model checking MDPs under fairness");
@@ -286,6 +290,7 @@ public class ProbModelChecker extends NonProbModelChecker
 		setValIterDir(other.getValIterDir());
 		setSolnMethod(other.getSolnMethod());
 		setErrorOnNonConverge(other.geterrorOnNonConverge());
+		setNumThreads(other.getNumThreads());
 	}
 
 	/**
@@ -306,6 +311,7 @@ public class ProbModelChecker extends NonProbModelChecker
 		mainLog.print("valIterDir = " + valIterDir + " ");
 		mainLog.print("solnMethod = " + solnMethod + " ");
 		mainLog.print("errorOnNonConverge = " + errorOnNonConverge + " ");
+		mainLog.print("numThreads = " + numThreads + " ");
 	}
 
 	// Set methods for flags/settings
@@ -434,6 +440,14 @@ public class ProbModelChecker extends NonProbModelChecker
 		this.errorOnNonConverge = errorOnNonConverge;
 	}
 
+	/**
+	 * Set the number of threads to use for parallel numerical computation.
+	 */
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
 	public void setExportAdv(boolean exportAdv)
 	{
 		this.exportAdv = exportAdv;
@@ -519,6 +533,11 @@ public class ProbModelChecker extends NonProbModelChecker
 		return errorOnNonConverge;
 	}
 
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
 	// Model checking functions
 
 	@Override
@@ -34,6 +34,7 @@ import java.util.function.IntPredicate;
 
 import prism.PrismComponent;
 import prism.PrismException;
+import prism.PrismSettings;
 
 /**
  * Abstract class for (explicit) classes that compute (B)SCCs,
@@ -46,12 +47,14 @@ public abstract class SCCComputer extends PrismComponent
 
 	// Method used for finding (B)SCCs
 	public enum SCCMethod {
-		TARJAN;
+		TARJAN, FORWARD_BACKWARD;
 		public String fullName()
 		{
 			switch (this) {
 			case TARJAN:
 				return "Tarjan";
+			case FORWARD_BACKWARD:
+				return "Forward-backward";
 			default:
 				return this.toString();
 			}
@@ -63,10 +66,40 @@ public abstract class SCCComputer extends PrismComponent
 	 */
 	public static SCCComputer createSCCComputer(PrismComponent parent, Model model, SCCConsumer consumer) throws PrismException
 	{
-		// Only one algorithm implemented currently
+		// Tarjan's algorithm is the only one that reports SCCs in (reverse) topological order,
+		// which some consumers (e.g. SCCInfo) rely on
 		return new SCCComputerTarjan(parent, model, consumer);
 	}
 
+	/**
+	 * Static method to create a new SCCComputer object, using the given method.
+	 * Note that only {@code TARJAN} reports SCCs in (reverse) topological order,
+	 * so other methods should only be used where the order of SCCs does not matter.
+	 */
+	public static SCCComputer createSCCComputer(PrismComponent parent, Model model, SCCConsumer consumer, SCCMethod method) throws PrismException
+	{
+		switch (method) {
+		case FORWARD_BACKWARD:
+			return new SCCComputerForwardBackward(parent, model, consumer);
+		case TARJAN:
+		default:
+			return new SCCComputerTarjan(parent, model, consumer);
+		}
+	}
+
+	/**
+	 * Get the method for computing (B)SCCs in the explicit engine from the settings of {@code parent}
+	 * (for places where the order of the SCCs does not matter).
+	 */
+	public static SCCMethod getSCCMethod(PrismComponent parent)
+	{
+		PrismSettings settings = parent.getSettings();
+		if (settings != null && settings.getString(PrismSettings.PRISM_EXPLICIT_SCC_METHOD).equals("Forward-backward")) {
+			return SCCMethod.FORWARD_BACKWARD;
+		}
+		return SCCMethod.TARJAN;
+	}
+
 	/**
 	 * Compute an SCCInfo data structure (topological ordering).
 	 * @param parent PrismComponent (for settings)
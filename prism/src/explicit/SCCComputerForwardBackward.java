@@ -0,0 +1,539 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import common.Parallel;
+import prism.PrismComponent;
+import prism.PrismException;
+import prism.PrismSettings;
+
+/**
+ * Forward-backward SCC algorithm operating on a Model object, which can use multiple threads.
+ * <br>
+ * The set of states is repeatedly split into the SCC of a pivot state
+ * (the states that are both forwards and backwards reachable from it),
+ * the remaining forwards reachable states, the remaining backwards reachable states
+ * and all other states. No SCC crosses these parts, so they are processed independently
+ * (and, if large enough, concurrently). Before choosing a pivot, states without
+ * predecessors or successors in the part are removed ("trimmed") as singleton SCCs.
+ * Small parts (and, if only one thread is used, the whole graph) are instead decomposed
+ * sequentially, using an iterative version of Tarjan's algorithm, which avoids the
+ * worst-case quadratic behaviour of forward-backward splitting on long chains of SCCs.
+ * <br>
+ * The graph is first copied into primitive (successor and predecessor) arrays.
+ * Unlike {@link SCCComputerTarjan}, SCCs are not reported in (reverse) topological order,
+ * but ordered by their smallest state (with the states of each SCC in ascending order),
+ * so the result does not depend on the number of threads.
+ */
+public class SCCComputerForwardBackward extends SCCComputer
+{
+	/** Minimum number of states in a part for it to be processed by a separate task */
+	public static final int PARALLEL_MIN_STATES = 4096;
+
+	/** Value of {@code part} for states that do not belong to any part (any more) */
+	private static final int NO_PART = -1;
+
+	/* The model to compute (B)SCCs for */
+	private Model model;
+	/* Number of nodes (model states) */
+	private int numNodes;
+	/* Number of threads to use */
+	private int numThreads;
+
+	/* Successors (excluding self-loops) of each node, as offsets into succs */
+	private int[] succStarts;
+	private int[] succs;
+	/* Predecessors (excluding self-loops) of each node, as offsets into preds */
+	private int[] predStarts;
+	private int[] preds;
+	/* Nodes with a self-loop */
+	private BitSet hasSelfloop;
+
+	/* For each node, the (index of) the part it currently belongs to, or NO_PART */
+	private int[] part;
+	/* For each node, the smallest node of its SCC, or -1 if it is in no (reported) SCC */
+	private int[] sccRep;
+	/* Number of predecessors/successors of each node in its part (during trimming) */
+	private int[] numPredsInPart;
+	private int[] numSuccsInPart;
+	/* DFS index and lowlink of each node (during Tarjan's algorithm) */
+	private int[] nodeIndex;
+	private int[] lowlink;
+	/* Next (fresh) part index */
+	private AtomicInteger nextPart;
+	/** Should we filter trivial SCCs? */
+	private boolean filterTrivialSCCs;
+
+	/**
+	 * Build (B)SCC computer for a given model.
+	 */
+	public SCCComputerForwardBackward(PrismComponent parent, Model model, SCCConsumer consumer) throws PrismException
+	{
+		super(parent, consumer);
+		this.model = model;
+		this.numNodes = model.getNumStates();
+		numThreads = settings == null ? 1 : settings.getInteger(PrismSettings.PRISM_NUM_THREADS);
+	}
+
+	// Methods for SCCComputer interface
+
+	@Override
+	public void computeSCCs(boolean filterTrivialSCCs, IntPredicate restrict) throws PrismException
+	{
+		this.filterTrivialSCCs = filterTrivialSCCs;
+		consumer.notifyStart(model);
+		buildGraph(restrict);
+
+		// Initially, all relevant states form a single part
+		part = new int[numNodes];
+		sccRep = new int[numNodes];
+		numPredsInPart = new int[numNodes];
+		numSuccsInPart = new int[numNodes];
+		nodeIndex = new int[numNodes];
+		lowlink = new int[numNodes];
+		Arrays.fill(sccRep, -1);
+		int numRelevant = 0;
+		for (int s = 0; s < numNodes; s++) {
+			if (restrict != null && !restrict.test(s)) {
+				part[s] = NO_PART;
+			} else {
+				numRelevant++;
+			}
+		}
+		int[] states = new int[numRelevant];
+		for (int s = 0, i = 0; s < numNodes; s++) {
+			if (part[s] != NO_PART) {
+				states[i++] = s;
+			}
+		}
+		nextPart = new AtomicInteger(1);
+		PartTask task = new PartTask(new Part(0, states));
+		if (numThreads > 1 && numRelevant >= PARALLEL_MIN_STATES) {
+			Parallel.getPool(numThreads).invoke(task);
+		} else {
+			task.compute();
+		}
+
+		reportSCCs();
+		// free memory
+		succStarts = succs = predStarts = preds = null;
+		part = sccRep = numPredsInPart = numSuccsInPart = nodeIndex = lowlink = null;
+		hasSelfloop = null;
+		consumer.notifyDone();
+	}
+
+	// SCC Computation
+
+	/**
+	 * Copy the transition graph of the model, restricted to the relevant states
+	 * and without self-loops, into successor and predecessor arrays.
+	 */
+	private void buildGraph(IntPredicate restrict)
+	{
+		hasSelfloop = new BitSet();
+		succStarts = new int[numNodes + 1];
+		succs = new int[Math.max(16, numNodes)];
+		int numEdges = 0;
+		predStarts = new int[numNodes + 1];
+		for (int s = 0; s < numNodes; s++) {
+			succStarts[s] = numEdges;
+			if (restrict != null && !restrict.test(s))
+				continue;
+			SuccessorsIterator it = model.getSuccessors(s);
+			while (it.hasNext()) {
+				int t = it.nextInt();
+				if (t == s) {
+					hasSelfloop.set(s);
+					continue;
+				}
+				if (restrict != null && !restrict.test(t))
+					continue; // ignore edge to state that is not relevant
+				if (numEdges == succs.length) {
+					succs = Arrays.copyOf(succs, 2 * succs.length);
+				}
+				succs[numEdges++] = t;
+				predStarts[t + 1]++;
+			}
+		}
+		succStarts[numNodes] = numEdges;
+		for (int s = 0; s < numNodes; s++) {
+			predStarts[s + 1] += predStarts[s];
+		}
+		preds = new int[numEdges];
+		int[] next = Arrays.copyOf(predStarts, numNodes);
+		for (int s = 0; s < numNodes; s++) {
+			for (int j = succStarts[s]; j < succStarts[s + 1]; j++) {
+				preds[next[succs[j]]++] = s;
+			}
+		}
+	}
+
+	/**
+	 * Notify the consumer of the computed SCCs, ordered by their smallest state.
+	 */
+	private void reportSCCs() throws PrismException
+	{
+		// Group the states by SCC (counting sort on the SCC representative)
+		int[] sccStarts = new int[numNodes + 1];
+		for (int s = 0; s < numNodes; s++) {
+			if (sccRep[s] != -1) {
+				sccStarts[sccRep[s] + 1]++;
+			}
+		}
+		for (int s = 0; s < numNodes; s++) {
+			sccStarts[s + 1] += sccStarts[s];
+		}
+		int[] sccStates = new int[sccStarts[numNodes]];
+		int[] next = Arrays.copyOf(sccStarts, numNodes);
+		for (int s = 0; s < numNodes; s++) {
+			if (sccRep[s] != -1) {
+				sccStates[next[sccRep[s]]++] = s;
+			}
+		}
+		for (int rep = 0; rep < numNodes; rep++) {
+			if (sccStarts[rep] == sccStarts[rep + 1])
+				continue;
+			consumer.notifyStartSCC();
+			for (int j = sccStarts[rep]; j < sccStarts[rep + 1]; j++) {
+				consumer.notifyStateInSCC(sccStates[j]);
+			}
+			consumer.notifyEndSCC();
+		}
+	}
+
+	/**
+	 * A part of the graph, containing (at least) all states of the SCCs it intersects.
+	 * The states are exactly those with {@code part[s] == index},
+	 * but {@code states} may also contain states that have since been removed.
+	 */
+	private static class Part
+	{
+		final int index;
+		final int[] states;
+		final int numStates;
+
+		Part(int index, int[] states)
+		{
+			this(index, states, states.length);
+		}
+
+		Part(int index, int[] states, int numStates)
+		{
+			this.index = index;
+			this.states = states;
+			this.numStates = numStates;
+		}
+	}
+
+	/**
+	 * Task that decomposes a part (and the parts it is split into) into SCCs.
+	 * Large parts resulting from a split are handed over to new tasks if multiple threads are used,
+	 * all others are processed by this task (without recursion).
+	 * Tasks only modify the per-state information of the states in their own parts.
+	 */
+	private class PartTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Part initialPart;
+
+		PartTask(Part initialPart)
+		{
+			this.initialPart = initialPart;
+		}
+
+		@Override
+		protected void compute()
+		{
+			ArrayDeque<Part> todo = new ArrayDeque<>();
+			List<PartTask> forked = new ArrayList<>();
+			todo.push(initialPart);
+			while (!todo.isEmpty()) {
+				Part p = todo.pop();
+				for (Part q : split(p)) {
+					if (numThreads > 1 && q.numStates >= PARALLEL_MIN_STATES) {
+						PartTask t = new PartTask(q);
+						t.fork();
+						forked.add(t);
+					} else {
+						todo.push(q);
+					}
+				}
+			}
+			for (PartTask t : forked) {
+				t.join();
+			}
+		}
+	}
+
+	/**
+	 * Trim part {@code p}, then split off the SCC of a pivot state.
+	 * Returns the (non-empty) parts that still need to be decomposed.
+	 * Small parts are decomposed completely, using Tarjan's algorithm.
+	 */
+	private List<Part> split(Part p)
+	{
+		List<Part> result = new ArrayList<>(3);
+		if (numThreads <= 1 || p.numStates < PARALLEL_MIN_STATES) {
+			tarjan(p);
+			return result;
+		}
+		int id = p.index;
+		int[] remaining = trim(p);
+		if (remaining.length == 0) {
+			return result;
+		}
+
+		// Forwards search from the pivot: reached states move to part idFwd
+		// (the pivot is taken from the middle, since neighbouring states are often
+		// connected, so that chains of SCCs tend to be split more evenly)
+		int pivot = remaining[remaining.length / 2];
+		int idFwd = nextPart.getAndIncrement();
+		int[] fwd = new int[remaining.length];
+		int numFwd = 0;
+		part[pivot] = idFwd;
+		fwd[numFwd++] = pivot;
+		for (int i = 0; i < numFwd; i++) {
+			int s = fwd[i];
+			for (int j = succStarts[s]; j < succStarts[s + 1]; j++) {
+				int t = succs[j];
+				if (part[t] == id) {
+					part[t] = idFwd;
+					fwd[numFwd++] = t;
+				}
+			}
+		}
+
+		// Backwards search from the pivot: reached states that were also forwards reached
+		// form the SCC (and leave all parts), the others move to part idBwd
+		int idBwd = nextPart.getAndIncrement();
+		int[] bwd = new int[remaining.length];
+		int numBwd = 0;
+		part[pivot] = NO_PART;
+		bwd[numBwd++] = pivot;
+		for (int i = 0; i < numBwd; i++) {
+			int s = bwd[i];
+			for (int j = predStarts[s]; j < predStarts[s + 1]; j++) {
+				int t = preds[j];
+				if (part[t] == idFwd) {
+					part[t] = NO_PART;
+					bwd[numBwd++] = t;
+				} else if (part[t] == id) {
+					part[t] = idBwd;
+					bwd[numBwd++] = t;
+				}
+			}
+		}
+
+		// Store the SCC
+		int sccMin = pivot;
+		int sccSize = 0;
+		for (int i = 0; i < numBwd; i++) {
+			if (part[bwd[i]] == NO_PART) {
+				sccMin = Math.min(sccMin, bwd[i]);
+				sccSize++;
+			}
+		}
+		if (sccSize == 1 && filterTrivialSCCs && !hasSelfloop.get(pivot)) {
+			sccMin = -1;
+		}
+		for (int i = 0; i < numBwd; i++) {
+			if (part[bwd[i]] == NO_PART) {
+				sccRep[bwd[i]] = sccMin;
+			}
+		}
+
+		// The other three parts
+		addPart(result, idFwd, fwd, numFwd);
+		addPart(result, idBwd, bwd, numBwd);
+		addPart(result, id, remaining, remaining.length);
+		return result;
+	}
+
+	/**
+	 * Add a part, consisting of the states among the first {@code num} of {@code states}
+	 * that belong to part {@code id}, to {@code parts}, if it is non-empty.
+	 * The array is reused for the part.
+	 */
+	private void addPart(List<Part> parts, int id, int[] states, int num)
+	{
+		int numInPart = 0;
+		for (int i = 0; i < num; i++) {
+			if (part[states[i]] == id) {
+				states[numInPart++] = states[i];
+			}
+		}
+		if (numInPart > 0) {
+			parts.add(new Part(id, states, numInPart));
+		}
+	}
+
+	/**
+	 * Decompose part {@code p} into SCCs, using (an iterative version of) Tarjan's algorithm.
+	 */
+	private void tarjan(Part p)
+	{
+		int id = p.index;
+		// States being explored (i.e., on the SCC stack) move to part idVisit
+		int idVisit = nextPart.getAndIncrement();
+		int index = 0;
+		int[] stack = new int[p.numStates];
+		int stackSize = 0;
+		int[] dfsNodes = new int[p.numStates];
+		int[] dfsEdges = new int[p.numStates];
+		for (int r = 0; r < p.numStates; r++) {
+			int root = p.states[r];
+			if (part[root] != id)
+				continue;
+			// Explore root
+			nodeIndex[root] = lowlink[root] = index++;
+			part[root] = idVisit;
+			stack[stackSize++] = root;
+			dfsNodes[0] = root;
+			dfsEdges[0] = succStarts[root];
+			int depth = 1;
+			while (depth > 0) {
+				int s = dfsNodes[depth - 1];
+				int j = dfsEdges[depth - 1];
+				boolean descended = false;
+				for (; j < succStarts[s + 1]; j++) {
+					int t = succs[j];
+					if (part[t] == id) {
+						// explore t first, then continue with the next successor of s
+						dfsEdges[depth - 1] = j + 1;
+						nodeIndex[t] = lowlink[t] = index++;
+						part[t] = idVisit;
+						stack[stackSize++] = t;
+						dfsNodes[depth] = t;
+						dfsEdges[depth] = succStarts[t];
+						depth++;
+						descended = true;
+						break;
+					} else if (part[t] == idVisit) {
+						lowlink[s] = Math.min(lowlink[s], nodeIndex[t]);
+					}
+				}
+				if (descended)
+					continue;
+				// all successors of s explored
+				depth--;
+				if (lowlink[s] == nodeIndex[s]) {
+					// pop the SCC, which consists of s and the states above it on the stack
+					int sccStart = stackSize - 1;
+					int sccMin = s;
+					while (stack[sccStart] != s) {
+						sccMin = Math.min(sccMin, stack[sccStart--]);
+					}
+					if (sccStart == stackSize - 1 && filterTrivialSCCs && !hasSelfloop.get(s)) {
+						sccMin = -1;
+					}
+					for (int i = sccStart; i < stackSize; i++) {
+						part[stack[i]] = NO_PART;
+						sccRep[stack[i]] = sccMin;
+					}
+					stackSize = sccStart;
+				}
+				if (depth > 0) {
+					int caller = dfsNodes[depth - 1];
+					lowlink[caller] = Math.min(lowlink[caller], lowlink[s]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove states of part {@code p} that have no predecessors or no successors in the part,
+	 * repeatedly, as singleton SCCs. Returns the remaining states of the part.
+	 */
+	private int[] trim(Part p)
+	{
+		int id = p.index;
+		// Count the predecessors/successors in the part
+		for (int i = 0; i < p.numStates; i++) {
+			int s = p.states[i];
+			numSuccsInPart[s] = countInPart(succs, succStarts[s], succStarts[s + 1], id);
+			numPredsInPart[s] = countInPart(preds, predStarts[s], predStarts[s + 1], id);
+		}
+		// Remove states without predecessors/successors, and update the counts of their neighbours
+		int[] removed = new int[p.numStates];
+		int numRemoved = 0;
+		for (int i = 0; i < p.numStates; i++) {
+			int s = p.states[i];
+			if (numSuccsInPart[s] == 0 || numPredsInPart[s] == 0) {
+				part[s] = NO_PART;
+				removed[numRemoved++] = s;
+			}
+		}
+		for (int i = 0; i < numRemoved; i++) {
+			int s = removed[i];
+			sccRep[s] = (!filterTrivialSCCs || hasSelfloop.get(s)) ? s : -1;
+			for (int j = succStarts[s]; j < succStarts[s + 1]; j++) {
+				int t = succs[j];
+				if (part[t] == id && --numPredsInPart[t] == 0) {
+					part[t] = NO_PART;
+					removed[numRemoved++] = t;
+				}
+			}
+			for (int j = predStarts[s]; j < predStarts[s + 1]; j++) {
+				int t = preds[j];
+				if (part[t] == id && --numSuccsInPart[t] == 0) {
+					part[t] = NO_PART;
+					removed[numRemoved++] = t;
+				}
+			}
+		}
+		// Collect the remaining states
+		int[] remaining = new int[p.numStates - numRemoved];
+		for (int i = 0, j = 0; i < p.numStates; i++) {
+			if (part[p.states[i]] == id) {
+				remaining[j++] = p.states[i];
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Count the entries {@code from}...{@code to}-1 of {@code nodes} that are in part {@code id}.
+	 */
+	private int countInPart(int[] nodes, int from, int to, int id)
+	{
+		int count = 0;
+		for (int j = from; j < to; j++) {
+			if (part[nodes[j]] == id) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
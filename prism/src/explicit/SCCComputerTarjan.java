@@ -27,10 +27,8 @@
 
 package explicit;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.function.IntPredicate;
 
 import prism.PrismComponent;
@@ -38,6 +36,10 @@ import prism.PrismException;
 
 /**
  * Tarjan's SCC algorithm operating on a Model object.
+ * <br>
+ * The depth-first search is implemented iteratively (with an explicit stack),
+ * so deep models do not need a large thread stack, and the per-state
+ * information is stored in primitive arrays.
  */
 public class SCCComputerTarjan extends SCCComputer
 {
@@ -48,12 +50,21 @@ public class SCCComputerTarjan extends SCCComputer
 
 	/* Next index to give to a node */
 	private int index = 0;
-	/* Stack of nodes */
-	private List<Integer> stack = new LinkedList<Integer>();
-	/* List of nodes in the graph. Invariant: {@code nodeList.get(i).id == i} */
-	private ArrayList<Node> nodeList;
+	/* DFS index of each node (-1 if not yet visited) */
+	private int[] nodeIndex;
+	/* Lowlink of each node */
+	private int[] lowlink;
+	/* Stack of nodes (of the SCCs currently being explored) */
+	private int[] stack;
+	/* Number of nodes on the stack */
+	private int stackSize;
 	/* Nodes currently on the stack. */
 	private BitSet onStack;
+	/* Nodes with a self-loop (only set once a node has been explored) */
+	private BitSet hasSelfloop;
+	/* DFS (call) stack: nodes and their successor iterators */
+	private int[] dfsNodes;
+	private SuccessorsIterator[] dfsSuccs;
 	/** Should we filter trivial SCCs? */
 	private boolean filterTrivialSCCs;
 	private IntPredicate restrict;
@@ -66,11 +77,6 @@ public class SCCComputerTarjan extends SCCComputer
 		super(parent, consumer);
 		this.model = model;
 		this.numNodes = model.getNumStates();
-		this.nodeList = new ArrayList<Node>(numNodes);
-		for (int i = 0; i < numNodes; i++) {
-			nodeList.add(new Node(i));
-		}
-		onStack = new BitSet();
 	}
 
 	// Methods for SCCComputer interface
@@ -93,81 +99,120 @@ public class SCCComputerTarjan extends SCCComputer
 	 */
 	public void tarjan() throws PrismException
 	{
+		index = 0;
+		nodeIndex = new int[numNodes];
+		Arrays.fill(nodeIndex, -1);
+		lowlink = new int[numNodes];
+		stack = new int[16];
+		stackSize = 0;
+		onStack = new BitSet();
+		hasSelfloop = new BitSet();
+		dfsNodes = new int[16];
+		dfsSuccs = new SuccessorsIterator[16];
 		for (int i = 0; i < numNodes; i++) {
 			if (restrict != null && !restrict.test(i))
 				continue; // skip state if not one of the relevant states
-			if (nodeList.get(i).lowlink == -1)
+			if (nodeIndex[i] == -1)
 				tarjan(i);
 		}
-
+		// free memory
+		nodeIndex = lowlink = stack = dfsNodes = null;
+		dfsSuccs = null;
+		onStack = hasSelfloop = null;
 	}
 
-	private void tarjan(int i) throws PrismException
+	/**
+	 * Depth-first search from node {@code root}, reporting all SCCs
+	 * (in the same order as the classical recursive formulation).
+	 */
+	private void tarjan(int root) throws PrismException
 	{
-		final Node v = nodeList.get(i);
-		v.index = index;
-		v.lowlink = index;
-		index++;
-		stack.add(0, i);
-		onStack.set(i);
-
-		boolean hadSelfloop = false;
-		SuccessorsIterator it = model.getSuccessors(i);
-		while (it.hasNext()) {
-			int e = it.nextInt();
+		int depth = visit(root, 0);
+		while (depth > 0) {
+			int i = dfsNodes[depth - 1];
+			SuccessorsIterator it = dfsSuccs[depth - 1];
+			boolean descended = false;
+			while (it.hasNext()) {
+				int e = it.nextInt();
+
+				if (e == i) {
+					hasSelfloop.set(i);
+					continue;
+				}
 
-			if (e == i) {
-				hadSelfloop = true;
-				continue;
-			}
+				if (restrict != null && !restrict.test(e)) {
+					continue; // ignore edge to state that is not relevant
+				}
 
-			if (restrict != null && !restrict.test(e)) {
-				continue; // ignore edge to state that is not relevant
+				if (nodeIndex[e] == -1) {
+					// "recursive call": explore e first, then continue with i
+					depth = visit(e, depth);
+					descended = true;
+					break;
+				} else if (onStack.get(e)) {
+					lowlink[i] = Math.min(lowlink[i], nodeIndex[e]);
+				}
 			}
+			if (descended)
+				continue;
 
-			Node n = nodeList.get(e);
-			if (n.index == -1) {
-				tarjan(e);
-				v.lowlink = Math.min(v.lowlink, n.lowlink);
-			} else if (onStack.get(e)) {
-				v.lowlink = Math.min(v.lowlink, n.index);
+			// all successors of i explored: "return" to the caller (if any)
+			depth--;
+			dfsSuccs[depth] = null;
+			if (lowlink[i] == nodeIndex[i])
+				reportSCC(i);
+			if (depth > 0) {
+				int caller = dfsNodes[depth - 1];
+				lowlink[caller] = Math.min(lowlink[caller], lowlink[i]);
 			}
 		}
-		if (v.lowlink == v.index) {
-			// this is a singleton SCC if the top of the stack equals i
-			boolean singletonSCC = (stack.get(0) == i);
-			if (singletonSCC && filterTrivialSCCs) {
-				if (!hadSelfloop) { // singleton SCC & no selfloop -> trivial
-					stack.remove(0);
-					onStack.set(i, false);
-					return;
-				}
-			}
+	}
 
-			int n;
-			consumer.notifyStartSCC();
-			do {
-				n = stack.remove(0);
-				onStack.set(n, false);
-				consumer.notifyStateInSCC(n);
-			} while (n != i);
-			consumer.notifyEndSCC();
+	/**
+	 * Start exploring node {@code i}, pushing it on both stacks.
+	 * Returns the new depth of the DFS stack.
+	 */
+	private int visit(int i, int depth)
+	{
+		nodeIndex[i] = index;
+		lowlink[i] = index;
+		index++;
+		if (stackSize == stack.length)
+			stack = Arrays.copyOf(stack, 2 * stack.length);
+		stack[stackSize++] = i;
+		onStack.set(i);
+		if (depth == dfsNodes.length) {
+			dfsNodes = Arrays.copyOf(dfsNodes, 2 * depth);
+			dfsSuccs = Arrays.copyOf(dfsSuccs, 2 * depth);
 		}
+		dfsNodes[depth] = i;
+		dfsSuccs[depth] = model.getSuccessors(i);
+		return depth + 1;
 	}
 
 	/**
-	 * A small class wrapping a node.
-	 * It carries extra information necessary for Tarjan's algorithm.
+	 * Pop the SCC with root {@code i} from the stack and report it
+	 * (unless it is trivial and trivial SCCs are filtered).
 	 */
-	protected static class Node
+	private void reportSCC(int i) throws PrismException
 	{
-		public int lowlink = -1;
-		public int index = -1;
-		public int id;
-
-		public Node(int id)
-		{
-			this.id = id;
+		// this is a singleton SCC if the top of the stack equals i
+		boolean singletonSCC = (stack[stackSize - 1] == i);
+		if (singletonSCC && filterTrivialSCCs) {
+			if (!hasSelfloop.get(i)) { // singleton SCC & no selfloop -> trivial
+				stackSize--;
+				onStack.clear(i);
+				return;
+			}
 		}
+
+		int n;
+		consumer.notifyStartSCC();
+		do {
+			n = stack[--stackSize];
+			onStack.clear(n);
+			consumer.notifyStateInSCC(n);
+		} while (n != i);
+		consumer.notifyEndSCC();
 	}
 }
@@ -28,6 +28,7 @@ package explicit;
 
 import java.util.Arrays;
 import java.util.PrimitiveIterator.OfInt;
+import java.util.stream.IntStream;
 
 import common.IntSet;
 import prism.PrismLog;
@@ -183,6 +184,12 @@ public class SCCInfo implements SCCConsumer
 				};
 			}
 
+			@Override
+			public IntStream stream()
+			{
+				return Arrays.stream(stateList, start, end + 1);
+			}
+
 			@Override
 			public int cardinality()
 			{
@@ -0,0 +1,338 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import common.Parallel;
+import prism.PrismException;
+
+/**
+ * Concurrent processing of the SCCs stored in an {@link SCCInfo}, in topological order,
+ * e.g. for topological value iteration.
+ * <br>
+ * The condensation of the model (the DAG of its SCCs) is built once, on construction.
+ * During {@link #run}, an SCC is processed as soon as all SCCs that it has transitions to
+ * have been processed, by tasks on a (work-stealing) fork/join pool,
+ * so that independent SCCs are processed at the same time.
+ * To keep the overhead of tasks low, singleton SCCs that become ready are processed
+ * in batches, i.e., a task keeps processing ready singleton SCCs (following chains of them),
+ * only handing some over to a new task if there are more than {@link #SINGLETON_BATCH}.
+ */
+public class SCCScheduler
+{
+	/** Maximum number of ready singleton SCCs kept by a single task */
+	public static final int SINGLETON_BATCH = 256;
+
+	/**
+	 * Functional interface for the processing of a single SCC.
+	 */
+	@FunctionalInterface
+	public interface SCCProcessor
+	{
+		/**
+		 * Process the SCC with index {@code scc}, all of whose successor SCCs have been processed.
+		 * This may be called concurrently for SCCs that are independent of each other.
+		 * Returns false if no further SCCs should be processed (e.g., on non-convergence).
+		 */
+		public boolean process(int scc) throws PrismException;
+	}
+
+	/** The SCCs */
+	private final SCCInfo sccs;
+	/** Number of SCCs */
+	private final int numSCCs;
+	/** For each SCC, the number of (distinct) other SCCs it has transitions to */
+	private final int[] numSuccSCCs;
+	/** Start index (into predSCCs) of the predecessor SCCs of each SCC (plus one extra at the end) */
+	private final int[] predStarts;
+	/** For each SCC, the (distinct) other SCCs that have transitions to it */
+	private final int[] predSCCs;
+
+	// State of the current run
+
+	/** The processor */
+	private SCCProcessor processor;
+	/** For each SCC, the number of its successor SCCs that have not yet been processed */
+	private AtomicIntegerArray pending;
+	/** Number of SCCs processed so far */
+	private final AtomicInteger numProcessed = new AtomicInteger();
+	/** Number of tasks that are submitted but not finished */
+	private final AtomicInteger numActiveTasks = new AtomicInteger();
+	/** Should processing stop? */
+	private volatile boolean stop;
+	/** First exception thrown during processing (if any) */
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	/** Signalled once all tasks are finished */
+	private CountDownLatch finished;
+
+	/**
+	 * Constructor: build the condensation DAG for the SCCs {@code sccs} of {@code model}.
+	 * Transitions to states that do not belong to an SCC (see {@link SCCInfo#getSCCIndex(int)})
+	 * are ignored.
+	 */
+	public SCCScheduler(Model model, SCCInfo sccs)
+	{
+		this.sccs = sccs;
+		numSCCs = sccs.getNumSCCs();
+		numSuccSCCs = new int[numSCCs];
+		predStarts = new int[numSCCs + 1];
+
+		// Collect the (distinct) edges between SCCs, stored as pairs (scc, successor SCC)
+		int[] edges = new int[2 * Math.max(16, numSCCs)];
+		int numEdges = 0;
+		int[] lastSeen = new int[numSCCs];
+		Arrays.fill(lastSeen, -1);
+		for (int scc = 0; scc < numSCCs; scc++) {
+			PrimitiveIterator.OfInt states = sccs.getStatesForSCC(scc).iterator();
+			while (states.hasNext()) {
+				SuccessorsIterator succs = model.getSuccessors(states.nextInt());
+				while (succs.hasNext()) {
+					int succSCC = sccs.getSCCIndex(succs.nextInt());
+					if (succSCC < 0 || succSCC == scc || lastSeen[succSCC] == scc) {
+						continue;
+					}
+					lastSeen[succSCC] = scc;
+					if (2 * numEdges + 2 > edges.length) {
+						edges = Arrays.copyOf(edges, 2 * edges.length);
+					}
+					edges[2 * numEdges] = scc;
+					edges[2 * numEdges + 1] = succSCC;
+					numEdges++;
+					numSuccSCCs[scc]++;
+					predStarts[succSCC + 1]++;
+				}
+			}
+		}
+
+		// Store predecessor SCCs, indexed by successor SCC
+		for (int scc = 0; scc < numSCCs; scc++) {
+			predStarts[scc + 1] += predStarts[scc];
+		}
+		predSCCs = new int[numEdges];
+		int[] next = Arrays.copyOf(predStarts, numSCCs);
+		for (int e = 0; e < numEdges; e++) {
+			predSCCs[next[edges[2 * e + 1]]++] = edges[2 * e];
+		}
+	}
+
+	/**
+	 * Get the number of SCCs.
+	 */
+	public int getNumSCCs()
+	{
+		return numSCCs;
+	}
+
+	/**
+	 * Get the number of SCCs processed so far in the current (or last) run.
+	 */
+	public int getNumProcessed()
+	{
+		return numProcessed.get();
+	}
+
+	/**
+	 * Process all SCCs using {@code processor}, using {@code numThreads} threads,
+	 * such that an SCC is only processed once all SCCs it has transitions to have been.
+	 * Returns once all SCCs have been processed, or once processing has stopped
+	 * because {@code processor} returned false or threw an exception
+	 * (in which case SCCs already being processed are finished first).
+	 * While waiting, {@code progress} (if non-null) is called every {@code progressDelay} milliseconds.
+	 * Runs must not overlap.
+	 * @return true if all SCCs were processed, false if processing was stopped
+	 */
+	public boolean run(int numThreads, SCCProcessor processor, Runnable progress, long progressDelay) throws PrismException
+	{
+		this.processor = processor;
+		pending = new AtomicIntegerArray(numSuccSCCs);
+		numProcessed.set(0);
+		numActiveTasks.set(0);
+		stop = false;
+		failure.set(null);
+		finished = new CountDownLatch(1);
+		if (numSCCs == 0) {
+			return true;
+		}
+
+		// Start with the SCCs without successor SCCs
+		// (the non-singleton ones in separate tasks, singleton ones in batches)
+		int[] batch = new int[SINGLETON_BATCH];
+		int batchSize = 0;
+		numActiveTasks.incrementAndGet();
+		for (int scc = 0; scc < numSCCs; scc++) {
+			if (numSuccSCCs[scc] > 0) {
+				continue;
+			}
+			if (!sccs.isSingletonSCC(scc)) {
+				submit(numThreads, new SCCTask(new int[] { scc }, 1));
+			} else {
+				batch[batchSize++] = scc;
+				if (batchSize == SINGLETON_BATCH) {
+					submit(numThreads, new SCCTask(batch, batchSize));
+					batch = new int[SINGLETON_BATCH];
+					batchSize = 0;
+				}
+			}
+		}
+		if (batchSize > 0) {
+			submit(numThreads, new SCCTask(batch, batchSize));
+		}
+		taskDone();
+
+		// Wait for all tasks to finish
+		try {
+			while (!finished.await(progressDelay, TimeUnit.MILLISECONDS)) {
+				if (progress != null) {
+					progress.run();
+				}
+			}
+		} catch (InterruptedException e) {
+			stop = true;
+			throw new PrismException("Interrupted while processing SCCs");
+		}
+
+		Throwable e = failure.get();
+		if (e instanceof PrismException) {
+			throw (PrismException) e;
+		} else if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		} else if (e instanceof Error) {
+			throw (Error) e;
+		} else if (e != null) {
+			throw new PrismException("Error while processing SCCs: " + e.getMessage());
+		}
+		return !stop;
+	}
+
+	/**
+	 * Submit a task (from outside the pool).
+	 */
+	private void submit(int numThreads, SCCTask task)
+	{
+		numActiveTasks.incrementAndGet();
+		Parallel.getPool(numThreads).execute(task);
+	}
+
+	/**
+	 * Notify that a task is finished.
+	 */
+	private void taskDone()
+	{
+		if (numActiveTasks.decrementAndGet() == 0) {
+			finished.countDown();
+		}
+	}
+
+	/**
+	 * Task processing a stack of ready SCCs, together with the SCCs that become ready as a result.
+	 */
+	private class SCCTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		/** Stack of ready SCCs */
+		private int[] ready;
+		/** Number of SCCs on the stack */
+		private int numReady;
+
+		SCCTask(int[] ready, int numReady)
+		{
+			this.ready = ready;
+			this.numReady = numReady;
+		}
+
+		@Override
+		protected void compute()
+		{
+			try {
+				while (numReady > 0 && !stop) {
+					int scc = ready[--numReady];
+					if (!processor.process(scc)) {
+						stop = true;
+						break;
+					}
+					numProcessed.incrementAndGet();
+					// Release predecessor SCCs that have become ready;
+					// non-singletons get their own task, unless there is nothing else to do here
+					int nonSingleton = -1;
+					for (int i = predStarts[scc]; i < predStarts[scc + 1]; i++) {
+						int pred = predSCCs[i];
+						if (pending.decrementAndGet(pred) == 0) {
+							if (sccs.isSingletonSCC(pred)) {
+								push(pred);
+							} else {
+								if (nonSingleton != -1) {
+									fork(new int[] { nonSingleton }, 1);
+								}
+								nonSingleton = pred;
+							}
+						}
+					}
+					if (nonSingleton != -1) {
+						if (numReady == 0) {
+							push(nonSingleton);
+						} else {
+							fork(new int[] { nonSingleton }, 1);
+						}
+					}
+					// Hand over half of a large batch of singletons to a new task
+					if (numReady > SINGLETON_BATCH) {
+						int half = numReady / 2;
+						fork(Arrays.copyOfRange(ready, 0, half), half);
+						System.arraycopy(ready, half, ready, 0, numReady - half);
+						numReady -= half;
+					}
+				}
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+				stop = true;
+			} finally {
+				taskDone();
+			}
+		}
+
+		private void push(int scc)
+		{
+			if (numReady == ready.length) {
+				ready = Arrays.copyOf(ready, 2 * ready.length);
+			}
+			ready[numReady++] = scc;
+		}
+
+		private void fork(int[] sccs, int num)
+		{
+			numActiveTasks.incrementAndGet();
+			new SCCTask(sccs, num).fork();
+		}
+	}
+}
@@ -34,9 +34,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.commons.math3.fraction.BigFraction;
 
+import common.Parallel;
 import explicit.rewards.SMGRewards;
 import parma_polyhedra_library.C_Polyhedron;
 import parma_polyhedra_library.Coefficient;
@@ -354,10 +358,40 @@ public class SMG extends STPGExplicit implements STPG
 					List<Pareto>[] stochasticStates, boolean rounding,
 					boolean union_with_previous, boolean cut, long M)
 	    throws PrismException
+	{
+		return pMultiObjective(Xk, rewards, gaussSeidel, baseline_accuracy, biggest_reward, stochasticStates, rounding, union_with_previous, cut, M, 1);
+	}
+
+	/**
+	 * take X^k and apply F(X^k)(s) for each state (cf. MFCS'13 and QEST'13)
+	 *
+	 * For Jacobi updates (i.e. {@code gaussSeidel} is false) and {@code numThreads} > 1,
+	 * the states are processed in parallel. Each worker thread only operates on its own
+	 * (deep) copies of the polyhedra it reads, so no PPL object is shared between threads.
+	 * Note that this still requires a thread-safe build of PPL (configured with --enable-thread-safe).
+	 *
+	 * arguments:
+	 * @param gaussSeidel Gauss Seidel update allowed
+	 * @param rounding rounding enabled
+	 * @param union_with_previous take union with previous Pareto set
+	 * @param cut cut off everything that is strictly above the negative orthant (used for energy objectives)
+	 * @param M maximum bound on Pareto sets (quantity is positive)
+	 * @param numThreads number of threads to use (Jacobi updates only)
+	 */
+	public Pareto[] pMultiObjective(Pareto[] Xk, List<SMGRewards> rewards, boolean gaussSeidel,
+					long baseline_accuracy, double[] biggest_reward,
+					List<Pareto>[] stochasticStates, boolean rounding,
+					boolean union_with_previous, boolean cut, long M, int numThreads)
+	    throws PrismException
 	{
 		Pareto[] result = new Pareto[Xk.length];
 		Pareto[] Yk = gaussSeidel ? null : new Pareto[Xk.length]; // if Gauss-Seidel, no memory allocation required
 		System.arraycopy(Xk, 0, gaussSeidel ? result : Yk, 0, Xk.length); // if Gauss-Seidel, update result in-place
+		if (!gaussSeidel && numThreads > 1 && numStates > 1) {
+			pMultiObjectiveParallel(result, Yk, rewards, baseline_accuracy, biggest_reward, stochasticStates, rounding,
+					union_with_previous, cut, M, numThreads);
+			return result;
+		}
 		// iterate for each state separately
 		for (int s = 0; s < numStates; s++) {
 			// first, check if cancelled
@@ -377,6 +411,140 @@ public class SMG extends STPGExplicit implements STPG
 		return result;
 	}
 
+	/**
+	 * Jacobi version of the loop in pMultiObjective, with states distributed over {@code numThreads} workers.
+	 * Each result is written to its own index of {@code result} (and {@code stochasticStates}),
+	 * so the outcome does not depend on the order in which states are processed.
+	 * <br>
+	 * The states are split into one contiguous chunk per worker, and each worker operates on its own
+	 * copies of the sets it reads. No PPL object is shared between threads, since even const PPL operations
+	 * can update an object's cached representation; the copies are made on the calling thread, before any
+	 * worker is started. Note that the Java interface of PPL has no per-thread initialisation
+	 * (such as the C++ {@code Thread_Init}), so this relies on a PPL build that is safe to use from
+	 * several threads as it is; otherwise, use a single thread.
+	 */
+	private void pMultiObjectiveParallel(Pareto[] result, Pareto[] Yk, List<SMGRewards> rewards,
+					     long baseline_accuracy, double[] biggest_reward,
+					     List<Pareto>[] stochasticStates, boolean rounding,
+					     boolean union_with_previous, boolean cut, long M, int numThreads)
+	    throws PrismException
+	{
+		int numChunks = Math.min(numThreads, numStates);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numChunks);
+		for (int i = 0; i < numChunks; i++) {
+			int from = (int) ((long) numStates * i / numChunks);
+			int to = (int) ((long) numStates * (i + 1) / numChunks);
+			// worker-confined view of X^k, holding copies of just the sets read for its states
+			Pareto[] local = new Pareto[numStates];
+			for (int s = from; s < to; s++) {
+				if (local[s] == null)
+					local[s] = new Pareto(Yk[s].getSets()); // deep copy
+				for (Distribution distr : trans.get(s)) {
+					for (int t : distr.keySet()) {
+						if (local[t] == null)
+							local[t] = new Pareto(Yk[t].getSets()); // deep copy
+					}
+				}
+			}
+			tasks.add(() -> {
+				for (int s = from; s < to; s++) {
+					// apply F to (X^k)(s)
+					List<Pareto> distPolys = new ArrayList<Pareto>(trans.get(s).size());
+					result[s] = pMultiObjectiveSingle(s, local, rewards, baseline_accuracy, biggest_reward, distPolys, rounding,
+									  union_with_previous, cut, M);
+					if (stochasticStates != null)
+						stochasticStates[s] = distPolys;
+				}
+				return null;
+			});
+		}
+		for (Future<Void> f : Parallel.getPool(numThreads).invokeAll(tasks)) {
+			try {
+				f.get();
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof PrismException)
+					throw (PrismException) e.getCause();
+				throw new PrismException("Error when computing Pareto sets in parallel: " + e.getCause());
+			}
+			catch (InterruptedException e) {
+				throw new PrismException("Interrupted when computing Pareto sets in parallel");
+			}
+		}
+	}
+
+	/**
+	 * take X^k and apply F(X^k)(s) for each state, like
+	 * {@link #pMultiObjective(Pareto[], List, boolean, long, double[], List[], boolean, boolean, boolean, long, int)},
+	 * but using the pure-Java {@link DownClosedPolytope} representation instead of PPL.
+	 * Rounding, union with the previous set and cutting (for energy objectives) are not supported.
+	 *
+	 * arguments:
+	 * @param gaussSeidel Gauss Seidel update allowed
+	 * @param dirs weight directions used for pruning the polytopes
+	 * @param stochasticStates if non-null, used to store the polytopes for the moves of each state
+	 * @param numThreads number of threads to use (Jacobi updates only)
+	 */
+	public DownClosedPolytope[] pMultiObjectiveDouble(DownClosedPolytope[] Xk, List<SMGRewards> rewards, boolean gaussSeidel,
+					DownClosedPolytope.Directions dirs, List<DownClosedPolytope>[] stochasticStates, int numThreads)
+	{
+		DownClosedPolytope[] result = new DownClosedPolytope[Xk.length];
+		if (gaussSeidel) {
+			System.arraycopy(Xk, 0, result, 0, Xk.length);
+			for (int s = 0; s < numStates; s++)
+				result[s] = pMultiObjectiveSingleDouble(s, result, rewards, dirs, stochasticStates);
+		} else {
+			// polytopes are immutable, so states can just be processed in parallel
+			Parallel.forRange(numThreads, 0, numStates, 64, (from, to) -> {
+				for (int s = from; s < to; s++)
+					result[s] = pMultiObjectiveSingleDouble(s, Xk, rewards, dirs, stochasticStates);
+			});
+		}
+		return result;
+	}
+
+	private DownClosedPolytope pMultiObjectiveSingleDouble(int s, DownClosedPolytope[] Xk, List<SMGRewards> rewards,
+					DownClosedPolytope.Directions dirs, List<DownClosedPolytope>[] stochasticStates)
+	{
+		int n = rewards.size();
+		List<Distribution> dists = trans.get(s);
+
+		// stochastic states: weighted sums of successor sets, plus transition rewards
+		List<DownClosedPolytope> distPolys = new ArrayList<DownClosedPolytope>(dists.size());
+		int d = 0;
+		for (Distribution distr : dists) {
+			DownClosedPolytope[] succs = new DownClosedPolytope[distr.size()];
+			double[] probs = new double[distr.size()];
+			int k = 0;
+			for (Entry<Integer, Double> e : distr) {
+				succs[k] = Xk[e.getKey()];
+				probs[k] = e.getValue();
+				k++;
+			}
+			double[] r = new double[n];
+			for (int i = 0; i < n; i++)
+				r[i] = rewards.get(i) == null ? 0.0 : rewards.get(i).getTransitionReward(s, d);
+			distPolys.add(DownClosedPolytope.weightedSum(succs, probs, dirs).translate(r));
+			d++;
+		}
+		if (stochasticStates != null)
+			stochasticStates[s] = distPolys;
+
+		// player states: union for player 1, intersection for player 2
+		DownClosedPolytope Xk1s;
+		if (distPolys.size() > 0) {
+			Xk1s = getPlayer(s) == 1 ? DownClosedPolytope.union(distPolys, dirs) : DownClosedPolytope.intersection(distPolys, dirs);
+		} else { // deadlock
+			Xk1s = Xk[s];
+		}
+
+		// add state rewards
+		double[] r = new double[n];
+		for (int i = 0; i < n; i++)
+			r[i] = rewards.get(i) == null ? 0.0 : rewards.get(i).getStateReward(s);
+		return Xk1s.translate(r);
+	}
+
     private Polyhedron round(Generator_System ngs, long baseline_accuracy, double[] biggest_reward, boolean energy_objective) throws PrismException
 	{
 		int n = biggest_reward.length;
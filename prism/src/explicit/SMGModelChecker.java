@@ -96,6 +96,8 @@ public class SMGModelChecker extends ProbModelChecker
 	protected double increase_factor = 1.01;
 	protected long max_accuracy = Integer.MAX_VALUE / 4;
 	protected boolean gaussSeidel = true;
+	protected boolean javaParetoEngine = false;
+	protected int paretoDirections = 20;
 
 	// logging options for Pareto sets and Strategy
 	protected boolean logCPareto = false;
@@ -145,6 +147,10 @@ public class SMGModelChecker extends ProbModelChecker
 			if (increase_factor < 1)
 				throw new PrismException(String.format("Must have %s >= 1", settings.getSettingName(PrismSettings.PRISM_MULTI_INCREASE_FACTOR)));
 			max_accuracy = Integer.MAX_VALUE / 4;
+			javaParetoEngine = settings.getString(PrismSettings.PRISM_MULTI_PARETO_ENGINE).equals("Java");
+			paretoDirections = settings.getInteger(PrismSettings.PRISM_MULTI_PARETO_DIRECTIONS);
+			if (paretoDirections < 1)
+				throw new PrismException(String.format("Must have %s >= 1", settings.getSettingName(PrismSettings.PRISM_MULTI_PARETO_DIRECTIONS)));
 		}
 	}
 
@@ -152,10 +158,14 @@ public class SMGModelChecker extends ProbModelChecker
 	public StateValues checkExpressionMultiObjective(Model model, List<List<Expression>> cnf, Coalition coalition) throws PrismException
         {
 	        // initialise the Parma Polyhedra Library
-	        PPLSupport.initPPL();
+	        // (the pure-Java engine only needs it for Pareto sets and strategies, which are stored as PPL polyhedra)
+	        if (!javaParetoEngine || computePareto || generateStrategy)
+	        	PPLSupport.initPPL();
 
 		// extract simple expression from MQ
 		MultiParameters params = initialiseRewards(model, cnf);
+		if (javaParetoEngine && params.rounding)
+			mainLog.printWarning("Rounding (and the union with previous Pareto sets that it enables) is not supported by the Java engine, so is ignored");
 
 		// direct method [QEST'13, MFCS'13, TACAS'15]
 		return checkExpressionMultiDirect(model, params, coalition);
@@ -600,7 +610,11 @@ public class SMGModelChecker extends ProbModelChecker
 			MultiParameters new_params = convertRatioMQToMQ((SMG) model, params);
 
 			setRewardBrackets(new_params, model); // find brackets around rewards to start iteration and/or rounding
-			Entry<StateValues, StochasticUpdateStrategy> SvS = checkMQ((SMG) model, new_params, generateStrategy);
+			Entry<StateValues, StochasticUpdateStrategy> SvS;
+			if (javaParetoEngine && !generateStrategy)
+				SvS = new SimpleEntry<StateValues, StochasticUpdateStrategy>(checkMQDouble((SMG) model, new_params), null);
+			else
+				SvS = checkMQ((SMG) model, new_params, generateStrategy);
 			mainLog.print(String.format("%s took %f s\n", generateStrategy ? "Synthesis" : "Verification", ((double) (System.nanoTime() - t0)) / 1e9));
 
 			parsed_params = params; // register parameters
@@ -1734,6 +1748,91 @@ public class SMGModelChecker extends ProbModelChecker
 		return new SimpleEntry<StateValues, StochasticUpdateStrategy>(sv, strategy);
 	}
 
+	/**
+	 * Checks an MQ like {@link #checkMQ}, without constructing a strategy, using the pure-Java engine
+	 * (see {@link #computeCQParetoSetDouble}), so that no PPL objects are needed.
+	 * Average rewards are evaluated as for Pareto set computation, rather than as energy objectives, but
+	 * iterated for the maximum number of steps, and bounds are checked up to the pruning threshold.
+	 *
+	 * @param smg The game.
+	 * @param params  The parameters specifying the MQ.
+	 *
+	 * @return State values with bit set of states satisfying the objective
+	 **/
+	private StateValues checkMQDouble(SMG smg, MultiParameters params) throws PrismException
+	{
+		int gameSize = smg.getNumStates();
+		int initialState = smg.getFirstInitialState();
+
+		// only check bounds during iterating if the objective is puerly expected total cumulative rewards
+		boolean checkBounds = (params.objective_type == MultiParameters.ETCR);
+		// averages over finite horizons approach the average reward too slowly for the convergence test
+		// to bound their error, so, for average rewards, iterate for the maximum number of steps
+		boolean checkConvergence = (params.objective_type == MultiParameters.ETCR);
+
+		// sanity check for conjunction valiter count
+		if (params.maxCIter < 1)
+			throw new PrismException("Iteration count for conjunctions has to be greater or equal to one.");
+
+		DownClosedPolytope[] Px = new DownClosedPolytope[gameSize]; // sets at states
+		BitSet satisfied = new BitSet(gameSize);
+
+		shiftRewards(smg, params, false, false); // apply shifts to rewards
+		shiftBounds(smg, params, false, false); // apply shifts to bounds
+		try {
+			if (isConjunction(params)) { // IF CONJUNCTION
+				computeCQParetoSetDouble(smg, params, Px, null, checkBounds, checkConvergence);
+				checkBoundsDouble(Px, params, satisfied);
+			} else { // IF MQ
+				// sanity check for disjunction valiter count
+				if (params.dIterOffset < 1)
+					throw new PrismException("Iteration offset for disjunctions has to be greater or equal to zero");
+				if (params.maxDIter < 1)
+					throw new PrismException("Iteration count for disjunctions has to be greater or equal to one.");
+
+				// selector for hyperplanes / weight vectors
+				HyperplaneSelector hyperplaneSelector = new HyperplaneSelector(params.CONJUNCTS, params.DISJUNCTS);
+
+				// ITERATE THROUGH HYPERPLANES - a state satisfies the MQ if it satisfies the CQ for some choice
+				for (int iter = 1; iter < params.maxDIter + params.dIterOffset; iter++) {
+					// get new choice of hyperplane
+					double[][] x = hyperplaneSelector.next_hyperplane();
+					if (iter < params.dIterOffset)
+						continue;
+					if (logDPareto)
+						mainLog.print(String.format("D-ITER (%d/%d): x=%s\n", iter, params.maxDIter + params.dIterOffset, Arrays.deepToString(x)));
+
+					// evaluate Pareto set for this choice of x (i.e. the hyperplanes)
+					MultiParameters cq_params = convertRatioMQToRatioCQ(x, smg, params);
+					computeCQParetoSetDouble(smg, cq_params, Px, null, checkBounds, checkConvergence);
+					checkBoundsDouble(Px, cq_params, satisfied);
+					if (satisfied.get(initialState))
+						break;
+				}
+			}
+		} finally {
+			shiftRewards(smg, params, true, false); // shift rewards back
+			shiftBounds(smg, params, true, false); // shift bounds back
+		}
+
+		return StateValues.createFromBitSet(satisfied, smg);
+	}
+
+	/**
+	 * Adds to {@code satisfied} the states whose set in {@code Px} contains the bounds in {@code params}.
+	 */
+	private void checkBoundsDouble(DownClosedPolytope[] Px, MultiParameters params, BitSet satisfied)
+	{
+		int n = params.bounds.size();
+		double[] bounds = new double[n];
+		for (int i = 0; i < n; i++)
+			bounds[i] = params.bounds.get(i);
+		DownClosedPolytope.Directions dirs = paretoDirections(n);
+		for (int s = 0; s < Px.length; s++)
+			if (Px[s].contains(bounds, varepsilon / 10, dirs))
+				satisfied.set(s);
+	}
+
 	/**
 	* Returns an arbitrary initial credit vector from the Pareto set for energy objectives.
 	* If set is empty, return null.
@@ -2115,10 +2214,31 @@ public class SMGModelChecker extends ProbModelChecker
 			return true; // if not energy objective, will speak of convergence in any case
 		}
 
+		// use the pure-Java engine if requested (energy objectives need the exact PPL operations),
+		// and convert the resulting sets to PPL once the iteration has finished
+		if (javaParetoEngine && !energy_objective) {
+			DownClosedPolytope[] Dx = new DownClosedPolytope[gameSize];
+			List<DownClosedPolytope>[] stochasticStatesDouble = stochasticStates == null ? null : newListArray(gameSize);
+			boolean converged = computeCQParetoSetDouble(smg, params, Dx, stochasticStatesDouble, checkBounds, true);
+			for (int s = 0; s < gameSize; s++) {
+				Px[s] = Dx[s].toPareto();
+				if (stochasticStates != null) {
+					stochasticStates[s] = new ArrayList<Pareto>(stochasticStatesDouble[s].size());
+					for (DownClosedPolytope p : stochasticStatesDouble[s])
+						stochasticStates[s].add(p.toPareto());
+				}
+			}
+			return converged;
+		}
+
 		// only allow Gauss-Seidel when all dimensions are total cumulative rewards,
 		// or if we have an energy objective
 		boolean localGaussSeidel = gaussSeidel && ((params.objective_type == MultiParameters.ETCR) || energy_objective);
 
+		// PPL's Java interface has no per-thread initialisation (see SMG.pMultiObjective)
+		if (!localGaussSeidel && getNumThreads() > 1)
+			mainLog.printWarning("Computing Pareto sets with " + getNumThreads() + " threads, which requires a thread-safe build of PPL");
+
 		// INITIALISATION: compute polyhedra X_s^0
 		Pareto[] Qx = initialiseCQParetoSet(gameSize, n, params.MIN);
 
@@ -2152,7 +2272,8 @@ public class SMGModelChecker extends ProbModelChecker
 
 			// VALUE ITERATION STEP
 			Pareto[] temp = smg.pMultiObjective(Qx, params.rewards, localGaussSeidel, baseline_accuracy, params.biggest_reward,
-					stochasticStates, params.rounding, !params.no_union_with_previous & !energy_objective, energy_objective, params.M);
+					stochasticStates, params.rounding, !params.no_union_with_previous & !energy_objective, energy_objective, params.M,
+					getNumThreads());
 			System.arraycopy(temp, 0, Px, 0, temp.length); // copy to result
 
 			if (logCPareto)
@@ -2195,6 +2316,126 @@ public class SMGModelChecker extends ProbModelChecker
 		return converged;
 	}
 
+	/**
+	 * Compute CQ Pareto sets for cumulative total and average rewards (not energy objectives),
+	 * like {@link #computeCQParetoSet}, but iterating over the pure-Java {@link DownClosedPolytope}
+	 * representation, so that no PPL objects are created. Average rewards are rescaled at the end.
+	 *
+	 * @param smg The stochastic game
+	 * @param params The parameters of the query
+	 * @param Px Pareto sets for player states, used as return value
+	 * @param stochasticStates Pareto sets for stochastic states, used as return value (ignored if null)
+	 * @params checkBounds Whether the computation is stopped once the bounds are met
+	 * @params checkConvergence Whether the computation is stopped once the sets have converged
+	 *
+	 * @return Whether the value iteration converged.
+	 */
+	private boolean computeCQParetoSetDouble(SMG smg, MultiParameters params, DownClosedPolytope[] Px, List<DownClosedPolytope>[] stochasticStates,
+			boolean checkBounds, boolean checkConvergence)
+	{
+		int gameSize = smg.getNumStates();
+		int n = params.rewards.size();
+		int init = smg.getFirstInitialState();
+
+		// only allow Gauss-Seidel when all dimensions are total cumulative rewards
+		boolean localGaussSeidel = gaussSeidel && params.objective_type == MultiParameters.ETCR;
+
+		DownClosedPolytope.Directions dirs = paretoDirections(n);
+
+		// INITIALISATION: X_s^0 is the downward closure of MIN[][s]
+		DownClosedPolytope[] Qx = new DownClosedPolytope[gameSize];
+		for (int s = 0; s < gameSize; s++) {
+			double[] x = new double[n];
+			for (int i = 0; i < n; i++)
+				x[i] = params.MIN[i][s];
+			Qx[s] = DownClosedPolytope.point(x);
+		}
+		DownClosedPolytope[] Dx = Qx;
+
+		// set up arrays for average reward (needed to check bounds and convergence and later rescale the sets)
+		int[] step = new int[n];
+		Arrays.fill(step, 1); // default is 1
+		double[] bounds = new double[n];
+		double[] base_bounds = new double[n];
+		for (int i = 0; i < n; i++)
+			base_bounds[i] = params.bounds.get(i) - params.shifts.get(i);
+		double[] alpha_prev = new double[n];
+		double[] alpha_cur = new double[n];
+
+		// ITERATE FUNCTIONAL APPLICATION: compute X_s^k+1 = F(X_s^k)
+		boolean converged = false;
+		iterate_cq: for (int k = 0; k < params.maxCIter; k++) {
+			if (logCPareto)
+				mainLog.print(String.format("C-ITER %d/%s, ", k + 1, params.maxCIter));
+			mainLog.flush();
+			// set up factors for average reward
+			for (int i = 0; i < n; i++) {
+				if (params.reward_types.get(i) == MultiParameters.EAR) {
+					// take step count times two, because every iteration the functional is applied twice!
+					step[i] = (k + 1) * 2;
+					bounds[i] = base_bounds[i] * ((double) ((k + 1) * 2));
+				} else {
+					bounds[i] = base_bounds[i];
+				}
+				alpha_cur[i] = step[i] > 1 ? 1.0 / step[i] : 1.0;
+				alpha_prev[i] = step[i] > 1 ? 1.0 / (step[i] - 1) : 1.0;
+			}
+
+			// VALUE ITERATION STEP
+			Dx = smg.pMultiObjectiveDouble(Qx, params.rewards, localGaussSeidel, dirs, stochasticStates, getNumThreads());
+
+			if (logCPareto)
+				mainLog.print(Dx[init] + "\n");
+
+			// test varepsilon-convergence
+			if (checkConvergence) {
+				converged = true;
+				for (int s = 0; s < gameSize; s++) {
+					if (!Dx[s].scale(alpha_cur).isCloseTo(Qx[s].scale(alpha_prev), varepsilon, dirs)) {
+						converged = false;
+						break;
+					}
+				}
+				if (converged) {
+					if (logCPareto)
+						mainLog.print("CQ value iteration converged.\n");
+					break iterate_cq;
+				}
+			}
+
+			// test if target met
+			if (checkBounds && Dx[init].dominates(bounds, 0.0))
+				break iterate_cq; // if target met, break cq iteration
+
+			// keep current as previous Pareto (for convergence check)
+			Qx = Dx;
+		}
+
+		// MEAN/TOTAL/RATIO: rescale if required by average reward
+		double[] alpha = new double[n]; // scaling factor
+		Arrays.fill(alpha, 1.0); // default is 1.0
+		for (int i = 0; i < n; i++)
+			if (params.reward_types.get(i) == MultiParameters.EAR)
+				alpha[i] = 1.0 / ((double) step[i]);
+		for (int s = 0; s < gameSize; s++) {
+			Px[s] = Dx[s].scale(alpha);
+			if (stochasticStates != null)
+				stochasticStates[s].replaceAll(p -> p.scale(alpha));
+		}
+
+		// return whether converged
+		return converged;
+	}
+
+	/**
+	 * Weight vectors for the pure-Java engine in {@code n} dimensions;
+	 * vertices are pruned at a fraction of the convergence threshold.
+	 */
+	private DownClosedPolytope.Directions paretoDirections(int n)
+	{
+		return new DownClosedPolytope.Directions(n, paretoDirections, varepsilon / 10);
+	}
+
 	/**
 	 * Tests convergence using epsilon-growth criterion (relative!),
 	 * that is, test whether (prev \cap current) + epsilon \supseteq (prev \cup current).
@@ -2366,4 +2607,13 @@ public class SMGModelChecker extends ProbModelChecker
 		mcSTPG.inheritSettings(this);
 		return mcSTPG;
 	}
+
+	/**
+	 * Create a new (null-filled) array of {@code n} lists.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> List<T>[] newListArray(int n)
+	{
+		return (List<T>[]) new List<?>[n];
+	}
 }
@@ -574,9 +574,9 @@ public class STPGExplicit extends MDPSimple implements STPG
 			// Compute sum for this distribution
 			d = mdpRewards.getTransitionReward(s, j);
 
-			for (Map.Entry<Integer, Double> e : distr) {
-				k = (Integer) e.getKey();
-				prob = (Double) e.getValue();
+			for (int t = 0, n = distr.size(); t < n; t++) {
+				k = distr.getIndexAt(t);
+				prob = distr.getProbabilityAt(t);
 				d += prob * vect[k] * disc;
 			}
 
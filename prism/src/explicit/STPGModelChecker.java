@@ -37,6 +37,7 @@ import java.util.Map.Entry;
 
 import acceptance.AcceptanceReach;
 import common.IterableBitSet;
+import explicit.rewards.MDPRewards;
 import explicit.rewards.MDPRewardsSimple;
 import explicit.rewards.STPGRewards;
 import explicit.rewards.STPGRewardsSimple;
@@ -576,42 +577,58 @@ public class STPGModelChecker extends ProbModelChecker
 			}
 		}
 
-		// Start iterations
-		iters = 0;
-		done = false;
-		while (!done && iters < maxIters) {
-			iters++;
-			// Matrix-vector multiply and min/max ops
-			stpg.mvMultMinMax(soln, min1, min2, soln2, unknown, false, genAdv ? adv : null);
-			// Check termination
-			done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE);
-			// Swap vectors for next iter
-			tmpsoln = soln;
-			soln = soln2;
-			soln2 = tmpsoln;
-		}
+		// For topological value iteration, get a sparse copy of the STPG
+		STPGSparse stpgTopological = getDoTopologicalValueIteration() ? getSparse(stpg) : null;
+		if (stpgTopological != null) {
+			res = doTopologicalValueIteration(stpgTopological, null, unknown, min1, min2, soln, genAdv ? adv : null, timer);
+		} else {
+			// If iterations are done in parallel, get a sparse copy of the STPG and the states to compute for
+			STPGSparse stpgSparse = getSparseForParallel(stpg);
+			int[] unknownArray = (stpgSparse != null) ? unknown.stream().toArray() : null;
+
+			// Start iterations
+			iters = 0;
+			done = false;
+			while (!done && iters < maxIters) {
+				iters++;
+				// Matrix-vector multiply and min/max ops
+				if (stpgSparse != null) {
+					stpgSparse.mvMultMinMax(soln, min1, min2, soln2, unknownArray, genAdv ? adv : null, numThreads);
+				} else {
+					stpg.mvMultMinMax(soln, min1, min2, soln2, unknown, false, genAdv ? adv : null);
+				}
+				// Check termination
+				done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE, numThreads);
+				// Swap vectors for next iter
+				tmpsoln = soln;
+				soln = soln2;
+				soln2 = tmpsoln;
+			}
 
-		// Finished value iteration
-		timer = System.currentTimeMillis() - timer;
-		if (verbosity >= 1) {
-			mainLog.print("Value iteration (" + (min1 ? "min" : "max") + (min2 ? "min" : "max") + ")");
-			mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
-		}
+			// Finished value iteration
+			timer = System.currentTimeMillis() - timer;
+			if (verbosity >= 1) {
+				mainLog.print("Value iteration (" + (min1 ? "min" : "max") + (min2 ? "min" : "max") + ")");
+				mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+			}
 
-		// Non-convergence is an error (usually)
-		if (!done && errorOnNonConverge) {
-			String msg = "Iterative method did not converge within " + iters + " iterations.";
-			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
-			throw new PrismException(msg);
+			// Non-convergence is an error (usually)
+			if (!done && errorOnNonConverge) {
+				String msg = "Iterative method did not converge within " + iters + " iterations.";
+				msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+				throw new PrismException(msg);
+			}
+
+			// Store results
+			res = new ModelCheckerResult();
+			res.soln = soln;
+			double maxDiff = PrismUtils.measureSupNorm(soln, soln2, termCrit == TermCrit.ABSOLUTE);
+			res.accuracy = AccuracyFactory.valueIteration(termCritParam, maxDiff, termCrit == TermCrit.ABSOLUTE);
+			res.numIters = iters;
+			res.timeTaken = timer / 1000.0;
 		}
 
-		// Store results/strategy
-		res = new ModelCheckerResult();
-		res.soln = soln;
-		double maxDiff = PrismUtils.measureSupNorm(soln, soln2, termCrit == TermCrit.ABSOLUTE);
-		res.accuracy = AccuracyFactory.valueIteration(termCritParam, maxDiff, termCrit == TermCrit.ABSOLUTE);
-		res.numIters = iters;
-		res.timeTaken = timer / 1000.0;
+		// Store strategy
 		if (generateStrategy) {
 			res.strat = new MemorylessDeterministicStrategy(adv);
 		}
@@ -829,6 +846,15 @@ public class STPGModelChecker extends ProbModelChecker
 			results[0] = Utils.minMaxOverArraySubset(soln2, stpg.getInitialStates(), min2);
 		}
 
+		// If iterations are done in parallel, get a sparse copy of the STPG and the (non-target) states to compute for
+		STPGSparse stpgSparse = getSparseForParallel(stpg);
+		int[] nonTargetArray = null;
+		if (stpgSparse != null) {
+			BitSet nonTarget = (BitSet) target.clone();
+			nonTarget.flip(0, n);
+			nonTargetArray = nonTarget.stream().toArray();
+		}
+
 		// Start iterations
 		iters = 0;
 		while (iters < k) {
@@ -838,7 +864,11 @@ public class STPGModelChecker extends ProbModelChecker
 				adv = new int[n];
 
 			// Matrix-vector multiply and min/max ops
-			stpg.mvMultMinMax(soln, min1, min2, soln2, target, true, generateStrategy ? adv : null);
+			if (stpgSparse != null) {
+				stpgSparse.mvMultMinMax(soln, min1, min2, soln2, nonTargetArray, generateStrategy ? adv : null, numThreads);
+			} else {
+				stpg.mvMultMinMax(soln, min1, min2, soln2, target, true, generateStrategy ? adv : null);
+			}
 			// Store intermediate results if required
 			// (compute min/max value over initial states for this step)
 			if (results != null) {
@@ -1055,36 +1085,43 @@ public class STPGModelChecker extends ProbModelChecker
 			}
 		}
 
-		// Start iterations
+		// For topological value iteration (not supported with discounting), get a sparse copy of the STPG
+		STPGSparse stpgTopological = (getDoTopologicalValueIteration() && !useDiscounting) ? getSparse(stpg) : null;
+		res = null;
 		iters = 0;
 		done = false;
-		while (!done && iters < maxIters) {
-			
-		        //mainLog.println(soln);
-			//mainLog.println(rewards);
-			//mainLog.println(min1);
-			//mainLog.println(min2);
-			//mainLog.println(soln2);
-			//mainLog.println(unknown);
-			//mainLog.println(genAdv);
-			
-			iters++;
-			// Matrix-vector multiply and min/max ops
-			stpg.mvMultRewMinMax(soln, rewards, min1, min2, soln2, unknown, false, genAdv ? adv : null, useDiscounting ? discountFactor : 1.0);
+		if (stpgTopological != null) {
+			res = doTopologicalValueIteration(stpgTopological, rewards.buildMDPRewards(), unknown, min1, min2, soln, genAdv ? adv : null, timer);
+		} else {
+			// If iterations are done in parallel, get a sparse copy of the STPG and the states to compute for
+			STPGSparse stpgSparse = getSparseForParallel(stpg);
+			int[] unknownArray = (stpgSparse != null) ? unknown.stream().toArray() : null;
+			MDPRewards mdpRewards = (stpgSparse != null) ? rewards.buildMDPRewards() : null;
 
-			// Check termination
-			done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE);
-			// Swap vectors for next iter
-			tmpsoln = soln;
-			soln = soln2;
-			soln2 = tmpsoln;
-		}
+			// Start iterations
+			while (!done && iters < maxIters) {
+				iters++;
+				// Matrix-vector multiply and min/max ops
+				if (stpgSparse != null) {
+					stpgSparse.mvMultRewMinMax(soln, mdpRewards, min1, min2, soln2, unknownArray, genAdv ? adv : null, useDiscounting ? discountFactor : 1.0, numThreads);
+				} else {
+					stpg.mvMultRewMinMax(soln, rewards, min1, min2, soln2, unknown, false, genAdv ? adv : null, useDiscounting ? discountFactor : 1.0);
+				}
 
-		// Finished value iteration
-		timer = System.currentTimeMillis() - timer;
-		if (verbosity >= 1) {
-			mainLog.print("Value iteration (" + (min1 ? "min" : "max") + (min2 ? "min" : "max") + ")");
-			mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+				// Check termination
+				done = PrismUtils.doublesAreClose(soln, soln2, termCritParam, termCrit == TermCrit.ABSOLUTE, numThreads);
+				// Swap vectors for next iter
+				tmpsoln = soln;
+				soln = soln2;
+				soln2 = tmpsoln;
+			}
+
+			// Finished value iteration
+			timer = System.currentTimeMillis() - timer;
+			if (verbosity >= 1) {
+				mainLog.print("Value iteration (" + (min1 ? "min" : "max") + (min2 ? "min" : "max") + ")");
+				mainLog.println(" took " + iters + " iterations and " + timer / 1000.0 + " seconds.");
+			}
 		}
 
 		// Print adversary
@@ -1101,20 +1138,24 @@ public class STPGModelChecker extends ProbModelChecker
 			out.close();
 		}
 
-		// Non-convergence is an error (usually)
-		if (!done && errorOnNonConverge) {
-			String msg = "Iterative method did not converge within " + iters + " iterations.";
-			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
-			throw new PrismException(msg);
+		if (res == null) {
+			// Non-convergence is an error (usually)
+			if (!done && errorOnNonConverge) {
+				String msg = "Iterative method did not converge within " + iters + " iterations.";
+				msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+				throw new PrismException(msg);
+			}
+
+			// Store results
+			res = new ModelCheckerResult();
+			res.soln = soln;
+			double maxDiff = PrismUtils.measureSupNorm(soln, soln2, termCrit == TermCrit.ABSOLUTE);
+			res.accuracy = AccuracyFactory.valueIteration(termCritParam, maxDiff, termCrit == TermCrit.ABSOLUTE);
+			res.numIters = iters;
+			res.timeTaken = timer / 1000.0;
 		}
 
-		// Store results/strategy
-		res = new ModelCheckerResult();
-		res.soln = soln;
-		double maxDiff = PrismUtils.measureSupNorm(soln, soln2, termCrit == TermCrit.ABSOLUTE);
-		res.accuracy = AccuracyFactory.valueIteration(termCritParam, maxDiff, termCrit == TermCrit.ABSOLUTE);
-		res.numIters = iters;
-		res.timeTaken = timer / 1000.0;
+		// Store strategy
 		if (generateStrategy) {
 			res.strat = new MemorylessDeterministicStrategy(adv);
 		}
@@ -1981,6 +2022,78 @@ public class STPGModelChecker extends ProbModelChecker
 		return result;
 	}
 
+	/**
+	 * Do topological value iteration for reachability probabilities or,
+	 * if {@code mdpRewards} is non-null, expected reachability rewards (without discounting),
+	 * solving the SCCs of the unknown states in topological order
+	 * (independent SCCs concurrently, if more than one thread is in use).
+	 * @param stpg The STPG
+	 * @param mdpRewards The rewards (as built by {@link STPGRewards#buildMDPRewards()}), or null for probabilities
+	 * @param unknown The states to compute values for
+	 * @param min1 Min or max for player 1 (true=min, false=max)
+	 * @param min2 Min or max for player 2 (true=min, false=max)
+	 * @param init Initial solution vector (will be overwritten)
+	 * @param adv Storage for adversary choice indices (ignored if null)
+	 * @param timer The start time (obtained from a call to System.currentTimeMillis())
+	 */
+	protected ModelCheckerResult doTopologicalValueIteration(STPGSparse stpg, MDPRewards mdpRewards, BitSet unknown, boolean min1, boolean min2, double init[], int adv[],
+			long timer) throws PrismException
+	{
+		IterationMethodPower iterationMethod = new IterationMethodPower(termCrit == TermCrit.ABSOLUTE, termCritParam);
+		iterationMethod.setNumThreads(numThreads);
+		String description = (min1 ? "min" : "max") + (min2 ? "min" : "max") + ", topological, with " + iterationMethod.getDescriptionShort();
+
+		IterationMethod.IterationValIter iteration;
+		IterationMethod.SingletonSCCSolver singletonSCCSolver;
+		if (mdpRewards == null) {
+			iteration = iterationMethod.forMvMultMinMax(stpg, min1, min2, adv);
+			singletonSCCSolver = (int s, double[] soln) -> {
+				soln[s] = stpg.mvMultJacMinMaxSingle(s, soln, stpg.getPlayer(s) == 1 ? min1 : min2, adv);
+			};
+		} else {
+			iteration = iterationMethod.forMvMultRewMinMax(stpg, mdpRewards, min1, min2, adv);
+			singletonSCCSolver = (int s, double[] soln) -> {
+				soln[s] = stpg.mvMultRewJacMinMaxSingle(s, soln, mdpRewards, stpg.getPlayer(s) == 1 ? min1 : min2, adv);
+			};
+		}
+		iteration.init(init);
+
+		// Compute SCCInfo, including trivial SCCs in the subgraph obtained when only considering
+		// states in unknown
+		SCCInfo sccs = SCCComputer.computeTopologicalOrdering(this, stpg, true, unknown::get);
+
+		// run the actual value iteration
+		return iterationMethod.doTopologicalValueIteration(this, description, sccs, iteration, singletonSCCSolver, timer, null);
+	}
+
+	/**
+	 * If value iteration is to be done in parallel (i.e., more than one thread is in use),
+	 * get a sparse copy of {@code stpg}, providing the parallel iteration methods.
+	 * Returns null if iterations are sequential or {@code stpg} cannot be converted.
+	 */
+	protected STPGSparse getSparseForParallel(STPG stpg)
+	{
+		if (numThreads <= 1) {
+			return null;
+		}
+		return getSparse(stpg);
+	}
+
+	/**
+	 * Get a sparse copy of {@code stpg} (or {@code stpg} itself, if it is already sparse).
+	 * Returns null if {@code stpg} cannot be converted.
+	 */
+	protected STPGSparse getSparse(STPG stpg)
+	{
+		if (stpg instanceof STPGSparse) {
+			return (STPGSparse) stpg;
+		}
+		if (stpg instanceof STPGExplicit) {
+			return new STPGSparse((STPGExplicit) stpg);
+		}
+		return null;
+	}
+
 	/**
 	 * Simple test program.
 	 */
@@ -0,0 +1,419 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package explicit;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import common.IterableStateSet;
+import common.Parallel;
+import explicit.rewards.MDPRewards;
+import explicit.rewards.STPGRewards;
+import prism.ModelType;
+import prism.PrismException;
+import prism.PrismLog;
+
+/**
+ * Sparse matrix (non-mutable) explicit-state representation of a (turn-based) stochastic two-player game (STPG).
+ * Transitions are stored as for {@link MDPSparse}, plus an array giving the owner of each state.
+ * <br><br>
+ * This is intended as a compact, read-only copy of an STPG (or SMG) for numerical computation,
+ * notably the parallel value iteration methods provided here.
+ * For an SMG, the player owning each state is that given by {@link SMG#getPlayer(int)}
+ * when this copy is built, i.e. it reflects the coalition set at that point.
+ */
+public class STPGSparse extends MDPSparse implements STPG
+{
+	/** Which player owns each state, i.e. stateOwners[s] is the owner of state s (1 or 2) */
+	protected int stateOwners[];
+
+	// Constructors
+
+	/**
+	 * Copy constructor (from STPGExplicit, or subclasses such as SMG).
+	 */
+	public STPGSparse(STPGExplicit stpg)
+	{
+		super(stpg);
+		stateOwners = new int[numStates];
+		for (int s = 0; s < numStates; s++) {
+			stateOwners[s] = stpg.getPlayer(s);
+		}
+	}
+
+	// Accessors (for Model)
+
+	@Override
+	public ModelType getModelType()
+	{
+		// Resolve conflict: STPG interface does not (currently) extend MDP
+		return STPG.super.getModelType();
+	}
+
+	@Override
+	public void exportToPrismExplicitTra(PrismLog out)
+	{
+		// Resolve conflict: STPG interface does not (currently) extend MDP
+		STPG.super.exportToPrismExplicitTra(out);
+	}
+
+	@Override
+	public void exportToPrismLanguage(final String filename) throws PrismException
+	{
+		// Resolve conflict: STPG interface does not (currently) extend MDP
+		STPG.super.exportToPrismLanguage(filename);
+	}
+
+	@Override
+	public String infoString()
+	{
+		// Resolve conflict: STPG interface does not (currently) extend MDP
+		return STPG.super.infoString();
+	}
+
+	@Override
+	public String infoStringTable()
+	{
+		// Resolve conflict: STPG interface does not (currently) extend MDP
+		return STPG.super.infoStringTable();
+	}
+
+	// Accessors (for STPG)
+
+	@Override
+	public int getPlayer(int s)
+	{
+		return stateOwners[s];
+	}
+
+	@Override
+	public int getNumTransitions(int s, int i)
+	{
+		return super.getNumTransitions(s, i);
+	}
+
+	@Override
+	public Iterator<Entry<Integer, Double>> getTransitionsIterator(int s, int i)
+	{
+		return super.getTransitionsIterator(s, i);
+	}
+
+	@Override
+	public boolean isChoiceNested(int s, int i)
+	{
+		// No nested choices
+		return false;
+	}
+
+	@Override
+	public int getNumNestedChoices(int s, int i)
+	{
+		// No nested choices
+		return 0;
+	}
+
+	@Override
+	public Object getNestedAction(int s, int i, int j)
+	{
+		// No nested choices
+		return null;
+	}
+
+	@Override
+	public int getNumNestedTransitions(int s, int i, int j)
+	{
+		// No nested choices
+		return 0;
+	}
+
+	@Override
+	public Iterator<Entry<Integer, Double>> getNestedTransitionsIterator(int s, int i, int j)
+	{
+		// No nested choices
+		return null;
+	}
+
+	@Override
+	public boolean allSuccessorsInSet(int s, int c, BitSet set)
+	{
+		return super.allSuccessorsInSet(s, c, set);
+	}
+
+	@Override
+	public void prob0step(BitSet subset, BitSet u, boolean forall1, boolean forall2, BitSet result)
+	{
+		int j, k, l1, h1, l2, h2;
+		boolean b1, some, forall;
+		for (int i : new IterableStateSet(subset, numStates)) {
+			forall = (stateOwners[i] == 1) ? forall1 : forall2;
+			b1 = forall; // there exists or for all
+			l1 = rowStarts[i];
+			h1 = rowStarts[i + 1];
+			for (j = l1; j < h1; j++) {
+				some = false;
+				l2 = choiceStarts[j];
+				h2 = choiceStarts[j + 1];
+				for (k = l2; k < h2; k++) {
+					// Assume that only non-zero entries are stored
+					if (u.get(cols[k])) {
+						some = true;
+						break;
+					}
+				}
+				if (forall) {
+					if (!some) {
+						b1 = false;
+						break;
+					}
+				} else {
+					if (some) {
+						b1 = true;
+						break;
+					}
+				}
+			}
+			result.set(i, b1);
+		}
+	}
+
+	@Override
+	public void prob1step(BitSet subset, BitSet u, BitSet v, boolean forall1, boolean forall2, BitSet result)
+	{
+		int j, k, l1, h1, l2, h2;
+		boolean b1, some, all, forall;
+		for (int i : new IterableStateSet(subset, numStates)) {
+			forall = (stateOwners[i] == 1) ? forall1 : forall2;
+			b1 = forall; // there exists or for all
+			l1 = rowStarts[i];
+			h1 = rowStarts[i + 1];
+			for (j = l1; j < h1; j++) {
+				some = false;
+				all = true;
+				l2 = choiceStarts[j];
+				h2 = choiceStarts[j + 1];
+				for (k = l2; k < h2; k++) {
+					// Assume that only non-zero entries are stored
+					if (v.get(cols[k])) {
+						some = true;
+					}
+					if (!u.get(cols[k])) {
+						all = false;
+					}
+				}
+				if (forall) {
+					if (!(some && all)) {
+						b1 = false;
+						break;
+					}
+				} else {
+					if (some && all) {
+						b1 = true;
+						break;
+					}
+				}
+			}
+			result.set(i, b1);
+		}
+	}
+
+	@Override
+	public void mvMultMinMax(double vect[], boolean min1, boolean min2, double result[], BitSet subset, boolean complement, int adv[])
+	{
+		for (int s : new IterableStateSet(subset, numStates, subset != null && complement)) {
+			result[s] = mvMultMinMaxSingle(s, vect, stateOwners[s] == 1 ? min1 : min2, adv);
+		}
+	}
+
+	/**
+	 * Do a matrix-vector multiplication followed by two min/max ops, i.e. one step of value iteration,
+	 * with the rows split across {@code numThreads} threads.
+	 * i.e. for all s: result[s] = min/max_{k1,k2} { sum_j P_{k1,k2}(s,j)*vect[j] }
+	 * Rows are processed independently, so the result is identical to the sequential version.
+	 * @param vect Vector to multiply by
+	 * @param min1 Min or max for player 1 (true=min, false=max)
+	 * @param min2 Min or max for player 2 (true=min, false=max)
+	 * @param result Vector to store result in
+	 * @param states Perform computation for these rows
+	 * @param adv Storage for adversary choice indices (ignored if null)
+	 * @param numThreads Number of threads to use
+	 */
+	public void mvMultMinMax(double vect[], boolean min1, boolean min2, double result[], int states[], int adv[], int numThreads)
+	{
+		Parallel.forRange(numThreads, 0, states.length, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				final int s = states[i];
+				result[s] = mvMultMinMaxSingle(s, vect, stateOwners[s] == 1 ? min1 : min2, adv);
+			}
+		});
+	}
+
+	@Override
+	public double mvMultMinMaxSingle(int s, double vect[], boolean min1, boolean min2)
+	{
+		return mvMultMinMaxSingle(s, vect, stateOwners[s] == 1 ? min1 : min2, null);
+	}
+
+	@Override
+	public List<Integer> mvMultMinMaxSingleChoices(int s, double vect[], boolean min1, boolean min2, double val)
+	{
+		return mvMultMinMaxSingleChoices(s, vect, stateOwners[s] == 1 ? min1 : min2, val);
+	}
+
+	@Override
+	public double mvMultGSMinMax(double vect[], boolean min1, boolean min2, BitSet subset, boolean complement, boolean absolute)
+	{
+		double d, diff, maxDiff = 0.0;
+		for (int s : new IterableStateSet(subset, numStates, subset != null && complement)) {
+			d = mvMultJacMinMaxSingle(s, vect, min1, min2);
+			diff = absolute ? (Math.abs(d - vect[s])) : (Math.abs(d - vect[s]) / d);
+			maxDiff = diff > maxDiff ? diff : maxDiff;
+			vect[s] = d;
+		}
+		return maxDiff;
+	}
+
+	@Override
+	public double mvMultJacMinMaxSingle(int s, double vect[], boolean min1, boolean min2)
+	{
+		return mvMultJacMinMaxSingle(s, vect, stateOwners[s] == 1 ? min1 : min2, null);
+	}
+
+	@Override
+	public void mvMultRewMinMax(double vect[], STPGRewards rewards, boolean min1, boolean min2, double result[], BitSet subset, boolean complement, int adv[])
+	{
+		mvMultRewMinMax(vect, rewards, min1, min2, result, subset, complement, adv, 1.0);
+	}
+
+	@Override
+	public void mvMultRewMinMax(double vect[], STPGRewards rewards, boolean min1, boolean min2, double result[], BitSet subset, boolean complement, int adv[],
+			double disc)
+	{
+		MDPRewards mdpRewards = rewards.buildMDPRewards();
+		for (int s : new IterableStateSet(subset, numStates, subset != null && complement)) {
+			result[s] = mvMultRewMinMaxSingle(s, vect, mdpRewards, stateOwners[s] == 1 ? min1 : min2, adv, disc);
+		}
+	}
+
+	/**
+	 * Do a matrix-vector multiplication and sum of action reward followed by min/max, i.e. one step of value iteration,
+	 * with the rows split across {@code numThreads} threads.
+	 * i.e. for all s: result[s] = min/max_{k1,k2} { rew(s) + sum_j P_{k1,k2}(s,j)*disc*vect[j] }
+	 * Rows are processed independently, so the result is identical to the sequential version.
+	 * @param vect Vector to multiply by
+	 * @param mdpRewards The rewards (as built by {@link STPGRewards#buildMDPRewards()})
+	 * @param min1 Min or max for player 1 (true=min, false=max)
+	 * @param min2 Min or max for player 2 (true=min, false=max)
+	 * @param result Vector to store result in
+	 * @param states Perform computation for these rows
+	 * @param adv Storage for adversary choice indices (ignored if null)
+	 * @param disc Discount factor
+	 * @param numThreads Number of threads to use
+	 */
+	public void mvMultRewMinMax(double vect[], MDPRewards mdpRewards, boolean min1, boolean min2, double result[], int states[], int adv[], double disc,
+			int numThreads)
+	{
+		Parallel.forRange(numThreads, 0, states.length, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				final int s = states[i];
+				result[s] = mvMultRewMinMaxSingle(s, vect, mdpRewards, stateOwners[s] == 1 ? min1 : min2, adv, disc);
+			}
+		});
+	}
+
+	@Override
+	public double mvMultRewMinMaxSingle(int s, double vect[], STPGRewards rewards, boolean min1, boolean min2, int adv[])
+	{
+		MDPRewards mdpRewards = rewards.buildMDPRewards();
+		return mvMultRewMinMaxSingle(s, vect, mdpRewards, stateOwners[s] == 1 ? min1 : min2, adv);
+	}
+
+	/**
+	 * Do a single row of matrix-vector multiplication and sum of action reward followed by min/max,
+	 * with discounting. Unlike for MDPs, the optimal choice is always stored
+	 * (as for {@link STPGExplicit#mvMultRewMinMaxSingle(int, double[], MDPRewards, boolean, int[], double)}).
+	 * @param s Row index
+	 * @param vect Vector to multiply by
+	 * @param mdpRewards The rewards
+	 * @param min Min or max (true=min, false=max)
+	 * @param adv Storage for adversary choice indices (ignored if null)
+	 * @param disc Discount factor
+	 */
+	public double mvMultRewMinMaxSingle(int s, double vect[], MDPRewards mdpRewards, boolean min, int adv[], double disc)
+	{
+		int j, k, l1, h1, l2, h2, advCh = -1;
+		double d, minmax;
+		boolean first;
+
+		minmax = 0;
+		first = true;
+		l1 = rowStarts[s];
+		h1 = rowStarts[s + 1];
+		for (j = l1; j < h1; j++) {
+			// Compute sum for this distribution
+			d = mdpRewards.getTransitionReward(s, j - l1);
+			l2 = choiceStarts[j];
+			h2 = choiceStarts[j + 1];
+			for (k = l2; k < h2; k++) {
+				d += nonZeros[k] * vect[cols[k]] * disc;
+			}
+			// Check whether we have exceeded min/max so far
+			if (first || (min && d < minmax) || (!min && d > minmax)) {
+				minmax = d;
+				// If adversary generation is enabled, remember optimal choice
+				if (adv != null)
+					advCh = j - l1;
+			}
+			first = false;
+		}
+		// If adversary generation is enabled, store optimal choice
+		if (adv != null & !first) {
+			adv[s] = advCh;
+		}
+		// Add state reward (doesn't affect min/max)
+		minmax += mdpRewards.getStateReward(s);
+
+		return minmax;
+	}
+
+	@Override
+	public List<Integer> mvMultRewMinMaxSingleChoices(int s, double vect[], STPGRewards rewards, boolean min1, boolean min2, double val)
+	{
+		MDPRewards mdpRewards = rewards.buildMDPRewards();
+		return mvMultRewMinMaxSingleChoices(s, vect, mdpRewards, stateOwners[s] == 1 ? min1 : min2, val);
+	}
+
+	// Standard methods
+
+	@Override
+	public String toString()
+	{
+		return "players: " + Arrays.toString(stateOwners) + ", " + super.toString();
+	}
+}
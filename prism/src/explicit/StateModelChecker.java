@@ -623,6 +623,10 @@ public class StateModelChecker extends PrismComponent
 
 		// If required, do bisimulation minimisation
 		if (doBisim) {
+			// The quotient model only preserves labels, not reward structures
+			if (Expression.containsRewardOperator(expr)) {
+				throw new PrismNotSupportedException("Bisimulation minimisation not supported for properties with R operators");
+			}
 			mainLog.println("\nPerforming bisimulation minimisation...");
 			ArrayList<String> propNames = new ArrayList<String>();
 			ArrayList<BitSet> propBSs = new ArrayList<BitSet>();
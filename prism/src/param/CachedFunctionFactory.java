@@ -26,8 +26,10 @@
 
 package param;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Function factory implementing a cache for functions from other factories.
@@ -36,6 +38,12 @@ import java.util.HashMap;
  * cache for operations on functions, so that if an operation on the same
  * two functions has already been performed before, the result will be
  * looked up instead of being performed again.
+ * <br>
+ * To bound memory usage, the operation caches hold at most a given
+ * number of entries each, evicting the least recently used ones, and
+ * functions are only kept in the function cache as long as they are
+ * in use (i.e. referenced from outside the cache or by the operation
+ * caches).
  * 
  * @author Ernst Moritz Hahn <emhahn@cs.ox.ac.uk> (University of Oxford)
  * @see FunctionFactory
@@ -85,14 +93,37 @@ final class CachedFunctionFactory extends FunctionFactory {
 		}
 	}
 	
+	/**
+	 * Operation cache, holding at most {@code maxOpCacheSize} entries and
+	 * evicting the least recently used entry when this size is exceeded.
+	 */
+	private class OpCache<K> extends LinkedHashMap<K, CachedFunction>
+	{
+		private static final long serialVersionUID = 1L;
+
+		OpCache()
+		{
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, CachedFunction> eldest)
+		{
+			if (size() > maxOpCacheSize) {
+				opCacheEvictions++;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/** default maximal number of entries of each operation cache */
+	static final int DEFAULT_MAX_OP_CACHE_SIZE = 1000000;
+
 	/** function factory of which we cache functions */
 	private FunctionFactory context;
-	/** maps each function from {@code context} to a unique integer */
-	private HashMap<Function, Integer> functionToNumber;
-	/** maps each integer to function from {@code context}, cf. also {@code functionToNumber} */
-	private ArrayList<Function> functions;
-	/** list of all function of this function factory */ 
-	private ArrayList<CachedFunction> cachedFunctions;
+	/** maps each function from {@code context} which is in use to its cached function */
+	private WeakHashMap<Function, WeakReference<CachedFunction>> uniqueFunctions;
 	/** next new function will be assigned this number */
 	private int nextFunctionNumber;
 	/** function representing one (1) */
@@ -101,12 +132,20 @@ final class CachedFunctionFactory extends FunctionFactory {
 	private CachedFunction zero;
 	/** true iff operation cache is to be used */
 	private boolean useOpCache;
+	/** maximal number of entries of each operation cache */
+	private int maxOpCacheSize;
 	/** cache for additions (and indirectly subtractions) */		
-	private HashMap<OpCacheKey, CachedFunction> addCache;
+	private OpCache<OpCacheKey> addCache;
 	/** cache for multiplications (and indirectly divisions) */	
-	private HashMap<OpCacheKey, CachedFunction> multCache;
+	private OpCache<OpCacheKey> multCache;
 	/** cache for star operation */
-	private HashMap<CachedFunction, CachedFunction> starCache;
+	private OpCache<CachedFunction> starCache;
+	/** number of operations whose result was found in an operation cache */
+	private long opCacheHits;
+	/** number of operations whose result was not found in an operation cache */
+	private long opCacheMisses;
+	/** number of entries evicted from the operation caches */
+	private long opCacheEvictions;
 	
 	/**
 	 * Constructs a new cached function factory.
@@ -115,18 +154,30 @@ final class CachedFunctionFactory extends FunctionFactory {
 	 * @param context function factory to cache functions of
 	 */
 	public CachedFunctionFactory(FunctionFactory context) {
+		this(context, DEFAULT_MAX_OP_CACHE_SIZE);
+	}
+	
+	/**
+	 * Constructs a new cached function factory.
+	 * Will cache functions of the given {@code context}, using operation
+	 * caches of at most {@code maxOpCacheSize} entries each (or no
+	 * operation cache if {@code maxOpCacheSize} is 0).
+	 * 
+	 * @param context function factory to cache functions of
+	 * @param maxOpCacheSize maximal number of entries of each operation cache
+	 */
+	public CachedFunctionFactory(FunctionFactory context, int maxOpCacheSize) {
 		super(context.parameterNames, context.lowerBounds, context.upperBounds);
 		this.context = context;
-		functionToNumber = new HashMap<Function, Integer>();
-		cachedFunctions = new ArrayList<CachedFunction>();
-		functions = new ArrayList<Function>();
+		uniqueFunctions = new WeakHashMap<Function, WeakReference<CachedFunction>>();
 		nextFunctionNumber = 0;
 		one = makeUnique(context.getOne());
 		zero = makeUnique(context.getZero());
-		addCache = new HashMap<OpCacheKey, CachedFunction>();
-		multCache = new HashMap<OpCacheKey, CachedFunction>();
-		starCache = new HashMap<CachedFunction, CachedFunction>();
-		useOpCache = true;
+		this.maxOpCacheSize = maxOpCacheSize;
+		addCache = new OpCache<OpCacheKey>();
+		multCache = new OpCache<OpCacheKey>();
+		starCache = new OpCache<CachedFunction>();
+		useOpCache = maxOpCacheSize > 0;
 	}
 	
 	/**
@@ -148,30 +199,69 @@ final class CachedFunctionFactory extends FunctionFactory {
 	 * @param function function to return unique integer of
 	 * @return unique integer representing function
 	 */
-	private CachedFunction makeUnique(Function function)
+	private synchronized CachedFunction makeUnique(Function function)
 	{
-		Integer number = functionToNumber.get(function);
-		if (number != null) {
-			return cachedFunctions.get(number);
-		} else {
-			CachedFunction cachedFunction = new CachedFunction(this, nextFunctionNumber);
-			functionToNumber.put(function, nextFunctionNumber);
-			cachedFunctions.add(cachedFunction);
-			functions.add(function);
+		WeakReference<CachedFunction> ref = uniqueFunctions.get(function);
+		CachedFunction cachedFunction = ref == null ? null : ref.get();
+		if (cachedFunction == null) {
+			/* remove stale entry first, as its key would otherwise be kept */
+			uniqueFunctions.remove(function);
+			cachedFunction = new CachedFunction(this, nextFunctionNumber, function);
+			uniqueFunctions.put(function, new WeakReference<CachedFunction>(cachedFunction));
 			nextFunctionNumber++;
-			return cachedFunction;
 		}
+		return cachedFunction;
 	}
 	
 	/**
-	 * Returns integer with the given unique number.
+	 * Looks up the result of an operation in an operation cache,
+	 * updating the cache statistics.
 	 * 
-	 * @param number number of function to return
-	 * @return function with the given number
+	 * @param cache operation cache to use
+	 * @param key operands of the operation
+	 * @return result of operation, or {@code null} if not cached
 	 */
-	Function getFunction(int number)
+	private synchronized <K> CachedFunction lookupOp(OpCache<K> cache, K key)
 	{
-		return functions.get(number);
+		CachedFunction result = cache.get(key);
+		if (result != null) {
+			opCacheHits++;
+		} else {
+			opCacheMisses++;
+		}
+		return result;
+	}
+	
+	/**
+	 * Stores the result of an operation in an operation cache.
+	 * 
+	 * @param cache operation cache to use
+	 * @param key operands of the operation
+	 * @param result result of operation
+	 */
+	private synchronized <K> void storeOp(OpCache<K> cache, K key, CachedFunction result)
+	{
+		cache.put(key, result);
+	}
+	
+	/**
+	 * Returns a description of the operation cache usage
+	 * (number of hits, misses and evictions).
+	 * 
+	 * @return description of operation cache usage
+	 */
+	synchronized String getCacheStatistics()
+	{
+		long lookups = opCacheHits + opCacheMisses;
+		String s = "Function cache: " + uniqueFunctions.size() + " functions in use";
+		s += ", operation cache entries: " + (addCache.size() + multCache.size() + starCache.size());
+		s += " (max " + maxOpCacheSize + " per operation)";
+		s += ", hits: " + opCacheHits + "/" + lookups;
+		if (lookups > 0) {
+			s += " (" + String.format("%.1f", 100.0 * opCacheHits / lookups) + "%)";
+		}
+		s += ", evictions: " + opCacheEvictions;
+		return s;
 	}
 	
 	@Override
@@ -188,7 +278,7 @@ final class CachedFunctionFactory extends FunctionFactory {
 
 	private Function getFunctionFromCache(Function cached)
 	{
-		return functions.get(((CachedFunction) cached).getNumber());
+		return ((CachedFunction) cached).getFunction();
 	}
 	
 	Function add(Function cached1, Function cached2)
@@ -197,7 +287,7 @@ final class CachedFunctionFactory extends FunctionFactory {
 		OpCacheKey opCacheKey = null;
 		if (useOpCache) {
 			opCacheKey = new OpCacheKey((CachedFunction) cached1, (CachedFunction) cached2);
-			result = addCache.get(opCacheKey);
+			result = lookupOp(addCache, opCacheKey);
 			if (result != null) {
 				return result;
 			}
@@ -206,7 +296,7 @@ final class CachedFunctionFactory extends FunctionFactory {
 		Function function2 = getFunctionFromCache(cached2);
 		result = makeUnique(function1.add(function2));
 		if (useOpCache) {
-			addCache.put(opCacheKey, (CachedFunction) result);
+			storeOp(addCache, opCacheKey, (CachedFunction) result);
 		}
 		return result;
 	}
@@ -223,7 +313,7 @@ final class CachedFunctionFactory extends FunctionFactory {
 		OpCacheKey opCacheKey = null;
 		if (useOpCache) {
 			opCacheKey = new OpCacheKey((CachedFunction) cached1, (CachedFunction) cached2);
-			result = multCache.get(opCacheKey);
+			result = lookupOp(multCache, opCacheKey);
 			if (result != null) {
 				return result;
 			}
@@ -232,7 +322,7 @@ final class CachedFunctionFactory extends FunctionFactory {
 		Function function2 = getFunctionFromCache(cached2);
 		result = makeUnique(function1.multiply(function2));
 		if (useOpCache) {
-			multCache.put(opCacheKey, (CachedFunction) result);
+			storeOp(multCache, opCacheKey, (CachedFunction) result);
 		}
 		return result;
 	}
@@ -247,7 +337,7 @@ final class CachedFunctionFactory extends FunctionFactory {
 	Function star(Function cached) {
 		Function result;
 		if (useOpCache) {
-			result = starCache.get(cached);
+			result = lookupOp(starCache, (CachedFunction) cached);
 			if (result != null) {
 				return result;
 			}
@@ -255,7 +345,7 @@ final class CachedFunctionFactory extends FunctionFactory {
 		Function function = getFunctionFromCache(cached);
 		result = makeUnique(function.star());
 		if (useOpCache) {
-			starCache.put((CachedFunction) cached, (CachedFunction) result);
+			storeOp(starCache, (CachedFunction) cached, (CachedFunction) result);
 		}
 		return result;
 	}
@@ -344,4 +434,16 @@ final class CachedFunctionFactory extends FunctionFactory {
 	public Function getVar(int var) {
 		return makeUnique(context.getVar(var));
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * Accesses to the function and operation caches are synchronised,
+	 * while the operations themselves are performed by the underlying
+	 * function factory without holding a lock, so this factory is
+	 * thread-safe iff the underlying one is.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return context.isThreadSafe();
+	}
 }
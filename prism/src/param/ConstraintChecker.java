@@ -184,14 +184,17 @@ class ConstraintChecker {
 		DecisionEntryKey key = new DecisionEntryKey();
 		key.constraint = constr;
 		key.strict = strict;
-		ArrayList<DecisionEntryValue> entries = decisions.get(key);
-		if (entries != null) {
-			for (DecisionEntryValue entry : entries) {
-				if (entry.region.contains(region)) {
-					if (entry.result) {
-						return true;
-					} else if (entry.region.equals(region)) {
-						return false;
+		// the decision cache may be accessed by several threads (see ValueComputer)
+		synchronized (decisions) {
+			ArrayList<DecisionEntryValue> entries = decisions.get(key);
+			if (entries != null) {
+				for (DecisionEntryValue entry : entries) {
+					if (entry.region.contains(region)) {
+						if (entry.result) {
+							return true;
+						} else if (entry.region.equals(region)) {
+							return false;
+						}
 					}
 				}
 			}
@@ -202,15 +205,17 @@ class ConstraintChecker {
 			result = mainCheck(region, constr, strict);
 		}
 
-		entries = decisions.get(key);
-		if (entries == null) {
-			entries = new ArrayList<DecisionEntryValue>();
-			decisions.put(key, entries);
-		}
 		DecisionEntryValue entry = new DecisionEntryValue();
 		entry.region = region;
 		entry.result = result;
-		entries.add(entry);
+		synchronized (decisions) {
+			ArrayList<DecisionEntryValue> entries = decisions.get(key);
+			if (entries == null) {
+				entries = new ArrayList<DecisionEntryValue>();
+				decisions.put(key, entries);
+			}
+			entries.add(entry);
+		}
 
 		return result;
 	}
@@ -26,15 +26,66 @@
 
 package param;
 
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.WeakHashMap;
 
 /**
  * @author Ernst Moritz Hahn <emhahn@cs.ox.ac.uk> (University of Oxford)
  * TODO complete once needed
  */
 class DagFunctionFactory extends FunctionFactory {
+	/**
+	 * Table used to obtain a unique representative of equal objects.
+	 * If weak references are used, objects are only kept in the table
+	 * as long as they are referenced from elsewhere, so that operators
+	 * and functions no longer in use can be garbage collected.
+	 */
+	private static class UniqueTable<T>
+	{
+		/** table storing objects directly, if weak references are not used */
+		private HashMap<T,T> strongTable;
+		/** table storing objects via weak references, if weak references are used */
+		private Map<T,WeakReference<T>> weakTable;
+
+		UniqueTable(boolean weakReferences)
+		{
+			if (weakReferences) {
+				weakTable = new WeakHashMap<T,WeakReference<T>>();
+			} else {
+				strongTable = new HashMap<T,T>();
+			}
+		}
+
+		/**
+		 * Returns the object stored in the table which equals {@code obj},
+		 * or stores and returns {@code obj} if there is none.
+		 */
+		T makeUnique(T obj)
+		{
+			if (strongTable != null) {
+				T found = strongTable.get(obj);
+				if (found == null) {
+					found = obj;
+					strongTable.put(found, found);
+				}
+				return found;
+			}
+			WeakReference<T> ref = weakTable.get(obj);
+			T found = ref == null ? null : ref.get();
+			if (found == null) {
+				/* remove stale entry first, as its key would otherwise be kept */
+				weakTable.remove(obj);
+				found = obj;
+				weakTable.put(found, new WeakReference<T>(found));
+			}
+			return found;
+		}
+	}
+
 	private class Number extends DagOperator {
 		private BigInteger number;
 		Number(BigInteger number) {
@@ -127,7 +178,7 @@ class DagFunctionFactory extends FunctionFactory {
 	}
 	
 	private Point randomPosition;
-	private HashMap<DagOperator,DagOperator> polynomials;
+	private UniqueTable<DagOperator> polynomials;
 	private DagOperator zeroOp;
 	private DagOperator oneOp;
 	private DagFunction[] parameters;
@@ -136,10 +187,14 @@ class DagFunctionFactory extends FunctionFactory {
 	private DagFunction nan;
 	private DagFunction inf;
 	private DagFunction minf;
-	private HashMap<DagFunction,DagFunction> functions;
+	private UniqueTable<DagFunction> functions;
 //	private boolean negateToInner;
 	
 	public DagFunctionFactory(String[] parameterNames, BigRational[] lowerBounds, BigRational[] upperBounds, double maxProbWrong, boolean negateToInner) {
+		this(parameterNames, lowerBounds, upperBounds, maxProbWrong, negateToInner, false);
+	}
+	
+	public DagFunctionFactory(String[] parameterNames, BigRational[] lowerBounds, BigRational[] upperBounds, double maxProbWrong, boolean negateToInner, boolean weakReferences) {
 		super(parameterNames, lowerBounds, upperBounds);
 		Random random = new Random();
 		BigRational[] randomPosArr = new BigRational[parameterNames.length];
@@ -150,28 +205,19 @@ class DagFunctionFactory extends FunctionFactory {
 		}
 		randomPosition = new Point(randomPosArr);
 
-		polynomials = new HashMap<DagOperator,DagOperator>();
-		functions = new HashMap<DagFunction,DagFunction>();
-		zeroOp = new Number(BigInteger.ZERO);
-		polynomials.put(zeroOp,zeroOp);
-		oneOp = new Number(BigInteger.ONE);
-		polynomials.put(oneOp,oneOp);
-		zero = new DagFunction(this, zeroOp, oneOp);
-		functions.put(zero,zero);
-		one = new DagFunction(this, oneOp, oneOp);
-		functions.put(one,one);
-		nan = new DagFunction(this, DagFunction.NAN);
-		functions.put(nan,nan);
-		inf = new DagFunction(this, DagFunction.INF);
-		functions.put(inf,inf);
-		minf = new DagFunction(this, DagFunction.MINF);
-		functions.put(minf,minf);
+		polynomials = new UniqueTable<DagOperator>(weakReferences);
+		functions = new UniqueTable<DagFunction>(weakReferences);
+		zeroOp = polynomials.makeUnique(new Number(BigInteger.ZERO));
+		oneOp = polynomials.makeUnique(new Number(BigInteger.ONE));
+		zero = functions.makeUnique(new DagFunction(this, zeroOp, oneOp));
+		one = functions.makeUnique(new DagFunction(this, oneOp, oneOp));
+		nan = functions.makeUnique(new DagFunction(this, DagFunction.NAN));
+		inf = functions.makeUnique(new DagFunction(this, DagFunction.INF));
+		minf = functions.makeUnique(new DagFunction(this, DagFunction.MINF));
 		parameters = new DagFunction[parameterNames.length];
 		for (int varNr = 0; varNr < parameterNames.length; varNr++) {
-			DagOperator paramOp = new Variable(varNr);
-			polynomials.put(paramOp,paramOp);
-			parameters[varNr] = new DagFunction(this, paramOp, oneOp);
-			functions.put(parameters[varNr],parameters[varNr]);
+			DagOperator paramOp = polynomials.makeUnique(new Variable(varNr));
+			parameters[varNr] = functions.makeUnique(new DagFunction(this, paramOp, oneOp));
 		}
 //		this.negateToInner = negateToInner;
 	}
@@ -202,21 +248,11 @@ class DagFunctionFactory extends FunctionFactory {
 	}
 	
 	private DagOperator makeUnique(DagOperator op) {
-		DagOperator foundOp = polynomials.get(op);
-		if (foundOp == null) {
-			foundOp = op;
-			polynomials.put(foundOp, foundOp);
-		}
-		return foundOp;
+		return polynomials.makeUnique(op);
 	}
 	
 	private DagFunction makeUnique(DagFunction fn) {
-		DagFunction foundFn = functions.get(fn);
-		if (foundFn == null) {
-			foundFn = fn;
-			functions.put(foundFn, foundFn);
-		}
-		return foundFn;
+		return functions.makeUnique(fn);
 	}
 	
 	@Override
@@ -173,4 +173,14 @@ public abstract class FunctionFactory {
 	public Function fromLong(long from) {
 		return fromBigRational(new BigRational(from));
 	}
+
+	/**
+	 * Returns whether functions of this factory may be combined (using
+	 * {@code add}, {@code multiply}, etc.) concurrently from several threads.
+	 * 
+	 * @return true iff operations on functions of this factory are thread-safe
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
 }
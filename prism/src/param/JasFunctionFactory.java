@@ -155,4 +155,14 @@ final class JasFunctionFactory extends FunctionFactory {
 	public Function getVar(int var) {
 		return parameters[var];
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * JAS polynomials and quotients are immutable, so operations on them
+	 * can be performed concurrently.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
@@ -71,6 +71,10 @@ public final class ModelBuilder extends PrismComponent
 	private String functionType;
 	/** maximal error probability of DAG function representation */
 	private double dagMaxError;
+	/** maximal number of entries of each operation cache of cached function representation */
+	private int functionCacheSize = CachedFunctionFactory.DEFAULT_MAX_OP_CACHE_SIZE;
+	/** whether DAG function representation keeps unused nodes only via weak references */
+	private boolean dagWeakRefs;
 
 	/** local storage made static for use in anonymous class */
 	private static Map<String,Expression> constExprs;
@@ -86,6 +90,8 @@ public final class ModelBuilder extends PrismComponent
 		if (settings != null) {
 			functionType = settings.getString(PrismSettings.PRISM_PARAM_FUNCTION);
 			dagMaxError = settings.getDouble(PrismSettings.PRISM_PARAM_DAG_MAX_ERROR);
+			functionCacheSize = settings.getInteger(PrismSettings.PRISM_PARAM_FUNCTION_CACHE_SIZE);
+			dagWeakRefs = settings.getBoolean(PrismSettings.PRISM_PARAM_DAG_WEAK_REFS);
 		}
 	}
 	
@@ -227,9 +233,9 @@ public final class ModelBuilder extends PrismComponent
 		if (functionType.equals("JAS")) {
 			functionFactory = new JasFunctionFactory(paramNames, lower, upper);
 		} else if (functionType.equals("JAS-cached")) {
-			functionFactory = new CachedFunctionFactory(new JasFunctionFactory(paramNames, lower, upper));
+			functionFactory = new CachedFunctionFactory(new JasFunctionFactory(paramNames, lower, upper), functionCacheSize);
 		} else if (functionType.equals("DAG")) {
-			functionFactory = new DagFunctionFactory(paramNames, lower, upper, dagMaxError, false);
+			functionFactory = new DagFunctionFactory(paramNames, lower, upper, dagMaxError, false, dagWeakRefs);
 		}
 		// And pass it to the model generator
 		modelGenSym.setSymbolic(this, functionFactory);
@@ -26,33 +26,51 @@
 
 package param;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.LinkedList;
-import java.util.ListIterator;
 
 /**
  * Representation of mutable parametric Markov chain.
  * This class is intended to be used in combination with the
  * {@code StateEliminator}, which uses this class to compute values of
  * parametric Markov models.
- * 
+ * <br>
+ * For each state, the leaving transitions (targets and probabilities) and
+ * the states with transitions to this state are stored in primitive arrays,
+ * which grow as needed. In addition, a hash table maps each transition
+ * (pair of source and target state) to its position among the leaving
+ * transitions of its source state, so that transitions can be looked up,
+ * added to and removed in constant (expected) time.
+ *
  * @author Ernst Moritz Hahn <emhahn@cs.ox.ac.uk> (University of Oxford)
  * @see StateEliminator
  */
 final class MutablePMC {
+	/** marks empty entries of the transition hash table */
+	private static final long NO_EDGE = -1L;
+
 	/** function factory to which functions in this object belong */
 	private FunctionFactory functionFactory;
 	/** assignment of rewards to each state */
 	private Function[] rewards;
 	/** assignment of time to each state */
 	private Function[] times;
-	/** for each state, provides list of leaving transition probabilities */
-	ArrayList<LinkedList<Function>> transitionProbs;
-	/** for each state, provides list of leaving transition targets */
-	ArrayList<LinkedList<Integer>> transitionTargets;
-	/** for each state, provides list of states which have transitions to this state */
-	ArrayList<LinkedList<Integer>> incoming;
+	/** for each state, targets of leaving transitions (first {@code numSuccs[state]} entries used) */
+	private int[][] succs;
+	/** for each state, probabilities of leaving transitions (same order as {@code succs}) */
+	private Function[][] succProbs;
+	/** for each state, number of leaving transitions */
+	private int[] numSuccs;
+	/** for each state, states which have transitions to this state (first {@code numPreds[state]} entries used) */
+	private int[][] preds;
+	/** for each state, number of states which have transitions to this state */
+	private int[] numPreds;
+	/** transition hash table (open addressing): keys (source and target state) */
+	private long[] edgeKeys;
+	/** transition hash table: position of transition among leaving transitions of its source */
+	private int[] edgePos;
+	/** number of transitions stored in the hash table */
+	private int numEdges;
 	/** true iff uses a reward structure */
 	private boolean useRewards;
 	/** true iff uses time reward structure */
@@ -66,7 +84,7 @@ final class MutablePMC {
 
 	/**
 	 * Constructs a new mutable parametric Markov chain.
-	 * 
+	 *
 	 * @param functionFactory function factory used to maintain rational functions
 	 * @param numStates total number of states this parametric Markov chain shall have
 	 * @param useRewards true iff parametric Markov chain constructed shall use rewards
@@ -75,14 +93,24 @@ final class MutablePMC {
 	MutablePMC(FunctionFactory functionFactory, int numStates, boolean useRewards, boolean useTime) {
 		this.numStates = numStates;
 		this.functionFactory = functionFactory;
-		transitionProbs = new ArrayList<LinkedList<Function>>(numStates);
-		transitionTargets = new ArrayList<LinkedList<Integer>>(numStates);
-		incoming = new ArrayList<LinkedList<Integer>>(numStates);		
-		for (int state = 0; state < numStates; state++) {
-			transitionTargets.add(new LinkedList<Integer>());
-			transitionProbs.add(new LinkedList<Function>());
-			incoming.add(new LinkedList<Integer>());
+		succs = new int[numStates][];
+		succProbs = new Function[numStates][];
+		numSuccs = new int[numStates];
+		preds = new int[numStates][];
+		numPreds = new int[numStates];
+		int[] empty = new int[0];
+		Function[] emptyProbs = new Function[0];
+		Arrays.fill(succs, empty);
+		Arrays.fill(succProbs, emptyProbs);
+		Arrays.fill(preds, empty);
+		int tableSize = 16;
+		while (tableSize < 4 * numStates) {
+			tableSize *= 2;
 		}
+		edgeKeys = new long[tableSize];
+		Arrays.fill(edgeKeys, NO_EDGE);
+		edgePos = new int[tableSize];
+		numEdges = 0;
 		this.useRewards = useRewards;
 		this.useTime = useTime;
 		initStates = new BitSet(numStates);
@@ -100,119 +128,324 @@ final class MutablePMC {
 			}
 		}
 	}
-	
+
 	/**
 	 * Returns function factory maintaining functions used in this object.
-	 * 
+	 *
 	 * @return function factory maintaining functions
 	 */
 	FunctionFactory getFunctionFactory()
 	{
 		return functionFactory;
 	}
-	
+
 	/**
 	 * Adds a probabilistic transition.
-	 * 
+	 * If there already is a transition between the two states,
+	 * the probabilities are added up.
+	 *
 	 * @param from state transition starts from
 	 * @param to state transition leads to
 	 * @param prob probability of transition
 	 */
 	void addTransition(int from, int to, Function prob)
 	{
-		ListIterator<Integer> toIter = transitionTargets.get(from).listIterator();
-		ListIterator<Function> valIter = transitionProbs.get(from).listIterator();
-		boolean alreadyThere = false;
-		while (toIter.hasNext() && !alreadyThere) {
-			int succ = toIter.next();
-			Function succProb = valIter.next();
-			if (succ == to) {
-				valIter.set(succProb.add(prob));
-				alreadyThere = true;
-			}
+		int slot = findEdgeSlot(from, to);
+		if (edgeKeys[slot] != NO_EDGE) {
+			int pos = edgePos[slot];
+			succProbs[from][pos] = succProbs[from][pos].add(prob);
+			return;
+		}
+		int pos = numSuccs[from];
+		if (pos == succs[from].length) {
+			int newLength = Math.max(4, 2 * pos);
+			succs[from] = Arrays.copyOf(succs[from], newLength);
+			succProbs[from] = Arrays.copyOf(succProbs[from], newLength);
 		}
-		if (!alreadyThere) {
-			transitionTargets.get(from).add(to);
-			transitionProbs.get(from).add(prob);
-			incoming.get(to).add(from);
+		succs[from][pos] = to;
+		succProbs[from][pos] = prob;
+		numSuccs[from]++;
+		edgeKeys[slot] = edgeKey(from, to);
+		edgePos[slot] = pos;
+		numEdges++;
+		if (2 * numEdges > edgeKeys.length) {
+			rehashEdges();
 		}
+		addPredecessor(to, from);
 	}
-	
+
 	/**
 	 * Returns the probability of a given transition
-	 * 
+	 *
 	 * @param from source state of transition
 	 * @param to target state of transition
 	 * @return probability to move from given state to given state
 	 */
 	Function getTransProb(int from, int to)
 	{
-		Function prob = null;
-		ListIterator<Integer> toIter = transitionTargets.get(from).listIterator();
-		ListIterator<Function> valIter = transitionProbs.get(from).listIterator();		
-		while (toIter.hasNext()) {
-			int succ = toIter.next();
-			Function succProb = valIter.next();
-			if (succ == to) {
-				prob = succProb;
-				break;
-			}
-		}
-		
-		if (prob == null) {
-			prob = functionFactory.getZero();
+		int slot = findEdgeSlot(from, to);
+		if (edgeKeys[slot] == NO_EDGE) {
+			return functionFactory.getZero();
 		}
-		
-		return prob;
+		return succProbs[from][edgePos[slot]];
 	}
-	
+
+	/**
+	 * Checks whether there is a transition between two given states.
+	 *
+	 * @param from source state of transition
+	 * @param to target state of transition
+	 * @return true iff there is a transition from {@code from} to {@code to}
+	 */
+	boolean hasTransition(int from, int to)
+	{
+		return edgeKeys[findEdgeSlot(from, to)] != NO_EDGE;
+	}
+
 	/**
 	 * Returns probability of the self-loop in a given state.
-	 * 
+	 *
 	 * @param state state to return self-loop probability of
 	 * @return self-loop probability of given state
 	 */
 	Function getSelfLoopProb(int state)
 	{
-		Function loopProb = null;
-		
-		ListIterator<Integer> toIter = transitionTargets.get(state).listIterator();
-		ListIterator<Function> valIter = transitionProbs.get(state).listIterator();		
-		while (toIter.hasNext()) {
-			int to = toIter.next();
-			Function val = valIter.next();
-			if (to == state) {
-				loopProb = val;
-				break;
-			}
-		}
-		if (loopProb == null) {
-			loopProb = functionFactory.getZero();
+		return getTransProb(state, state);
+	}
+
+	/**
+	 * Returns the number of transitions leaving a given state.
+	 *
+	 * @param state state to return number of leaving transitions of
+	 * @return number of transitions leaving {@code state}
+	 */
+	int getNumSuccessors(int state)
+	{
+		return numSuccs[state];
+	}
+
+	/**
+	 * Returns the target state of the {@code i}th transition leaving a given state.
+	 *
+	 * @param state source state of transition
+	 * @param i index of transition among those leaving {@code state}
+	 * @return target state of transition
+	 */
+	int getSuccessor(int state, int i)
+	{
+		return succs[state][i];
+	}
+
+	/**
+	 * Returns the probability of the {@code i}th transition leaving a given state.
+	 *
+	 * @param state source state of transition
+	 * @param i index of transition among those leaving {@code state}
+	 * @return probability of transition
+	 */
+	Function getSuccessorProb(int state, int i)
+	{
+		return succProbs[state][i];
+	}
+
+	/**
+	 * Sets the probability of the {@code i}th transition leaving a given state.
+	 *
+	 * @param state source state of transition
+	 * @param i index of transition among those leaving {@code state}
+	 * @param prob new probability of transition
+	 */
+	void setSuccessorProb(int state, int i, Function prob)
+	{
+		succProbs[state][i] = prob;
+	}
+
+	/**
+	 * Returns the number of states with a transition to a given state.
+	 *
+	 * @param state state to return number of predecessors of
+	 * @return number of predecessors of {@code state}
+	 */
+	int getNumPredecessors(int state)
+	{
+		return numPreds[state];
+	}
+
+	/**
+	 * Returns the {@code i}th state with a transition to a given state.
+	 *
+	 * @param state state to return predecessor of
+	 * @param i index of predecessor
+	 * @return {@code i}th predecessor of {@code state}
+	 */
+	int getPredecessor(int state, int i)
+	{
+		return preds[state][i];
+	}
+
+	/**
+	 * Removes all transitions leading to a given state (including a
+	 * possible self-loop). Transitions leaving the state are kept.
+	 *
+	 * @param state state to remove incoming transitions of
+	 */
+	void removeTransitionsTo(int state)
+	{
+		for (int i = 0; i < numPreds[state]; i++) {
+			removeSuccessor(preds[state][i], state);
 		}
-		
-		return loopProb;
+		numPreds[state] = 0;
 	}
-	
+
 	/**
 	 * Makes a given state absorbing.
 	 * This means removing all leaving transitions and adding a self-loop
 	 * with probability one.
-	 * 
+	 *
 	 * @param state state to make absorbing
 	 */
 	void makeAbsorbing(int state)
 	{
-		LinkedList<Integer> loop = new LinkedList<Integer>();
-		loop.add(state);
-		LinkedList<Function> one = new LinkedList<Function>();
-		one.add(functionFactory.getOne());
-		transitionTargets.set(state, loop);
-		transitionProbs.set(state, one);
+		while (numSuccs[state] > 0) {
+			int to = succs[state][numSuccs[state] - 1];
+			removeSuccessor(state, to);
+			removePredecessor(to, state);
+		}
+		addTransition(state, state, functionFactory.getOne());
+	}
+
+	/**
+	 * Removes the transition from {@code from} to {@code to} (which must exist)
+	 * from the leaving transitions of {@code from}. The list of predecessors
+	 * of {@code to} is not modified.
+	 * The last transition leaving {@code from} takes the place of the removed one.
+	 */
+	private void removeSuccessor(int from, int to)
+	{
+		int slot = findEdgeSlot(from, to);
+		int pos = edgePos[slot];
+		removeEdgeSlot(slot);
+		int last = numSuccs[from] - 1;
+		if (pos != last) {
+			int lastTo = succs[from][last];
+			succs[from][pos] = lastTo;
+			succProbs[from][pos] = succProbs[from][last];
+			edgePos[findEdgeSlot(from, lastTo)] = pos;
+		}
+		succProbs[from][last] = null;
+		numSuccs[from] = last;
+	}
+
+	/**
+	 * Adds {@code from} to the predecessors of {@code to}.
+	 */
+	private void addPredecessor(int to, int from)
+	{
+		int num = numPreds[to];
+		if (num == preds[to].length) {
+			preds[to] = Arrays.copyOf(preds[to], Math.max(4, 2 * num));
+		}
+		preds[to][num] = from;
+		numPreds[to]++;
+	}
+
+	/**
+	 * Removes {@code from} from the predecessors of {@code to}, if present.
+	 */
+	private void removePredecessor(int to, int from)
+	{
+		for (int i = 0; i < numPreds[to]; i++) {
+			if (preds[to][i] == from) {
+				preds[to][i] = preds[to][numPreds[to] - 1];
+				numPreds[to]--;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the hash table key of the transition from {@code from} to {@code to}.
+	 */
+	private static long edgeKey(int from, int to)
+	{
+		return (((long) from) << 32) | (to & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the hash table slot of a given key (for a table of the given length).
+	 */
+	private static int edgeHash(long key, int length)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & (length - 1);
+	}
+
+	/**
+	 * Returns the hash table slot containing the transition from {@code from}
+	 * to {@code to} or, if there is no such transition, the (empty) slot where
+	 * it would be inserted.
+	 */
+	private int findEdgeSlot(int from, int to)
+	{
+		long key = edgeKey(from, to);
+		int mask = edgeKeys.length - 1;
+		int slot = edgeHash(key, edgeKeys.length);
+		while (edgeKeys[slot] != NO_EDGE && edgeKeys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Removes the entry of a given (occupied) slot from the hash table,
+	 * moving back later entries of the same probe sequence to keep
+	 * lookups correct (no deletion markers are needed with linear probing).
+	 */
+	private void removeEdgeSlot(int slot)
+	{
+		int mask = edgeKeys.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (edgeKeys[next] != NO_EDGE) {
+			int home = edgeHash(edgeKeys[next], edgeKeys.length);
+			/* entry at next may move to hole iff hole lies cyclically in [home, next) */
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				edgeKeys[hole] = edgeKeys[next];
+				edgePos[hole] = edgePos[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		edgeKeys[hole] = NO_EDGE;
+		numEdges--;
+	}
+
+	/**
+	 * Doubles the size of the transition hash table.
+	 */
+	private void rehashEdges()
+	{
+		long[] oldKeys = edgeKeys;
+		int[] oldPos = edgePos;
+		edgeKeys = new long[2 * oldKeys.length];
+		Arrays.fill(edgeKeys, NO_EDGE);
+		edgePos = new int[edgeKeys.length];
+		int mask = edgeKeys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != NO_EDGE) {
+				int slot = edgeHash(oldKeys[i], edgeKeys.length);
+				while (edgeKeys[slot] != NO_EDGE) {
+					slot = (slot + 1) & mask;
+				}
+				edgeKeys[slot] = oldKeys[i];
+				edgePos[slot] = oldPos[i];
+			}
+		}
 	}
 
 	/**
 	 * Sets whether given state shall be an initial state
-	 * 
+	 *
 	 * @param state state which shall or shall not be an initial state
 	 * @param targetState true iff given state shall be an initial state
 	 */
@@ -223,7 +456,7 @@ final class MutablePMC {
 
 	/**
 	 * Sets whether given state shall be a target state
-	 * 
+	 *
 	 * @param state state which shall or shall not be a target state
 	 * @param targetState true iff given state shall be a target state
 	 */
@@ -231,10 +464,10 @@ final class MutablePMC {
 	{
 		targetStates.set(state, targetState);
 	}
-	
+
 	/**
 	 * Set reward of a given state.
-	 * 
+	 *
 	 * @param state state to set reward of
 	 * @param reward reward to set for given state
 	 */
@@ -245,7 +478,7 @@ final class MutablePMC {
 
 	/**
 	 * Set time of a given state.
-	 * 
+	 *
 	 * @param state state to set reward of
 	 * @param time time to set for given state
 	 */
@@ -256,7 +489,7 @@ final class MutablePMC {
 
 	/**
 	 * Get time of a given state.
-	 * 
+	 *
 	 * @param state state to get time of
 	 * @return time of given state
 	 */
@@ -264,7 +497,7 @@ final class MutablePMC {
 	{
 		return times[state];
 	}
-	
+
 	/**
 	 * Checks whether given state is a target state.
 	 * 
@@ -140,6 +140,7 @@ final public class ParamModelChecker extends PrismComponent
 	private int numRandomPoints;
 	private Lumper.BisimType bisimType;
 	private boolean simplifyRegions;
+	private int numThreads = 1;
 
 	private ModelBuilder modelBuilder;
 	
@@ -176,6 +177,10 @@ final public class ParamModelChecker extends PrismComponent
 			eliminationOrder = EliminationOrder.BACKWARD_REVERSED;
 		} else if (eliminationOrderString.equals("Random")) {
 			eliminationOrder = EliminationOrder.RANDOM;
+		} else if (eliminationOrderString.equals("Min-degree")) {
+			eliminationOrder = EliminationOrder.MIN_DEGREE;
+		} else if (eliminationOrderString.equals("Min-fill")) {
+			eliminationOrder = EliminationOrder.MIN_FILL;
 		} else {
 			throw new PrismException("unknown state elimination order " + eliminationOrderString);				
 		}
@@ -191,6 +196,7 @@ final public class ParamModelChecker extends PrismComponent
 			throw new PrismException("unknown bisimulation type " + bisimTypeString);							
 		}
 		simplifyRegions = settings.getBoolean(PrismSettings.PRISM_PARAM_SUBSUME_REGIONS);
+		numThreads = settings.getInteger(PrismSettings.PRISM_NUM_THREADS);
 		}
 	}
 	
@@ -232,7 +238,7 @@ final public class ParamModelChecker extends PrismComponent
 		constraintChecker = new ConstraintChecker(numRandomPoints);
 		regionFactory = new BoxRegionFactory(functionFactory, constraintChecker, precision,
 				model.getNumStates(), model.getFirstInitialState(), simplifyRegions, splitMethod);
-		valueComputer = new ValueComputer(this, mode, paramModel, regionFactory, precision, eliminationOrder, bisimType);
+		valueComputer = new ValueComputer(this, mode, paramModel, regionFactory, precision, eliminationOrder, bisimType, numThreads);
 		
 		long timer = 0;
 		
@@ -255,6 +261,9 @@ final public class ParamModelChecker extends PrismComponent
 		RegionValues vals = checkExpression(paramModel, expr, needStates);
 		timer = System.currentTimeMillis() - timer;
 		mainLog.println("\nTime for model checking: " + timer / 1000.0 + " seconds.");
+		if (functionFactory instanceof CachedFunctionFactory) {
+			mainLog.println(((CachedFunctionFactory) functionFactory).getCacheStatistics());
+		}
 
 		if (constraintChecker.unsoundCheckWasUsed()) {
 			mainLog.printWarning("Computation of Boolean values / parameter regions used heuristic sampling, results are potentially inaccurate.");
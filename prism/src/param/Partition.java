@@ -144,7 +144,8 @@ final class Partition {
 		}
 		for (HashSet<Integer> block : newBlocks) {
 			for (int state : block) {		
-				for (int predec : pmc.incoming.get(state)) {
+				for (int pred = 0; pred < pmc.getNumPredecessors(state); pred++) {
+					int predec = pmc.getPredecessor(state, pred);
 					HashSet<Integer> predecBlock = stateToBlock.get(predec);
 					if (!nextBlock.contains(predec) && !mayChangeHash.contains(predecBlock) && (predecBlock.size() > 1)) {
 						mayChange.add(predecBlock);
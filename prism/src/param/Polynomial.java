@@ -28,7 +28,7 @@ package param;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 // TODO terms should be sorted. will become necessary if a Function is
 // implemented which directly uses objects of this class to store
@@ -50,7 +50,8 @@ final class Polynomial {
 	 * entries in exponents in this array, followed by the entries for
 	 * the next term (if any). */
 	private int[] exponents;
-	private HashMap<Point,BigRational> pointsSeen;
+	/** cache of values at points evaluated (concurrent, as functions may be shared between threads) */
+	private ConcurrentHashMap<Point,BigRational> pointsSeen;
 	/** current size of the polynomial. used during its construction. */
 	private int size;
 	
@@ -65,7 +66,7 @@ final class Polynomial {
 		coefficients = new BigInteger[numTerms];
 		exponents = new int[numTerms * numVariables];
 		this.numVariables = numVariables;
-		this.pointsSeen = new HashMap<Point,BigRational>();
+		this.pointsSeen = new ConcurrentHashMap<Point,BigRational>();
 		this.size = 0;
 	}
 	
@@ -31,7 +31,9 @@ import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.PriorityQueue;
+
+import common.Parallel;
 
 /**
  * Performs computation of reachability probabilities and rewards.
@@ -62,13 +64,24 @@ final class StateEliminator {
 		/** states close to target states last */
 		BACKWARD_REVERSED,
 		/** random */
-		RANDOM;	
+		RANDOM,
+		/** states whose elimination requires fewest new transition probabilities first (chosen dynamically) */
+		MIN_DEGREE,
+		/** states whose elimination adds fewest new transitions first (chosen dynamically) */
+		MIN_FILL;
 	}
 	
+	/** minimal number of transition probabilities computed when eliminating a state for doing so in parallel */
+	private static final int PARALLEL_MIN_PRODUCTS = 64;
+	/** maximal number of transition pairs inspected to compute the exact fill-in of a state */
+	private static final long FILL_COUNT_LIMIT = 1L << 16;
+
 	/** the mutable parametric Markov chain to compute values of */
 	private MutablePMC pmc;
 	/** order in which states are eliminated */
 	private EliminationOrder eliminationOrder;
+	/** number of threads used to compute new transition probabilities */
+	private int numThreads;
 	
 	/**
 	 * Create a new state eliminator object.
@@ -77,9 +90,26 @@ final class StateEliminator {
 	 * @param eliminationOrder order in which states shall be eliminated
 	 */
 	StateEliminator(MutablePMC pmc, EliminationOrder eliminationOrder)
+	{
+		this(pmc, eliminationOrder, 1);
+	}
+	
+	/**
+	 * Create a new state eliminator object.
+	 * If {@code numThreads} is larger than one and the function factory
+	 * of {@code pmc} is thread-safe, the new transition probabilities
+	 * obtained when eliminating a state with many predecessors and
+	 * successors are computed in parallel.
+	 * 
+	 * @param pmc parametric Markov chain to compute values of
+	 * @param eliminationOrder order in which states shall be eliminated
+	 * @param numThreads number of threads to use
+	 */
+	StateEliminator(MutablePMC pmc, EliminationOrder eliminationOrder, int numThreads)
 	{
 		this.pmc = pmc;
 		this.eliminationOrder = eliminationOrder;
+		this.numThreads = pmc.getFunctionFactory().isThreadSafe() ? numThreads : 1;
 	}
 	
 	/**
@@ -106,7 +136,8 @@ final class StateEliminator {
 		while (!current.isEmpty()) {
 			HashSet<Integer> next = new HashSet<Integer>();
 			for (int state : current) {
-				for (int succState : pmc.transitionTargets.get(state)) {
+				for (int succ = 0; succ < pmc.getNumSuccessors(state); succ++) {
+					int succState = pmc.getSuccessor(state, succ);
 					if (!seen.get(succState)) {
 						seen.set(succState, true);
 						next.add(succState);
@@ -157,7 +188,8 @@ final class StateEliminator {
 		while (!current.isEmpty()) {
 			HashSet<Integer> next = new HashSet<Integer>();
 			for (int state : current) {
-				for (int succState : pmc.incoming.get(state)) {
+				for (int pred = 0; pred < pmc.getNumPredecessors(state); pred++) {
+					int succState = pmc.getPredecessor(state, pred);
 					if (!seen.get(succState)) {
 						seen.set(succState, true);
 						next.add(succState);
@@ -284,6 +316,10 @@ final class StateEliminator {
 				states[state] = statesList.get(state);
 			}
 			break;
+		case MIN_DEGREE:
+		case MIN_FILL:
+			eliminateGreedy();
+			return;
 		default:
 			throw new RuntimeException("unknown state elimination order");
 		}
@@ -294,35 +330,101 @@ final class StateEliminator {
 	}
 
 	/**
-	 * Stores a transition which shall be added to the model later.
+	 * Eliminate all states of the model, always choosing next a state
+	 * for which {@link #eliminationCost} is minimal. As the costs of a
+	 * state change when its neighbours are eliminated, the costs of the
+	 * predecessors and successors of each eliminated state are recomputed
+	 * (costs of other states are not, so the order is a greedy
+	 * approximation for {@code MIN_FILL}).
 	 */
-	class NewTransition {
-		/** source state of transition */
-		final int fromState;
-		/** target state of transition */
-		final int toState;
-		/** probability of transition */
-		final Function prob;
+	private void eliminateGreedy()
+	{
+		int numStates = pmc.getNumStates();
+		long[] cost = new long[numStates];
+		BitSet eliminated = new BitSet(numStates);
+		/* entries encode cost (upper 32 bits) and state (lower 32 bits),
+		 * so that ties are broken by state number; outdated entries
+		 * are skipped when removed from the queue */
+		PriorityQueue<Long> queue = new PriorityQueue<Long>(Math.max(1, numStates));
+		for (int state = 0; state < numStates; state++) {
+			cost[state] = eliminationCost(state);
+			queue.add((cost[state] << 32) | state);
+		}
+		int[] neighbours = new int[16];
+		while (!queue.isEmpty()) {
+			long entry = queue.poll();
+			int midState = (int) (entry & 0xFFFFFFFFL);
+			if (eliminated.get(midState) || (entry >>> 32) != cost[midState]) {
+				continue;
+			}
+			/* collect neighbours before elimination, as predecessors are removed */
+			int numNeighbours = pmc.getNumPredecessors(midState) + pmc.getNumSuccessors(midState);
+			if (neighbours.length < numNeighbours) {
+				neighbours = new int[numNeighbours];
+			}
+			numNeighbours = 0;
+			for (int pred = 0; pred < pmc.getNumPredecessors(midState); pred++) {
+				neighbours[numNeighbours++] = pmc.getPredecessor(midState, pred);
+			}
+			for (int succ = 0; succ < pmc.getNumSuccessors(midState); succ++) {
+				neighbours[numNeighbours++] = pmc.getSuccessor(midState, succ);
+			}
+			eliminate(midState);
+			eliminated.set(midState);
+			for (int i = 0; i < numNeighbours; i++) {
+				int state = neighbours[i];
+				if (!eliminated.get(state)) {
+					long newCost = eliminationCost(state);
+					if (newCost != cost[state]) {
+						cost[state] = newCost;
+						queue.add((newCost << 32) | state);
+					}
+				}
+			}
+		}
+	}
 
-		/**
-		 * Creates a new transition to be added later on.
-		 * 
-		 * @param fromState source state of transition
-		 * @param toState target state of transition
-		 * @param prob probability of transition
-		 */
-		public NewTransition(int fromState, int toState, Function prob)
-		{
-			this.fromState = fromState;
-			this.toState = toState;
-			this.prob = prob;
+	/**
+	 * Computes the cost of eliminating a given state for the
+	 * {@code MIN_DEGREE} or {@code MIN_FILL} elimination order.
+	 * For {@code MIN_DEGREE}, this is the number of new transition
+	 * probabilities to be computed, i.e. the number of predecessors times
+	 * the number of successors (not counting self-loops). For
+	 * {@code MIN_FILL}, this is the number of new transitions added,
+	 * i.e. the number of pairs of predecessors and successors not yet
+	 * connected by a transition (if there are too many pairs to inspect,
+	 * the number of pairs is used instead).
+	 *
+	 * @param state state to compute elimination cost of
+	 * @return cost of eliminating the state (at most {@code Integer.MAX_VALUE})
+	 */
+	private long eliminationCost(int state)
+	{
+		int selfLoop = pmc.hasTransition(state, state) ? 1 : 0;
+		long numPreds = pmc.getNumPredecessors(state) - selfLoop;
+		long numSuccs = pmc.getNumSuccessors(state) - selfLoop;
+		long cost = numPreds * numSuccs;
+		if (eliminationOrder == EliminationOrder.MIN_FILL && cost <= FILL_COUNT_LIMIT) {
+			cost = 0;
+			for (int pred = 0; pred < pmc.getNumPredecessors(state); pred++) {
+				int fromState = pmc.getPredecessor(state, pred);
+				if (fromState == state) {
+					continue;
+				}
+				for (int succ = 0; succ < pmc.getNumSuccessors(state); succ++) {
+					int toState = pmc.getSuccessor(state, succ);
+					if (toState != state && !pmc.hasTransition(fromState, toState)) {
+						cost++;
+					}
+				}
+			}
 		}
-		
+		return Math.min(cost, Integer.MAX_VALUE);
 	}
 
 	/**
 	 * Eliminates a given state
-	 * 
+	 *
 	 * @param midState state to eliminate
 	 */
 	private void eliminate(int midState)
@@ -333,26 +435,54 @@ final class StateEliminator {
 			return;
 		}
 		/* slStar = 1/(1-x), where x is the self-loop probability */
-		Function slStar = loopProb.star(); 
-		
+		Function slStar = loopProb.star();
+
+		/* collect predecessors of midState (other than itself) and the
+		 * probabilities to move from them to midState */
+		int numFrom = 0;
+		int[] fromStates = new int[pmc.getNumPredecessors(midState)];
+		Function[] fromToMids = new Function[fromStates.length];
+		for (int pred = 0; pred < pmc.getNumPredecessors(midState); pred++) {
+			int fromState = pmc.getPredecessor(midState, pred);
+			if (fromState != midState) {
+				fromStates[numFrom] = fromState;
+				fromToMids[numFrom] = pmc.getTransProb(fromState, midState);
+				numFrom++;
+			}
+		}
+
 		/* adapt rewards and time spent in state accordingly. The new
 		 * values correspond to adding the expected reward/time obtained
 		 * from moving to the midState from one of its predecessors, times
 		 * the probability of moving. */
 		if (pmc.isUseRewards()) {
 			pmc.setReward(midState, pmc.getReward(midState).multiply(slStar));
-			for (int from : pmc.incoming.get(midState)) {
-				if (from != midState) {
-					pmc.setReward(from, pmc.getReward(from).add(pmc.getTransProb(from, midState).multiply(pmc.getReward(midState))));
-				}
+			for (int from = 0; from < numFrom; from++) {
+				pmc.setReward(fromStates[from], pmc.getReward(fromStates[from]).add(fromToMids[from].multiply(pmc.getReward(midState))));
 			}
 		}
 		if (pmc.isUseTime()) {
 			pmc.setTime(midState, pmc.getTime(midState).multiply(slStar));
-			for (int from : pmc.incoming.get(midState)) {
-				if (from != midState) {
-					pmc.setTime(from, pmc.getTime(from).add(pmc.getTransProb(from, midState).multiply(pmc.getTime(midState))));
-				}
+			for (int from = 0; from < numFrom; from++) {
+				pmc.setTime(fromStates[from], pmc.getTime(fromStates[from]).add(fromToMids[from].multiply(pmc.getTime(midState))));
+			}
+		}
+
+		/* set outgoing probabilities of midState to
+		 * <out-prob> / (1-<self-loop-prob>). This corresponds to the
+		 * probability to eventually leaving midState to a specific successor
+		 * state, after executing any number of self loops. */
+		int numTo = 0;
+		final int[] toStates = new int[pmc.getNumSuccessors(midState)];
+		final Function[] midToTos = new Function[toStates.length];
+		for (int succ = 0; succ < pmc.getNumSuccessors(midState); succ++) {
+			int toState = pmc.getSuccessor(midState, succ);
+			if (toState != midState) {
+				Function midToTo = slStar.multiply(pmc.getSuccessorProb(midState, succ));
+				pmc.setSuccessorProb(midState, succ, midToTo);
+				toStates[numTo] = toState;
+				midToTos[numTo] = midToTo;
+				numTo++;
 			}
 		}
 
@@ -362,67 +492,33 @@ final class StateEliminator {
 		 * (<fromState-to-midState-prob> * <midState-to-toState-prob)
 		 * / (1-<self-loop-prob>). (If there already was a transition from fromState
 		 * to toState, probabilities will be added up.). All transitions to
-		 * midState will be removed. */
-		ArrayList<NewTransition> newTransitions = new ArrayList<NewTransition>(); 
-		for (int fromState : pmc.incoming.get(midState)) {
-			if (fromState != midState) {
-				Function fromToMid = pmc.getTransProb(fromState, midState);
-				ListIterator<Integer> toStateIter = pmc.transitionTargets.get(midState).listIterator();
-				ListIterator<Function> toProbIter = pmc.transitionProbs.get(midState).listIterator();
-				while (toStateIter.hasNext()) {
-					int toState = toStateIter.next();
-					Function midToTo = toProbIter.next();
-					if (toState != midState) {
-						Function fromToToAdd = fromToMid.multiply(slStar.multiply(midToTo));
-						newTransitions.add(new NewTransition(fromState, toState, fromToToAdd));
-					}
-				}
-			}
-		}
-		for (int fromState : pmc.incoming.get(midState)) {
-			ListIterator<Integer> toStateIter = pmc.transitionTargets.get(fromState).listIterator();
-			ListIterator<Function> toProbIter = pmc.transitionProbs.get(fromState).listIterator();
-			while (toStateIter.hasNext()) {
-				int state = toStateIter.next();
-				toProbIter.next();
-				if (state == midState) {
-					toStateIter.remove();
-					toProbIter.remove();
-					break;
+		 * midState, including its self loop, will be removed. The products
+		 * are independent of each other, so if there are many of them, they
+		 * are computed in parallel. */
+		final int numToFinal = numTo;
+		final Function[][] fromToTos = new Function[numFrom][];
+		Parallel.RangeBody products = (lo, hi) -> {
+			for (int from = lo; from < hi; from++) {
+				fromToTos[from] = new Function[numToFinal];
+				for (int to = 0; to < numToFinal; to++) {
+					fromToTos[from][to] = fromToMids[from].multiply(midToTos[to]);
 				}
 			}
+		};
+		if (numThreads > 1 && (long) numFrom * numTo >= PARALLEL_MIN_PRODUCTS) {
+			int grain = Math.max(1, PARALLEL_MIN_PRODUCTS / Math.max(1, numTo));
+			Parallel.forRange(numThreads, 0, numFrom, grain, products);
+		} else {
+			products.apply(0, numFrom);
 		}
-		for (NewTransition newTransition : newTransitions) {
-			pmc.addTransition(newTransition.fromState, newTransition.toState, newTransition.prob);
-		}
-
-		/* remove self loop from state and set outgoing probabilities to
-		 * <out-prob> / (1-<self-loop-prob>). This corresponds to the
-		 * probability to eventually leaving midState to a specific successor
-		 * state, after executing any number of self loops. */
-		ListIterator<Integer> toStateIter = pmc.transitionTargets.get(midState).listIterator();
-		ListIterator<Function> toProbIter = pmc.transitionProbs.get(midState).listIterator();
-		while (toStateIter.hasNext()) {
-			int toState = toStateIter.next();
-			Function toProb = toProbIter.next();
-			if (midState != toState) {
-				toProbIter.set(slStar.multiply(toProb));
-			}
-		}
-		toStateIter = pmc.transitionTargets.get(midState).listIterator();
-		toProbIter = pmc.transitionProbs.get(midState).listIterator();
-		while (toStateIter.hasNext()) {
-			int toState = toStateIter.next();
-			toProbIter.next();
-			if (midState == toState) {
-				toStateIter.remove();
-				toProbIter.remove();
-				break;
+		pmc.removeTransitionsTo(midState);
+		for (int from = 0; from < numFrom; from++) {
+			for (int to = 0; to < numTo; to++) {
+				pmc.addTransition(fromStates[from], toStates[to], fromToTos[from][to]);
 			}
 		}
-		pmc.incoming.get(midState).clear();
 	}
-	
+
 	/**
 	 * Obtain result for a given state.
 	 * Before calling this method, all states must have been eliminated.
@@ -453,12 +549,10 @@ final class StateEliminator {
 			 * states of both the form A and B, the long-run average is the
 			 * probability to move to a state of form A times the long-run
 			 * average value of that A state. */
-			ListIterator<Integer> toStateIter = pmc.transitionTargets.get(state).listIterator();
-			ListIterator<Function> toProbIter = pmc.transitionProbs.get(state).listIterator();
 			Function result = pmc.getFunctionFactory().getZero();
-			while (toStateIter.hasNext()) {
-				int toState = toStateIter.next();
-				Function toProb = toProbIter.next();
+			for (int succ = 0; succ < pmc.getNumSuccessors(state); succ++) {
+				int toState = pmc.getSuccessor(state, succ);
+				Function toProb = pmc.getSuccessorProb(state, succ);
 				result = result.add(toProb.multiply(pmc.getReward(toState)).divide(pmc.getTime(toState)));
 			}
 			return result;			
@@ -470,12 +564,10 @@ final class StateEliminator {
 			 * transitions to states of the form A. Because of this, to obtain
 			 * reachability probabilities, we just have to add up the one-step
 			 * probabilities to target states. */
-			ListIterator<Integer> toStateIter = pmc.transitionTargets.get(state).listIterator();
-			ListIterator<Function> toProbIter = pmc.transitionProbs.get(state).listIterator();
 			Function result = pmc.getFunctionFactory().getZero();
-			while (toStateIter.hasNext()) {
-				int toState = toStateIter.next();
-				Function toProb = toProbIter.next();
+			for (int succ = 0; succ < pmc.getNumSuccessors(state); succ++) {
+				int toState = pmc.getSuccessor(state, succ);
+				Function toProb = pmc.getSuccessorProb(state, succ);
 				if (pmc.isTargetState(toState)) {
 					result = result.add(toProb);
 				}
@@ -97,6 +97,17 @@ public final class StateValues
 		this(numStates, initState, new StateBoolean(value));
 	}
 
+	/**
+	 * Constructs a copy of the given set of state values.
+	 * 
+	 * @param other state values to copy
+	 */
+	public StateValues(StateValues other)
+	{
+		values = new ArrayList<StateValue>(other.values);
+		initState = other.initState;
+	}
+
 	@Override
 	public String toString()
 	{
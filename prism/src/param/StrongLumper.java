@@ -29,7 +29,6 @@ package param;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.ListIterator;
 import java.util.Map.Entry;
 
 /**
@@ -59,11 +58,9 @@ final class StrongLumper extends Lumper {
 	private HashMap<HashSet<Integer>, Function> stateSignature(int state)
 	{
 		HashMap<HashSet<Integer>, Function> signature = new HashMap<HashSet<Integer>, Function>();
-		ListIterator<Integer> toStateIter = origPmc.transitionTargets.get(state).listIterator();
-		ListIterator<Function> toProbIter = origPmc.transitionProbs.get(state).listIterator();
-		while (toStateIter.hasNext()) {
-			int toState = toStateIter.next();
-			Function toStateProb = toProbIter.next();
+		for (int succ = 0; succ < origPmc.getNumSuccessors(state); succ++) {
+			int toState = origPmc.getSuccessor(state, succ);
+			Function toStateProb = origPmc.getSuccessorProb(state, succ);
 			HashSet<Integer> toBlock = partition.getStateBlock(toState);
 			Function toBlockProb = signature.get(toBlock);
 			if (toBlockProb == null) {
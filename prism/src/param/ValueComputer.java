@@ -28,18 +28,29 @@ package param;
 
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import common.IterableBitSet;
 import common.IterableStateSet;
+import common.Parallel;
 import prism.PrismComponent;
 import prism.PrismException;
 import prism.PrismNotSupportedException;
 
 /**
  * Computes values for properties of a parametric Markov model. 
+ * <br>
+ * If several threads are to be used (and the function factory is
+ * thread-safe), independent regions of the parameter space are analysed
+ * concurrently; the caches for schedulers and results are shared between
+ * threads, and the results for the regions are merged in a fixed order.
  * 
  * @author Ernst Moritz Hahn <emhahn@cs.ox.ac.uk> (University of Oxford)
  */
@@ -232,12 +243,13 @@ final class ValueComputer extends PrismComponent
 	private FunctionFactory functionFactory;
 	private ConstraintChecker constraintChecker;
 	private BigRational precision;
-	private HashMap<SchedulerCacheKey,ArrayList<Scheduler>> schedCache;
-	private HashMap<ResultCacheKey,ResultCacheEntry> resultCache;
+	private ConcurrentHashMap<SchedulerCacheKey,List<Scheduler>> schedCache;
+	private ConcurrentHashMap<ResultCacheKey,ResultCacheEntry> resultCache;
 	private StateEliminator.EliminationOrder eliminationOrder;
 	private Lumper.BisimType bisimType;
+	private int numThreads;
 
-	ValueComputer(PrismComponent parent, ParamMode mode, ParamModel model, RegionFactory regionFactory, BigRational precision, StateEliminator.EliminationOrder eliminationOrder, Lumper.BisimType bisimType) {
+	ValueComputer(PrismComponent parent, ParamMode mode, ParamModel model, RegionFactory regionFactory, BigRational precision, StateEliminator.EliminationOrder eliminationOrder, Lumper.BisimType bisimType, int numThreads) {
 		super(parent);
 		this.mode = mode;
 		this.model = model;
@@ -245,20 +257,68 @@ final class ValueComputer extends PrismComponent
 		this.functionFactory = regionFactory.getFunctionFactory();
 		this.constraintChecker = regionFactory.getConstraintChecker();
 		this.precision = precision;
-		this.schedCache = new HashMap<SchedulerCacheKey,ArrayList<Scheduler>>();
-		this.resultCache = new HashMap<ResultCacheKey,ResultCacheEntry>();
+		this.schedCache = new ConcurrentHashMap<SchedulerCacheKey,List<Scheduler>>();
+		this.resultCache = new ConcurrentHashMap<ResultCacheKey,ResultCacheEntry>();
 		this.eliminationOrder = eliminationOrder;
 		this.bisimType = bisimType;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Are regions to be analysed concurrently?
+	 */
+	private boolean isParallel()
+	{
+		return numThreads > 1 && functionFactory.isThreadSafe();
+	}
+
+	/**
+	 * Runs the given tasks and returns their results, in the order of the tasks.
+	 * The tasks are run concurrently if {@link #isParallel()} holds,
+	 * and sequentially in the calling thread otherwise.
+	 */
+	private <T> List<T> runTasks(List<Callable<T>> tasks) throws PrismException
+	{
+		List<T> results = new ArrayList<T>(tasks.size());
+		if (!isParallel() || tasks.size() <= 1) {
+			for (Callable<T> task : tasks) {
+				try {
+					results.add(task.call());
+				} catch (PrismException | RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new PrismException("Error when analysing parameter regions: " + e);
+				}
+			}
+			return results;
+		}
+		for (Future<T> f : Parallel.getPool(numThreads).invokeAll(tasks)) {
+			try {
+				results.add(f.get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof PrismException)
+					throw (PrismException) e.getCause();
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new PrismException("Error when analysing parameter regions in parallel: " + e.getCause());
+			} catch (InterruptedException e) {
+				throw new PrismException("Interrupted when analysing parameter regions in parallel");
+			}
+		}
+		return results;
 	}
 
 	RegionValues computeUnbounded(RegionValues b1, RegionValues b2, boolean min, ParamRewardStruct rew) throws PrismException {
 		RegionValues result = new RegionValues(regionFactory);
 		RegionValuesIntersections co = new RegionValuesIntersections(b1, b2);
+		List<Callable<RegionValues>> tasks = new ArrayList<Callable<RegionValues>>();
 		for (RegionIntersection inter : co) {
 			Region region = inter.getRegion();
 			StateValues value1 = inter.getStateValues1();
 			StateValues value2 = inter.getStateValues2();
-			RegionValues val = computeUnbounded(region, value1, value2, min, rew);
+			tasks.add(() -> computeUnbounded(region, value1, value2, min, rew));
+		}
+		for (RegionValues val : runTasks(tasks)) {
 			result.addAll(val);
 		}
 		return result;
@@ -273,6 +333,9 @@ final class ValueComputer extends PrismComponent
 			BitSet inf = mcExplicit.prob1(model, b1.toBitSet(), b2.toBitSet(), !min, null);
 			inf.flip(0, model.getNumStates());
 
+			// work on a copy, as b1 may be shared with other regions
+			b1 = new StateValues(b1);
+
 			for (int i : new IterableStateSet(inf, model.getNumStates())) {
 				// clear states with infinite value from b1 so they will get Infinity value
 				// in the DTMC
@@ -320,55 +383,108 @@ final class ValueComputer extends PrismComponent
 		Scheduler initialScheduler = new Scheduler(model);
 		precomputeScheduler(model, initialScheduler, b1, b2, rew, min);
 
+		/* regions are analysed in batches of up to numThreads regions (the
+		 * largest ones still to do); the outcomes are then merged in the order
+		 * in which the regions were taken, until the required volume is covered */
+		int batchSize = isParallel() ? numThreads : 1;
 		while (volume.compareTo(requiredVolume) == -1) {
-			Region currentRegion = todo.poll();
-			Point midPoint = ((BoxRegion)currentRegion).getMidPoint();
-			Scheduler scheduler = computeOptConcreteReachScheduler(midPoint, model, b1, b2, min, rew, initialScheduler);
-			if (scheduler == null) {
-				// midpoint leads to non-well-defined model
-				if (currentRegion.volume().compareTo(precisionForThisRegion) <= 0) {
-					// region is below precision threshold, treat as undefined
-					// and adjust required volume
-					requiredVolume = requiredVolume.subtract(currentRegion.volume());
-				} else {
-					// we split the current region
-					// TODO: Would be nice to try and analyse the well-definedness constraints
-					todo.addAll(currentRegion.split());
-				}
-				continue;
+			List<Callable<RegionOutcome>> tasks = new ArrayList<Callable<RegionOutcome>>();
+			while (tasks.size() < batchSize && !todo.isEmpty()) {
+				Region currentRegion = todo.poll();
+				tasks.add(() -> analyseRegionMDP(currentRegion, b1, b2, min, rew, initialScheduler));
 			}
-
-			ResultCacheEntry resultCacheEntry = lookupValues(PropType.REACH, b1, b2, rew, scheduler, min);
-			Function[] compare;
-			StateValues values;
-			if (resultCacheEntry == null) {
-				MutablePMC pmc = buildAlterablePMCForReach(model, b1, b2, scheduler, rew);
-				values = computeValues(pmc, model.getFirstInitialState());
-				compare = computeCompare(b1, b2, rew, scheduler, min, values);
-				storeValues(PropType.REACH, b1, b2, rew, scheduler, min, values, compare);
-			} else {
-				values = resultCacheEntry.getValues();
-				compare = resultCacheEntry.getCompare();
-			}
-			boolean ok = true;
-			Function choiceValue = null;
-			for (Function entry : compare) {
-				choiceValue = entry;
-				if (!constraintChecker.check(currentRegion, entry, false)) {
-					ok = false;
-				}
+			if (tasks.isEmpty()) {
+				throw new PrismException("No parameter regions left to analyse");
 			}
-			if (ok) {
-				volume = volume.add(currentRegion.volume());
-				result.add(currentRegion, values);
-			} else {
-				todo.addAll(currentRegion.split(choiceValue));
+			for (RegionOutcome outcome : runTasks(tasks)) {
+				if (volume.compareTo(requiredVolume) != -1) {
+					break;
+				}
+				Region currentRegion = outcome.region;
+				if (outcome.values == null) {
+					// midpoint leads to non-well-defined model
+					if (currentRegion.volume().compareTo(precisionForThisRegion) <= 0) {
+						// region is below precision threshold, treat as undefined
+						// and adjust required volume
+						requiredVolume = requiredVolume.subtract(currentRegion.volume());
+					} else {
+						// we split the current region
+						// TODO: Would be nice to try and analyse the well-definedness constraints
+						todo.addAll(currentRegion.split());
+					}
+				} else if (outcome.ok) {
+					volume = volume.add(currentRegion.volume());
+					result.add(currentRegion, outcome.values);
+				} else {
+					todo.addAll(currentRegion.split(outcome.choiceValue));
+				}
 			}
 		}
 
 		return result;
 	}
 	
+	/**
+	 * Outcome of analysing a single region of an MDP, see {@link #analyseRegionMDP}.
+	 */
+	private static final class RegionOutcome
+	{
+		/** the region analysed */
+		final Region region;
+		/** values for the scheduler optimal at the midpoint, or {@code null} if the midpoint leads to a non-well-defined model */
+		final StateValues values;
+		/** whether the scheduler is optimal in the whole region */
+		final boolean ok;
+		/** if not {@code ok}, function along which to split the region */
+		final Function choiceValue;
+
+		RegionOutcome(Region region, StateValues values, boolean ok, Function choiceValue)
+		{
+			this.region = region;
+			this.values = values;
+			this.ok = ok;
+			this.choiceValue = choiceValue;
+		}
+	}
+
+	/**
+	 * Analyse a single region of an MDP for Pmin/Pmax[ b1 U b2 ] or Rmin/Rmax[ b1 U b2 ]:
+	 * compute a scheduler which is optimal at the midpoint of the region, the
+	 * values it induces, and whether it is optimal in the whole region.
+	 * Does not modify any state other than the (thread-safe) caches, so
+	 * it can be called for several regions concurrently.
+	 */
+	private RegionOutcome analyseRegionMDP(Region currentRegion, StateValues b1, StateValues b2, boolean min, ParamRewardStruct rew, Scheduler initialScheduler) throws PrismException
+	{
+		Point midPoint = ((BoxRegion)currentRegion).getMidPoint();
+		Scheduler scheduler = computeOptConcreteReachScheduler(midPoint, model, b1, b2, min, rew, initialScheduler);
+		if (scheduler == null) {
+			return new RegionOutcome(currentRegion, null, false, null);
+		}
+
+		ResultCacheEntry resultCacheEntry = lookupValues(PropType.REACH, b1, b2, rew, scheduler, min);
+		Function[] compare;
+		StateValues values;
+		if (resultCacheEntry == null) {
+			MutablePMC pmc = buildAlterablePMCForReach(model, b1, b2, scheduler, rew);
+			values = computeValues(pmc, model.getFirstInitialState());
+			compare = computeCompare(b1, b2, rew, scheduler, min, values);
+			storeValues(PropType.REACH, b1, b2, rew, scheduler, min, values, compare);
+		} else {
+			values = resultCacheEntry.getValues();
+			compare = resultCacheEntry.getCompare();
+		}
+		boolean ok = true;
+		Function choiceValue = null;
+		for (Function entry : compare) {
+			choiceValue = entry;
+			if (!constraintChecker.check(currentRegion, entry, false)) {
+				ok = false;
+			}
+		}
+		return new RegionOutcome(currentRegion, values, ok, choiceValue);
+	}
+
 	private Function[] computeCompare(StateValues b1, StateValues b2,
 			ParamRewardStruct rew, Scheduler scheduler, boolean min,
 			StateValues values) {
@@ -498,11 +614,7 @@ final class ValueComputer extends PrismComponent
 	private void storeScheduler(PropType propType, StateValues b1, StateValues b2, boolean min,
 			ParamRewardStruct rew, Scheduler scheduler) {
 		SchedulerCacheKey cacheKey = new SchedulerCacheKey(propType, b1, b2, min, rew, null);
-		ArrayList<Scheduler> schedulers = schedCache.get(cacheKey);
-		if (schedulers == null) {
-			schedulers = new ArrayList<Scheduler>();
-			schedCache.put(cacheKey, schedulers);
-		}
+		List<Scheduler> schedulers = schedCache.computeIfAbsent(cacheKey, k -> Collections.synchronizedList(new ArrayList<Scheduler>()));
 		schedulers.add(scheduler);		
 	}
 
@@ -510,12 +622,17 @@ final class ValueComputer extends PrismComponent
 			boolean min, ParamRewardStruct rew)
 	{
 		SchedulerCacheKey cacheKey = new SchedulerCacheKey(propType, b1, b2, min, rew, null);
-		ArrayList<Scheduler> schedulers = schedCache.get(cacheKey);
+		List<Scheduler> schedulers = schedCache.get(cacheKey);
 		if (schedulers == null) {
 			return null;
 		}
 
-		for (Scheduler scheduler : schedulers) {
+		// iterate over a snapshot, as other threads may add schedulers
+		Scheduler[] snapshot;
+		synchronized (schedulers) {
+			snapshot = schedulers.toArray(new Scheduler[0]);
+		}
+		for (Scheduler scheduler : snapshot) {
 			if (checkScheduler(point, propType, b1, b2, min, rew, scheduler)) {
 				return scheduler;
 			}
@@ -529,6 +646,10 @@ final class ValueComputer extends PrismComponent
 	{
 		ResultCacheKey resultKey = new ResultCacheKey(propType, b1, b2, rew, scheduler, min);
 		ResultCacheEntry resultCacheEntry = resultCache.get(resultKey);
+		if (resultCacheEntry == null) {
+			// values for scheduler are still being computed by another thread
+			return false;
+		}
 		
 		Function compare[] = resultCacheEntry.getCompare();		
 		for (Function entry : compare) {
@@ -727,7 +848,7 @@ final class ValueComputer extends PrismComponent
 		}
 		
 		MutablePMC quot = lumper.getQuotient();
-		StateEliminator eliminator = new StateEliminator(quot, eliminationOrder);
+		StateEliminator eliminator = new StateEliminator(quot, eliminationOrder, numThreads);
 		eliminator.eliminate();
 		int[] origToCopy = lumper.getOriginalToOptimised();
 		StateValues result = new StateValues(pmc.getNumStates(), initState);
@@ -756,13 +877,16 @@ final class ValueComputer extends PrismComponent
 	}
 
 	
-	public RegionValues computeSteadyState(RegionValues b, boolean min, ParamRewardStruct rew)
+	public RegionValues computeSteadyState(RegionValues b, boolean min, ParamRewardStruct rew) throws PrismException
 	{
 		RegionValues result = new RegionValues(regionFactory);
+		List<Callable<RegionValues>> tasks = new ArrayList<Callable<RegionValues>>();
 		for (Entry<Region, StateValues> entry : b) {
 			Region region = entry.getKey();
 			StateValues value = entry.getValue();
-			RegionValues val = computeSteadyState(region, value, min, rew);
+			tasks.add(() -> computeSteadyState(region, value, min, rew));
+		}
+		for (RegionValues val : runTasks(tasks)) {
 			result.addAll(val);			
 		}
 		return result;
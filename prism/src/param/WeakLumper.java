@@ -31,7 +31,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.ListIterator;
 import java.util.Map.Entry;
 
 /**
@@ -68,14 +67,12 @@ final class WeakLumper extends Lumper {
 	private HashMap<HashSet<Integer>, Function> stateSignature(int state, HashSet<Integer> ownClass)
 	{
 		HashMap<HashSet<Integer>, Function> signature = new HashMap<HashSet<Integer>, Function>();
-		ListIterator<Integer> toStateIter = origPmc.transitionTargets.get(state).listIterator();
-		ListIterator<Function> toProbIter = origPmc.transitionProbs.get(state).listIterator();
 
 		/* compute probability to remain in block in one step */
 		Function slProb = origPmc.getFunctionFactory().getZero();
-		while (toStateIter.hasNext()) {
-			int toState = toStateIter.next();
-			Function toStateProb = toProbIter.next();
+		for (int succ = 0; succ < origPmc.getNumSuccessors(state); succ++) {
+			int toState = origPmc.getSuccessor(state, succ);
+			Function toStateProb = origPmc.getSuccessorProb(state, succ);
 			if (ownClass.contains(toState)) {
 				slProb = slProb.add(toStateProb);
 			}
@@ -87,11 +84,9 @@ final class WeakLumper extends Lumper {
 		/* 1 / (1 - slProb) */
 		Function star = slProb.star();
 
-		toStateIter = origPmc.transitionTargets.get(state).listIterator();
-		toProbIter = origPmc.transitionProbs.get(state).listIterator();
-		while (toStateIter.hasNext()) {
-			int toState = toStateIter.next();
-			Function toStateProb = toProbIter.next();
+		for (int succ = 0; succ < origPmc.getNumSuccessors(state); succ++) {
+			int toState = origPmc.getSuccessor(state, succ);
+			Function toStateProb = origPmc.getSuccessorProb(state, succ);
 			HashSet<Integer> toBlock = partition.getStateBlock(toState);
 			if (ownClass != toBlock) {
 				toStateProb = star.multiply(toStateProb);
@@ -171,7 +166,8 @@ final class WeakLumper extends Lumper {
 			stack.push(state);
 			while (!stack.isEmpty()) {
 				int stackState = stack.pop();
-				for (int predState : origPmc.incoming.get(stackState)) {
+				for (int pred = 0; pred < origPmc.getNumPredecessors(stackState); pred++) {
+					int predState = origPmc.getPredecessor(stackState, pred);
 					HashSet<HashSet<Integer>> predReachBlocks = reachWhichBlocks.get(predState);
 					if (oldBlock.contains(predState) && silent.contains(predState) && !predReachBlocks.contains(block)) {
 						predReachBlocks.add(block);
@@ -252,7 +248,8 @@ final class WeakLumper extends Lumper {
 			HashSet<Integer> leaveSet = new HashSet<Integer>();
 			ArrayList<Integer> directLeaving = new ArrayList<Integer>();
 			for (int state : oldBlock) {
-				for (int toState : origPmc.transitionTargets.get(state)) {
+				for (int succ = 0; succ < origPmc.getNumSuccessors(state); succ++) {
+					int toState = origPmc.getSuccessor(state, succ);
 					if (!oldBlock.contains(toState)) {
 						leaveSet.add(state);
 						directLeaving.add(state);
@@ -265,7 +262,8 @@ final class WeakLumper extends Lumper {
 				stack.push(state);
 				while (!stack.isEmpty()) {
 					int leaving = stack.pop();
-					for (int inState : origPmc.incoming.get(leaving)) {
+					for (int pred = 0; pred < origPmc.getNumPredecessors(leaving); pred++) {
+						int inState = origPmc.getPredecessor(leaving, pred);
 						if (oldBlock.contains(inState) && !leaveSet.contains(inState)) {
 							leaveSet.add(inState);
 							stack.push(inState);
@@ -0,0 +1,675 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//	Authors:
+//	* Dave Parker <david.parker@comlab.ox.ac.uk> (University of Oxford)
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package parser;
+
+import param.BigRational;
+import parser.ast.Expression;
+import parser.ast.ExpressionBinaryOp;
+import parser.ast.ExpressionFunc;
+import parser.ast.ExpressionITE;
+import parser.ast.ExpressionLiteral;
+import parser.ast.ExpressionUnaryOp;
+import parser.ast.ExpressionVar;
+import parser.type.TypeInt;
+import prism.PrismLangException;
+
+/**
+ * An expression, compiled for repeated evaluation over State objects.
+ * <br>
+ * The expression tree is translated, once, into a tree of evaluators specialised
+ * according to the (int/double/boolean) types of each subexpression, so that evaluation
+ * avoids the creation of an EvaluateContext, virtual dispatch through the AST
+ * and most boxing of intermediate values. Results (including type conversions and
+ * errors such as integer overflow) are the same as for the corresponding
+ * {@code Expression.evaluate...} methods.
+ * <br>
+ * Constructs not supported by the compiler (e.g. constants, formulas, primed variables)
+ * are evaluated by the interpreter, i.e. using {@link Expression#evaluate(EvaluateContext)}.
+ * It is assumed that expressions have already been type checked and that constants
+ * have been replaced (e.g. via {@code replaceConstants}/{@code simplify}).
+ */
+public abstract class CompiledExpression
+{
+	/** Expression that this was compiled from */
+	protected final Expression expr;
+
+	protected CompiledExpression(Expression expr)
+	{
+		this.expr = expr;
+	}
+
+	/**
+	 * Compile an expression.
+	 */
+	public static CompiledExpression compile(Expression expr) throws PrismLangException
+	{
+		return compile(expr, null);
+	}
+
+	/**
+	 * Compile an expression, using values for any constants (which may be null)
+	 * for parts of the expression that are delegated to the interpreter.
+	 */
+	public static CompiledExpression compile(Expression expr, Values constantValues) throws PrismLangException
+	{
+		if (expr instanceof ExpressionLiteral) {
+			return new Literal(expr);
+		}
+		if (expr instanceof ExpressionVar && !((ExpressionVar) expr).getPrime() && ((ExpressionVar) expr).getIndex() >= 0) {
+			return new Var((ExpressionVar) expr);
+		}
+		if (expr instanceof ExpressionUnaryOp) {
+			ExpressionUnaryOp e = (ExpressionUnaryOp) expr;
+			CompiledExpression op = compile(e.getOperand(), constantValues);
+			switch (e.getOperator()) {
+			case ExpressionUnaryOp.NOT:
+				return new Not(e, op);
+			case ExpressionUnaryOp.MINUS:
+				return (e.getType() instanceof TypeInt) ? new IntOp(e, op, null, IntOp.NEG) : new DoubleOp(e, op, null, DoubleOp.NEG);
+			case ExpressionUnaryOp.PARENTH:
+				return op;
+			}
+		}
+		if (expr instanceof ExpressionBinaryOp) {
+			ExpressionBinaryOp e = (ExpressionBinaryOp) expr;
+			CompiledExpression op1 = compile(e.getOperand1(), constantValues);
+			CompiledExpression op2 = compile(e.getOperand2(), constantValues);
+			boolean ints = e.getOperand1().getType() == TypeInt.getInstance() && e.getOperand2().getType() == TypeInt.getInstance();
+			switch (e.getOperator()) {
+			case ExpressionBinaryOp.IMPLIES:
+			case ExpressionBinaryOp.IFF:
+			case ExpressionBinaryOp.OR:
+			case ExpressionBinaryOp.AND:
+				return new Logical(e, op1, op2, e.getOperator());
+			case ExpressionBinaryOp.EQ:
+			case ExpressionBinaryOp.NE:
+			case ExpressionBinaryOp.GT:
+			case ExpressionBinaryOp.GE:
+			case ExpressionBinaryOp.LT:
+			case ExpressionBinaryOp.LE:
+				return ints ? new IntRelOp(e, op1, op2, e.getOperator()) : new DoubleRelOp(e, op1, op2, e.getOperator());
+			case ExpressionBinaryOp.PLUS:
+			case ExpressionBinaryOp.MINUS:
+			case ExpressionBinaryOp.TIMES:
+				return ints ? new IntOp(e, op1, op2, e.getOperator()) : new DoubleOp(e, op1, op2, e.getOperator());
+			case ExpressionBinaryOp.DIVIDE:
+				return new DoubleOp(e, op1, op2, e.getOperator());
+			}
+		}
+		if (expr instanceof ExpressionITE) {
+			ExpressionITE e = (ExpressionITE) expr;
+			return new ITE(e, compile(e.getOperand1(), constantValues), compile(e.getOperand2(), constantValues), compile(e.getOperand3(), constantValues));
+		}
+		if (expr instanceof ExpressionFunc) {
+			ExpressionFunc e = (ExpressionFunc) expr;
+			int n = e.getNumOperands();
+			CompiledExpression ops[] = new CompiledExpression[n];
+			for (int i = 0; i < n; i++) {
+				ops[i] = compile(e.getOperand(i), constantValues);
+			}
+			boolean isInt = e.getType() instanceof TypeInt;
+			switch (e.getNameCode()) {
+			case ExpressionFunc.MIN:
+			case ExpressionFunc.MAX:
+			case ExpressionFunc.POW:
+				return isInt ? new IntFunc(e, ops) : new DoubleFunc(e, ops);
+			case ExpressionFunc.FLOOR:
+			case ExpressionFunc.CEIL:
+			case ExpressionFunc.ROUND:
+			case ExpressionFunc.MOD:
+				return new IntFunc(e, ops);
+			}
+		}
+		// Anything else: use the interpreter
+		return new Interpreted(expr, constantValues);
+	}
+
+	/**
+	 * Get the expression that this was compiled from.
+	 */
+	public Expression getExpression()
+	{
+		return expr;
+	}
+
+	/**
+	 * Evaluate this expression in a state, as an Object (Integer, Double or Boolean).
+	 */
+	public abstract Object evaluate(State state) throws PrismLangException;
+
+	/**
+	 * Evaluate this expression in a state, as an integer.
+	 * Any typing issues cause an exception (but: we do allow conversion of boolean to 0/1).
+	 */
+	public int evaluateInt(State state) throws PrismLangException
+	{
+		return Expression.evaluateObjectAsInt(evaluate(state));
+	}
+
+	/**
+	 * Evaluate this expression in a state, as a double.
+	 * Any typing issues cause an exception (but: we do allow conversion of boolean to 0.0/1.0).
+	 */
+	public double evaluateDouble(State state) throws PrismLangException
+	{
+		Object o = evaluate(state);
+		if (o instanceof Integer) {
+			return ((Integer) o).intValue();
+		}
+		if (o instanceof Double) {
+			return ((Double) o).doubleValue();
+		}
+		if (o instanceof BigRational) {
+			return ((BigRational) o).doubleValue();
+		}
+		if (o instanceof Boolean) {
+			return ((Boolean) o).booleanValue() ? 1.0 : 0.0;
+		}
+		throw new PrismLangException("Cannot evaluate to a double", expr);
+	}
+
+	/**
+	 * Evaluate this expression in a state, as a boolean.
+	 * Any typing issues cause an exception.
+	 */
+	public boolean evaluateBoolean(State state) throws PrismLangException
+	{
+		Object o = evaluate(state);
+		if (!(o instanceof Boolean)) {
+			throw new PrismLangException("Cannot evaluate to a boolean", expr);
+		}
+		return ((Boolean) o).booleanValue();
+	}
+
+	@Override
+	public String toString()
+	{
+		return expr.toString();
+	}
+
+	// Evaluators
+
+	/**
+	 * Fallback: evaluate using the interpreter.
+	 */
+	private static final class Interpreted extends CompiledExpression
+	{
+		private final Values constantValues;
+
+		Interpreted(Expression expr, Values constantValues)
+		{
+			super(expr);
+			this.constantValues = constantValues;
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return expr.evaluate(constantValues, state);
+		}
+
+		@Override
+		public int evaluateInt(State state) throws PrismLangException
+		{
+			return expr.evaluateInt(constantValues, state);
+		}
+
+		@Override
+		public double evaluateDouble(State state) throws PrismLangException
+		{
+			return expr.evaluateDouble(constantValues, state);
+		}
+
+		@Override
+		public boolean evaluateBoolean(State state) throws PrismLangException
+		{
+			return expr.evaluateBoolean(constantValues, state);
+		}
+	}
+
+	private static final class Literal extends CompiledExpression
+	{
+		private final Object value;
+
+		Literal(Expression expr) throws PrismLangException
+		{
+			super(expr);
+			value = expr.evaluate();
+		}
+
+		@Override
+		public Object evaluate(State state)
+		{
+			return value;
+		}
+	}
+
+	private static final class Var extends CompiledExpression
+	{
+		private final int index;
+
+		Var(ExpressionVar expr)
+		{
+			super(expr);
+			index = expr.getIndex();
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			Object res = index < state.varValues.length ? state.varValues[index] : null;
+			if (res == null)
+				throw new PrismLangException("Could not evaluate variable", expr);
+			return res;
+		}
+	}
+
+	private static final class Not extends CompiledExpression
+	{
+		private final CompiledExpression op;
+
+		Not(Expression expr, CompiledExpression op)
+		{
+			super(expr);
+			this.op = op;
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return evaluateBoolean(state);
+		}
+
+		@Override
+		public boolean evaluateBoolean(State state) throws PrismLangException
+		{
+			return !op.evaluateBoolean(state);
+		}
+	}
+
+	private static final class Logical extends CompiledExpression
+	{
+		private final CompiledExpression op1, op2;
+		private final int op;
+
+		Logical(Expression expr, CompiledExpression op1, CompiledExpression op2, int op)
+		{
+			super(expr);
+			this.op1 = op1;
+			this.op2 = op2;
+			this.op = op;
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return evaluateBoolean(state);
+		}
+
+		@Override
+		public boolean evaluateBoolean(State state) throws PrismLangException
+		{
+			switch (op) {
+			case ExpressionBinaryOp.IMPLIES:
+				return !op1.evaluateBoolean(state) || op2.evaluateBoolean(state);
+			case ExpressionBinaryOp.IFF:
+				return op1.evaluateBoolean(state) == op2.evaluateBoolean(state);
+			case ExpressionBinaryOp.OR:
+				return op1.evaluateBoolean(state) || op2.evaluateBoolean(state);
+			default:
+				return op1.evaluateBoolean(state) && op2.evaluateBoolean(state);
+			}
+		}
+	}
+
+	private static final class IntRelOp extends CompiledExpression
+	{
+		private final CompiledExpression op1, op2;
+		private final int op;
+
+		IntRelOp(Expression expr, CompiledExpression op1, CompiledExpression op2, int op)
+		{
+			super(expr);
+			this.op1 = op1;
+			this.op2 = op2;
+			this.op = op;
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return evaluateBoolean(state);
+		}
+
+		@Override
+		public boolean evaluateBoolean(State state) throws PrismLangException
+		{
+			int i1 = op1.evaluateInt(state);
+			int i2 = op2.evaluateInt(state);
+			switch (op) {
+			case ExpressionBinaryOp.EQ:
+				return i1 == i2;
+			case ExpressionBinaryOp.NE:
+				return i1 != i2;
+			case ExpressionBinaryOp.GT:
+				return i1 > i2;
+			case ExpressionBinaryOp.GE:
+				return i1 >= i2;
+			case ExpressionBinaryOp.LT:
+				return i1 < i2;
+			default:
+				return i1 <= i2;
+			}
+		}
+	}
+
+	private static final class DoubleRelOp extends CompiledExpression
+	{
+		private final CompiledExpression op1, op2;
+		private final int op;
+
+		DoubleRelOp(Expression expr, CompiledExpression op1, CompiledExpression op2, int op)
+		{
+			super(expr);
+			this.op1 = op1;
+			this.op2 = op2;
+			this.op = op;
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return evaluateBoolean(state);
+		}
+
+		@Override
+		public boolean evaluateBoolean(State state) throws PrismLangException
+		{
+			double d1 = op1.evaluateDouble(state);
+			double d2 = op2.evaluateDouble(state);
+			switch (op) {
+			case ExpressionBinaryOp.EQ:
+				return d1 == d2;
+			case ExpressionBinaryOp.NE:
+				return d1 != d2;
+			case ExpressionBinaryOp.GT:
+				return d1 > d2;
+			case ExpressionBinaryOp.GE:
+				return d1 >= d2;
+			case ExpressionBinaryOp.LT:
+				return d1 < d2;
+			default:
+				return d1 <= d2;
+			}
+		}
+	}
+
+	/**
+	 * Integer-valued arithmetic (binary +, -, * or unary minus), with overflow checks.
+	 */
+	private static final class IntOp extends CompiledExpression
+	{
+		static final int NEG = -1;
+		private final CompiledExpression op1, op2;
+		private final int op;
+
+		IntOp(Expression expr, CompiledExpression op1, CompiledExpression op2, int op)
+		{
+			super(expr);
+			this.op1 = op1;
+			this.op2 = op2;
+			this.op = op;
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return evaluateInt(state);
+		}
+
+		@Override
+		public int evaluateInt(State state) throws PrismLangException
+		{
+			try {
+				switch (op) {
+				case NEG:
+					return Math.negateExact(op1.evaluateInt(state));
+				case ExpressionBinaryOp.PLUS:
+					return Math.addExact(op1.evaluateInt(state), op2.evaluateInt(state));
+				case ExpressionBinaryOp.MINUS:
+					return Math.subtractExact(op1.evaluateInt(state), op2.evaluateInt(state));
+				default:
+					return Math.multiplyExact(op1.evaluateInt(state), op2.evaluateInt(state));
+				}
+			} catch (ArithmeticException e) {
+				throw new PrismLangException(e.getMessage(), expr);
+			}
+		}
+
+		@Override
+		public double evaluateDouble(State state) throws PrismLangException
+		{
+			return evaluateInt(state);
+		}
+	}
+
+	/**
+	 * Double-valued arithmetic (binary +, -, *, / or unary minus).
+	 */
+	private static final class DoubleOp extends CompiledExpression
+	{
+		static final int NEG = -1;
+		private final CompiledExpression op1, op2;
+		private final int op;
+
+		DoubleOp(Expression expr, CompiledExpression op1, CompiledExpression op2, int op)
+		{
+			super(expr);
+			this.op1 = op1;
+			this.op2 = op2;
+			this.op = op;
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return evaluateDouble(state);
+		}
+
+		@Override
+		public double evaluateDouble(State state) throws PrismLangException
+		{
+			switch (op) {
+			case NEG:
+				return -op1.evaluateDouble(state);
+			case ExpressionBinaryOp.PLUS:
+				return op1.evaluateDouble(state) + op2.evaluateDouble(state);
+			case ExpressionBinaryOp.MINUS:
+				return op1.evaluateDouble(state) - op2.evaluateDouble(state);
+			case ExpressionBinaryOp.TIMES:
+				return op1.evaluateDouble(state) * op2.evaluateDouble(state);
+			default:
+				return op1.evaluateDouble(state) / op2.evaluateDouble(state);
+			}
+		}
+	}
+
+	private static final class ITE extends CompiledExpression
+	{
+		private final CompiledExpression op1, op2, op3;
+
+		ITE(Expression expr, CompiledExpression op1, CompiledExpression op2, CompiledExpression op3)
+		{
+			super(expr);
+			this.op1 = op1;
+			this.op2 = op2;
+			this.op3 = op3;
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return op1.evaluateBoolean(state) ? op2.evaluate(state) : op3.evaluate(state);
+		}
+
+		@Override
+		public int evaluateInt(State state) throws PrismLangException
+		{
+			return op1.evaluateBoolean(state) ? op2.evaluateInt(state) : op3.evaluateInt(state);
+		}
+
+		@Override
+		public double evaluateDouble(State state) throws PrismLangException
+		{
+			return op1.evaluateBoolean(state) ? op2.evaluateDouble(state) : op3.evaluateDouble(state);
+		}
+
+		@Override
+		public boolean evaluateBoolean(State state) throws PrismLangException
+		{
+			return op1.evaluateBoolean(state) ? op2.evaluateBoolean(state) : op3.evaluateBoolean(state);
+		}
+	}
+
+	/**
+	 * Integer-valued functions: min, max, pow (of integers), floor, ceil, round and mod.
+	 */
+	private static final class IntFunc extends CompiledExpression
+	{
+		private final CompiledExpression ops[];
+		private final int code;
+
+		IntFunc(ExpressionFunc expr, CompiledExpression ops[])
+		{
+			super(expr);
+			this.ops = ops;
+			this.code = expr.getNameCode();
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return evaluateInt(state);
+		}
+
+		@Override
+		public int evaluateInt(State state) throws PrismLangException
+		{
+			int i, j, n;
+			switch (code) {
+			case ExpressionFunc.MIN:
+				i = ops[0].evaluateInt(state);
+				n = ops.length;
+				for (int k = 1; k < n; k++) {
+					j = ops[k].evaluateInt(state);
+					i = (j < i) ? j : i;
+				}
+				return i;
+			case ExpressionFunc.MAX:
+				i = ops[0].evaluateInt(state);
+				n = ops.length;
+				for (int k = 1; k < n; k++) {
+					j = ops[k].evaluateInt(state);
+					i = (j > i) ? j : i;
+				}
+				return i;
+			}
+			try {
+				switch (code) {
+				case ExpressionFunc.POW:
+					return ExpressionFunc.evaluatePowInt(ops[0].evaluateInt(state), ops[1].evaluateInt(state));
+				case ExpressionFunc.FLOOR:
+					return ExpressionFunc.evaluateFloor(ops[0].evaluateDouble(state));
+				case ExpressionFunc.CEIL:
+					return ExpressionFunc.evaluateCeil(ops[0].evaluateDouble(state));
+				case ExpressionFunc.ROUND:
+					return ExpressionFunc.evaluateRound(ops[0].evaluateDouble(state));
+				default:
+					return ExpressionFunc.evaluateMod(ops[0].evaluateInt(state), ops[1].evaluateInt(state));
+				}
+			} catch (PrismLangException e) {
+				e.setASTElement(expr);
+				throw e;
+			}
+		}
+
+		@Override
+		public double evaluateDouble(State state) throws PrismLangException
+		{
+			return evaluateInt(state);
+		}
+	}
+
+	/**
+	 * Double-valued functions: min, max and pow.
+	 */
+	private static final class DoubleFunc extends CompiledExpression
+	{
+		private final CompiledExpression ops[];
+		private final int code;
+
+		DoubleFunc(ExpressionFunc expr, CompiledExpression ops[])
+		{
+			super(expr);
+			this.ops = ops;
+			this.code = expr.getNameCode();
+		}
+
+		@Override
+		public Object evaluate(State state) throws PrismLangException
+		{
+			return evaluateDouble(state);
+		}
+
+		@Override
+		public double evaluateDouble(State state) throws PrismLangException
+		{
+			double d, e;
+			int n;
+			switch (code) {
+			case ExpressionFunc.MIN:
+				d = ops[0].evaluateDouble(state);
+				n = ops.length;
+				for (int k = 1; k < n; k++) {
+					e = ops[k].evaluateDouble(state);
+					d = (e < d) ? e : d;
+				}
+				return d;
+			case ExpressionFunc.MAX:
+				d = ops[0].evaluateDouble(state);
+				n = ops.length;
+				for (int k = 1; k < n; k++) {
+					e = ops[k].evaluateDouble(state);
+					d = (e > d) ? e : d;
+				}
+				return d;
+			default:
+				return ExpressionFunc.evaluatePowDouble(ops[0].evaluateDouble(state), ops[1].evaluateDouble(state));
+			}
+		}
+	}
+}
@@ -917,6 +917,26 @@ public abstract class Expression extends ASTElement
 		return false;
 	}
 	
+	/**
+	 * Test if an expression contains an R operator. 
+	 */
+	public static boolean containsRewardOperator(Expression expr)
+	{
+		try {
+			ASTTraverse astt = new ASTTraverse()
+			{
+				public void visitPost(ExpressionReward e) throws PrismLangException
+				{
+					throw new PrismLangException("Found one", e);
+				}
+			};
+			expr.accept(astt);
+		} catch (PrismLangException e) {
+			return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * Test if an expression contains a non-probabilistic LTL formula (i.e., a non-simple path formula). 
 	 */
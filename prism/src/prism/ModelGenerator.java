@@ -378,6 +378,21 @@ public interface ModelGenerator extends ModelInfo
 	 * @param offset Index of the transition within the choice
 	 */
 	public State computeTransitionTarget(int i, int offset) throws PrismException;
+
+	/**
+	 * Compute the target of a transition within a choice, specified by its index/offset,
+	 * storing it in an existing State object {@code target}, which must not be the state
+	 * currently being explored. The default implementation just copies the result of
+	 * {@link #computeTransitionTarget(int, int)}; implementations can override this to avoid
+	 * creating a new State object each time (e.g. for simulation).
+	 * @param i Index of the nondeterministic choice
+	 * @param offset Index of the transition within the choice
+	 * @param target State object in which to store the result
+	 */
+	public default void computeTransitionTarget(int i, int offset, State target) throws PrismException
+	{
+		target.copy(computeTransitionTarget(i, offset));
+	}
 	
 	/**
 	 * Is label {@code label} true in the state currently being explored?
@@ -419,4 +434,15 @@ public interface ModelGenerator extends ModelInfo
 		// Undefined by default
 		throw new PrismException("Observation not defined");
 	}
+
+	/**
+	 * Create an independent copy of this model generator, which can explore states
+	 * separately from (and concurrently with) this one, e.g. in another thread.
+	 * Returns null if this is not supported (the default).
+	 */
+	public default ModelGenerator createCopy() throws PrismException
+	{
+		// Not supported by default
+		return null;
+	}
 }
@@ -72,6 +72,7 @@ import simulator.ModulesFileModelGeneratorSymbolic;
 import simulator.SimulatorEngine;
 import simulator.method.SimulationMethod;
 import sparse.PrismSparse;
+import strat.StochasticUpdateStrategy;
 import strat.Strategy;
 
 /**
@@ -3204,10 +3205,14 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 
 				if (getSettings().getBoolean(PrismSettings.PRISM_IMPLEMENT_STRATEGY) && strategy != null) {
 					try {
+						// (the product may be of a different type to the model, e.g. an MDP for an SMG)
+						explicit.Model product = strategy.buildProduct(currentModelExpl);
+						mc = createModelCheckerExplicit(product.getModelType(), propertiesFile);
+						mc.setComputeParetoSet(computePareto);
 						mc.setStrategy(strategy);
-						res = mc.check(strategy.buildProduct(currentModelExpl), e);
+						res = mc.check(product, e);
 					} catch (UnsupportedOperationException uoe) {
-						// Note: this also gets thrown if the strategy is stochastic update
+						// Note: thrown by strategies that cannot build a product with this type of model
 						throw new PrismException("Building the product of the model and strategy failed");
 					}
 				} else {
@@ -3571,6 +3576,8 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 	 * @param strat The strategy
 	 * @param exportType The type of output
 	 * @param file File to output the path to (stdout if null)
+	 * For stochastic update strategies exported as actions to a file whose name ends in
+	 * {@link StochasticUpdateStrategy#BINARY_EXTENSION}, the binary format is used.
 	 */
 	public void exportStrategy(Strategy strat, StrategyExportType exportType, File file) throws FileNotFoundException, PrismException
 	{
@@ -3579,6 +3586,13 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 		mainLog.print("\nExporting strategy " + exportType.description() + " ");
 		mainLog.println(getDestinationStringForFile(file));
 
+		// Binary format (stochastic update strategies only)
+		if (exportType == StrategyExportType.ACTIONS && file != null && strat instanceof StochasticUpdateStrategy
+				&& file.getName().endsWith(StochasticUpdateStrategy.BINARY_EXTENSION)) {
+			((StochasticUpdateStrategy) strat).exportToBinaryFile(file.getPath());
+			return;
+		}
+
 		// Export to file (or use main log)
 		tmpLog = getPrismLogForFile(file);
 		switch (exportType) {
@@ -4094,9 +4108,20 @@ public class Prism extends PrismComponent implements PrismSettingsListener
 	 * @param propertiesFile Optional properties file for extra info needed during model checking (can be null)
 	 */
 	private explicit.StateModelChecker createModelCheckerExplicit(PropertiesFile propertiesFile) throws PrismException
+	{
+		return createModelCheckerExplicit(currentModelType, propertiesFile);
+	}
+
+	/**
+	 * Utility method to create and initialise an (explicit) model checker for a given model type,
+	 * e.g. for the product of the current model and a strategy.
+	 * @param modelType Type of the model to be checked
+	 * @param propertiesFile Optional properties file for extra info needed during model checking (can be null)
+	 */
+	private explicit.StateModelChecker createModelCheckerExplicit(ModelType modelType, PropertiesFile propertiesFile) throws PrismException
 	{
 		// Create model checker
-		explicit.StateModelChecker mc = explicit.StateModelChecker.createModelChecker(currentModelType, this);
+		explicit.StateModelChecker mc = explicit.StateModelChecker.createModelChecker(modelType, this);
 		mc.setModelCheckingInfo(currentModelInfo, propertiesFile, currentRewardGenerator);
 		// Pass any additional local settings
 		mc.setExportTarget(exportTarget);
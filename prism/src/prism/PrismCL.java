@@ -72,6 +72,7 @@ public class PrismCL implements PrismModelListener
 	private boolean importlabels = false;
 	private boolean importstaterewards = false;
 	private boolean importinitdist = false;
+	private boolean importstrat = false;
 	private boolean steadystate = false;
 	private boolean dotransient = false;
 	private boolean computePareto = false;
@@ -151,6 +152,7 @@ public class PrismCL implements PrismModelListener
 	private String exportSteadyStateFilename = null;
 	private String exportTransientFilename = null;
 	private String exportStratFilename = null;
+	private String importStratFilename = null;
 	private String simpathFilename = null;
 
 	// logs
@@ -364,6 +366,11 @@ public class PrismCL implements PrismModelListener
 			if (modelBuildFail)
 				continue;
 
+			// Load strategy (for the newly built model), if required
+			doStrategyImport();
+			if (modelBuildFail)
+				continue;
+
 			// Work through list of properties to be checked
 			for (j = 0; j < numPropertiesToCheck; j++) {
 
@@ -419,7 +426,7 @@ public class PrismCL implements PrismModelListener
 						if (modelBuildFail) {
 							results[j].setMultipleErrors(definedMFConstants, null, modelBuildException);
 							if (test) {
-								doResultTest(propertiesToCheck.get(j), new Result(modelBuildException), modulesFile.getConstantValues(), null);
+								doResultTest(propertiesToCheck.get(j), new Result(modelBuildException), getModelConstantValues(), null);
 							}
 							break;
 						}
@@ -477,7 +484,7 @@ public class PrismCL implements PrismModelListener
 						
 						// if required, check result against expected value
 						if (test) {
-							doResultTest(propertiesToCheck.get(j), res, modulesFile.getConstantValues(), propertiesFile.getConstantValues());
+							doResultTest(propertiesToCheck.get(j), res, getModelConstantValues(), propertiesFile.getConstantValues());
 						}
 
 						// iterate to next property
@@ -490,7 +497,7 @@ public class PrismCL implements PrismModelListener
 					for (j++; j < numPropertiesToCheck; j++) {
 						results[j].setMultipleErrors(definedMFConstants, null, modelBuildException);
 						if (test) {
-							doResultTest(propertiesToCheck.get(j), new Result(modelBuildException), modulesFile.getConstantValues(), propertiesFile.getConstantValues());
+							doResultTest(propertiesToCheck.get(j), new Result(modelBuildException), getModelConstantValues(), propertiesFile.getConstantValues());
 						}
 					}
 					break;
@@ -710,6 +717,42 @@ public class PrismCL implements PrismModelListener
 		}
 	}
 
+	/**
+	 * Load the strategy to be implemented (-importstrat), if required, and, if -exportstrat was also given,
+	 * export it straight away (e.g. to convert between the text and binary formats).
+	 * In the latter case, no further strategies are generated, so that the imported one
+	 * is used for all properties.
+	 * The model is built first, since building a model discards any previous strategy.
+	 */
+	private void doStrategyImport()
+	{
+		if (!importstrat)
+			return;
+		Strategy strat = null;
+		try {
+			prism.buildModelIfRequired();
+			strat = Strategies.loadStrategyFromFile(importStratFilename);
+		} catch (PrismException e) {
+			// (model build failures are also notified via notifyModelBuildFailed)
+			error(e.getMessage());
+			return;
+		} catch (IllegalArgumentException e) {
+			errorAndExit(e.getMessage());
+		}
+		prism.setStrategy(strat);
+		if (exportstrat) {
+			try {
+				prism.exportStrategy(strat, exportStratType, exportStratFilename.equals("stdout") ? null : new File(exportStratFilename));
+				prism.setGenStrat(false);
+				prism.getSettings().set(PrismSettings.PRISM_GENERATE_STRATEGY, false);
+			} catch (FileNotFoundException e) {
+				errorAndExit("Couldn't open file \"" + exportStratFilename + "\" for output");
+			} catch (PrismException e) {
+				errorAndExit(e.getMessage());
+			}
+		}
+	}
+
 	// do any exporting requested
 
 	private void doExports()
@@ -999,6 +1042,15 @@ public class PrismCL implements PrismModelListener
 		}
 	}
 
+	/**
+	 * Get the values of the model file's constants, or null if there is no model file
+	 * (e.g. if the model was imported from explicit files).
+	 */
+	private Values getModelConstantValues()
+	{
+		return modulesFile == null ? null : modulesFile.getConstantValues();
+	}
+
 	/**
 	 * Test a model checking result against the RESULT specifications attached
 	 * to the property (test mode). Test results are output to the log.
@@ -1323,6 +1375,19 @@ public class PrismCL implements PrismModelListener
 				else if (sw.equals("importtrans")) {
 					importtrans = true;
 				}
+				// import strategy
+				else if (sw.equals("importstrat")) {
+					if (i < args.length - 1) {
+						importstrat = true;
+						importStratFilename = args[++i];
+					} else {
+						errorAndExit("No file specified for -" + sw + " switch");
+					}
+				}
+				// check properties on the product of the model and the (imported) strategy
+				else if (sw.equals("implementstrat")) {
+					prism.getSettings().set(PrismSettings.PRISM_IMPLEMENT_STRATEGY, true);
+				}
 				// import states for explicit model import
 				else if (sw.equals("importstates")) {
 					if (i < args.length - 1) {
@@ -2431,6 +2496,7 @@ public class PrismCL implements PrismModelListener
 		mainLog.println("-steadystate (or -ss) .......... Compute steady-state probabilities (D/CTMCs only)");
 		mainLog.println("-transient <x> (or -tr <x>) .... Compute transient probabilities for time (or time range) <x> (D/CTMCs only)");
 		mainLog.println("-pareto ........................ Compute Pareto sets (SMGs only)");
+		mainLog.println("-implementstrat ................ Check properties on the product of the model and the imported strategy");
 		mainLog.println("-simpath <options> <file>....... Generate a random path with the simulator");
 		mainLog.println("-nobuild ....................... Skip model construction (just do parse/export)");
 		mainLog.println("-test .......................... Enable \"test\" mode");
@@ -2448,6 +2514,7 @@ public class PrismCL implements PrismModelListener
 		mainLog.println("-importlabels <file>............ Import the list of labels directly from a text file");
 		mainLog.println("-importstaterewards <file>...... Import the state rewards directly from a text file");
 		mainLog.println("-importinitdist <file>.......... Specify initial probability distribution for transient/steady-state analysis");
+		mainLog.println("-importstrat <file> ............ Import a strategy from a (text or binary) file");
 		mainLog.println("-dtmc .......................... Force imported/built model to be a DTMC");
 		mainLog.println("-ctmc .......................... Force imported/built model to be a CTMC");
 		mainLog.println("-mdp ........................... Force imported/built model to be an MDP");
@@ -2456,6 +2523,7 @@ public class PrismCL implements PrismModelListener
 		mainLog.println("-exportresults <file[:options]>  Export the results of model checking to a file");
 		mainLog.println("-exportvector <file>  .......... Export results of model checking for all states to a file");
 		mainLog.println("-exportmodel <files[:options]> . Export the built model to file(s)");
+		mainLog.println("-exportstrat <file[:options]> .. Generate a strategy and export it to a file");
 		mainLog.println("-exporttrans <file> ............ Export the transition matrix to a file");
 		mainLog.println("-exportstaterewards <file> ..... Export the state rewards vector to a file");
 		mainLog.println("-exporttransrewards <file> ..... Export the transition rewards matrix to a file");
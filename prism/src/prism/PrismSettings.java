@@ -96,6 +96,9 @@ public class PrismSettings implements Observer
 	public static final	String PRISM_MAX_ITERS						= "prism.maxIters";//"prism.maxIterations";
 	public static final String PRISM_EXPORT_ITERATIONS				= "prism.exportIterations";
 	public static final	String PRISM_GRID_RESOLUTION				= "prism.gridResolution";
+	public static final	String PRISM_POMDP_SOLN_METHOD				= "prism.pomdpSolnMethod";
+	public static final	String PRISM_POMDP_PRECISION				= "prism.pomdpPrecision";
+	public static final	String PRISM_POMDP_MAX_BELIEFS				= "prism.pomdpMaxBeliefs";
 	
 	public static final	String PRISM_CUDD_MAX_MEM					= "prism.cuddMaxMem";
 	public static final	String PRISM_CUDD_EPSILON					= "prism.cuddEpsilon";
@@ -109,11 +112,13 @@ public class PrismSettings implements Observer
 	public static final	String PRISM_EXTRA_DD_INFO					= "prism.extraDDInfo";
 	public static final	String PRISM_EXTRA_REACH_INFO				= "prism.extraReachInfo";
 	public static final String PRISM_SCC_METHOD						= "prism.sccMethod";
+	public static final String PRISM_EXPLICIT_SCC_METHOD				= "prism.explicitSccMethod";
 	public static final String PRISM_SYMM_RED_PARAMS					= "prism.symmRedParams";
 	public static final	String PRISM_EXACT_ENABLED					= "prism.exact.enabled";
 	public static final String PRISM_PTA_METHOD					= "prism.ptaMethod";
 	public static final String PRISM_TRANSIENT_METHOD				= "prism.transientMethod";
 	public static final String PRISM_SMT_SOLVER					= "prism.smtsolver";
+	public static final String PRISM_NUM_THREADS					= "prism.numThreads";
 	public static final String PRISM_AR_OPTIONS					= "prism.arOptions";
 	public static final String PRISM_PATH_VIA_AUTOMATA				= "prism.pathViaAutomata";
 	public static final String PRISM_NO_DA_SIMPLIFY				= "prism.noDaSimplify";
@@ -142,6 +147,8 @@ public class PrismSettings implements Observer
 	public static final     String PRISM_MULTI_ROUNDING					= "prism.multiRounding";
         public static final	String PRISM_MULTI_BASELINE_ACCURACY 		= "prism.baselineAccuracy";
         public static final	String PRISM_MULTI_INCREASE_FACTOR		= "prism.increaseFactor";
+	public static final	String PRISM_MULTI_PARETO_ENGINE			= "prism.multiParetoEngine";
+	public static final	String PRISM_MULTI_PARETO_DIRECTIONS			= "prism.multiParetoDirections";
         // logging
         public static final	String LOG_MULTI_C_PARETO			= "log.multiCPareto";
         public static final	String LOG_MULTI_D_PARETO			= "log.multiDPareto";
@@ -163,6 +170,8 @@ public class PrismSettings implements Observer
 	public static final	String PRISM_PARAM_RANDOM_POINTS			= "prism.param.randomPoints";
 	public static final	String PRISM_PARAM_SUBSUME_REGIONS			= "prism.param.subsumeRegions";
 	public static final String PRISM_PARAM_DAG_MAX_ERROR			= "prism.param.functionDagMaxError";
+	public static final String PRISM_PARAM_FUNCTION_CACHE_SIZE		= "prism.param.functionCacheSize";
+	public static final String PRISM_PARAM_DAG_WEAK_REFS			= "prism.param.functionDagWeakRefs";
 
 	public static final String PRISM_FAU_EPSILON					= "prism.fau.epsilon";
 	public static final String PRISM_FAU_DELTA						= "prism.fau.delta";
@@ -272,6 +281,8 @@ public class PrismSettings implements Observer
 																			"Which method to use for computing transient probabilities in CTMCs." },
 			{ CHOICE_TYPE,		PRISM_SMT_SOLVER,						"SMT solver",	"4.5",		"Z3",															"Z3,Yices",																
 																			"Which external solver to use for SMT problems." },
+			{ INTEGER_TYPE,		PRISM_NUM_THREADS,						"Number of threads",	"4.5",		new Integer(1),															"1,",
+																			"Number of threads to use in the explicit engine for algorithms that support parallel execution (1 means sequential)." },
 			// NUMERICAL SOLUTION OPTIONS:
 			{ CHOICE_TYPE,		PRISM_LIN_EQ_METHOD,					"Linear equations method",				"2.1",			"Jacobi",																	"Power,Jacobi,Gauss-Seidel,Backwards Gauss-Seidel,Pseudo-Gauss-Seidel,Backwards Pseudo-Gauss-Seidel,JOR,SOR,Backwards SOR,Pseudo-SOR,Backwards Pseudo-SOR",
 																			"Which iterative method to use when solving linear equation systems." },
@@ -299,6 +310,12 @@ public class PrismSettings implements Observer
 																			"Export solution vectors for iteration algorithms to iterations.html"},
 			{ INTEGER_TYPE,		PRISM_GRID_RESOLUTION,					"Fixed grid resolution",			    "4.5",			new Integer(10),															"1,",																						
 																			"The resolution for the fixed grid approximation algorithm for POMDPs." },
+			{ CHOICE_TYPE,		PRISM_POMDP_SOLN_METHOD,				"POMDP solution method",			    "4.5",			"Fixed grid",															"Fixed grid,Belief exploration",
+																			"Which method to use for POMDPs: a fixed-resolution grid over the whole belief space, or on-demand exploration of the beliefs reachable from the initial one, with adaptive refinement of lower/upper bounds." },
+			{ DOUBLE_TYPE,		PRISM_POMDP_PRECISION,					"POMDP belief exploration precision",			    "4.5",			new Double(1.0E-3),															"0.0,",
+																			"Belief exploration for POMDPs stops once the gap between the lower and upper bounds is below this (absolute or relative, as for the termination criteria)." },
+			{ INTEGER_TYPE,		PRISM_POMDP_MAX_BELIEFS,				"POMDP belief exploration max. beliefs",			    "4.5",			new Integer(100000),															"1,",
+																			"Maximum number of beliefs explored (per bound) by belief exploration for POMDPs. Beyond this, values of unexplored beliefs are bounded using the fully observable model." },
 			// MODEL CHECKING OPTIONS:
 			{ BOOLEAN_TYPE,		PRISM_PRECOMPUTATION,					"Use precomputation",					"2.1",			new Boolean(true),															"",																							
 																			"Whether to use model checking precomputation algorithms (Prob0, Prob1, etc.), where optional." },
@@ -320,6 +337,8 @@ public class PrismSettings implements Observer
 																			"Use steady-state detection during CTMC transient probability computation." },
 			{ CHOICE_TYPE,		PRISM_SCC_METHOD,						"SCC decomposition method",				"3.2",			"Lockstep",																	"Xie-Beerel,Lockstep,SCC-Find",																
 																			"Which algorithm to use for (symbolic) decomposition of a graph into strongly connected components (SCCs)." },
+			{ CHOICE_TYPE,		PRISM_EXPLICIT_SCC_METHOD,				"Explicit SCC decomposition method",	"4.5",			"Tarjan",																	"Tarjan,Forward-backward",
+																			"Which algorithm to use for (explicit) decomposition of a graph into strongly connected components (SCCs) when computing BSCCs and end components. Forward-backward can use multiple threads." },
 			{ STRING_TYPE,		PRISM_SYMM_RED_PARAMS,					"Symmetry reduction parameters",		"3.2",			"",																	"",																
 																			"Parameters for symmetry reduction (format: \"i j\" where i and j are the number of modules before and after the symmetric ones; empty string means symmetry reduction disabled)." },
 			{ STRING_TYPE,		PRISM_AR_OPTIONS,						"Abstraction refinement options",		"3.3",			"",																	"",																
@@ -357,6 +376,10 @@ public class PrismSettings implements Observer
 																			"Value iteration starts computing points rounded to the maximum reward in each dimension divided by the baseline accuracy, and this accuracy is increased by the increase factor after every iteration." },
 			{ DOUBLE_TYPE,		PRISM_MULTI_INCREASE_FACTOR,					"Increase factor for conjunctive query value iteration",			"4.0.3",			new Double(1.01),															"0,",																						
 																			"Accuracy of conjunctive query value iteration is increased by the increase factor after every iteration." },
+			{ CHOICE_TYPE,		PRISM_MULTI_PARETO_ENGINE,					"Pareto set engine for multi-objective SGs",			"4.5",			"PPL",															"PPL,Java",
+																			"Representation of Pareto sets during multi-objective SG value iteration: exact rational polyhedra (PPL) or floating-point vertex lists (Java). The Java engine is not used for energy objectives." },
+			{ INTEGER_TYPE,		PRISM_MULTI_PARETO_DIRECTIONS,					"Pareto set directions for Java engine",			"4.5",			new Integer(20),															"1,",
+																			"Number of subdivisions per dimension of the weight vectors used to prune the vertices of Pareto sets in the Java engine." },
 			// CSG ZERO-SUM LP SCALE FACTOR
 			{ DOUBLE_TYPE,		PRISM_ZS_LP_SCALE_FACTOR, 					"Scale factor for LPs",			"4.5", 				new Double(1.0), 			"1,",
 																			"Scale factor used when building linear programs for solving matrix games"},
@@ -421,7 +444,7 @@ public class PrismSettings implements Observer
 																			"Type of bisimulation used to reduce model size during paramteric model checking. For reward-based properties, weak bisimulation cannot be used." },
 			{ CHOICE_TYPE,		PRISM_PARAM_FUNCTION,					"Parametric model checking function representation",				"4.1",			"JAS-cached",																"JAS-cached,JAS,DAG",
 																			"Type of representation for functions used during parametric model checking." },
-			{ CHOICE_TYPE,		PRISM_PARAM_ELIM_ORDER,					"Parametric model checking state elimination order",			"4.1",			"Backward",																		"Arbitrary,Forward,Forward-reversed,Backward,Backward-reversed,Random",
+			{ CHOICE_TYPE,		PRISM_PARAM_ELIM_ORDER,					"Parametric model checking state elimination order",			"4.1",			"Backward",																		"Arbitrary,Forward,Forward-reversed,Backward,Backward-reversed,Random,Min-degree,Min-fill",
 																			"Order in which states are eliminated during unbounded parametric model checking analysis." },
 			{ INTEGER_TYPE,		PRISM_PARAM_RANDOM_POINTS,				"Parametric model checking random evaluations",		"4.1",			new Integer(5),																"",
 																			"Number of random points to evaluate per region to increase chance of correctness during parametric model checking." },
@@ -429,6 +452,10 @@ public class PrismSettings implements Observer
 																			"Subsume adjacent regions during parametric model checking." },
 			{ DOUBLE_TYPE,		PRISM_PARAM_DAG_MAX_ERROR,				"Parametric model checking max. DAG error",	"4.1",			new Double(1E-100),															"",
 																			"Maximal error probability (i.e. maximum probability of of a wrong result) in DAG function representation used for parametric model checking." },
+			{ INTEGER_TYPE,		PRISM_PARAM_FUNCTION_CACHE_SIZE,		"Parametric model checking function cache size",	"4.5",			new Integer(1000000),														"0,",
+																			"Maximum number of entries in each operation cache (addition, multiplication, etc.) of the JAS-cached function representation used for parametric model checking. Least recently used entries are evicted beyond this; 0 disables the operation caches." },
+			{ BOOLEAN_TYPE,		PRISM_PARAM_DAG_WEAK_REFS,				"Parametric model checking DAG weak references",	"4.5",			new Boolean(false),															"",
+																			"Keep nodes of the DAG function representation used for parametric model checking only via weak references, so that nodes no longer in use can be garbage collected." },
 			
 			// FAST ADAPTIVE UNIFORMISATION																
 			{ DOUBLE_TYPE,      PRISM_FAU_EPSILON,						"FAU epsilon",		 					"4.1",   	 	new Double(1E-6),     													"",
@@ -1111,6 +1138,21 @@ public class PrismSettings implements Observer
 					throw new PrismException("Unrecognised option for -" + sw + " switch (options are: z3, yices)");
 			}
 		}
+		// Number of threads
+		else if (sw.equals("threads")) {
+			if (i < args.length - 1) {
+				try {
+					j = Integer.parseInt(args[++i]);
+					if (j < 1)
+						throw new NumberFormatException("");
+					set(PRISM_NUM_THREADS, j);
+				} catch (NumberFormatException e) {
+					throw new PrismException("Invalid value for -" + sw + " switch");
+				}
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
 		// Heuristic modes
 		else if (sw.equals("heuristic")) {
 			if (i < args.length - 1) {
@@ -1284,6 +1326,50 @@ public class PrismSettings implements Observer
 				throw new PrismException("No value specified for -" + sw + " switch");
 			}
 		}
+		// POMDP solution method
+		else if (sw.equals("pomdpmethod")) {
+			if (i < args.length - 1) {
+				s = args[++i];
+				if (s.equals("grid"))
+					set(PRISM_POMDP_SOLN_METHOD, "Fixed grid");
+				else if (s.equals("explore"))
+					set(PRISM_POMDP_SOLN_METHOD, "Belief exploration");
+				else
+					throw new PrismException("Unknown value \"" + s + "\" provided for -" + sw + " switch");
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
+		// POMDP belief exploration precision
+		else if (sw.equals("pomdpprecision")) {
+			if (i < args.length - 1) {
+				try {
+					d = Double.parseDouble(args[++i]);
+					if (d < 0)
+						throw new NumberFormatException("");
+					set(PRISM_POMDP_PRECISION, d);
+				} catch (NumberFormatException e) {
+					throw new PrismException("Invalid value for -" + sw + " switch");
+				}
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
+		// POMDP belief exploration max beliefs
+		else if (sw.equals("pomdpmaxbeliefs")) {
+			if (i < args.length - 1) {
+				try {
+					j = Integer.parseInt(args[++i]);
+					if (j < 1)
+						throw new NumberFormatException("");
+					set(PRISM_POMDP_MAX_BELIEFS, j);
+				} catch (NumberFormatException e) {
+					throw new PrismException("Invalid value for -" + sw + " switch");
+				}
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
 		
 		// MODEL CHECKING OPTIONS:
 		
@@ -1354,6 +1440,20 @@ public class PrismSettings implements Observer
 				throw new PrismException("No parameter specified for -" + sw + " switch");
 			}
 		}
+		// SCC computation algorithm (explicit)
+		else if (sw.equals("explicitsccmethod")) {
+			if (i < args.length - 1) {
+				s = args[++i];
+				if (s.equals("tarjan"))
+					set(PRISM_EXPLICIT_SCC_METHOD, "Tarjan");
+				else if (s.equals("fb") || s.equals("forwardbackward"))
+					set(PRISM_EXPLICIT_SCC_METHOD, "Forward-backward");
+				else
+					throw new PrismException("Unrecognised option for -" + sw + " switch (options are: tarjan, fb)");
+			} else {
+				throw new PrismException("No parameter specified for -" + sw + " switch");
+			}
+		}
 		// Enable symmetry reduction
 		else if (sw.equals("symm")) {
 			if (i < args.length - 2) {
@@ -1513,6 +1613,33 @@ public class PrismSettings implements Observer
 		else if (sw.equals("multirounding")) {
 			set(PRISM_MULTI_ROUNDING, true);
 		}
+		else if (sw.equals("multiparetoengine")) {
+			if (i < args.length - 1) {
+				s = args[++i];
+				if (s.equals("ppl"))
+					set(PRISM_MULTI_PARETO_ENGINE, "PPL");
+				else if (s.equals("java"))
+					set(PRISM_MULTI_PARETO_ENGINE, "Java");
+				else
+					throw new PrismException("Unknown value \"" + s + "\" provided for -" + sw + " switch");
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
+		else if (sw.equals("multiparetodirs")) {
+			if (i < args.length - 1) {
+				try {
+					j = Integer.parseInt(args[++i]);
+					if (j < 1)
+						throw new NumberFormatException("");
+					set(PRISM_MULTI_PARETO_DIRECTIONS, j);
+				} catch (NumberFormatException e) {
+					throw new PrismException("Invalid value for -" + sw + " switch");
+				}
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
 		else if (sw.equals("logcpareto")) {
 			set(LOG_MULTI_C_PARETO, true);
 		}
@@ -1812,8 +1939,12 @@ public class PrismSettings implements Observer
 					set(PRISM_PARAM_ELIM_ORDER, "Backward-reversed");
 				else if (s.equals("rand"))
 					set(PRISM_PARAM_ELIM_ORDER, "Random");
+				else if (s.equals("mindeg"))
+					set(PRISM_PARAM_ELIM_ORDER, "Min-degree");
+				else if (s.equals("minfill"))
+					set(PRISM_PARAM_ELIM_ORDER, "Min-fill");
 				else
-					throw new PrismException("Unrecognised option for -" + sw + " switch (options are: arb,fw,fwrev,bw,bwrev,rand)");
+					throw new PrismException("Unrecognised option for -" + sw + " switch (options are: arb,fw,fwrev,bw,bwrev,rand,mindeg,minfill)");
 			} else {
 				throw new PrismException("No value specified for -" + sw + " switch");
 			}
@@ -1842,6 +1973,23 @@ public class PrismSettings implements Observer
 				throw new PrismException("Invalid value for -" + sw + " switch");
 			}
 		}
+		else if (sw.equals("paramcachesize")) {
+			if (i < args.length - 1) {
+				try {
+					j = Integer.parseInt(args[++i]);
+					if (j < 0)
+						throw new NumberFormatException();
+					set(PRISM_PARAM_FUNCTION_CACHE_SIZE, j);
+				} catch (NumberFormatException e) {
+					throw new PrismException("Invalid value for -" + sw + " switch");
+				}
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
+		else if (sw.equals("paramdagweakrefs")) {
+			set(PRISM_PARAM_DAG_WEAK_REFS, true);
+		}
 		
 		// FAST ADAPTIVE UNIFORMISATION
 		
@@ -2021,6 +2169,7 @@ public class PrismSettings implements Observer
 		mainLog.println("-ptamethod <name> .............. Specify PTA engine (games, digital, backwards) [default: games]");
 		mainLog.println("-transientmethod <name> ........ CTMC transient analysis methof (unif, fau) [default: unif]");
 		mainLog.println("-smtsolver <name> .............. SMT solver (z3, yices) [default: z3]");
+		mainLog.println("-threads <n> ................... Number of threads for parallel algorithms (explicit engine) [default: 1]");
 		mainLog.println("-heuristic <mode> .............. Automatic choice of engines/settings (none, speed, memory) [default: none]");
 		mainLog.println();
 		mainLog.println("SOLUTION METHODS (LINEAR EQUATIONS):");
@@ -2051,6 +2200,9 @@ public class PrismSettings implements Observer
 		mainLog.println("-epsilon <x> (or -e <x>) ....... Set value of epsilon (for convergence check) [default: 1e-6]");
 		mainLog.println("-maxiters <n> .................. Set max number of iterations [default: 10000]");
 		mainLog.println("-gridresolution <n> .............Set resolution for fixed grid approximation (POMDP) [default: 10]");
+		mainLog.println("-pomdpmethod <x> ............... Set POMDP solution method (grid, explore) [default: grid]");
+		mainLog.println("-pomdpprecision <x> ............ Set precision for POMDP belief exploration [default: 1e-3]");
+		mainLog.println("-pomdpmaxbeliefs <n> ........... Set max number of beliefs for POMDP belief exploration [default: 100000]");
 		
 		mainLog.println();
 		mainLog.println("MODEL CHECKING OPTIONS:");
@@ -2067,6 +2219,7 @@ public class PrismSettings implements Observer
 		mainLog.println("-zerorewardcheck ............... Check for absence of zero-reward loops");
 		mainLog.println("-nossdetect .................... Disable steady-state detection for CTMC transient computations");
 		mainLog.println("-sccmethod <name> .............. Specify (symbolic) SCC computation method (xiebeerel, lockstep, sccfind)");
+		mainLog.println("-explicitsccmethod <name> ...... Specify (explicit) SCC computation method for BSCCs/MECs (tarjan, fb)");
 		mainLog.println("-symm <string> ................. Symmetry reduction options string");
 		mainLog.println("-aroptions <string> ............ Abstraction-refinement engine options string");
 		mainLog.println("-pathviaautomata ............... Handle all path formulas via automata constructions");
@@ -2095,6 +2248,8 @@ public class PrismSettings implements Observer
 		mainLog.println("-multiminm <n> ................. Set the minimum box size (M) for mean-payoff objectives.");
 		mainLog.println("-multimaxm <n> ................. Set the maximum box size (M) for mean-payoff objectives.");
 		mainLog.println("-multirounding ................. Enable rounding for the multi-objective engine.");
+		mainLog.println("-multiparetoengine <x> ......... Set Pareto set engine for multi-objective SGs (ppl, java) [default: ppl]");
+		mainLog.println("-multiparetodirs <n> ........... Set number of weight subdivisions for the java Pareto set engine [default: 20]");
 		mainLog.println("-baselineaccuracy <n> .......... Baseline accuracy for CQs.");
 		mainLog.println("-increasefactor <x> ............ Factor by which accuracy is increased every iteration for CQs.");
 		mainLog.println();
@@ -2124,10 +2279,12 @@ public class PrismSettings implements Observer
 		mainLog.println("-paramsplit <name> ............. Set method to split parameter regions (longest,all) [default: longest]");
 		mainLog.println("-parambisim <name> ............. Set bisimulation minimisation for parameter synthesis (weak,strong,none) [default: weak]");
 		mainLog.println("-paramfunction <name> .......... Set function representation for parameter synthesis (jascached,jas) [default: jascached]");
-		mainLog.println("-paramelimorder <name> ......... Set elimination order for parameter synthesis (arb,fw,fwrev,bw,bwrev,rand) [default: bw]");
+		mainLog.println("-paramelimorder <name> ......... Set elimination order for parameter synthesis (arb,fw,fwrev,bw,bwrev,rand,mindeg,minfill) [default: bw]");
 		mainLog.println("-paramrandompoints <n> ......... Set number of random points to evaluate per region [default: 5]");
 		mainLog.println("-paramsubsumeregions <b> ....... Subsume adjacent regions during analysis [default: true]");
 		mainLog.println("-paramdagmaxerror <b> .......... Maximal error probability allowed for DAG function representation [default: 1E-100]");
+		mainLog.println("-paramcachesize <n> ............ Set max entries per operation cache for function representation (0 = no cache) [default: 1000000]");
+		mainLog.println("-paramdagweakrefs .............. Allow unused nodes of DAG function representation to be garbage collected");
 		mainLog.println();
 		mainLog.println("FAST ADAPTIVE UNIFORMISATION (FAU) OPTIONS:");
 		mainLog.println("-fauepsilon <x> ................ Set probability threshold of birth process in FAU [default: 1e-6]");
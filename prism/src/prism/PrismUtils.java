@@ -36,9 +36,11 @@ import java.util.Locale;
 import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import common.Parallel;
 import common.iterable.IterableInt;
 
 /**
@@ -137,6 +139,26 @@ public class PrismUtils
 		return true;
 	}
 
+	/**
+	 * See if two arrays of doubles are all within epsilon of each other (relative or absolute error),
+	 * checking (chunks of) the arrays in parallel, using {@code numThreads} threads.
+	 */
+	public static boolean doublesAreClose(double d1[], double d2[], double epsilon, boolean abs, int numThreads)
+	{
+		if (numThreads <= 1) {
+			return doublesAreClose(d1, d2, epsilon, abs);
+		}
+		AtomicBoolean notClose = new AtomicBoolean(false);
+		Parallel.forRange(numThreads, 0, Math.min(d1.length, d2.length), (from, to) -> {
+			for (int i = from; i < to && !notClose.get(); i++) {
+				if (!doublesAreClose(d1[i], d2[i], epsilon, abs)) {
+					notClose.set(true);
+				}
+			}
+		});
+		return !notClose.get();
+	}
+
 	/**
 	 * See if, for all the entries given by the {@code indizes}
 	 * iterator, two arrays of doubles are all within epsilon of each other (relative or absolute error).
@@ -35,15 +35,7 @@ public class DBMFactory implements ZoneFactory
 	 */
 	public DBM createZero(PTA pta)
 	{
-		int i, j, n;
-		DBM dbm = new DBM(pta);
-		n = pta.numClocks;
-		for (i = 0; i < n + 1; i++) {
-			for (j = 0; j < n + 1; j++) {
-				dbm.d[i][j] = DB.LEQ_ZERO;
-			}
-		}
-		return dbm;
+		return DBM.createZero(pta);
 	}
 
 	/**
@@ -51,17 +43,7 @@ public class DBMFactory implements ZoneFactory
 	 */
 	public DBM createTrue(PTA pta)
 	{
-		int i, j, n;
-		DBM dbm = new DBM(pta);
-		n = pta.numClocks;
-		for (i = 0; i < n + 1; i++) {
-			for (j = 0; j < n + 1; j++) {
-				if (i == j) dbm.d[i][j] = DB.LEQ_ZERO;
-				else if (i == 0) dbm.d[i][j] = DB.LEQ_ZERO;
-				else  dbm.d[i][j] = DB.INFTY;
-			}
-		}
-		return dbm;
+		return DBM.createTrue(pta);
 	}
 
 	/**
@@ -73,6 +73,8 @@ public class ForwardsReach
 	 * All zones in the symbolic states in the graph are guaranteed to be convex (i.e. DBMs).
 	 * The set of target states found and the (singleton) set of initial states are stored separately
 	 * and can be obtained subsequently using getTarget() and getInitialStates().
+	 * Identical zones are shared between symbolic states (see {@link ZoneStore}),
+	 * so the zones of the symbolic states in the graph must not be modified.
 	 */
 	public ReachabilityGraph buildForwardsGraph(PTA pta, BitSet targetLocs, Constraint targetConstraint)
 			throws PrismException
@@ -91,6 +93,7 @@ public class ForwardsReach
 		LinkedList<LocZone> X;
 		StateStorage<LocZone> Yset;
 		//LocZoneSetOld Zset;
+		ZoneStore zoneStore;
 		ReachabilityGraph graph;
 		int src, dest, count, dests[];
 		boolean canDiverge;
@@ -115,10 +118,14 @@ public class ForwardsReach
 		graph = new ReachabilityGraph(pta);
 		Yset = new IndexedSet<LocZone>();
 		X = new LinkedList<LocZone>();
+		zoneStore = new ZoneStore();
 		target = new BitSet();
 
 		// Build initial symbolic state (NB: assume initial location = 0)
-		init = new LocZone(0, DBM.createZero(pta));
+		init = new LocZone(0, zoneStore.intern(DBM.createZero(pta)));
+		// Symbolic state used to compute successors; it is only stored
+		// (and a new one created) if it turns out to be a new state
+		lz2 = new LocZone(0, DBM.createZero(pta));
 
 		// Reachability loop
 		Yset.add(init);
@@ -191,13 +198,21 @@ public class ForwardsReach
 				for (Edge edge : transition.getEdges()) {
 					// Do "discrete post" for this edge
 					// (followed by c-closure)
-					lz2 = lz.deepCopy();
+					lz2.loc = lz.loc;
+					((DBM) lz2.zone).copyFrom((DBM) lz.zone);
 					lz2.dPost(edge);
 					lz2.cClosure(pta);
 					// If non-empty, create edge, also adding state to X if new 
 					if (!lz2.zone.isEmpty()) {
 						if (Yset.add(lz2)) {
 							X.add(lz2);
+							// Share the zone with any identical one
+							// (which leaves the stored state's hash code unchanged);
+							// the storage for lz2 can be reused only if it was not stored
+							Zone shared = zoneStore.intern(lz2.zone);
+							Zone scratch = (shared == lz2.zone) ? DBM.createZero(pta) : lz2.zone;
+							lz2.zone = shared;
+							lz2 = new LocZone(0, scratch);
 						}
 						dest = Yset.getIndexOfLastAdd();
 						enabled = true;
@@ -251,7 +266,7 @@ public class ForwardsReach
 		timer = System.currentTimeMillis() - timer;
 		mainLog.println("Graph constructed in " + (timer / 1000.0) + " secs.");
 		mainLog.print("Graph: " + graph.states.size() + " symbolic states");
-		mainLog.println(" (" + initialStates.size() + " initial, " + target.cardinality() + " target)");
+		mainLog.println(" (" + initialStates.size() + " initial, " + target.cardinality() + " target, " + zoneStore.size() + " distinct zones)");
 
 		// Print a warning if there are no target states
 		if (target.cardinality() == 0)
@@ -0,0 +1,74 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package pta;
+
+import java.util.HashMap;
+
+/**
+ * Hash-consed store of zones: each distinct zone is stored once, so that
+ * identical zones (e.g. occurring in several symbolic states with different
+ * locations) can be shared. Zones in the store must not be modified; take a
+ * deep copy first.
+ */
+public class ZoneStore
+{
+	/* Stored zones (each mapped to itself) */
+	protected HashMap<Zone, Zone> zones;
+
+	/**
+	 * Create an empty store.
+	 */
+	public ZoneStore()
+	{
+		zones = new HashMap<Zone, Zone>();
+	}
+
+	/**
+	 * Get the stored zone equal to {@code z}, adding {@code z} itself
+	 * (not a copy) if there is none. In the latter case, {@code z} is
+	 * returned and must not be modified by the caller afterwards.
+	 */
+	public Zone intern(Zone z)
+	{
+		Zone shared = zones.putIfAbsent(z, z);
+		return shared == null ? z : shared;
+	}
+
+	/**
+	 * Get the number of distinct zones stored.
+	 */
+	public int size()
+	{
+		return zones.size();
+	}
+
+	/**
+	 * Remove all zones from the store.
+	 */
+	public void clear()
+	{
+		zones.clear();
+	}
+}
@@ -43,11 +43,20 @@ public class ChoiceListFlexi implements Choice
 	protected int moduleOrActionIndex;
 
 	// List of multiple updates and associated probabilities/rates
-	// Size of list is stored implicitly in target.length
+	// Size of list is stored in size; any further (empty) lists
+	// in updates are kept for reuse when the choice is cleared and refilled.
 	// Probabilities/rates are already evaluated, target states are not
 	// but are just stored as lists of updates (for efficiency)
 	protected List<List<Update>> updates;
-	protected List<Double> probability;
+	protected double[] probability;
+	protected int size;
+
+	// Do any updates refer to primed (i.e. new) variable values?
+	// If not, targets can be computed by applying updates directly.
+	protected boolean primedUpdates;
+
+	// Compiled versions of update expressions, for each Update (optional)
+	protected Map<Update, CompiledExpression[]> compiledUpdates;
 
 	/*** ***/	
 	protected int[] actions;
@@ -59,7 +68,9 @@ public class ChoiceListFlexi implements Choice
 	public ChoiceListFlexi()
 	{
 		updates = new ArrayList<List<Update>>();
-		probability = new ArrayList<Double>();
+		probability = new double[4];
+		size = 0;
+		primedUpdates = false;
 	}
 
 	/**
@@ -68,19 +79,38 @@ public class ChoiceListFlexi implements Choice
 	 */
 	public ChoiceListFlexi(ChoiceListFlexi ch)
 	{
-		moduleOrActionIndex = ch.moduleOrActionIndex;
-		updates = new ArrayList<List<Update>>(ch.updates.size());
-		for (List<Update> list : ch.updates) {
-			List<Update> listNew = new ArrayList<Update>(list.size()); 
-			updates.add(listNew);
-			for (Update up : list) {
-				listNew.add(up);
-			}
+		this();
+		copyFrom(ch);
+	}
+
+	/**
+	 * Remove all transitions from this choice (and reset its module/action info),
+	 * keeping allocated storage so that the object can be reused.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < size; i++) {
+			updates.get(i).clear();
 		}
-		probability = new ArrayList<Double>(ch.size());
-		for (double p : ch.probability) {
-			probability.add(p);
+		size = 0;
+		primedUpdates = false;
+		moduleOrActionIndex = 0;
+		actions = null;
+	}
+
+	/**
+	 * Set this choice to be a copy of another one, reusing existing storage.
+	 * NB: Does a shallow, not deep, copy with respect to references to Update objects.
+	 */
+	public void copyFrom(ChoiceListFlexi ch)
+	{
+		clear();
+		moduleOrActionIndex = ch.moduleOrActionIndex;
+		for (int i = 0; i < ch.size; i++) {
+			newTransition(ch.probability[i]).addAll(ch.updates.get(i));
 		}
+		primedUpdates = ch.primedUpdates;
+		compiledUpdates = ch.compiledUpdates;
 	}
 
 	// Set methods
@@ -101,6 +131,23 @@ public class ChoiceListFlexi implements Choice
 		this.actions = actions;
 	}
 	/*** ***/
+
+	/**
+	 * Set compiled versions of the expressions in Update objects, to be used
+	 * (where available) when computing transition targets.
+	 */
+	public void setCompiledUpdates(Map<Update, CompiledExpression[]> compiledUpdates)
+	{
+		this.compiledUpdates = compiledUpdates;
+	}
+
+	/**
+	 * Mark whether any of the updates in this choice refer to primed (new) variable values.
+	 */
+	public void setPrimedUpdates(boolean primedUpdates)
+	{
+		this.primedUpdates = primedUpdates;
+	}
 	
 	/**
 	 * Add a transition to this choice.
@@ -109,8 +156,33 @@ public class ChoiceListFlexi implements Choice
 	 */
 	public void add(double probability, List<Update> ups)
 	{
-		this.updates.add(ups);
-		this.probability.add(probability);
+		newTransition(probability).addAll(ups);
+	}
+
+	/**
+	 * Add a transition, comprising a single update, to this choice.
+	 * @param probability Probability (or rate) of the transition
+	 * @param up Update object defining transition
+	 */
+	public void add(double probability, Update up)
+	{
+		newTransition(probability).add(up);
+	}
+
+	/**
+	 * Append a new transition with probability (or rate) {@code p},
+	 * returning its (empty) list of updates, reused from earlier if possible.
+	 */
+	private List<Update> newTransition(double p)
+	{
+		if (size == probability.length) {
+			probability = Arrays.copyOf(probability, 2 * size);
+		}
+		probability[size] = p;
+		if (size == updates.size()) {
+			updates.add(new ArrayList<Update>(4));
+		}
+		return updates.get(size++);
 	}
 
 	@Override
@@ -119,7 +191,7 @@ public class ChoiceListFlexi implements Choice
 		int i, n;
 		n = size();
 		for (i = 0; i < n; i++) {
-			probability.set(i, probability.get(i) * d);
+			probability[i] *= d;
 		}
 	}
 
@@ -140,25 +212,18 @@ public class ChoiceListFlexi implements Choice
 			// Loop through each (jth) element of existing choice
 			for (j = 0; j < n2; j++) {
 				// Create new element (i,j) of product 
-				list = new ArrayList<Update>(updates.get(j).size() + ch.updates.get(i).size());
-				for (Update u : updates.get(j)) {
-					list.add(u);
-				}
-				for (Update u : ch.updates.get(i)) {
-					list.add(u);
-				}
-				add(pi * getProbability(j), list);
+				list = newTransition(pi * getProbability(j));
+				list.addAll(updates.get(j));
+				list.addAll(ch.updates.get(i));
 			}
 		}
 		// Modify elements of current choice to get (0,j) elements of product
 		pi = ch.getProbability(0);
 		for (j = 0; j < n2; j++) {
-			for (Update u : ch.updates.get(0)) {
-				updates.get(j).add(u);
-			}
-			probability.set(j, pi * probability.get(j));
+			updates.get(j).addAll(ch.updates.get(0));
+			probability[j] *= pi;
 		}
-
+		primedUpdates |= ch.primedUpdates;
 	}
 	
 	// Get methods
@@ -184,7 +249,7 @@ public class ChoiceListFlexi implements Choice
 	@Override
 	public int size()
 	{
-		return probability.size();
+		return size;
 	}
 
 	@Override
@@ -234,6 +299,12 @@ public class ChoiceListFlexi implements Choice
 	@Override
 	public State computeTarget(int i, State currentState) throws PrismLangException
 	{
+		// If no update refers to new variable values, just apply them all directly
+		if (!primedUpdates) {
+			State newState = new State(currentState);
+			applyUpdates(updates.get(i), currentState, newState);
+			return newState;
+		}
 		//System.out.println("\n### Compute target currentState");
 		Set<String> variablesToUpdate = new HashSet<String>();
 		HashMap<String, HashSet<String>> dependencies = new HashMap<String, HashSet<String>>();
@@ -285,23 +356,65 @@ public class ChoiceListFlexi implements Choice
 	public void computeTarget(int i, State currentState, State newState) throws PrismLangException
 	{
 		//System.out.println("\n### Compute target currentState, newState");
-		for (Update up : updates.get(i))
-			up.update(currentState, newState);
+		if (primedUpdates) {
+			newState.copy(computeTarget(i, currentState));
+		} else {
+			applyUpdates(updates.get(i), currentState, newState);
+		}
 		//System.out.println();
 	}
 
+	/**
+	 * Apply a list of updates, none of which refer to primed variables, to {@code newState}
+	 * (a copy of {@code currentState}), checking that no variable is updated more than once.
+	 */
+	private void applyUpdates(List<Update> ups, State currentState, State newState) throws PrismLangException
+	{
+		int n = ups.size();
+		for (int j = 0; j < n; j++) {
+			Update up = ups.get(j);
+			// Updates from different modules must not share variables
+			for (int k = 0; k < j; k++) {
+				checkDisjoint(ups.get(k), up, currentState);
+			}
+			CompiledExpression exprs[] = (compiledUpdates == null) ? null : compiledUpdates.get(up);
+			if (exprs == null) {
+				up.update(currentState, newState);
+			} else {
+				for (int e = 0; e < exprs.length; e++) {
+					newState.setValue(up.getVarIndex(e), exprs[e].evaluate(currentState));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check that two updates do not assign to the same variable.
+	 */
+	private static void checkDisjoint(Update up1, Update up2, State currentState) throws PrismLangException
+	{
+		int n1 = up1.getNumElements();
+		int n2 = up2.getNumElements();
+		for (int e1 = 0; e1 < n1; e1++) {
+			for (int e2 = 0; e2 < n2; e2++) {
+				if (up1.getVarIndex(e1) == up2.getVarIndex(e2))
+					throw new PrismLangException("Multiple updates of variable " + up2.getVar(e2) + " in state " + currentState);
+			}
+		}
+	}
+
 	@Override
 	public double getProbability(int i)
 	{
-		return probability.get(i);
+		return probability[i];
 	}
 
 	@Override
 	public double getProbabilitySum()
 	{
 		double sum = 0.0;
-		for (double d : probability)
-			sum += d;
+		for (int i = 0; i < size; i++)
+			sum += probability[i];
 		return sum;
 	}
 
@@ -313,7 +426,7 @@ public class ChoiceListFlexi implements Choice
 		n = size();
 		d = 0.0;
 		for (i = 0; x >= d && i < n; i++) {
-			d += probability.get(i);
+			d += probability[i];
 		}
 		return i - 1;
 	}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
 
+import parser.CompiledExpression;
 import parser.State;
 import parser.Values;
 import parser.VarList;
@@ -46,6 +47,10 @@ public class ModulesFileModelGenerator implements ModelGenerator, RewardGenerato
 	protected TransitionList transitionList;
 	// Has the transition list been built? 
 	protected boolean transitionListBuilt;
+	// Compiled versions of labels and of reward guards/values (for each reward struct/item)
+	protected CompiledExpression labelExprs[];
+	protected CompiledExpression rewardGuards[][];
+	protected CompiledExpression rewardExprs[][];
 		
 	/**
 	 * Build a ModulesFileModelGenerator for a particular PRISM model, represented by a ModuleFile instance.
@@ -88,6 +93,31 @@ public class ModulesFileModelGenerator implements ModelGenerator, RewardGenerato
 		}
 	}
 	
+	/**
+	 * Copy constructor: create a generator for the same (initialised) model,
+	 * with its own copy of the model and its own exploration data structures,
+	 * so that it can be used independently of {@code other}, e.g. in another thread.
+	 */
+	private ModulesFileModelGenerator(ModulesFileModelGenerator other) throws PrismException
+	{
+		parent = other.parent;
+		originalModulesFile = other.originalModulesFile;
+		modelType = other.modelType;
+		mfConstants = other.mfConstants;
+		varList = other.varList;
+		// Work on a separate copy of the (constant-free) modules file
+		modulesFile = (ModulesFile) other.modulesFile.deepCopy();
+		labelList = modulesFile.getLabelList();
+		labelNames = labelList.getLabelNames();
+		// Create data structures for exploring model
+		updater = new Updater(modulesFile, varList, parent);
+		if (modelType == ModelType.CSG)
+			updater.initialiseCSG();
+		transitionList = new TransitionList();
+		transitionListBuilt = false;
+		compileExpressions();
+	}
+	
 	/**
 	 * (Re-)Initialise the class ready for model exploration
 	 * (can only be done once any constants needed have been provided)
@@ -108,6 +138,35 @@ public class ModulesFileModelGenerator implements ModelGenerator, RewardGenerato
 			updater.initialiseCSG();
 		transitionList = new TransitionList();
 		transitionListBuilt = false;
+		compileExpressions();
+	}
+	
+	/**
+	 * Compile the label and reward expressions of the (constant-free) modules file.
+	 * Both are compiled against the same constant values (used for any parts left to the interpreter),
+	 * so that any remaining constants are treated in the same way for labels and rewards.
+	 */
+	private void compileExpressions() throws PrismException
+	{
+		Values constantValues = modulesFile.getConstantValues();
+		int numLabels = labelList.size();
+		labelExprs = new CompiledExpression[numLabels];
+		for (int i = 0; i < numLabels; i++) {
+			labelExprs[i] = CompiledExpression.compile(labelList.getLabel(i), constantValues);
+		}
+		int numRewardStructs = modulesFile.getNumRewardStructs();
+		rewardGuards = new CompiledExpression[numRewardStructs][];
+		rewardExprs = new CompiledExpression[numRewardStructs][];
+		for (int r = 0; r < numRewardStructs; r++) {
+			RewardStruct rewStr = modulesFile.getRewardStruct(r);
+			int n = rewStr.getNumItems();
+			rewardGuards[r] = new CompiledExpression[n];
+			rewardExprs[r] = new CompiledExpression[n];
+			for (int i = 0; i < n; i++) {
+				rewardGuards[r][i] = CompiledExpression.compile(rewStr.getStates(i), constantValues);
+				rewardExprs[r][i] = CompiledExpression.compile(rewStr.getReward(i), constantValues);
+			}
+		}
 	}
 	
 	// Methods for ModelInfo interface
@@ -546,11 +605,17 @@ public class ModulesFileModelGenerator implements ModelGenerator, RewardGenerato
 		return getTransitionList().getChoice(index).computeTarget(offset, exploreState);
 	}
 
+	@Override
+	public void computeTransitionTarget(int index, int offset, State target) throws PrismException
+	{
+		target.copy(exploreState);
+		getTransitionList().getChoice(index).computeTarget(offset, exploreState, target);
+	}
+
 	@Override
 	public boolean isLabelTrue(int i) throws PrismException
 	{
-		Expression expr = labelList.getLabel(i);
-		return expr.evaluateBoolean(exploreState);
+		return labelExprs[i].evaluateBoolean(exploreState);
 	}
 	
 	@Override
@@ -596,9 +661,8 @@ public class ModulesFileModelGenerator implements ModelGenerator, RewardGenerato
 		double d = 0;
 		for (int i = 0; i < n; i++) {
 			if (!rewStr.getRewardStructItem(i).isTransitionReward()) {
-				Expression guard = rewStr.getStates(i);
-				if (guard.evaluateBoolean(modulesFile.getConstantValues(), state)) {
-					double rew = rewStr.getReward(i).evaluateDouble(modulesFile.getConstantValues(), state);
+				if (rewardGuards[r][i].evaluateBoolean(state)) {
+					double rew = rewardExprs[r][i].evaluateDouble(state);
 					// Check reward is finite/non-negative (would be checked at model construction time,
 					// but more fine grained error reporting can be done here)
 					// Note use of original model since modulesFile may have been simplified
@@ -622,17 +686,15 @@ public class ModulesFileModelGenerator implements ModelGenerator, RewardGenerato
 		double d = 0;
 		RewardStruct rewStr = modulesFile.getRewardStruct(r);
 		int n = rewStr.getNumItems();
-		Expression guard;
 
 		if (modelType != ModelType.CSG) {
 			String cmdAction;
 			for (int i = 0; i < n; i++) {
 				if (rewStr.getRewardStructItem(i).isTransitionReward()) {
-					guard = rewStr.getStates(i);
 					cmdAction = rewStr.getSynch(i);
 					if (action == null ? (cmdAction.isEmpty()) : action.equals(cmdAction)) {
-						if (guard.evaluateBoolean(modulesFile.getConstantValues(), state)) {
-							double rew = rewStr.getReward(i).evaluateDouble(modulesFile.getConstantValues(), state);
+						if (rewardGuards[r][i].evaluateBoolean(state)) {
+							double rew = rewardExprs[r][i].evaluateDouble(state);
 							// Check reward is finite/non-negative (would be checked at model construction time,
 							// but more fine grained error reporting can be done here)
 							// Note use of original model since modulesFile may have been simplified
@@ -659,7 +721,6 @@ public class ModulesFileModelGenerator implements ModelGenerator, RewardGenerato
 			}
 			for (int i = 0; i < n; i++) {
 				if (rewStr.getRewardStructItem(i).isTransitionReward()) {
-					guard = rewStr.getStates(i);
 					indexes.clear();
 					for (int j : rewStr.getRewardStructItem(i).getSynchIndices()) {
 						if (j != 0)
@@ -668,8 +729,8 @@ public class ModulesFileModelGenerator implements ModelGenerator, RewardGenerato
 					tmp = (BitSet) indexes.clone();
 					tmp.andNot(active);
 					if (indexes.isEmpty() || (!indexes.isEmpty() && tmp.isEmpty())) {
-						if (guard.evaluateBoolean(modulesFile.getConstantValues(), state)) {
-							double rew = rewStr.getReward(i).evaluateDouble(modulesFile.getConstantValues(), state);
+						if (rewardGuards[r][i].evaluateBoolean(state)) {
+							double rew = rewardExprs[r][i].evaluateDouble(state);
 							// Check reward is finite/non-negative (would be checked at model construction time,
 							// but more fine grained error reporting can be done here)
 							// Note use of original model since modulesFile may have been simplified
@@ -690,6 +751,16 @@ public class ModulesFileModelGenerator implements ModelGenerator, RewardGenerato
 		return d;
 	}
 
+	@Override
+	public ModelGenerator createCopy() throws PrismException
+	{
+		// Can only copy once initialised (i.e. all constants defined)
+		if (updater == null) {
+			return null;
+		}
+		return new ModulesFileModelGenerator(this);
+	}
+
 	// Local utility methods
 	
 	/**
@@ -36,7 +36,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import common.Parallel;
 import explicit.Distribution;
 import parser.State;
 import parser.Values;
@@ -57,6 +61,7 @@ import prism.PrismException;
 import prism.PrismFileLog;
 import prism.PrismLangException;
 import prism.PrismLog;
+import prism.PrismSettings;
 import prism.PrismNotSupportedException;
 import prism.PrismUtils;
 import prism.Result;
@@ -117,6 +122,9 @@ import userinterface.graph.Graph;
  */
 public class SimulatorEngine extends PrismComponent
 {
+	/** Number of paths generated by a worker (from one seed) at a time, during parallel sampling */
+	public static final int SAMPLING_BATCH_SIZE = 32;
+
 	// The current parsed model + info
 	private ModelGenerator modelGen;
 	private RewardGenerator rewardGen;
@@ -131,6 +139,9 @@ public class SimulatorEngine extends PrismComponent
 	protected List<Expression> labels;
 	private List<Expression> properties;
 	private List<Sampler> propertySamplers;
+	// For parallel sampling workers: samplers and lengths for each path of a batch
+	private List<List<Sampler>> batchSamplers;
+	private long[] batchPathLengths;
 
 	// Current path info
 	protected Path path;
@@ -147,9 +158,11 @@ public class SimulatorEngine extends PrismComponent
 	/** The probability with which a strategy picks each choice (optional) **/
 	private double strategyProbabilities[] = null;
 	
-	// Temporary storage for manipulating states/rewards
+	// Temporary storage for manipulating states/rewards/transitions
+	protected State tmpState;
 	protected double tmpStateRewards[];
 	protected double tmpTransitionRewards[];
+	protected Ref tmpRef;
 
 	// Random number generator
 	private RandomNumberGenerator rng;
@@ -196,8 +209,10 @@ public class SimulatorEngine extends PrismComponent
 		onTheFly = true;
 		currentState = null;
 		transitionListState = null;
+		tmpState = null;
 		tmpStateRewards = null;
 		tmpTransitionRewards = null;
+		tmpRef = new Ref();
 		rng = new RandomNumberGenerator();
 		strategy = null;
 	}
@@ -247,6 +262,7 @@ public class SimulatorEngine extends PrismComponent
 	{
 		// Create state/transition/rewards storage
 		currentState = new State(numVars);
+		tmpState = new State(numVars);
 		tmpStateRewards = new double[rewardGen.getNumRewardStructs()];
 		tmpTransitionRewards = new double[rewardGen.getNumRewardStructs()];
 
@@ -399,7 +415,7 @@ public class SimulatorEngine extends PrismComponent
 		case DTMC:
 			// Pick a random number to determine choice/transition
 			d = rng.randomUnifDouble();
-			ref = new Ref();
+			ref = tmpRef;
 			getChoiceIndexByProbabilitySum(d, ref);
 			// Execute
 			executeTransition(ref.i, ref.offset, -1);
@@ -437,7 +453,7 @@ public class SimulatorEngine extends PrismComponent
 			r = modelGen.getProbabilitySum();
 			// Pick a random number to determine choice/transition
 			d = rng.randomUnifDouble(r);
-			ref = new Ref();
+			ref = tmpRef;
 			getChoiceIndexByProbabilitySum(d, ref);
 			// Execute
 			executeTimedTransition(ref.i, ref.offset, rng.randomExpDouble(r), -1);
@@ -951,7 +967,8 @@ public class SimulatorEngine extends PrismComponent
 		// Compute its transition rewards
 		calculateTransitionRewards(path.getCurrentState(), action, tmpTransitionRewards);
 		// Compute next state
-		currentState.copy(modelGen.computeTransitionTarget(i, offset));
+		modelGen.computeTransitionTarget(i, offset, tmpState);
+		currentState.copy(tmpState);
 		// Compute observation for new state
 		State currentObs = modelGen.getObservation(currentState);
 		// Compute state rewards for new state
@@ -1000,7 +1017,8 @@ public class SimulatorEngine extends PrismComponent
 		// Compute its transition rewards
 		calculateTransitionRewards(path.getCurrentState(), action, tmpTransitionRewards);
 		// Compute next state
-		currentState.copy(modelGen.computeTransitionTarget(i, offset));
+		modelGen.computeTransitionTarget(i, offset, tmpState);
+		currentState.copy(tmpState);
 		// Compute observation for new state
 		State currentObs = modelGen.getObservation(currentState);
 		// Compute state rewards for new state
@@ -1953,26 +1971,18 @@ public class SimulatorEngine extends PrismComponent
 	 * Sample paths are from the specified initial state and maximum length.
 	 * Termination of the sampling process occurs when the SimulationMethod object
 	 * for all properties indicate that it is finished.
+	 * If more than one thread is configured (and the model generator can be copied),
+	 * paths are generated concurrently; see {@link #doSamplingParallel}.
 	 * @param initialState Initial state (if null, is selected randomly)
 	 * @param maxPathLength The maximum path length for sampling
 	 */
 	private void doSampling(State initialState, long maxPathLength) throws PrismException
 	{
-		int iters;
-		long i;
+		SamplingStats stats = new SamplingStats();
+		List<SimulatorEngine> workers;
 		// Flags
-		boolean stoppedEarly = false;
 		boolean deadlocksFound = false;
-		boolean allDone = false;
-		boolean allKnown = false;
-		boolean someUnknownButBounded = false;
 		boolean shouldStopSampling = false;
-		// Path stats
-		double avgPathLength = 0;
-		long minPathFound = 0, maxPathFound = 0;
-		// Progress info
-		int lastPercentageDone = 0;
-		int percentageDone = 0;
 		// Timing info
 		long start, stop;
 		double time_taken;
@@ -1983,90 +1993,26 @@ public class SimulatorEngine extends PrismComponent
 		mainLog.flush();
 
 		// Main sampling loop
-		iters = 0;
-		while (!shouldStopSampling) {
-
-			// See if all properties are done; if so, stop sampling
-			allDone = true;
-			for (Sampler sampler : propertySamplers) {
-				if (!sampler.getSimulationMethod().shouldStopNow(iters, sampler))
-					allDone = false;
-			}
-			if (allDone)
-				break;
-
-			// Display progress (of slowest property)
-			percentageDone = 100;
-			for (Sampler sampler : propertySamplers) {
-				percentageDone = Math.min(percentageDone, sampler.getSimulationMethod().getProgress(iters, sampler));
-			}
-			if (percentageDone > lastPercentageDone) {
-				lastPercentageDone = percentageDone;
-				mainLog.print(" " + lastPercentageDone + "%");
-				mainLog.flush();
-			}
-
-			iters++;
-
-			// Start the new path for this iteration (sample)
-			initialisePath(initialState);
-
-			// Generate a path
-			allKnown = false;
-			someUnknownButBounded = false;
-			i = 0;
-			while ((!allKnown && i < maxPathLength) || someUnknownButBounded) {
-				// Check status of samplers
-				allKnown = true;
-				someUnknownButBounded = false;
-				for (Sampler sampler : propertySamplers) {
-					if (!sampler.isCurrentValueKnown()) {
-						allKnown = false;
-						if (sampler.needsBoundedNumSteps())
-							someUnknownButBounded = true;
-					}
-				}
-				// Stop when all answers are known or we have reached max path length
-				// (but don't stop yet if there are "bounded" samplers with unkown values)
-				if ((allKnown || i >= maxPathLength) && !someUnknownButBounded)
-					break;
-				// Make a random transition
-				automaticTransition();
-				i++;
-			}
-
-			// TODO: Detect deadlocks so we can report a warning
-
-			// Update path length statistics
-			avgPathLength = (avgPathLength * (iters - 1) + (i)) / iters;
-			minPathFound = (iters == 1) ? i : Math.min(minPathFound, i);
-			maxPathFound = (iters == 1) ? i : Math.max(maxPathFound, i);
-
-			// If not all samplers could produce values, this an error
-			if (!allKnown) {
-				stoppedEarly = true;
-				break;
-			}
-
-			// Update state of samplers based on last path
-			for (Sampler sampler : propertySamplers) {
-				sampler.updateStats();
-			}
+		workers = createSamplingWorkers();
+		if (workers == null) {
+			doSamplingSequential(initialState, maxPathLength, stats);
+		} else {
+			doSamplingParallel(workers, initialState, maxPathLength, stats);
 		}
 
 		// Print details
-		if (!stoppedEarly) {
+		if (!stats.stoppedEarly) {
 			if (!shouldStopSampling)
 				mainLog.print(" 100% ]");
 			mainLog.println();
 			stop = System.currentTimeMillis();
 			time_taken = (stop - start) / 1000.0;
 			mainLog.print("\nSampling complete: ");
-			mainLog.print(iters + " iterations in " + time_taken + " seconds (average " + PrismUtils.formatDouble(2, time_taken / iters) + ")\n");
-			mainLog.print("Path length statistics: average " + PrismUtils.formatDouble(2, avgPathLength) + ", min " + minPathFound + ", max " + maxPathFound
-					+ "\n");
+			mainLog.print(stats.iters + " iterations in " + time_taken + " seconds (average " + PrismUtils.formatDouble(2, time_taken / stats.iters) + ")\n");
+			mainLog.print("Path length statistics: average " + PrismUtils.formatDouble(2, stats.avgPathLength) + ", min " + stats.minPathFound + ", max "
+					+ stats.maxPathFound + "\n");
 		} else {
-			mainLog.print(" ...\n\nSampling terminated early after " + iters + " iterations.\n");
+			mainLog.print(" ...\n\nSampling terminated early after " + stats.iters + " iterations.\n");
 		}
 
 		// Print a warning if deadlocks occurred at any point
@@ -2080,12 +2026,238 @@ public class SimulatorEngine extends PrismComponent
 		// write to feedback file with true to indicate that we have finished sampling
 		// Write_Feedback(iteration_counter, numIters, true);
 
-		if (stoppedEarly) {
+		if (stats.stoppedEarly) {
 			throw new PrismException(
 					"One or more of the properties being sampled could not be checked on a sample. Consider increasing the maximum path length");
 		}
 	}
 
+	/**
+	 * Execute sampling for the set of currently loaded properties, generating one path at a time.
+	 */
+	private void doSamplingSequential(State initialState, long maxPathLength, SamplingStats stats) throws PrismException
+	{
+		long i;
+
+		while (!stats.checkDone(propertySamplers)) {
+			// Generate a path for this iteration (sample)
+			i = generateSamplePath(initialState, maxPathLength);
+
+			// TODO: Detect deadlocks so we can report a warning
+
+			// If not all samplers could produce values, this an error
+			if (!stats.addPath(i))
+				break;
+
+			// Update state of samplers based on last path
+			for (Sampler sampler : propertySamplers) {
+				sampler.updateStats();
+			}
+		}
+	}
+
+	/**
+	 * Execute sampling for the set of currently loaded properties, generating paths
+	 * concurrently (see {@link #createSamplingWorkers}). Each worker has its own model
+	 * generator copy, random number generator and samplers.
+	 * <br>
+	 * Paths are generated in batches of {@link #SAMPLING_BATCH_SIZE}, numbered 0, 1, 2, ...
+	 * The paths of each batch are generated with a random number generator seeded
+	 * with the next value from that of this engine (in batch order), regardless of which worker
+	 * generates the batch. In each round, every worker generates one batch; the batches are then
+	 * merged into the samplers of this engine in batch (and path) order, one path at a time,
+	 * checking the stopping criteria after every path, exactly as in the sequential case.
+	 * So, the paths counted and the point at which sampling stops do not depend on scheduling
+	 * or on the number of workers; paths generated beyond the stopping point are discarded.
+	 */
+	private void doSamplingParallel(List<SimulatorEngine> workers, State initialState, long maxPathLength, SamplingStats stats) throws PrismException
+	{
+		int numWorkers = workers.size();
+		int[] seeds = new int[numWorkers];
+		List<Callable<Object>> tasks = new ArrayList<>(numWorkers);
+		for (int t = 0; t < numWorkers; t++) {
+			SimulatorEngine worker = workers.get(t);
+			int batch = t;
+			tasks.add(() -> {
+				worker.rng = new RandomNumberGenerator(seeds[batch]);
+				for (int j = 0; j < SAMPLING_BATCH_SIZE; j++) {
+					worker.propertySamplers = worker.batchSamplers.get(j);
+					worker.batchPathLengths[j] = worker.generateSamplePath(initialState, maxPathLength);
+				}
+				return null;
+			});
+		}
+
+		while (!stats.checkDone(propertySamplers)) {
+			// Generate the next round of batches
+			for (int t = 0; t < numWorkers; t++) {
+				seeds[t] = rng.randomUnifInt(Integer.MAX_VALUE);
+			}
+			try {
+				for (Future<Object> future : Parallel.getPool(numWorkers).invokeAll(tasks)) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new PrismException("Sampling was interrupted");
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof PrismException)
+					throw (PrismException) e.getCause();
+				throw new PrismException("Error during sampling: " + e.getCause());
+			}
+			// Merge them into the overall statistics, in order
+			for (SimulatorEngine worker : workers) {
+				for (int j = 0; j < SAMPLING_BATCH_SIZE; j++) {
+					// If not all samplers could produce values, this an error
+					if (!stats.addPath(worker.batchPathLengths[j]))
+						return;
+					List<Sampler> samplers = worker.batchSamplers.get(j);
+					for (int k = 0; k < propertySamplers.size(); k++) {
+						propertySamplers.get(k).updateStatsFrom(samplers.get(k));
+					}
+					if (stats.checkDone(propertySamplers))
+						return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the worker engines used for parallel sampling, one per thread,
+	 * each with its own copy of the model generator (and, for each path of a batch,
+	 * samplers built from it).
+	 * Returns null if sampling should be done sequentially, i.e. if only one thread
+	 * is configured, the current path is not on-the-fly, a strategy is loaded,
+	 * or the model generator does not support copying.
+	 */
+	private List<SimulatorEngine> createSamplingWorkers() throws PrismException
+	{
+		int numThreads = getSettings() == null ? 1 : getSettings().getInteger(PrismSettings.PRISM_NUM_THREADS);
+		if (numThreads <= 1 || !onTheFly || prism.getStrategy() != null)
+			return null;
+		List<SimulatorEngine> workers = new ArrayList<>(numThreads);
+		for (int t = 0; t < numThreads; t++) {
+			ModelGenerator workerModelGen = modelGen.createCopy();
+			if (workerModelGen == null)
+				return null;
+			// If the rewards come from the model generator, use its copy too
+			RewardGenerator workerRewardGen = (rewardGen == modelGen && workerModelGen instanceof RewardGenerator) ? (RewardGenerator) workerModelGen : rewardGen;
+			SimulatorEngine worker = new SimulatorEngine(this, prism);
+			worker.loadModel(workerModelGen, workerRewardGen);
+			worker.createNewOnTheFlyPath();
+			for (Expression prop : properties) {
+				worker.properties.add(prop.deepCopy());
+			}
+			worker.batchSamplers = new ArrayList<>(SAMPLING_BATCH_SIZE);
+			for (int j = 0; j < SAMPLING_BATCH_SIZE; j++) {
+				List<Sampler> samplers = new ArrayList<>(properties.size());
+				for (Expression prop : worker.properties) {
+					samplers.add(Sampler.createSampler(prop.deepCopy(), workerModelGen, workerRewardGen));
+				}
+				worker.batchSamplers.add(samplers);
+			}
+			worker.propertySamplers = worker.batchSamplers.get(0);
+			worker.batchPathLengths = new long[SAMPLING_BATCH_SIZE];
+			workers.add(worker);
+		}
+		return workers;
+	}
+
+	/**
+	 * Generate a single sample path from the specified initial state (or a random one if null),
+	 * stopping when the values of all samplers are known or the maximum path length is reached
+	 * (but not before "bounded" samplers with unknown values are resolved).
+	 * Returns the length of the path, or -1 if not all samplers could produce a value.
+	 */
+	private long generateSamplePath(State initialState, long maxPathLength) throws PrismException
+	{
+		boolean allKnown = false;
+		boolean someUnknownButBounded = false;
+		long i = 0;
+
+		// Start the new path
+		initialisePath(initialState);
+
+		// Generate a path
+		while ((!allKnown && i < maxPathLength) || someUnknownButBounded) {
+			// Check status of samplers
+			allKnown = true;
+			someUnknownButBounded = false;
+			for (Sampler sampler : propertySamplers) {
+				if (!sampler.isCurrentValueKnown()) {
+					allKnown = false;
+					if (sampler.needsBoundedNumSteps())
+						someUnknownButBounded = true;
+				}
+			}
+			// Stop when all answers are known or we have reached max path length
+			// (but don't stop yet if there are "bounded" samplers with unkown values)
+			if ((allKnown || i >= maxPathLength) && !someUnknownButBounded)
+				break;
+			// Make a random transition
+			automaticTransition();
+			i++;
+		}
+		return allKnown ? i : -1;
+	}
+
+	/**
+	 * Progress and path statistics for a run of {@link #doSampling}.
+	 */
+	private class SamplingStats
+	{
+		int iters = 0;
+		boolean stoppedEarly = false;
+		boolean finished = false;
+		// Path stats
+		double avgPathLength = 0;
+		long minPathFound = 0, maxPathFound = 0;
+		// Progress info
+		int lastPercentageDone = 0;
+
+		/**
+		 * Check whether all properties are done after the current number of iterations,
+		 * displaying progress (of slowest property) if not.
+		 */
+		boolean checkDone(List<Sampler> samplers)
+		{
+			boolean allDone = true;
+			for (Sampler sampler : samplers) {
+				if (!sampler.getSimulationMethod().shouldStopNow(iters, sampler))
+					allDone = false;
+			}
+			if (allDone)
+				return true;
+			int percentageDone = 100;
+			for (Sampler sampler : samplers) {
+				percentageDone = Math.min(percentageDone, sampler.getSimulationMethod().getProgress(iters, sampler));
+			}
+			if (percentageDone > lastPercentageDone) {
+				lastPercentageDone = percentageDone;
+				mainLog.print(" " + lastPercentageDone + "%");
+				mainLog.flush();
+			}
+			return false;
+		}
+
+		/**
+		 * Record a new sample path of length {@code i} (-1 if not all samplers produced a value).
+		 * Returns false (and marks sampling as stopped early) in the latter case.
+		 */
+		boolean addPath(long i)
+		{
+			iters++;
+			if (i < 0) {
+				stoppedEarly = true;
+				return false;
+			}
+			avgPathLength = (avgPathLength * (iters - 1) + (i)) / iters;
+			minPathFound = (iters == 1) ? i : Math.min(minPathFound, i);
+			maxPathFound = (iters == 1) ? i : Math.max(maxPathFound, i);
+			return true;
+		}
+	}
+
 	/**
 	 * Halt the sampling algorithm in its tracks (not implemented).
 	 */
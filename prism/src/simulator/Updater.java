@@ -29,13 +29,16 @@ package simulator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
+import parser.CompiledExpression;
 import parser.State;
 import parser.VarList;
 import parser.ast.Command;
@@ -92,12 +95,26 @@ public class Updater extends PrismComponent
 	
 	protected ArrayList<ArrayList<Set<BitSet>>> expansions;
 	
-	public Updater(ModulesFile modulesFile, VarList varList)
+	// Compiled versions of guards (for each module/command), probabilities (for each Updates)
+	// and update expressions (for each Update)
+	protected CompiledExpression guards[][];
+	protected Map<Updates, CompiledExpression[]> compiledProbs;
+	protected Map<Update, CompiledExpression[]> compiledUpdates;
+	// Updates (across all modules) that refer to primed (i.e. new) variable values
+	protected Set<Update> primedUpdates;
+	// Pool of Choice objects, reused each time transitions are calculated:
+	// the first choicePoolUsed are in use for the current state
+	protected List<ChoiceListFlexi> choicePool;
+	protected int choicePoolUsed;
+	// Temporary list of choices for synchronous transitions
+	protected List<ChoiceListFlexi> chs;
+	
+	public Updater(ModulesFile modulesFile, VarList varList) throws PrismLangException
 	{
 		this(modulesFile, varList, null);
 	}
 	
-	public Updater(ModulesFile modulesFile, VarList varList, PrismComponent parent)
+	public Updater(ModulesFile modulesFile, VarList varList, PrismComponent parent) throws PrismLangException
 	{
 		// Store some settings
 		doProbChecks = parent.getSettings().getBoolean(PrismSettings.PRISM_DO_PROB_CHECKS);
@@ -142,6 +159,37 @@ public class Updater extends PrismComponent
 			enabledModules[j] = new BitSet(numModules);
 		}
 		numPlayers = modulesFile.getNumPlayers();
+		// Compile guards, probabilities and updates,
+		// and find any updates that refer to primed variables
+		guards = new CompiledExpression[numModules][];
+		compiledProbs = new IdentityHashMap<Updates, CompiledExpression[]>();
+		compiledUpdates = new IdentityHashMap<Update, CompiledExpression[]>();
+		primedUpdates = Collections.newSetFromMap(new IdentityHashMap<Update, Boolean>());
+		for (int i = 0; i < numModules; i++) {
+			Module module = modulesFile.getModule(i);
+			guards[i] = new CompiledExpression[module.getNumCommands()];
+			for (int c = 0; c < module.getNumCommands(); c++) {
+				guards[i][c] = CompiledExpression.compile(module.getCommand(c).getGuard());
+				Updates ups = module.getCommand(c).getUpdates();
+				CompiledExpression probs[] = new CompiledExpression[ups.getNumUpdates()];
+				for (int u = 0; u < ups.getNumUpdates(); u++) {
+					if (ups.getProbability(u) != null)
+						probs[u] = CompiledExpression.compile(ups.getProbability(u));
+					Update up = ups.getUpdate(u);
+					CompiledExpression exprs[] = new CompiledExpression[up.getNumElements()];
+					for (int e = 0; e < up.getNumElements(); e++) {
+						exprs[e] = CompiledExpression.compile(up.getExpression(e));
+						if (!up.getExpression(e).getPrimedVars().isEmpty())
+							primedUpdates.add(up);
+					}
+					compiledUpdates.put(up, exprs);
+				}
+				compiledProbs.put(ups, probs);
+			}
+		}
+		choicePool = new ArrayList<ChoiceListFlexi>();
+		choicePoolUsed = 0;
+		chs = new ArrayList<ChoiceListFlexi>();
 	}
 
 	/**
@@ -229,11 +277,11 @@ public class Updater extends PrismComponent
 	 */
 	public void calculateTransitions(State state, TransitionList transitionList) throws PrismException
 	{
-		List<ChoiceListFlexi> chs;
 		int i, j, k, l, n, count;
 		
 		// Clear lists/bitsets
 		transitionList.clear();
+		choicePoolUsed = 0;
 		for (i = 0; i < numModules; i++) {
 			for (j = 0; j < numSynchs + 1; j++) {
 				updateLists.get(i).get(j).clear();
@@ -260,7 +308,6 @@ public class Updater extends PrismComponent
 		}
 		
 		// Add synchronous transitions to list
-		chs = new ArrayList<ChoiceListFlexi>();
 		for (i = enabledSynchs.nextSetBit(1); i >= 0; i = enabledSynchs.nextSetBit(i + 1)) {
 			chs.clear();
 			// Check counts to see if this action is blocked by some module
@@ -304,7 +351,9 @@ public class Updater extends PrismComponent
 						n = chs.size();
 						for (k = 0; k < count - 1; k++)
 							for (l = 0; l < n; l++) {
-								chs.add(new ChoiceListFlexi(chs.get(l)));
+								ChoiceListFlexi ch = newChoice();
+								ch.copyFrom(chs.get(l));
+								chs.add(ch);
 							}
 						// Products with existing choices
 						for (k = 0; k < count; k++) {
@@ -365,7 +414,7 @@ public class Updater extends PrismComponent
 				   										   + " from to player " + p
 				   										   + " has an unlabelled command");
 				}
-				else if (command.getGuard().evaluateBoolean(state)) {
+				else if (guards[m][i].evaluateBoolean(state)) {
 					if (e == -1) {
 						active.set(i);
 						e = i;
@@ -376,7 +425,7 @@ public class Updater extends PrismComponent
 				}
 			}
 			else {
-				if (command.getGuard().evaluateBoolean(state)) {
+				if (guards[m][i].evaluateBoolean(state)) {
 					indexes.clear();
 					for(int j : command.getSynchIndices()) {
 						indexes.set(j);
@@ -482,6 +531,7 @@ public class Updater extends PrismComponent
 		int cidx, i, id, j, m, n, nchs, p;
 		boolean[] msynch = new boolean[numModules];
 		transitionList.clear();				
+		choicePoolUsed = 0;
 		Arrays.fill(moves, null);
 		for (m = 0; m < numModules; m++) {
 			active[m] = new BitSet();
@@ -653,6 +703,22 @@ public class Updater extends PrismComponent
 		
 	// Private helpers
 	
+	/**
+	 * Get an empty Choice object from the pool (creating a new one if needed).
+	 * Choices from the pool are only valid until transitions are next calculated.
+	 */
+	private ChoiceListFlexi newChoice()
+	{
+		if (choicePoolUsed == choicePool.size()) {
+			ChoiceListFlexi ch = new ChoiceListFlexi();
+			ch.setCompiledUpdates(compiledUpdates);
+			choicePool.add(ch);
+		}
+		ChoiceListFlexi ch = choicePool.get(choicePoolUsed++);
+		ch.clear();
+		return ch;
+	}
+
 	/**
 	 * Determine the enabled updates for the 'm'th module from (global) state 'state'.
 	 * Update information in updateLists, enabledSynchs and enabledModules.
@@ -669,7 +735,7 @@ public class Updater extends PrismComponent
 		n = module.getNumCommands();
 		for (i = 0; i < n; i++) {
 			command = module.getCommand(i);
-			if (command.getGuard().evaluateBoolean(state)) {
+			if (guards[m][i].evaluateBoolean(state)) {
 				j = command.getSynchIndex();
 				updateLists.get(m).get(j).add(command.getUpdates());
 				enabledSynchs.set(j);
@@ -689,18 +755,19 @@ public class Updater extends PrismComponent
 	private ChoiceListFlexi processUpdatesAndCreateNewChoice(int moduleOrActionIndex, Updates ups, State state) throws PrismLangException
 	{
 		ChoiceListFlexi ch;
-		List<Update> list;
+		CompiledExpression probs[];
 		int i, n;
 		double p, sum;
 
 		// Create choice and add all info
-		ch = new ChoiceListFlexi();
+		ch = newChoice();
 		ch.setModuleOrActionIndex(moduleOrActionIndex);
 		n = ups.getNumUpdates();
+		probs = compiledProbs.get(ups);
 		sum = 0;
 		for (i = 0; i < n; i++) {
 			// Compute probability/rate
-			p = ups.getProbabilityInState(i, state);
+			p = (probs == null) ? ups.getProbabilityInState(i, state) : (probs[i] == null) ? 1.0 : probs[i].evaluateDouble(state);
 			// Check for non-finite/NaN probabilities/rates
 			if (!Double.isFinite(p) || p < 0) {
 				String s = modelType.choicesSumToOne() ? "Probability" : "Rate";
@@ -713,9 +780,9 @@ public class Updater extends PrismComponent
 			if (p == 0)
 				continue;
 			sum += p;
-			list = new ArrayList<Update>();
-			list.add(ups.getUpdate(i));
-			ch.add(p, list);
+			ch.add(p, ups.getUpdate(i));
+			if (!primedUpdates.isEmpty() && primedUpdates.contains(ups.getUpdate(i)))
+				ch.setPrimedUpdates(true);
 		}
 		// For now, PRISM treats empty (all zero probs/rates) distributions as an error.
 		// Later, when errors in symbolic model construction are improved, this might be relaxed.
@@ -93,6 +93,12 @@ public abstract class Sampler
 	 */
 	public abstract void updateStats();
 
+	/**
+	 * Update the statistics for the sampler, using the value of the (finished) current path
+	 * of another sampler {@code other} for the same property (e.g. one used by a parallel worker).
+	 */
+	public abstract void updateStatsFrom(Sampler other);
+
 	/**
 	 * Get the current value of the sampler.
 	 */
@@ -69,6 +69,13 @@ public abstract class SamplerBoolean extends Sampler
 			numTrue++;
 	}
 
+	@Override
+	public void updateStatsFrom(Sampler other)
+	{
+		value = ((SamplerBoolean) other).value;
+		updateStats();
+	}
+
 	@Override
 	public Object getCurrentValue()
 	{
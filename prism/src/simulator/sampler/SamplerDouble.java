@@ -90,6 +90,13 @@ public abstract class SamplerDouble extends Sampler
 		numSamples++;
 	}
 
+	@Override
+	public void updateStatsFrom(Sampler other)
+	{
+		value = ((SamplerDouble) other).value;
+		updateStats();
+	}
+
 	@Override
 	public Object getCurrentValue()
 	{
@@ -0,0 +1,343 @@
+//==============================================================================
+//
+//	Copyright (c) 2002-
+//
+//------------------------------------------------------------------------------
+//
+//	This file is part of PRISM.
+//
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+//==============================================================================
+
+package strat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import explicit.Distribution;
+
+/**
+ * Compact (immutable) storage for a function mapping a state and a fixed number of
+ * further integer keys (e.g. memory elements, moves, successor states) to a distribution
+ * over integers, as used by {@link StochasticUpdateStrategy}.
+ * <br>
+ * Each level of keys is stored CSR-style: the keys of the children of each node are
+ * stored contiguously (and sorted) in one array per level, with a separate array of start
+ * indices, and the distributions are stored as flat index/probability arrays.
+ * Each distribution is identified by the index of its last-level key ("entry").
+ */
+class DistributionTable
+{
+	/** Number of keys after the state */
+	private final int depth;
+	/** Number of states */
+	private final int numStates;
+	/** starts[k][i]: index into keys[k] of the first child of node i at level k-1 (level -1: states) */
+	private final int[][] starts;
+	/** keys[k][j]: key of node j at level k */
+	private final int[][] keys;
+	/** Indices into distIndex/distProb giving the start of the distribution for each entry */
+	private final int[] distStarts;
+	/** Support of the distributions */
+	private final int[] distIndex;
+	/** Probabilities of the distributions */
+	private final double[] distProb;
+
+	/**
+	 * Callback for {@link #forEach}.
+	 */
+	@FunctionalInterface
+	interface EntryVisitor
+	{
+		/** Visit the distribution {@code entry}, stored for state {@code s} and keys {@code keys} */
+		void visit(int s, int[] keys, int entry);
+	}
+
+	private DistributionTable(int depth, int numStates, int[][] starts, int[][] keys, int[] distStarts, int[] distIndex, double[] distProb)
+	{
+		this.depth = depth;
+		this.numStates = numStates;
+		this.starts = starts;
+		this.keys = keys;
+		this.distStarts = distStarts;
+		this.distIndex = distIndex;
+		this.distProb = distProb;
+	}
+
+	/**
+	 * Build from an array (indexed by state) of nested maps of depth {@code depth}, i.e.,
+	 * {@code Map<Integer, Distribution>} for depth 1, {@code Map<Integer, Map<Integer, Distribution>>}
+	 * for depth 2, etc. Null entries (at any level), or a null array, are treated as empty.
+	 */
+	static DistributionTable fromMaps(Map<Integer, ?>[] maps, int depth)
+	{
+		int numStates = (maps == null) ? 0 : maps.length;
+		Builder builder = new Builder(depth, numStates);
+		for (int s = 0; s < numStates; s++) {
+			builder.starts[0][s] = builder.numKeys[0];
+			if (maps[s] != null)
+				builder.addMap(maps[s], 0);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Builder, storing the arrays in growable form.
+	 */
+	private static class Builder
+	{
+		private int depth;
+		private int[][] starts;
+		private int[][] keys;
+		private int[] numKeys;
+		private int[] distStarts;
+		private int[] distIndex;
+		private double[] distProb;
+		private int numDistEntries;
+
+		Builder(int depth, int numStates)
+		{
+			this.depth = depth;
+			starts = new int[depth][];
+			keys = new int[depth][];
+			numKeys = new int[depth];
+			starts[0] = new int[numStates + 1];
+			for (int k = 0; k < depth; k++) {
+				keys[k] = new int[16];
+				if (k > 0)
+					starts[k] = new int[16];
+			}
+			distStarts = new int[16];
+			distIndex = new int[16];
+			distProb = new double[16];
+		}
+
+		@SuppressWarnings("unchecked")
+		void addMap(Map<Integer, ?> map, int level)
+		{
+			// add keys in ascending order
+			for (Map.Entry<Integer, ?> e : new TreeMap<Integer, Object>(map).entrySet()) {
+				int j = numKeys[level]++;
+				keys[level] = ensure(keys[level], j + 1);
+				keys[level][j] = e.getKey();
+				if (level < depth - 1) {
+					starts[level + 1] = ensure(starts[level + 1], j + 2);
+					starts[level + 1][j] = numKeys[level + 1];
+					if (e.getValue() != null)
+						addMap((Map<Integer, ?>) e.getValue(), level + 1);
+				} else {
+					distStarts = ensure(distStarts, j + 2);
+					distStarts[j] = numDistEntries;
+					if (e.getValue() != null) {
+						for (Map.Entry<Integer, Double> d : (Distribution) e.getValue()) {
+							if (numDistEntries == distIndex.length) {
+								distIndex = Arrays.copyOf(distIndex, 2 * numDistEntries);
+								distProb = Arrays.copyOf(distProb, 2 * numDistEntries);
+							}
+							distIndex[numDistEntries] = d.getKey();
+							distProb[numDistEntries] = d.getValue();
+							numDistEntries++;
+						}
+					}
+				}
+			}
+		}
+
+		DistributionTable build()
+		{
+			int[][] finalStarts = new int[depth][];
+			int[][] finalKeys = new int[depth][];
+			finalStarts[0] = starts[0];
+			finalStarts[0][starts[0].length - 1] = numKeys[0];
+			for (int k = 0; k < depth; k++) {
+				finalKeys[k] = Arrays.copyOf(keys[k], numKeys[k]);
+				if (k > 0) {
+					finalStarts[k] = Arrays.copyOf(starts[k], numKeys[k - 1] + 1);
+					finalStarts[k][numKeys[k - 1]] = numKeys[k];
+				}
+			}
+			int numEntries = numKeys[depth - 1];
+			int[] finalDistStarts = Arrays.copyOf(distStarts, numEntries + 1);
+			finalDistStarts[numEntries] = numDistEntries;
+			return new DistributionTable(depth, starts[0].length - 1, finalStarts, finalKeys, finalDistStarts,
+					Arrays.copyOf(distIndex, numDistEntries), Arrays.copyOf(distProb, numDistEntries));
+		}
+
+		private static int[] ensure(int[] arr, int size)
+		{
+			return size <= arr.length ? arr : Arrays.copyOf(arr, Math.max(size, 2 * arr.length));
+		}
+	}
+
+	// Accessors
+
+	int getNumStates()
+	{
+		return numStates;
+	}
+
+	/**
+	 * Does state {@code s} have any entries?
+	 */
+	boolean hasState(int s)
+	{
+		return s >= 0 && s < numStates && starts[0][s] < starts[0][s + 1];
+	}
+
+	/**
+	 * Get the entry for state {@code s} and keys {@code ks} (of length depth), or -1 if none.
+	 */
+	int find(int s, int... ks)
+	{
+		if (s < 0 || s >= numStates)
+			return -1;
+		int node = s;
+		for (int k = 0; k < depth; k++) {
+			int j = Arrays.binarySearch(keys[k], starts[k][node], starts[k][node + 1], ks[k]);
+			if (j < 0)
+				return -1;
+			node = j;
+		}
+		return node;
+	}
+
+	/**
+	 * Get the distribution for state {@code s} and keys {@code ks} (of length depth), or null if none.
+	 */
+	Distribution get(int s, int... ks)
+	{
+		int entry = find(s, ks);
+		return entry < 0 ? null : getDistribution(entry);
+	}
+
+	/**
+	 * Get (a new copy of) the distribution stored for entry {@code entry}.
+	 */
+	Distribution getDistribution(int entry)
+	{
+		Distribution d = new Distribution();
+		for (int i = distStarts[entry]; i < distStarts[entry + 1]; i++)
+			d.add(distIndex[i], distProb[i]);
+		return d;
+	}
+
+	/**
+	 * Get the index into {@link #getDistIndex}/{@link #getDistProb} of the start of the distribution for entry {@code entry}.
+	 */
+	int getDistStart(int entry)
+	{
+		return distStarts[entry];
+	}
+
+	/**
+	 * Get the index into {@link #getDistIndex}/{@link #getDistProb} of the end of the distribution for entry {@code entry}.
+	 */
+	int getDistEnd(int entry)
+	{
+		return distStarts[entry + 1];
+	}
+
+	int getDistIndex(int i)
+	{
+		return distIndex[i];
+	}
+
+	double getDistProb(int i)
+	{
+		return distProb[i];
+	}
+
+	/**
+	 * Visit all entries, in order of state and then keys.
+	 */
+	void forEach(EntryVisitor visitor)
+	{
+		int[] ks = new int[depth];
+		for (int s = 0; s < numStates; s++)
+			forEach(visitor, s, s, 0, ks);
+	}
+
+	private void forEach(EntryVisitor visitor, int s, int node, int level, int[] ks)
+	{
+		for (int j = starts[level][node]; j < starts[level][node + 1]; j++) {
+			ks[level] = keys[level][j];
+			if (level < depth - 1)
+				forEach(visitor, s, j, level + 1, ks);
+			else
+				visitor.visit(s, ks, j);
+		}
+	}
+
+	// Binary I/O
+
+	/**
+	 * Write in binary form to {@code out}.
+	 */
+	void write(DataOutputStream out) throws IOException
+	{
+		out.writeInt(depth);
+		out.writeInt(numStates);
+		for (int k = 0; k < depth; k++) {
+			writeInts(out, starts[k]);
+			writeInts(out, keys[k]);
+		}
+		writeInts(out, distStarts);
+		writeInts(out, distIndex);
+		out.writeInt(distProb.length);
+		for (double p : distProb)
+			out.writeDouble(p);
+	}
+
+	/**
+	 * Read in binary form, as written by {@link #write}, from {@code in}.
+	 */
+	static DistributionTable read(DataInputStream in) throws IOException
+	{
+		int depth = in.readInt();
+		int numStates = in.readInt();
+		int[][] starts = new int[depth][];
+		int[][] keys = new int[depth][];
+		for (int k = 0; k < depth; k++) {
+			starts[k] = readInts(in);
+			keys[k] = readInts(in);
+		}
+		int[] distStarts = readInts(in);
+		int[] distIndex = readInts(in);
+		double[] distProb = new double[in.readInt()];
+		for (int i = 0; i < distProb.length; i++)
+			distProb[i] = in.readDouble();
+		return new DistributionTable(depth, numStates, starts, keys, distStarts, distIndex, distProb);
+	}
+
+	private static void writeInts(DataOutputStream out, int[] arr) throws IOException
+	{
+		out.writeInt(arr.length);
+		for (int i : arr)
+			out.writeInt(i);
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException
+	{
+		int[] arr = new int[in.readInt()];
+		for (int i = 0; i < arr.length; i++)
+			arr[i] = in.readInt();
+		return arr;
+	}
+}
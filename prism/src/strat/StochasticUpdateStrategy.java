@@ -26,12 +26,17 @@
 
 package strat;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.text.NumberFormat;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
@@ -60,6 +65,7 @@ import org.apache.commons.math3.optim.linear.UnboundedSolutionException;
 import org.apache.commons.math3.optim.nonlinear.scalar.GoalType;
 
 import explicit.Distribution;
+import explicit.MDPSparse;
 import explicit.Model;
 import explicit.PPLSupport;
 import explicit.Pareto;
@@ -70,6 +76,7 @@ import parma_polyhedra_library.Generator_System;
 import parma_polyhedra_library.Generator_Type;
 import parma_polyhedra_library.Linear_Expression;
 import parma_polyhedra_library.Variable;
+import parser.State;
 import prism.Prism.StrategyExportType;
 import prism.PrismException;
 import prism.PrismLangException;
@@ -78,6 +85,9 @@ import prism.PrismUtils;
 
 public class StochasticUpdateStrategy implements Strategy
 {
+	/** Filename extension for which {@link #exportToFile} uses the binary format */
+	public static final String BINARY_EXTENSION = ".bin";
+
 	// turn on for specific debugging
         private boolean log_problem = false;
         // logging for user
@@ -125,6 +135,16 @@ public class StochasticUpdateStrategy implements Strategy
 	 **/
 	protected Map<Integer, Distribution>[] pi_n; // pi_n(t, p) = u
 
+	/**
+	 * Compact versions of pi_n (NEXT), pi_t (MEMUPDSTATES) and pi_u (MEMUPDMOVES),
+	 * indexed in the same way. The maps above are only used while the strategy is
+	 * being constructed; once it is complete, they are converted (see {@link #compact()})
+	 * and discarded, and all queries go via these tables.
+	 */
+	protected DistributionTable nextTable;
+	protected DistributionTable memUpdStatesTable;
+	protected DistributionTable memUpdMovesTable;
+
 	// memory size
 	protected int memorySize = -1;
 
@@ -150,15 +170,16 @@ public class StochasticUpdateStrategy implements Strategy
 	{
 	        if (log_problem) {
 			System.out.printf("getting next move: %d (last_state=%d, last_corner=%d)\n", state, lastState, lastCorner);
-			System.out.printf("pi_n[state]: %s\n", pi_n[state].toString());
+			if (nextTable.hasState(state))
+				System.out.printf("next move (corner %d): %s\n", lastCorner, nextTable.get(state, lastCorner));
 		}
 
 		if (state != lastState)
 			throw new InvalidStrategyStateException(String.format("Strategy thinks game is at %d, but you ask to proceed from %d", lastState, state));
 
-		if(pi_n.length <= state || pi_n[state] == null)
-		    throw new InvalidStrategyStateException(String.format("No choice for state %i specified", state));
-		Distribution result = pi_n[state].get(lastCorner);
+		if (!nextTable.hasState(state))
+		    throw new InvalidStrategyStateException(String.format("No choice for state %d specified", state));
+		Distribution result = nextTable.get(state, lastCorner);
 		return result == null ? new Distribution() : result;
 	}
 
@@ -168,23 +189,18 @@ public class StochasticUpdateStrategy implements Strategy
 		if (log_problem)
 			System.out.printf("update mem: current state: %d, current mem: %d, action: %d, next state: %d\n", lastState, lastCorner, action, state);
 		try {
-		        if(pi_t.length <= lastState
-			   || pi_t[lastState] == null
-			   || pi_t[lastState].get(lastCorner) == null
-			   || pi_t[lastState].get(lastCorner).get(action) == null)
+			Distribution state_to_action = memUpdStatesTable.get(lastState, lastCorner, action);
+			if (state_to_action == null)
 			    throw new InvalidStrategyStateException("Cannot proceed to states not selected by the strategy. No stochastic memory update present");
 
 			// first go to stochastic state, according to the action
-			int tempCorner = pi_t[lastState].get(lastCorner).get(action).sampleFromDistribution();
-		        if(pi_u.length <= lastState
-			   || pi_u[lastState] == null
-			   || pi_u[lastState].get(action) == null
-			   || pi_u[lastState].get(action).get(tempCorner) == null
-			   || pi_u[lastState].get(action).get(tempCorner).get(state) == null)
+			int tempCorner = state_to_action.sampleFromDistribution();
+			Distribution action_to_state = memUpdMovesTable.get(lastState, action, tempCorner, state);
+			if (action_to_state == null)
 			    throw new InvalidStrategyStateException("Cannot proceed to states not selected by the strategy. No stochastic memory update present");
 
 			// then go to the next state
-			lastCorner = pi_u[lastState].get(action).get(tempCorner).get(state).sampleFromDistribution();
+			lastCorner = action_to_state.sampleFromDistribution();
 			// finally, update the next state
 			lastState = state;
 
@@ -195,31 +211,23 @@ public class StochasticUpdateStrategy implements Strategy
 
 	public Distribution memoryUpdate(int action, int state) throws InvalidStrategyStateException
 	{
-	        if(pi_t.length <= lastState
-		   || pi_t[lastState] == null
-		   || pi_t[lastState].get(lastCorner) == null
-		   || pi_t[lastState].get(lastCorner).get(action) == null)
+		int e_t = memUpdStatesTable.find(lastState, lastCorner, action);
+		if (e_t < 0)
 		    throw new InvalidStrategyStateException("Cannot proceed to states not selected by the strategy. No stochastic memory update present");
 
 		// first go to stochastic state, according to the action
 		Distribution result = new Distribution();
-		Distribution state_to_action = pi_t[lastState].get(lastCorner).get(action);
-		for (Integer tempCorner : state_to_action.getSupport()) { // for each corner at the stochastic state
-			double p_tC = state_to_action.get(tempCorner); // probability to go to tempCorner
-
-			if(pi_u.length <= lastState
-			   || pi_u[lastState] == null
-			   || pi_u[lastState].get(action) == null
-			   || pi_u[lastState].get(action).get(tempCorner) == null
-			   || pi_u[lastState].get(action).get(tempCorner).get(state) == null)
+		for (int i = memUpdStatesTable.getDistStart(e_t); i < memUpdStatesTable.getDistEnd(e_t); i++) { // for each corner at the stochastic state
+			int tempCorner = memUpdStatesTable.getDistIndex(i);
+			double p_tC = memUpdStatesTable.getDistProb(i); // probability to go to tempCorner
+
+			int e_u = memUpdMovesTable.find(lastState, action, tempCorner, state);
+			if (e_u < 0)
 			    throw new InvalidStrategyStateException("Cannot proceed to states not selected by the strategy. No stochastic memory update present");
 
-			Distribution action_to_state = pi_u[lastState].get(action).get(tempCorner).get(state);
-			if (action_to_state != null) {
-				for (Integer nextCorner : action_to_state.getSupport()) { // for each corner at the next state
-					double p_nC = action_to_state.get(nextCorner); // probability to go to nextCorner
-					result.add(nextCorner, p_tC * p_nC);
-				}
+			for (int j = memUpdMovesTable.getDistStart(e_u); j < memUpdMovesTable.getDistEnd(e_u); j++) { // for each corner at the next state
+				double p_nC = memUpdMovesTable.getDistProb(j); // probability to go to nextCorner
+				result.add(memUpdMovesTable.getDistIndex(j), p_tC * p_nC);
 			}
 		}
 		return result;
@@ -264,6 +272,7 @@ public class StochasticUpdateStrategy implements Strategy
 	public StochasticUpdateStrategy(Scanner scan)
 	{
 		int states = 0;
+		int[] ints = new int[4];
 		info = ""; // clear startegy info
 		String nextLine;
 		nextLine = scan.nextLine();
@@ -309,13 +318,13 @@ public class StochasticUpdateStrategy implements Strategy
 						nextLine = scan.nextLine();
 						continue inner; // ignore comments
 					}
-					Scanner local = new Scanner(nextLine);
-					int s = local.nextInt(); // state
+					int pos = parseInts(nextLine, ints, 2);
+					int s = ints[0]; // state
 					if (pi_n[s] == null) {
 						pi_n[s] = new HashMap<Integer, Distribution>();
 					}
-					int p = local.nextInt(); // corner
-					Distribution d = parseDistribution(local.nextLine()); // distribution
+					int p = ints[1]; // corner
+					Distribution d = parseDistribution(nextLine.substring(pos)); // distribution
 					pi_n[s].put(p, d);
 					nextLine = scan.nextLine();
 				}
@@ -326,17 +335,17 @@ public class StochasticUpdateStrategy implements Strategy
 						nextLine = scan.nextLine();
 						continue inner; // ignore comments
 					}
-					Scanner local = new Scanner(nextLine);
-					int s = local.nextInt(); // state
+					int pos = parseInts(nextLine, ints, 3);
+					int s = ints[0]; // state
 					if (pi_t[s] == null) {
 						pi_t[s] = new HashMap<Integer, Map<Integer, Distribution>>();
 					}
-					int p = local.nextInt(); // corner
+					int p = ints[1]; // corner
 					if (!pi_t[s].containsKey(p)) {
 						pi_t[s].put(p, new HashMap<Integer, Distribution>());
 					}
-					int u = local.nextInt(); // next state
-					Distribution d = parseDistribution(local.nextLine()); // distribution
+					int u = ints[2]; // next state
+					Distribution d = parseDistribution(nextLine.substring(pos)); // distribution
 					pi_t[s].get(p).put(u, d);
 					nextLine = scan.nextLine();
 				}
@@ -347,21 +356,21 @@ public class StochasticUpdateStrategy implements Strategy
 						nextLine = scan.nextLine();
 						continue inner; // ignore comments
 					}
-					Scanner local = new Scanner(nextLine);
-					int s = local.nextInt(); // state
+					int pos = parseInts(nextLine, ints, 4);
+					int s = ints[0]; // state
 					if (pi_u[s] == null) {
 						pi_u[s] = new HashMap<Integer, Map<Integer, Map<Integer, Distribution>>>();
 					}
-					int u = local.nextInt(); // move
+					int u = ints[1]; // move
 					if (!pi_u[s].containsKey(u)) {
 						pi_u[s].put(u, new HashMap<Integer, Map<Integer, Distribution>>());
 					}
-					int q = local.nextInt(); // corner at move
+					int q = ints[2]; // corner at move
 					if (!pi_u[s].get(u).containsKey(q)) {
 						pi_u[s].get(u).put(q, new HashMap<Integer, Distribution>());
 					}
-					int w = local.nextInt(); // next state
-					Distribution d = parseDistribution(local.nextLine()); // distribution
+					int w = ints[3]; // next state
+					Distribution d = parseDistribution(nextLine.substring(pos)); // distribution
 					pi_u[s].get(u).get(q).put(w, d);
 					nextLine = scan.nextLine();
 				}
@@ -385,18 +394,71 @@ public class StochasticUpdateStrategy implements Strategy
 				nextLine = scan.nextLine();
 			}
 		}
+		compact();
+	}
+
+	/**
+	 * Parse the first {@code n} (whitespace-separated) integers in {@code line} into {@code ints},
+	 * and return the position in {@code line} just after the last of them.
+	 */
+	private static int parseInts(String line, int[] ints, int n)
+	{
+		int pos = 0, len = line.length();
+		for (int k = 0; k < n; k++) {
+			while (pos < len && Character.isWhitespace(line.charAt(pos)))
+				pos++;
+			int start = pos;
+			while (pos < len && !Character.isWhitespace(line.charAt(pos)))
+				pos++;
+			ints[k] = Integer.parseInt(line.substring(start, pos));
+		}
+		return pos;
+	}
+
+	// construct strategy from binary file (as written by exportToBinaryFile), after the header line
+	public StochasticUpdateStrategy(DataInputStream in) throws IOException
+	{
+		initial_state = in.readInt();
+		memorySize = in.readInt();
+		varepsilon = in.readDouble();
+		alpha = new Distribution();
+		int alphaSize = in.readInt();
+		for (int i = 0; i < alphaSize; i++)
+			alpha.add(in.readInt(), in.readDouble());
+		nextTable = DistributionTable.read(in);
+		memUpdStatesTable = DistributionTable.read(in);
+		memUpdMovesTable = DistributionTable.read(in);
+		info = in.readUTF();
+	}
+
+	/**
+	 * Convert the (construction-time) maps pi_n, pi_t and pi_u to compact tables, and discard them.
+	 */
+	private void compact()
+	{
+		// (if nothing was parsed, the maps are null and the tables are empty)
+		nextTable = DistributionTable.fromMaps(pi_n, 1);
+		memUpdStatesTable = DistributionTable.fromMaps(pi_t, 2);
+		memUpdMovesTable = DistributionTable.fromMaps(pi_u, 3);
+		pi_n = null;
+		pi_t = null;
+		pi_u = null;
 	}
 
 	@Override
-	public void exportToFile(String filename)
+	public void exportToFile(String filename) throws PrismException
 	{
+		if (filename.endsWith(BINARY_EXTENSION)) {
+			exportToBinaryFile(filename);
+			return;
+		}
 		FileWriter out = null;
 		try {
 			out = new FileWriter(filename);
 			out.write(this.toString());
 			out.flush();
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new PrismException("Could not export strategy to file \"" + filename + "\": " + e.getMessage());
 		} finally {
 			if (out != null)
 				try {
@@ -406,6 +468,31 @@ public class StochasticUpdateStrategy implements Strategy
 		}
 	}
 
+	/**
+	 * Export the strategy in binary form (which can be read back by {@link Strategies#loadStrategyFromFile}).
+	 * This is used by {@link #exportToFile} for filenames ending in {@link #BINARY_EXTENSION}.
+	 */
+	public void exportToBinaryFile(String filename) throws PrismException
+	{
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+			out.write((Strategies.FORMAT_STRING_SU_STRAT_BIN + "\n").getBytes(StandardCharsets.US_ASCII));
+			out.writeInt(initial_state);
+			out.writeInt(memorySize);
+			out.writeDouble(varepsilon);
+			out.writeInt(alpha.size());
+			for (Entry<Integer, Double> e : alpha) {
+				out.writeInt(e.getKey());
+				out.writeDouble(e.getValue());
+			}
+			nextTable.write(out);
+			memUpdStatesTable.write(out);
+			memUpdMovesTable.write(out);
+			out.writeUTF(info);
+		} catch (IOException e) {
+			throw new PrismException("Could not export strategy to file \"" + filename + "\": " + e.getMessage());
+		}
+	}
+
 	@Override
 	public String toString()
 	{
@@ -418,7 +505,7 @@ public class StochasticUpdateStrategy implements Strategy
 		out.print("// Stochastic Memory Update Strategy\n");
 		out.print("start strategy\n");
 		out.print("States:\n");
-		out.print(String.format("%d\n", pi_n.length));
+		out.print(String.format("%d\n", nextTable.getNumStates()));
 		out.print("// Initial state\n");
 		out.print("InitState:\n");
 		out.print(String.format("%d\n", initial_state));
@@ -435,13 +522,7 @@ public class StochasticUpdateStrategy implements Strategy
 		out.print("Next:\n");
 		out.print("// first index: current state\n");
 		out.print("// second index: current corner\n");
-		for (int s = 0; s < pi_n.length; s++) { // go through states
-			if (pi_n[s] != null) {
-				for (Integer p : pi_n[s].keySet()) { // go through corners
-					out.print(String.format("%d %d %s\n", s, p, pi_n[s].get(p)));
-				}
-			}
-		}
+		nextTable.forEach((s, ks, e) -> out.print(String.format("%d %d %s\n", s, ks[0], nextTable.getDistribution(e))));
 
 		// memory update function: player states
 		out.print("// memory update function: player states\n");
@@ -449,17 +530,7 @@ public class StochasticUpdateStrategy implements Strategy
 		out.print("// first index: current state\n");
 		out.print("// second index: current corner\n");
 		out.print("// third index: next move\n");
-		for (int s = 0; s < pi_t.length; s++) { // go through states
-			if (pi_t[s] != null) {
-				for (Integer p : pi_t[s].keySet()) { // go through current corner
-					if (pi_t[s].get(p) != null) {
-						for (Integer u : pi_t[s].get(p).keySet()) { // go through next state
-							out.print(String.format("%d %d %d %s\n", s, p, u, pi_t[s].get(p).get(u)));
-						}
-					}
-				}
-			}
-		}
+		memUpdStatesTable.forEach((s, ks, e) -> out.print(String.format("%d %d %d %s\n", s, ks[0], ks[1], memUpdStatesTable.getDistribution(e))));
 
 		// memory update function: moves
 		out.print("// memory update function: moves\n");
@@ -468,21 +539,7 @@ public class StochasticUpdateStrategy implements Strategy
 		out.print("// second index: current move\n");
 		out.print("// third index: curent corner (at move)\n");
 		out.print("// fourth index: next state\n");
-		for (int s = 0; s < pi_u.length; s++) { // go through states
-			if (pi_u[s] != null) {
-				for (Integer u : pi_u[s].keySet()) { // go through moves
-					if (pi_u[s].get(u) != null) {
-						for (Integer q : pi_u[s].get(u).keySet()) { // go through corners at move
-							if (pi_u[s].get(u).get(q) != null) {
-								for (Integer w : pi_u[s].get(u).get(q).keySet()) { // go through next state
-									out.print(String.format("%d %d %d %d %s\n", s, u, q, w, pi_u[s].get(u).get(q).get(w)));
-								}
-							}
-						}
-					}
-				}
-			}
-		}
+		memUpdMovesTable.forEach((s, ks, e) -> out.print(String.format("%d %d %d %d %s\n", s, ks[0], ks[1], ks[2], memUpdMovesTable.getDistribution(e))));
 
 		// strategy info
 		out.print("Info:\n");
@@ -496,14 +553,177 @@ public class StochasticUpdateStrategy implements Strategy
 		return stream.toString();
 	}
 
-	// Note that stochastic memory update doesn't work with product!
+	/**
+	 * Build the product of the SMG {@code model} and this strategy: the MDP in which the choices
+	 * of player 1 are resolved by the strategy, and only those of player 2 remain.
+	 * Its states are the pairs (t, p) of a game state and a memory element (corner) which are
+	 * reachable under the strategy, preceded by an extra initial state (index 0)
+	 * whose single choice picks the initial memory element according to alpha.
+	 * The product is explored breadth-first, writing the transitions directly into the sparse
+	 * arrays of an {@link MDPSparse}, without building any intermediate model.
+	 */
 	@Override
 	public Model buildProduct(Model model) throws PrismException
 	{
 		if (!model.getClass().equals(SMG.class)) {
 			throw new PrismLangException("Unsupported model type");
 		}
-		throw new PrismLangException("Product with model not supported for stochastic memory update strategy.");
+		SMG smg = (SMG) model;
+		ProductBuilder product = new ProductBuilder();
+
+		// extra initial state
+		product.addState(-1, -1);
+		Distribution d = new Distribution();
+		for (Entry<Integer, Double> e : alpha)
+			d.add(product.getIndex(initial_state, e.getKey()), e.getValue());
+		product.addChoice(d, null);
+		product.finishState(0);
+
+		// explore (states are added to the end of the queue as they are discovered)
+		for (int i = 1; i < product.numStates; i++) {
+			int t = product.stateT[i];
+			int p = product.stateP[i];
+			if (smg.getPlayer(t) == 1) {
+				// player 1: a single choice, combining the moves picked by the strategy
+				d = new Distribution();
+				int e_n = nextTable.find(t, p);
+				if (e_n >= 0) {
+					for (int j = nextTable.getDistStart(e_n); j < nextTable.getDistEnd(e_n); j++)
+						addProductMove(smg, product, d, t, p, nextTable.getDistIndex(j), nextTable.getDistProb(j));
+				}
+				if (!d.isEmpty())
+					product.addChoice(d, null);
+			} else {
+				// player 2: one choice for each move
+				for (int u = 0; u < smg.getNumChoices(t); u++) {
+					d = new Distribution();
+					addProductMove(smg, product, d, t, p, u, 1.0);
+					if (!d.isEmpty())
+						product.addChoice(d, smg.getAction(t, u));
+				}
+			}
+			product.finishState(i);
+		}
+
+		MDPSparse mdp = product.build();
+		mdp.addInitialState(0);
+		for (int dl : product.deadlocks)
+			mdp.addDeadlockState(dl);
+		// states list: game state plus memory element
+		if (smg.getStatesList() != null && smg.getStatesList().size() == smg.getNumStates()) {
+			List<State> statesList = new ArrayList<State>(product.numStates);
+			for (int i = 0; i < product.numStates; i++) {
+				State mem = new State(1);
+				mem.setValue(0, product.stateP[i]);
+				statesList.add(new State(smg.getStatesList().get(i == 0 ? initial_state : product.stateT[i]), mem));
+			}
+			mdp.setStatesList(statesList);
+		}
+		return mdp;
+	}
+
+	/**
+	 * Add to {@code d} the transitions of the product for taking move {@code u}
+	 * (with probability {@code prob}) from product state (t, p).
+	 */
+	private void addProductMove(SMG smg, ProductBuilder product, Distribution d, int t, int p, int u, double prob)
+	{
+		int e_t = memUpdStatesTable.find(t, p, u);
+		if (e_t < 0)
+			return;
+		for (int j = memUpdStatesTable.getDistStart(e_t); j < memUpdStatesTable.getDistEnd(e_t); j++) {
+			int q = memUpdStatesTable.getDistIndex(j);
+			double p_q = prob * memUpdStatesTable.getDistProb(j);
+			for (Entry<Integer, Double> e : smg.getChoice(t, u)) {
+				int w = e.getKey();
+				int e_u = memUpdMovesTable.find(t, u, q, w);
+				if (e_u < 0)
+					continue;
+				double p_w = p_q * e.getValue();
+				for (int k = memUpdMovesTable.getDistStart(e_u); k < memUpdMovesTable.getDistEnd(e_u); k++)
+					d.add(product.getIndex(w, memUpdMovesTable.getDistIndex(k)), p_w * memUpdMovesTable.getDistProb(k));
+			}
+		}
+	}
+
+	/**
+	 * Growable arrays for the states and sparse transition matrix of the product MDP.
+	 */
+	private static class ProductBuilder
+	{
+		private Map<Long, Integer> index = new HashMap<Long, Integer>();
+		private int numStates = 0;
+		private int[] stateT = new int[16];
+		private int[] stateP = new int[16];
+		private int numChoices = 0;
+		private int numTransitions = 0;
+		private int[] rowStarts = new int[17];
+		private int[] choiceStarts = new int[17];
+		private int[] cols = new int[16];
+		private double[] nonZeros = new double[16];
+		private Object[] actions = new Object[16];
+		private List<Integer> deadlocks = new ArrayList<Integer>();
+
+		/** Get the index of product state (t, p), adding it if new */
+		int getIndex(int t, int p)
+		{
+			Integer i = index.get(((long) t << 32) | (p & 0xffffffffL));
+			return i != null ? i : addState(t, p);
+		}
+
+		int addState(int t, int p)
+		{
+			if (numStates == stateT.length) {
+				stateT = Arrays.copyOf(stateT, 2 * numStates);
+				stateP = Arrays.copyOf(stateP, 2 * numStates);
+			}
+			stateT[numStates] = t;
+			stateP[numStates] = p;
+			index.put(((long) t << 32) | (p & 0xffffffffL), numStates);
+			return numStates++;
+		}
+
+		void addChoice(Distribution d, Object action)
+		{
+			if (numChoices + 1 == choiceStarts.length) {
+				choiceStarts = Arrays.copyOf(choiceStarts, 2 * choiceStarts.length);
+				actions = Arrays.copyOf(actions, 2 * actions.length);
+			}
+			choiceStarts[numChoices] = numTransitions;
+			actions[numChoices] = action;
+			numChoices++;
+			for (Entry<Integer, Double> e : d) {
+				if (numTransitions == cols.length) {
+					cols = Arrays.copyOf(cols, 2 * numTransitions);
+					nonZeros = Arrays.copyOf(nonZeros, 2 * numTransitions);
+				}
+				cols[numTransitions] = e.getKey();
+				nonZeros[numTransitions] = e.getValue();
+				numTransitions++;
+			}
+		}
+
+		/** Finish the choices of state i (which must be the state after the last finished one) */
+		void finishState(int i)
+		{
+			if (rowStarts[i] == numChoices) {
+				// deadlock: add self-loop
+				Distribution loop = new Distribution();
+				loop.add(i, 1.0);
+				addChoice(loop, null);
+				deadlocks.add(i);
+			}
+			if (i + 2 > rowStarts.length)
+				rowStarts = Arrays.copyOf(rowStarts, 2 * rowStarts.length);
+			rowStarts[i + 1] = numChoices;
+		}
+
+		MDPSparse build()
+		{
+			choiceStarts[numChoices] = numTransitions;
+			return new MDPSparse(numStates, Arrays.copyOf(rowStarts, numStates + 1), Arrays.copyOf(choiceStarts, numChoices + 1),
+					Arrays.copyOf(cols, numTransitions), Arrays.copyOf(nonZeros, numTransitions), Arrays.copyOf(actions, numChoices));
+		}
 	}
 
 	@Override
@@ -970,6 +1190,7 @@ public class StochasticUpdateStrategy implements Strategy
 				} // check if c_X cardinality
 			}
 		}
+		compact();
 	}
 
 	private void printCorners(BitSet[] c_X)
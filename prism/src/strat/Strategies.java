@@ -1,7 +1,11 @@
 package strat;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Scanner;
 
 import prism.PrismException;
@@ -20,6 +24,7 @@ public class Strategies
     public static final String FORMAT_STRING_EXACT_VALUE_MD_STRAT = "$EVMD.strat-v0.1";
     public static final String FORMAT_STRING_SU_STRAT_MONO = "$SU.strat-v0.1";
     public static final String FORMAT_STRING_SU_STRAT_COMP = "$SU.strat.comp-v0.1";
+    public static final String FORMAT_STRING_SU_STRAT_BIN = "$SU.strat.bin-v0.1";
 
 	private Strategies()
 	{
@@ -35,6 +40,17 @@ public class Strategies
 	public static Strategy loadStrategyFromFile(String filename) throws IllegalArgumentException
 	{
 	        System.out.printf("Loading strategy \"%s\"...\n", filename);
+		// binary formats: read header byte-wise, then the rest in binary
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+			if (readHeaderLine(in).equals(FORMAT_STRING_SU_STRAT_BIN)) {
+				return new StochasticUpdateStrategy(in);
+			}
+		} catch (FileNotFoundException error) {
+		        throw new IllegalArgumentException(String.format("File not found: %s", filename));
+		} catch (IOException error) {
+			throw new IllegalArgumentException(String.format("Could not read strategy from %s: %s", filename, error.getMessage()));
+		}
+		// text formats
 		try {
 			Scanner scan = new Scanner(new File(filename));
 			try {
@@ -59,7 +75,21 @@ public class Strategies
 		}
 	}
 
-	public static void main(String[] args)
+	/**
+	 * Read the first line of {@code in} (up to 64 characters, without the line break).
+	 */
+	private static String readHeaderLine(DataInputStream in) throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1 && c != '\n' && sb.length() < 64) {
+			if (c != '\r')
+				sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	public static void main(String[] args) throws PrismException
 	{
 		String fn = "md.adv";
 		String fn2 = "md2.adv";
@@ -164,7 +164,7 @@ public interface Strategy
 	/**
 	 * Export the strategy to a file.
 	 */
-	public void exportToFile(String file);
+	public void exportToFile(String file) throws PrismException;
 	
 	// New export methods
 
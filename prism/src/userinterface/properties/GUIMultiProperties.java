@@ -101,7 +101,6 @@ import prism.PrismSettings;
 import prism.PrismSettingsListener;
 import prism.TileList;
 import prism.UndefinedConstants;
-import strat.StochasticUpdateStrategy;
 import strat.Strategies;
 import userinterface.GUIClipboardEvent;
 import userinterface.GUIConstantsPicker;
@@ -958,11 +957,6 @@ public class GUIMultiProperties extends GUIPlugin implements MouseListener, List
 	{
 		// check if strategy implementation is enabled
 		if (getPrism().getSettings().getBoolean(PrismSettings.PRISM_IMPLEMENT_STRATEGY) && getPrism().getStrategy() != null) {
-		    // check if strategy is stochastic memory update
-		    if (getPrism().getStrategy() instanceof StochasticUpdateStrategy) {
-			JOptionPane.showMessageDialog(this, "Cannot verify under a stochastic update strategy.", "Operation not supported.", JOptionPane.ERROR_MESSAGE);
-			return;
-		    }
 			int n = JOptionPane.showOptionDialog(this, "The product of the model and strategy will be built.\nDo you want to continue?", "Use strategy?",
 					JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE, null, new String[] { "Yes", "No" }, "Yes");
 
@@ -1450,7 +1444,11 @@ public class GUIMultiProperties extends GUIPlugin implements MouseListener, List
 				@Override
 				public void run()
 				{
-					getPrism().getStrategy().exportToFile(file.getAbsolutePath());
+					try {
+						getPrism().getStrategy().exportToFile(file.getAbsolutePath());
+					} catch (PrismException e) {
+						error(e.getMessage());
+					}
 				}
 			};
 			t.start();